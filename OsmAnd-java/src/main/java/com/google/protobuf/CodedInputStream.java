@@ -376,6 +376,9 @@ public final class CodedInputStream {
    * upper bits.
    */
   public int readRawVarint32() throws IOException {
+    if (bufferSize - bufferPos >= MAX_VARINT_SIZE) {
+      return readRawVarint32FromBuffer();
+    }
     byte tmp = readRawByte();
     if (tmp >= 0) {
       return tmp;
@@ -409,6 +412,138 @@ public final class CodedInputStream {
     return result;
   }
 
+  // osmand change
+  private static final int MAX_VARINT_SIZE = 10;
+
+  /**
+   * Decodes a varint straight from the buffer without refill checks.
+   * Caller must ensure that at least {@link #MAX_VARINT_SIZE} bytes are
+   * buffered.
+   */
+  private int readRawVarint32FromBuffer() throws IOException {
+    final byte[] buf = buffer;
+    int pos = bufferPos;
+    int tmp = buf[pos++];
+    int result;
+    if (tmp >= 0) {
+      result = tmp;
+    } else {
+      result = tmp & 0x7f;
+      if ((tmp = buf[pos++]) >= 0) {
+        result |= tmp << 7;
+      } else {
+        result |= (tmp & 0x7f) << 7;
+        if ((tmp = buf[pos++]) >= 0) {
+          result |= tmp << 14;
+        } else {
+          result |= (tmp & 0x7f) << 14;
+          if ((tmp = buf[pos++]) >= 0) {
+            result |= tmp << 21;
+          } else {
+            result |= (tmp & 0x7f) << 21;
+            result |= (tmp = buf[pos++]) << 28;
+            if (tmp < 0) {
+              // Discard upper 32 bits.
+              if (buf[pos++] < 0 && buf[pos++] < 0 && buf[pos++] < 0
+                  && buf[pos++] < 0 && buf[pos++] < 0) {
+                bufferPos = pos;
+                throw InvalidProtocolBufferException.malformedVarint();
+              }
+            }
+          }
+        }
+      }
+    }
+    bufferPos = pos;
+    return result;
+  }
+
+  /**
+   * Reads packed {@code sint32} values up to the current limit into
+   * {@code out} starting at {@code offset}.  Values are decoded straight from
+   * the buffer while it holds enough bytes for any varint, so there is one
+   * bounds check per value instead of one per byte.  Array must have space
+   * for {@link #getBytesUntilLimit()} values (each value takes at least one
+   * byte).
+   *
+   * @return number of values read
+   */
+  public int readPackedSInt32(final int[] out, final int offset) throws IOException {
+    int bytes = getBytesUntilLimit();
+    if (bytes < 0) {
+      throw new IllegalStateException("Packed values could be read only within limit");
+    }
+    if (out.length - offset < bytes) {
+      throw new IllegalArgumentException("Array is too small " + (out.length - offset) + " < " + bytes);
+    }
+    int ind = offset;
+    while (getBytesUntilLimit() > 0) {
+      ind = readPackedSInt32Window(out, ind);
+      if (getBytesUntilLimit() > 0) {
+        out[ind++] = decodeZigZag32(readRawVarint32());
+      }
+    }
+    return ind - offset;
+  }
+
+  /**
+   * Reads packed {@code sint32} (x, y) pairs up to the current limit like
+   * {@link #readPackedSInt32(int[], int)}.  Odd number of values means that
+   * the last pair is truncated, as reading it value by value would fail.
+   *
+   * @return number of values read, always even
+   */
+  public int readPackedSInt32Pairs(final int[] out, final int offset) throws IOException {
+    int len = readPackedSInt32(out, offset);
+    if ((len & 1) != 0) {
+      throw InvalidProtocolBufferException.truncatedMessage();
+    }
+    return len;
+  }
+
+  // decodes values while buffer (already cut by current limit) holds a whole varint
+  private int readPackedSInt32Window(final int[] out, int ind) throws IOException {
+    final byte[] buf = buffer;
+    final int end = bufferSize - MAX_VARINT_SIZE;
+    int pos = bufferPos;
+    while (pos <= end) {
+      int tmp = buf[pos++];
+      int result;
+      if (tmp >= 0) {
+        result = tmp;
+      } else {
+        result = tmp & 0x7f;
+        if ((tmp = buf[pos++]) >= 0) {
+          result |= tmp << 7;
+        } else {
+          result |= (tmp & 0x7f) << 7;
+          if ((tmp = buf[pos++]) >= 0) {
+            result |= tmp << 14;
+          } else {
+            result |= (tmp & 0x7f) << 14;
+            if ((tmp = buf[pos++]) >= 0) {
+              result |= tmp << 21;
+            } else {
+              result |= (tmp & 0x7f) << 21;
+              result |= (tmp = buf[pos++]) << 28;
+              if (tmp < 0) {
+                // Discard upper 32 bits.
+                if (buf[pos++] < 0 && buf[pos++] < 0 && buf[pos++] < 0
+                    && buf[pos++] < 0 && buf[pos++] < 0) {
+                  bufferPos = pos;
+                  throw InvalidProtocolBufferException.malformedVarint();
+                }
+              }
+            }
+          }
+        }
+      }
+      out[ind++] = (result >>> 1) ^ -(result & 1);
+    }
+    bufferPos = pos;
+    return ind;
+  }
+
   /**
    * Reads a varint from the input one byte at a time, so that it does not
    * read any bytes after the end of the varint.  If you simply wrapped the
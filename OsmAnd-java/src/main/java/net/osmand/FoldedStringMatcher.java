@@ -0,0 +1,253 @@
+package net.osmand;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+/**
+ * Matcher with the same modes as {@link CollatorStringMatcher}, but part is folded only once and names are folded
+ * the same way on match, so comparison is done char by char without collator calls for every substring.
+ * Folding is lower case in root locale, ß -> ss as in {@link CollatorStringMatcher} and letter with marks -> base letter
+ * when primary collator treats them as equal. Folded strings keep their length, so substrings compared by both
+ * matchers are the same; chars ignored by collator are skipped and ligatures expanded when substrings are compared.
+ * Tables are created with collator of default locale.
+ */
+public class FoldedStringMatcher implements StringMatcher {
+
+	private static final int TABLE_SIZE = 0x2000;
+	private static final char[] FOLD_TABLE = new char[TABLE_SIZE];
+	// chars ignored by collator when substrings are compared
+	private static final boolean[] IGNORABLE = new boolean[TABLE_SIZE];
+	// letters equal to 2 letters for collator
+	private static final char[] LIGATURES = {'æ', 'œ', 'þ', 'ĳ'};
+	private static final String[] LIGATURE_LETTERS = {"ae", "oe", "th", "ij"};
+	private static final String[] EXPANSIONS = new String[TABLE_SIZE];
+
+	static {
+		createFoldTable(OsmAndCollator.primaryCollator());
+	}
+
+	private final StringMatcherMode mode;
+	private final String part;
+	private final String expandedPart;
+
+	public FoldedStringMatcher(String part, StringMatcherMode mode) {
+		part = fold(part);
+		if (part.length() > 0 && part.charAt(part.length() - 1) == '.') {
+			part = part.substring(0, part.length() - 1);
+			if (mode == StringMatcherMode.CHECK_EQUALS_FROM_SPACE) {
+				mode = StringMatcherMode.CHECK_STARTS_FROM_SPACE;
+			} else if (mode == StringMatcherMode.CHECK_EQUALS) {
+				mode = StringMatcherMode.CHECK_ONLY_STARTS_WITH;
+			}
+		}
+		this.part = part;
+		this.mode = mode;
+		this.expandedPart = expand(part);
+	}
+
+	public String getPart() {
+		return part;
+	}
+
+	public StringMatcherMode getMode() {
+		return mode;
+	}
+
+	@Override
+	public boolean matches(String name) {
+		if (name == null) {
+			return false;
+		}
+		String searchIn = fold(name);
+		switch (mode) {
+		case CHECK_CONTAINS:
+			return contains(searchIn);
+		case CHECK_EQUALS_FROM_SPACE:
+			return startsWith(searchIn, true, true, true);
+		case CHECK_STARTS_FROM_SPACE:
+			return startsWith(searchIn, true, true, false);
+		case CHECK_STARTS_FROM_SPACE_NOT_BEGINNING:
+			return startsWith(searchIn, false, true, false);
+		case CHECK_ONLY_STARTS_WITH:
+			return startsWith(searchIn, true, false, false);
+		case CHECK_EQUALS:
+			return startsWith(searchIn, false, false, true);
+		}
+		return false;
+	}
+
+	private boolean startsWith(String searchIn, boolean checkBeginning, boolean checkSpaces, boolean equals) {
+		int searchInLength = searchIn.length();
+		int startLength = part.length();
+		if (startLength == 0) {
+			return true;
+		}
+		if (startLength > searchInLength) {
+			return false;
+		}
+		if (checkBeginning && regionEquals(searchIn, 0, startLength)) {
+			if (!equals || startLength == searchInLength || isSpace(searchIn.charAt(startLength))) {
+				return true;
+			}
+		}
+		if (checkSpaces) {
+			for (int i = 1; i <= searchInLength - startLength; i++) {
+				if (isSpace(searchIn.charAt(i - 1)) && !isSpace(searchIn.charAt(i))
+						&& regionEquals(searchIn, i, i + startLength)) {
+					if (!equals || i + startLength == searchInLength || isSpace(searchIn.charAt(i + startLength))) {
+						return true;
+					}
+				}
+			}
+		}
+		if (!checkBeginning && !checkSpaces && equals) {
+			return regionEquals(searchIn, 0, searchInLength);
+		}
+		return false;
+	}
+
+	// same substrings as CollatorStringMatcher.ccontains: part length * 2 chars from every position
+	private boolean contains(String searchIn) {
+		int searchInLength = searchIn.length();
+		int partLength = part.length();
+		if (searchInLength <= partLength) {
+			return regionEquals(searchIn, 0, searchInLength);
+		}
+		for (int pos = 0; pos <= searchInLength - partLength + 1; pos++) {
+			if (regionMatches(searchIn, pos, Math.min(pos + partLength * 2, searchInLength), true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean regionEquals(String searchIn, int start, int end) {
+		return regionMatches(searchIn, start, end, false);
+	}
+
+	// same as primary collator equals of searchIn substring and part: ignorable chars are skipped, ligatures expanded,
+	// with prefix any substring from start up to end could be equal
+	private boolean regionMatches(String searchIn, int start, int end, boolean prefix) {
+		String p = expandedPart;
+		int i = start;
+		int j = 0;
+		int k = 0;
+		while (true) {
+			while (k == 0 && i < end && isIgnorable(searchIn.charAt(i))) {
+				i++;
+			}
+			while (j < p.length() && isIgnorable(p.charAt(j))) {
+				j++;
+			}
+			if (prefix && j == p.length() && k == 0) {
+				return true;
+			}
+			if (i == end || j == p.length()) {
+				return i == end && j == p.length();
+			}
+			char c = searchIn.charAt(i);
+			String exp = c < TABLE_SIZE ? EXPANSIONS[c] : null;
+			if (exp != null) {
+				c = exp.charAt(k++);
+				if (k == exp.length()) {
+					k = 0;
+					i++;
+				}
+			} else {
+				i++;
+			}
+			if (c != p.charAt(j++)) {
+				return false;
+			}
+		}
+	}
+
+	private static String expand(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 4);
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			String exp = c < TABLE_SIZE ? EXPANSIONS[c] : null;
+			if (exp != null) {
+				sb.append(exp);
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static boolean isIgnorable(char c) {
+		return c < TABLE_SIZE && IGNORABLE[c];
+	}
+
+	private static boolean isSpace(char c) {
+		return !Character.isLetter(c) && !Character.isDigit(c);
+	}
+
+	/**
+	 * @return string in the form used for comparison, the same instance if it is already folded
+	 */
+	public static String fold(String s) {
+		int len = s.length();
+		int i = 0;
+		for (; i < len; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80 || (c >= 'A' && c <= 'Z')) {
+				break;
+			}
+		}
+		if (i == len) {
+			return s;
+		}
+		String lower = s.toLowerCase(Locale.ROOT);
+		StringBuilder sb = null;
+		for (i = 0; i < lower.length(); i++) {
+			char c = lower.charAt(i);
+			char f = c < TABLE_SIZE ? FOLD_TABLE[c] : c;
+			if (sb == null) {
+				if (f == c && c != 'ß') {
+					continue;
+				}
+				sb = new StringBuilder(lower.length() + 4);
+				sb.append(lower, 0, i);
+			}
+			if (c == 'ß') {
+				sb.append("ss");
+			} else {
+				sb.append(f);
+			}
+		}
+		return sb == null ? lower : sb.toString();
+	}
+
+	private static void createFoldTable(Collator collator) {
+		for (int i = 0; i < LIGATURES.length; i++) {
+			if (collator.equals(String.valueOf(LIGATURES[i]), LIGATURE_LETTERS[i])) {
+				EXPANSIONS[LIGATURES[i]] = LIGATURE_LETTERS[i];
+			}
+		}
+		for (int c = 0; c < TABLE_SIZE; c++) {
+			char ch = (char) c;
+			FOLD_TABLE[c] = ch;
+			if (!Character.isLetterOrDigit(ch)) {
+				IGNORABLE[c] = collator.equals("a" + ch, "a");
+				continue;
+			}
+			if (c < 0x80) {
+				continue;
+			}
+			String n = Normalizer.normalize(String.valueOf(ch), Normalizer.Form.NFD);
+			if (n.length() > 1 && Character.isLetter(n.charAt(0))) {
+				boolean marks = true;
+				for (int i = 1; i < n.length(); i++) {
+					marks &= Character.getType(n.charAt(i)) == Character.NON_SPACING_MARK;
+				}
+				if (marks && collator.equals(String.valueOf(ch), n.substring(0, 1))) {
+					FOLD_TABLE[c] = n.charAt(0);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package net.osmand.binary;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.GeocodingUtilities.GeocodingAddressCache;
+import net.osmand.binary.GeocodingUtilities.GeocodingResult;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutingContext;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reverse geocoding of many points at once. Points are sorted along Z-order curve and split into
+ * groups by tile of {@link #getGroupZoom()}, so points of one group share loaded routing tiles
+ * of RoutingContext and streets / buildings cached by {@link GeocodingAddressCache}.
+ * Groups are processed by several workers, each worker has own readers and own RoutingContext.
+ */
+public class BatchReverseGeocoder {
+
+	private static final Log log = PlatformUtil.getLog(BatchReverseGeocoder.class);
+
+	public static final int DEFAULT_GROUP_ZOOM = 14;
+
+	public interface RoutingContextFactory {
+
+		RoutingContext createRoutingContext(BinaryMapIndexReader[] readers);
+	}
+
+	public interface BatchGeocodingListener {
+
+		/**
+		 * Called once per input point in order of processing (not in order of indexes).
+		 * Calls are serialized, so listener doesn't need to be thread safe.
+		 */
+		void onResult(int index, List<GeocodingResult> results);
+
+		boolean isCancelled();
+	}
+
+	private final List<BinaryMapIndexReader> readers;
+	private final RoutingContextFactory contextFactory;
+	private final int threads;
+	private int groupZoom = DEFAULT_GROUP_ZOOM;
+	private boolean allowEmptyNames = false;
+
+	public BatchReverseGeocoder(List<BinaryMapIndexReader> readers, RoutingContextFactory contextFactory, int threads) {
+		this.readers = readers;
+		this.contextFactory = contextFactory;
+		this.threads = Math.max(1, threads);
+	}
+
+	public int getGroupZoom() {
+		return groupZoom;
+	}
+
+	public void setGroupZoom(int groupZoom) {
+		this.groupZoom = groupZoom;
+	}
+
+	public void setAllowEmptyNames(boolean allowEmptyNames) {
+		this.allowEmptyNames = allowEmptyNames;
+	}
+
+	public void search(double[] lats, double[] lons, final BatchGeocodingListener listener) throws IOException {
+		if (lats.length != lons.length) {
+			throw new IllegalArgumentException("Latitudes and longitudes have different size");
+		}
+		long time = System.currentTimeMillis();
+		final int[] order = sortByCurve(lats, lons);
+		final List<int[]> groups = splitIntoGroups(order, lats, lons);
+		final AtomicInteger nextGroup = new AtomicInteger();
+		int workers = Math.min(threads, groups.size());
+		if (workers <= 1) {
+			new Worker(lats, lons, order, groups, nextGroup, listener, false).call();
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(workers);
+			try {
+				List<Future<Void>> futures = new ArrayList<Future<Void>>();
+				for (int i = 0; i < workers; i++) {
+					futures.add(executor.submit(new Worker(lats, lons, order, groups, nextGroup, listener, true)));
+				}
+				for (Future<Void> f : futures) {
+					f.get();
+				}
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		log.info("Batch reverse geocoding of " + lats.length + " points (" + groups.size() + " groups) is done in "
+				+ (System.currentTimeMillis() - time) + " ms");
+	}
+
+	private int[] sortByCurve(double[] lats, double[] lons) {
+		final long[] codes = new long[lats.length];
+		Integer[] indexes = new Integer[lats.length];
+		for (int i = 0; i < lats.length; i++) {
+			codes[i] = MapUtils.interleaveBits(MapUtils.get31TileNumberX(lons[i]), MapUtils.get31TileNumberY(lats[i]));
+			indexes[i] = i;
+		}
+		Arrays.sort(indexes, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Long.compare(codes[o1], codes[o2]);
+			}
+		});
+		int[] order = new int[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			order[i] = indexes[i];
+		}
+		return order;
+	}
+
+	// group is {start, end} range of sorted order, points of one tile are consecutive on Z-order curve
+	private List<int[]> splitIntoGroups(int[] order, double[] lats, double[] lons) {
+		List<int[]> groups = new ArrayList<int[]>();
+		int shift = 31 - groupZoom;
+		long prevTile = -1;
+		int start = 0;
+		for (int i = 0; i < order.length; i++) {
+			int ind = order[i];
+			long tile = MapUtils.interleaveBits(MapUtils.get31TileNumberX(lons[ind]) >> shift,
+					MapUtils.get31TileNumberY(lats[ind]) >> shift);
+			if (i > 0 && tile != prevTile) {
+				groups.add(new int[] { start, i });
+				start = i;
+			}
+			prevTile = tile;
+		}
+		if (start < order.length) {
+			groups.add(new int[] { start, order.length });
+		}
+		return groups;
+	}
+
+	private class Worker implements Callable<Void> {
+		private final double[] lats;
+		private final double[] lons;
+		private final int[] order;
+		private final List<int[]> groups;
+		private final AtomicInteger nextGroup;
+		private final BatchGeocodingListener listener;
+		private final boolean ownReaders;
+
+		Worker(double[] lats, double[] lons, int[] order, List<int[]> groups, AtomicInteger nextGroup,
+				BatchGeocodingListener listener, boolean ownReaders) {
+			this.lats = lats;
+			this.lons = lons;
+			this.order = order;
+			this.groups = groups;
+			this.nextGroup = nextGroup;
+			this.listener = listener;
+			this.ownReaders = ownReaders;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			// readers are not thread safe, so each worker reads files through own instances
+			List<BinaryMapIndexReader> workerReaders = new ArrayList<BinaryMapIndexReader>();
+			try {
+				for (BinaryMapIndexReader r : readers) {
+					workerReaders.add(ownReaders ? new BinaryMapIndexReader(new RandomAccessFile(r.getFile(), "r"), r) : r);
+				}
+				RoutingContext ctx = contextFactory.createRoutingContext(
+						workerReaders.toArray(new BinaryMapIndexReader[workerReaders.size()]));
+				GeocodingAddressCache cache = new GeocodingAddressCache(null, 0);
+				GeocodingUtilities utilities = new GeocodingUtilities(cache);
+				int g;
+				while ((g = nextGroup.getAndIncrement()) < groups.size() && !listener.isCancelled()) {
+					processGroup(groups.get(g), ctx, cache, utilities, workerReaders);
+					if (ctx.checkIfMemoryLimitCritical(ctx.config.memoryLimitation)) {
+						ctx.unloadUnusedTiles(ctx.config.memoryLimitation);
+					}
+				}
+			} finally {
+				if (ownReaders) {
+					for (BinaryMapIndexReader r : workerReaders) {
+						r.close();
+					}
+				}
+			}
+			return null;
+		}
+
+		private void processGroup(int[] group, RoutingContext ctx, GeocodingAddressCache cache,
+				GeocodingUtilities utilities, List<BinaryMapIndexReader> workerReaders) throws IOException {
+			double lat = 0;
+			double lon = 0;
+			for (int i = group[0]; i < group[1]; i++) {
+				lat += lats[order[i]];
+				lon += lons[order[i]];
+			}
+			LatLon center = new LatLon(lat / (group[1] - group[0]), lon / (group[1] - group[0]));
+			double groupRadius = 0;
+			for (int i = group[0]; i < group[1]; i++) {
+				groupRadius = Math.max(groupRadius, MapUtils.getDistance(center, lats[order[i]], lons[order[i]]));
+			}
+			cache.reset(center, GeocodingUtilities.DISTANCE_STREET_NAME_PROXIMITY_BY_NAME + (int) Math.ceil(groupRadius));
+			for (int i = group[0]; i < group[1] && !listener.isCancelled(); i++) {
+				int ind = order[i];
+				List<GeocodingResult> res = utilities.reverseGeocodingSearch(ctx, lats[ind], lons[ind], allowEmptyNames);
+				List<GeocodingResult> complete = utilities.sortGeocodingResults(workerReaders, res);
+				synchronized (listener) {
+					listener.onResult(ind, complete);
+				}
+			}
+		}
+	}
+}
@@ -708,16 +708,7 @@ public class BinaryMapAddressReaderAdapter {
 										MapUtils.get31TileNumberY(l.getLatitude()) >> 7, obj.isPostcode() ? obj.getName() : null,
 										reg.attributeTagsTable);
 								publishRawData(req, s);
-								boolean matches = stringMatcher.matches(s.getName());
-								if (!matches) {
-									for (String n : s.getOtherNames()) {
-										matches = stringMatcher.matches(n);
-										if (matches) {
-											break;
-										}
-									}
-								}
-								if (matches) {
+								if (matchesByName(s, stringMatcher, stringMatcher)) {
 									req.publish(s);
 								}
 								codedIS.popLimit(old);
@@ -755,6 +746,22 @@ public class BinaryMapAddressReaderAdapter {
 
 	}
 
+	/**
+	 * Name check applied to streets and cities found by {@link #searchAddressDataByName}
+	 */
+	public static boolean matchesByName(MapObject object, StringMatcher nameMatcher, StringMatcher postcodeMatcher) {
+		StringMatcher matcher = object instanceof City && ((City) object).isPostcode() ? postcodeMatcher : nameMatcher;
+		if (matcher.matches(object.getName())) {
+			return true;
+		}
+		for (String n : object.getOtherNames()) {
+			if (matcher.matches(n)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private void readAddressNameData(SearchRequest<MapObject> req, TIntArrayList[] refs,
 			TIntArrayList[] refsContainer, int fp) throws IOException {
 		TIntArrayList toAdd = null;
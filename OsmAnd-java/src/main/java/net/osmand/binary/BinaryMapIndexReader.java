@@ -21,6 +21,7 @@ import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiSubType;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
 import net.osmand.binary.BinaryMapTransportReaderAdapter.TransportIndex;
+import net.osmand.binary.OsmandIndex.FileIndex;
 import net.osmand.binary.OsmandOdb.MapDataBlock;
 import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapDataBox;
 import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapEncodingRule;
@@ -61,6 +62,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -115,6 +117,11 @@ public class BinaryMapIndexReader {
 	/*private*/ List<RouteRegion> routingIndexes = new ArrayList<RouteRegion>();
 	/*private*/ List<BinaryIndexPart> indexes = new ArrayList<BinaryIndexPart>();
 	TLongObjectHashMap<IncompleteTransportRoute> incompleteTransportRoutes = null;
+	// sections of reader created from indexes cache are initialized on first use
+	private FileIndex cachedFileIndex;
+	private volatile int initializedSections = CachedOsmandIndexes.ALL_SECTIONS;
+	// address regions fully loaded into memory
+	private Map<AddressRegion, CompactAddressIndex> compactAddressIndexes = new LinkedHashMap<AddressRegion, CompactAddressIndex>();
 	
 	protected CodedInputStream codedIS;
 
@@ -163,14 +170,21 @@ public class BinaryMapIndexReader {
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
 		poiAdapter = new BinaryMapPoiReaderAdapter(this);
 		routeAdapter = new BinaryMapRouteReaderAdapter(this);
-		mapIndexes = new ArrayList<BinaryMapIndexReader.MapIndex>(referenceToSameFile.mapIndexes);
-		poiIndexes = new ArrayList<PoiRegion>(referenceToSameFile.poiIndexes);
-		addressIndexes = new ArrayList<AddressRegion>(referenceToSameFile.addressIndexes);
-		transportIndexes = new ArrayList<TransportIndex>(referenceToSameFile.transportIndexes);
-		routingIndexes = new ArrayList<RouteRegion>(referenceToSameFile.routingIndexes);
-		indexes = new ArrayList<BinaryIndexPart>(referenceToSameFile.indexes);
-		basemap = referenceToSameFile.basemap;
-		calculateCenterPointForRegions();
+		synchronized (referenceToSameFile) {
+			// sections not initialized yet are initialized by this reader from the same cached index
+			mapIndexes = new ArrayList<BinaryMapIndexReader.MapIndex>(referenceToSameFile.mapIndexes);
+			poiIndexes = new ArrayList<PoiRegion>(referenceToSameFile.poiIndexes);
+			addressIndexes = new ArrayList<AddressRegion>(referenceToSameFile.addressIndexes);
+			transportIndexes = new ArrayList<TransportIndex>(referenceToSameFile.transportIndexes);
+			routingIndexes = new ArrayList<RouteRegion>(referenceToSameFile.routingIndexes);
+			indexes = new ArrayList<BinaryIndexPart>(referenceToSameFile.indexes);
+			basemap = referenceToSameFile.basemap;
+			cachedFileIndex = referenceToSameFile.cachedFileIndex;
+			initializedSections = referenceToSameFile.initializedSections;
+		}
+		if ((initializedSections & CachedOsmandIndexes.ADDRESS_SECTION) != 0) {
+			calculateCenterPointForRegions();
+		}
 	}
 
 
@@ -307,36 +321,87 @@ public class BinaryMapIndexReader {
 		}
 	}
 
+	void initSectionsLazily(FileIndex fileIndex) {
+		cachedFileIndex = fileIndex;
+		initializedSections = 0;
+	}
+
+	private void checkSectionInitialized(int section) {
+		if ((initializedSections & section) != section) {
+			initSection(section);
+		}
+	}
+
+	private synchronized void initSection(int section) {
+		FileIndex fileIndex = cachedFileIndex;
+		int initialized = initializedSections;
+		boolean initAddress = (section & CachedOsmandIndexes.ADDRESS_SECTION) != 0
+				&& (initialized & CachedOsmandIndexes.ADDRESS_SECTION) == 0;
+		if (initAddress) {
+			// centers of address regions are calculated by map and routing regions
+			section |= CachedOsmandIndexes.MAP_SECTION | CachedOsmandIndexes.ROUTING_SECTION;
+		}
+		for (int s = 1; s <= section; s <<= 1) {
+			if ((section & s) != 0 && (initialized & s) == 0) {
+				if (fileIndex != null) {
+					CachedOsmandIndexes.initReaderSection(this, fileIndex, s);
+				}
+				initialized |= s;
+			}
+		}
+		if (initAddress && fileIndex != null) {
+			calculateCenterPointForRegions();
+		}
+		if (initialized == CachedOsmandIndexes.ALL_SECTIONS && initializedSections != initialized) {
+			cachedFileIndex = null;
+			if (fileIndex != null) {
+				// keep the same order as sections are stored in file
+				Collections.sort(indexes, new Comparator<BinaryIndexPart>() {
+					@Override
+					public int compare(BinaryIndexPart o1, BinaryIndexPart o2) {
+						return Integer.compare(o1.getFilePointer(), o2.getFilePointer());
+					}
+				});
+			}
+		}
+		// sections are visible to other threads after this write
+		initializedSections = initialized;
+	}
+
 	public List<BinaryIndexPart> getIndexes() {
+		checkSectionInitialized(CachedOsmandIndexes.ALL_SECTIONS);
 		return indexes;
 	}
 
 	public List<MapIndex> getMapIndexes() {
+		checkSectionInitialized(CachedOsmandIndexes.MAP_SECTION);
 		return mapIndexes;
 	}
 	
 	public List<RouteRegion> getRoutingIndexes() {
+		checkSectionInitialized(CachedOsmandIndexes.ROUTING_SECTION);
 		return routingIndexes;
 	}
 
 	public boolean isBasemap() {
+		checkSectionInitialized(CachedOsmandIndexes.MAP_SECTION);
 		return basemap;
 	}
 
 	public boolean containsMapData() {
-		return mapIndexes.size() > 0;
+		return getMapIndexes().size() > 0;
 	}
 
 	public boolean containsPoiData() {
-		return poiIndexes.size() > 0;
+		return getPoiIndexes().size() > 0;
 	}
 
 	public boolean containsRouteData() {
-		return routingIndexes.size() > 0;
+		return getRoutingIndexes().size() > 0;
 	}
 
 	public boolean containsRouteData(int left31x, int top31y, int right31x, int bottom31y, int zoom) {
-		for (RouteRegion ri : routingIndexes) {
+		for (RouteRegion ri : getRoutingIndexes()) {
 			List<RouteSubregion> sr = ri.getSubregions();
 			for (RouteSubregion r : sr) {
 				if (right31x >= r.left && left31x <= r.right && r.top <= bottom31y && r.bottom >= top31y) {
@@ -350,7 +415,7 @@ public class BinaryMapIndexReader {
 
 	
 	public boolean containsPoiData(int left31x, int top31y, int right31x, int bottom31y) {
-		for (PoiRegion index : poiIndexes) {
+		for (PoiRegion index : getPoiIndexes()) {
 			if (right31x >= index.left31 && left31x <= index.right31 && index.top31 <= bottom31y && index.bottom31 >= top31y) {
 				return true;
 			}
@@ -359,7 +424,7 @@ public class BinaryMapIndexReader {
 	}
 	
 	public boolean containsAddressData(int left31x, int top31y, int right31x, int bottom31y) {
-		for (AddressRegion index : addressIndexes) {
+		for (AddressRegion index : getAddressIndexes()) {
 			if (right31x >= index.left31 && left31x <= index.right31 && index.top31 <= bottom31y && index.bottom31 >= top31y) {
 				return true;
 			}
@@ -368,7 +433,7 @@ public class BinaryMapIndexReader {
 	}
 
 	public boolean containsMapData(int tile31x, int tile31y, int zoom) {
-		for (MapIndex mapIndex : mapIndexes) {
+		for (MapIndex mapIndex : getMapIndexes()) {
 			for (MapRoot root : mapIndex.getRoots()) {
 				if (root.minZoom <= zoom && root.maxZoom >= zoom) {
 					if (tile31x >= root.left && tile31x <= root.right && root.top <= tile31y && root.bottom >= tile31y) {
@@ -381,7 +446,7 @@ public class BinaryMapIndexReader {
 	}
 
 	public boolean containsMapData(int left31x, int top31y, int right31x, int bottom31y, int zoom) {
-		for (MapIndex mapIndex : mapIndexes) {
+		for (MapIndex mapIndex : getMapIndexes()) {
 			for (MapRoot root : mapIndex.getRoots()) {
 				if (root.minZoom <= zoom && root.maxZoom >= zoom) {
 					if (right31x >= root.left && left31x <= root.right && root.top <= bottom31y && root.bottom >= top31y) {
@@ -394,11 +459,11 @@ public class BinaryMapIndexReader {
 	}
 
 	public boolean containsAddressData() {
-		return addressIndexes.size() > 0;
+		return getAddressIndexes().size() > 0;
 	}
 
 	public boolean hasTransportData() {
-		return transportIndexes.size() > 0;
+		return getTransportIndexes().size() > 0;
 	}
 
 
@@ -538,12 +603,13 @@ public class BinaryMapIndexReader {
 	}
 
 	public List<TransportIndex> getTransportIndexes() {
+		checkSectionInitialized(CachedOsmandIndexes.TRANSPORT_SECTION);
 		return transportIndexes;
 	}
 
 	private TransportIndex getTransportIndex(int filePointer) {
 		TransportIndex ind = null;
-		for (TransportIndex i : transportIndexes) {
+		for (TransportIndex i : getTransportIndexes()) {
 			if (i.filePointer <= filePointer && (filePointer - i.filePointer) < i.length) {
 				ind = i;
 				break;
@@ -555,7 +621,7 @@ public class BinaryMapIndexReader {
 	public boolean containTransportData(double latitude, double longitude) {
 		double x = MapUtils.getTileNumberX(TRANSPORT_STOP_ZOOM, longitude);
 		double y = MapUtils.getTileNumberY(TRANSPORT_STOP_ZOOM, latitude);
-		for (TransportIndex index : transportIndexes) {
+		for (TransportIndex index : getTransportIndexes()) {
 			if (index.right >= x && index.left <= x && index.top <= y && index.bottom >= y) {
 				return true;
 			}
@@ -568,7 +634,7 @@ public class BinaryMapIndexReader {
 		double topY = MapUtils.getTileNumberY(TRANSPORT_STOP_ZOOM, topLatitude);
 		double rightX = MapUtils.getTileNumberX(TRANSPORT_STOP_ZOOM, rightLongitude);
 		double bottomY = MapUtils.getTileNumberY(TRANSPORT_STOP_ZOOM, bottomLatitude);
-		for (TransportIndex index : transportIndexes) {
+		for (TransportIndex index : getTransportIndexes()) {
 			if (index.right >= leftX && index.left <= rightX && index.top <= bottomY && index.bottom >= topY) {
 				return true;
 			}
@@ -596,7 +662,7 @@ public class BinaryMapIndexReader {
 	}
 	
 	public List<TransportStop> searchTransportIndex(SearchRequest<TransportStop> req) throws IOException {
-		for (TransportIndex index : transportIndexes) {
+		for (TransportIndex index : getTransportIndexes()) {
 			searchTransportIndex(index, req);
 		}
 		if (req.numberOfVisitedObjects > 0 && req.log) {
@@ -611,14 +677,14 @@ public class BinaryMapIndexReader {
 	 */
 	public List<String> getRegionNames() {
 		List<String> names = new ArrayList<String>();
-		for (AddressRegion r : addressIndexes) {
+		for (AddressRegion r : getAddressIndexes()) {
 			names.add(r.name);
 		}
 		return names;
 	}
 
 	public LatLon getRegionCenter() {
-		for (AddressRegion r : addressIndexes) {
+		for (AddressRegion r : getAddressIndexes()) {
 			if (r.calculatedCenter != null)
 				return r.calculatedCenter;
 		}
@@ -634,7 +700,12 @@ public class BinaryMapIndexReader {
 	public List<City> getCities(SearchRequest<City> resultMatcher, StringMatcher matcher, String lang, int cityType)
 			throws IOException {
 		List<City> cities = new ArrayList<City>();
-		for (AddressRegion r : addressIndexes) {
+		for (AddressRegion r : getAddressIndexes()) {
+			CompactAddressIndex compactIndex = compactAddressIndexes.get(r);
+			if (compactIndex != null) {
+				cities.addAll(compactIndex.getCities(resultMatcher, matcher, cityType));
+				continue;
+			}
 			for (CitiesBlock block : r.cities) {
 				if (block.type == cityType) {
 					codedIS.seek(block.filePointer);
@@ -653,6 +724,10 @@ public class BinaryMapIndexReader {
 	}
 	public List<City> getCities(AddressRegion region, SearchRequest<City> resultMatcher, StringMatcher matcher,  
 			int cityType) throws IOException {
+		CompactAddressIndex compactIndex = compactAddressIndexes.get(region);
+		if (compactIndex != null) {
+			return compactIndex.getCities(resultMatcher, matcher, cityType);
+		}
 		List<City> cities = new ArrayList<City>();
 		for (CitiesBlock block : region.cities) {
 			if (block.type == cityType) {
@@ -672,6 +747,11 @@ public class BinaryMapIndexReader {
 		} catch (IllegalArgumentException e) {
 			throw new IOException(e.getMessage() + " while reading " + c + " (id: " + c.getId() + ")");
 		}
+		CompactAddressIndex compactIndex = compactAddressIndexes.get(reg);
+		if (compactIndex != null && compactIndex.containsCity(c)) {
+			compactIndex.preloadStreets(c, resultMatcher);
+			return 0;
+		}
 		codedIS.seek(c.getFileOffset());
 		int size = codedIS.readRawVarint32();
 		int old = codedIS.pushLimit(size);
@@ -681,7 +761,7 @@ public class BinaryMapIndexReader {
 	}
 
 	private AddressRegion checkAddressIndex(int offset) {
-		for (AddressRegion r : addressIndexes) {
+		for (AddressRegion r : getAddressIndexes()) {
 			if (offset >= r.filePointer && offset <= (r.length + r.filePointer)) {
 				return r;
 			}
@@ -692,6 +772,11 @@ public class BinaryMapIndexReader {
 
 	public void preloadBuildings(Street s, SearchRequest<Building> resultMatcher) throws IOException {
 		AddressRegion reg = checkAddressIndex(s.getFileOffset());
+		CompactAddressIndex compactIndex = compactAddressIndexes.get(reg);
+		if (compactIndex != null && compactIndex.containsStreet(s)) {
+			compactIndex.preloadBuildings(s, resultMatcher);
+			return;
+		}
 		codedIS.seek(s.getFileOffset());
 		int size = codedIS.readRawVarint32();
 		int old = codedIS.pushLimit(size);
@@ -702,6 +787,35 @@ public class BinaryMapIndexReader {
 	}
 
 
+	/**
+	 * Streams whole address region into memory, so following getCities / preloadStreets / preloadBuildings
+	 * calls for this region don't read the file anymore.
+	 */
+	public CompactAddressIndex loadCompactAddressIndex(AddressRegion region) throws IOException {
+		CompactAddressIndex compactIndex = compactAddressIndexes.get(region);
+		if (compactIndex == null) {
+			compactIndex = CompactAddressIndex.load(this, region);
+			compactAddressIndexes.put(region, compactIndex);
+		}
+		return compactIndex;
+	}
+
+	public List<CompactAddressIndex> loadCompactAddressIndexes() throws IOException {
+		List<CompactAddressIndex> res = new ArrayList<CompactAddressIndex>();
+		for (AddressRegion r : getAddressIndexes()) {
+			res.add(loadCompactAddressIndex(r));
+		}
+		return res;
+	}
+
+	public CompactAddressIndex getCompactAddressIndex(AddressRegion region) {
+		return compactAddressIndexes.get(region);
+	}
+
+	public void clearCompactAddressIndexes() {
+		compactAddressIndexes.clear();
+	}
+
 	/**
 	 * Map public methods
 	 */
@@ -888,7 +1002,7 @@ public class BinaryMapIndexReader {
 		req.numberOfAcceptedSubtrees = 0;
 		req.numberOfReadSubtrees = 0;
 		List<MapTree> foundSubtrees = new ArrayList<MapTree>();
-		for (MapIndex mapIndex : mapIndexes) {
+		for (MapIndex mapIndex : getMapIndexes()) {
 			if(filterMapIndex != null && mapIndex != filterMapIndex) {
 				continue;
 			}
@@ -1101,6 +1215,15 @@ public class BinaryMapIndexReader {
 	}
 
 	private int MASK_TO_READ = ~((1 << SHIFT_COORDINATES) - 1);
+	private int[] coordinatesBuffer = new int[256];
+
+	int[] getCoordinatesBuffer(int size) {
+		if (coordinatesBuffer.length < size) {
+			coordinatesBuffer = new int[Math.max(size, coordinatesBuffer.length * 2)];
+		}
+		return coordinatesBuffer;
+	}
+
 	private BinaryMapDataObject readMapDataObject(MapTree tree , SearchRequest<BinaryMapDataObject> req, 
 			MapIndex root) throws IOException {
 		int tag = WireFormat.getTagFieldNumber(codedIS.readTag());
@@ -1124,9 +1247,11 @@ public class BinaryMapIndexReader {
 		int minY = Integer.MAX_VALUE;
 		int maxY = 0;
 		req.numberOfVisitedObjects++;
-		while (codedIS.getBytesUntilLimit() > 0) {
-			int x = (codedIS.readSInt32() << SHIFT_COORDINATES) + px;
-			int y = (codedIS.readSInt32() << SHIFT_COORDINATES) + py;
+		int[] deltas = getCoordinatesBuffer(size);
+		int len = codedIS.readPackedSInt32Pairs(deltas, 0);
+		for (int i = 0; i < len; i += 2) {
+			int x = (deltas[i] << SHIFT_COORDINATES) + px;
+			int y = (deltas[i + 1] << SHIFT_COORDINATES) + py;
 			req.cacheCoordinates.add(x);
 			req.cacheCoordinates.add(y);
 			px = x;
@@ -1185,9 +1310,11 @@ public class BinaryMapIndexReader {
 							size);
 				}
 				old = codedIS.pushLimit(size);
-				while (codedIS.getBytesUntilLimit() > 0) {
-					int x = (codedIS.readSInt32() << SHIFT_COORDINATES) + px;
-					int y = (codedIS.readSInt32() << SHIFT_COORDINATES) + py;
+				deltas = getCoordinatesBuffer(size);
+				len = codedIS.readPackedSInt32Pairs(deltas, 0);
+				for (int i = 0; i < len; i += 2) {
+					int x = (deltas[i] << SHIFT_COORDINATES) + px;
+					int y = (deltas[i + 1] << SHIFT_COORDINATES) + py;
 					polygon.add(x);
 					polygon.add(y);
 					px = x;
@@ -1311,7 +1438,7 @@ public class BinaryMapIndexReader {
 	}
 
 	public List<MapObject> searchAddressDataByName(SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
-		for (AddressRegion reg : addressIndexes) {
+		for (AddressRegion reg : getAddressIndexes()) {
 			if (reg.indexNameOffset != -1) {
 				codedIS.seek(reg.indexNameOffset);
 				int len = readInt();
@@ -1332,7 +1459,7 @@ public class BinaryMapIndexReader {
 	}
 
 	public void initCategories() throws IOException {
-		for (PoiRegion poiIndex : poiIndexes) {
+		for (PoiRegion poiIndex : getPoiIndexes()) {
 			poiAdapter.initCategories(poiIndex);
 		}
 	}
@@ -1341,7 +1468,7 @@ public class BinaryMapIndexReader {
 		if (req.nameQuery == null || req.nameQuery.length() == 0) {
 			throw new IllegalArgumentException();
 		}
-		for (PoiRegion poiIndex : poiIndexes) {
+		for (PoiRegion poiIndex : getPoiIndexes()) {
 			poiAdapter.initCategories(poiIndex);
 			codedIS.seek(poiIndex.filePointer);
 			int old = codedIS.pushLimit(poiIndex.length);
@@ -1356,7 +1483,7 @@ public class BinaryMapIndexReader {
 			throw new IllegalArgumentException();
 		}
 		Collator collator = OsmAndCollator.primaryCollator();
-		for (PoiRegion poiIndex : poiIndexes) {
+		for (PoiRegion poiIndex : getPoiIndexes()) {
 			poiAdapter.initCategories(poiIndex);
 			for (int i = 0; i < poiIndex.categories.size(); i++) {
 				String cat = poiIndex.categories.get(i);
@@ -1387,7 +1514,7 @@ public class BinaryMapIndexReader {
 			throw new IllegalArgumentException();
 		}
 		List<PoiSubType> list = new ArrayList<>();
-		for (PoiRegion poiIndex : poiIndexes) {
+		for (PoiRegion poiIndex : getPoiIndexes()) {
 			poiAdapter.initCategories(poiIndex);
 			for (int i = 0; i < poiIndex.subTypes.size(); i++) {
 				PoiSubType subType = poiIndex.subTypes.get(i);
@@ -1404,7 +1531,7 @@ public class BinaryMapIndexReader {
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
 		req.numberOfReadSubtrees = 0;
-		for (PoiRegion poiIndex : poiIndexes) {
+		for (PoiRegion poiIndex : getPoiIndexes()) {
 			poiAdapter.initCategories(poiIndex);
 			codedIS.seek(poiIndex.filePointer);
 			int old = codedIS.pushLimit(poiIndex.length);
@@ -1455,10 +1582,12 @@ public class BinaryMapIndexReader {
 
 
 	protected List<AddressRegion> getAddressIndexes() {
+		checkSectionInitialized(CachedOsmandIndexes.ADDRESS_SECTION);
 		return addressIndexes;
 	}
 
 	public List<PoiRegion> getPoiIndexes() {
+		checkSectionInitialized(CachedOsmandIndexes.POI_SECTION);
 		return poiIndexes;
 	}
 
@@ -1633,6 +1762,7 @@ public class BinaryMapIndexReader {
 		if (codedIS != null) {
 			raf.close();
 			codedIS = null;
+			cachedFileIndex = null;
 			mapIndexes.clear();
 			addressIndexes.clear();
 			transportIndexes.clear();
@@ -2731,7 +2861,7 @@ public class BinaryMapIndexReader {
 	public TLongObjectHashMap<IncompleteTransportRoute> getIncompleteTransportRoutes() throws InvalidProtocolBufferException, IOException {
 		if (incompleteTransportRoutes == null) {
 			incompleteTransportRoutes = new TLongObjectHashMap<>();
-			for (TransportIndex ti : transportIndexes) {
+			for (TransportIndex ti : getTransportIndexes()) {
 				if (ti.incompleteRoutesLength > 0) {
 					codedIS.seek(ti.incompleteRoutesOffset);
 					int oldLimit = codedIS.pushLimit(ti.incompleteRoutesLength);
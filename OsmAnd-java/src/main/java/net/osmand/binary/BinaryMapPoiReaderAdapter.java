@@ -293,10 +293,6 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
-	private String normalizeSearchPoiByNameQuery(String query) {
-		return query.replace("\"", "").toLowerCase();
-	}
-
 	protected void searchPoiByName(PoiRegion region, SearchRequest<Amenity> req) throws IOException {
 		TIntLongHashMap offsets = new TIntLongHashMap();
 		String query = normalizeSearchPoiByNameQuery(req.nameQuery);
@@ -563,6 +559,42 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	/**
+	 * Name check applied to amenities found by {@link BinaryMapIndexReader#searchPoiByName(SearchRequest)}
+	 */
+	public static boolean matchesByName(CollatorStringMatcher matcher, Amenity am) {
+		boolean matches = matcher.matches(am.getName().toLowerCase()) ||
+				matcher.matches(am.getEnName(true).toLowerCase());
+		if (!matches) {
+			for (String s : am.getOtherNames()) {
+				matches = matcher.matches(s.toLowerCase());
+				if (matches) {
+					break;
+				}
+			}
+			if (!matches) {
+				for (String key : am.getAdditionalInfoKeys()) {
+					if(!key.contains("_name") && 
+						!key.equals("brand")) {
+						continue;
+					}
+					matches = matcher.matches(am.getAdditionalInfo(key));
+					if (matches) {
+						break;
+					}
+				}
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Query string used by {@link BinaryMapIndexReader#searchPoiByName(SearchRequest)}
+	 */
+	public static String normalizeSearchPoiByNameQuery(String query) {
+		return query.replace("\"", "").toLowerCase();
+	}
+
 	private void readPoiData(CollatorStringMatcher matcher, SearchRequest<Amenity> req, PoiRegion region) throws IOException {
 		int x = 0;
 		int y = 0;
@@ -590,33 +622,9 @@ public class BinaryMapPoiReaderAdapter {
 				int oldLim = codedIS.pushLimit(len);
 				Amenity am = readPoiPoint(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, x, y, zoom, req, region, false);
 				codedIS.popLimit(oldLim);
-				if (am != null) {
-					boolean matches = matcher.matches(am.getName().toLowerCase()) ||
-							matcher.matches(am.getEnName(true).toLowerCase());
-					if (!matches) {
-						for (String s : am.getOtherNames()) {
-							matches = matcher.matches(s.toLowerCase());
-							if (matches) {
-								break;
-							}
-						}
-						if (!matches) {
-							for (String key : am.getAdditionalInfoKeys()) {
-								if(!key.contains("_name") && 
-									!key.equals("brand")) {
-									continue;
-								}
-								matches = matcher.matches(am.getAdditionalInfo(key));
-								if (matches) {
-									break;
-								}
-							}
-						}
-					}
-					if (matches) {
-						req.collectRawData(am);
-						req.publish(am);
-					}
+				if (am != null && matchesByName(matcher, am)) {
+					req.collectRawData(am);
+					req.publish(am);
 				}
 				break;
 			default:
@@ -0,0 +1,166 @@
+package net.osmand.binary;
+
+import net.osmand.IndexConstants;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.OsmandIndex.FileIndex;
+import net.osmand.util.Algorithms;
+
+import org.apache.commons.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Opens many obf files concurrently on a bounded pool. Headers are taken from {@link CachedOsmandIndexes}
+ * when the file is unchanged, otherwise the file is parsed and added to cache.
+ */
+public class BinaryMapReadersLoader {
+
+	private static final Log log = PlatformUtil.getLog(BinaryMapReadersLoader.class);
+
+	public static class LoadedReader {
+		private final File file;
+		private BinaryMapIndexReader reader;
+		private IOException error;
+		private boolean fromCache;
+		private long initTime;
+
+		LoadedReader(File file) {
+			this.file = file;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return null if file could not be read
+		 */
+		public BinaryMapIndexReader getReader() {
+			return reader;
+		}
+
+		public IOException getError() {
+			return error;
+		}
+
+		public boolean isFromCache() {
+			return fromCache;
+		}
+
+		public long getInitTime() {
+			return initTime;
+		}
+
+		@Override
+		public String toString() {
+			return file.getName() + " " + initTime + " ms" + (fromCache ? " (cache)" : "") + (error != null ? " " + error.getMessage() : "");
+		}
+	}
+
+	private final CachedOsmandIndexes cache;
+	private final int threads;
+
+	/**
+	 * @param cache could be null, then all files are parsed
+	 */
+	public BinaryMapReadersLoader(CachedOsmandIndexes cache, int threads) {
+		this.cache = cache;
+		this.threads = Math.max(1, threads);
+	}
+
+	public List<LoadedReader> loadDirectory(File dir) throws IOException {
+		List<File> files = new ArrayList<File>();
+		File[] sorted = Algorithms.getSortedFilesVersions(dir);
+		if (sorted != null) {
+			for (File f : sorted) {
+				if (f.isFile() && f.getName().endsWith(IndexConstants.BINARY_MAP_INDEX_EXT)) {
+					files.add(f);
+				}
+			}
+		}
+		return load(files);
+	}
+
+	/**
+	 * @return loaded readers in the same order as files
+	 */
+	public List<LoadedReader> load(List<File> files) throws IOException {
+		long time = System.currentTimeMillis();
+		List<LoadedReader> result = new ArrayList<LoadedReader>();
+		for (File f : files) {
+			result.add(new LoadedReader(f));
+		}
+		// big files first to balance pool load
+		List<LoadedReader> queue = new ArrayList<LoadedReader>(result);
+		Collections.sort(queue, new Comparator<LoadedReader>() {
+			@Override
+			public int compare(LoadedReader o1, LoadedReader o2) {
+				return Long.compare(o2.file.length(), o1.file.length());
+			}
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.size())));
+		try {
+			List<Future<LoadedReader>> futures = new ArrayList<Future<LoadedReader>>();
+			for (final LoadedReader lr : queue) {
+				futures.add(executor.submit(new Callable<LoadedReader>() {
+					@Override
+					public LoadedReader call() {
+						initReader(lr);
+						return lr;
+					}
+				}));
+			}
+			for (Future<LoadedReader> f : futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		log.info("Initialized " + files.size() + " files in " + (System.currentTimeMillis() - time) + " ms");
+		return result;
+	}
+
+	private void initReader(LoadedReader lr) {
+		long time = System.currentTimeMillis();
+		RandomAccessFile raf = null;
+		try {
+			FileIndex found = cache != null ? cache.getFileIndex(lr.file, false) : null;
+			raf = new RandomAccessFile(lr.file, "r");
+			if (found != null) {
+				lr.fromCache = true;
+				lr.reader = cache.initReaderFromFileIndex(found, raf, lr.file);
+			} else {
+				lr.reader = new BinaryMapIndexReader(raf, lr.file);
+				if (cache != null) {
+					cache.addToCache(lr.reader, lr.file);
+				}
+			}
+		} catch (IOException e) {
+			log.error("File " + lr.file.getName() + " could not be read", e);
+			lr.error = e;
+		} catch (RuntimeException e) {
+			log.error("File " + lr.file.getName() + " could not be read", e);
+			lr.error = new IOException(e);
+		} finally {
+			if (lr.reader == null) {
+				Algorithms.closeStream(raf);
+			}
+		}
+		lr.initTime = System.currentTimeMillis() - time;
+	}
+}
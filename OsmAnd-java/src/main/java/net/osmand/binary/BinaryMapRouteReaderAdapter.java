@@ -771,9 +771,11 @@ public class BinaryMapRouteReaderAdapter {
 				oldLimit = codedIS.pushLimit(len);
 				int px = pleftx >> SHIFT_COORDINATES;
 				int py = ptopy >> SHIFT_COORDINATES;
-				while(codedIS.getBytesUntilLimit() > 0){
-					int x = (codedIS.readSInt32() ) + px;
-					int y = (codedIS.readSInt32() ) + py;
+				int[] deltas = map.getCoordinatesBuffer(len);
+				int deltasLen = codedIS.readPackedSInt32Pairs(deltas, 0);
+				for (int i = 0; i < deltasLen; i += 2) {
+					int x = deltas[i] + px;
+					int y = deltas[i + 1] + py;
 					pointsX.add(x << SHIFT_COORDINATES);
 					pointsY.add(y << SHIFT_COORDINATES);
 					px = x;
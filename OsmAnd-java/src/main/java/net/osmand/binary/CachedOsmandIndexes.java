@@ -15,7 +15,6 @@ import net.osmand.binary.OsmandIndex.CityBlock;
 import net.osmand.binary.OsmandIndex.FileIndex;
 import net.osmand.binary.OsmandIndex.MapLevel;
 import net.osmand.binary.OsmandIndex.MapPart;
-import net.osmand.binary.OsmandIndex.OsmAndStoredIndex;
 import net.osmand.binary.OsmandIndex.PoiPart;
 import net.osmand.binary.OsmandIndex.RoutingPart;
 import net.osmand.binary.OsmandIndex.RoutingSubregion;
@@ -23,37 +22,70 @@ import net.osmand.binary.OsmandIndex.TransportPart;
 
 import org.apache.commons.logging.Log;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Cache of obf headers (indexes.cache). File is a sequence of records, one per obf file:
+ * [int length][byte state][long size][long lastModified][UTF file name][FileIndex protobuf].
+ * Only record headers are read on start, FileIndex of a file is parsed from the loaded cache file
+ * when the file is requested. Changed files are appended to the end and their previous record is marked
+ * as removed, so other records are not rewritten until too much space is wasted.
+ * Readers created from cache initialize their sections (map, address, poi, transport, routing) lazily.
+ */
 public class CachedOsmandIndexes {
 
-	private OsmAndStoredIndex storedIndex;
-	private OsmAndStoredIndex.Builder storedIndexBuilder;
 	private Log log = PlatformUtil.getLog(CachedOsmandIndexes.class);
-	private boolean hasChanged = false;
 	public static final String INDEXES_DEFAULT_FILENAME = "indexes.cache";
 
-	public static final int VERSION = 2;
+	public static final int VERSION = 3;
+	private static final int MAGIC = 0x4F424643; // OBFC
+	private static final int HEADER_SIZE = 8;
+	private static final byte STATE_REMOVED = 0;
+	private static final byte STATE_ACTIVE = 1;
 
-	public FileIndex addToCache(BinaryMapIndexReader reader, File f) {
-		hasChanged = true;
-		if (storedIndexBuilder == null) {
-			storedIndexBuilder = OsmandIndex.OsmAndStoredIndex.newBuilder();
-			storedIndexBuilder.setVersion(VERSION);
-			storedIndexBuilder.setDateCreated(System.currentTimeMillis());
-			if (storedIndex != null) {
-				for (FileIndex ex : storedIndex.getFileIndexList()) {
-					if (!ex.getFileName().equals(f.getName())) {
-						storedIndexBuilder.addFileIndex(ex);
-					}
-				}
-			}
-		}
+	static final int MAP_SECTION = 1;
+	static final int ADDRESS_SECTION = 1 << 1;
+	static final int POI_SECTION = 1 << 2;
+	static final int TRANSPORT_SECTION = 1 << 3;
+	static final int ROUTING_SECTION = 1 << 4;
+	static final int ALL_SECTIONS = MAP_SECTION | ADDRESS_SECTION | POI_SECTION | TRANSPORT_SECTION | ROUTING_SECTION;
+
+	private static class CachedFileEntry {
+		String fileName;
+		long size;
+		long lastModified;
+		// position of state byte inside cache file, -1 if entry is not written yet
+		int position = -1;
+		int recordLength;
+		int dataOffset;
+		int dataLength;
+		FileIndex fileIndex;
+	}
+
+	private final Map<String, CachedFileEntry> entries = new HashMap<String, CachedFileEntry>();
+	private final Map<String, CachedFileEntry> added = new LinkedHashMap<String, CachedFileEntry>();
+	private final List<CachedFileEntry> replaced = new ArrayList<CachedFileEntry>();
+	private File cacheFile;
+	private ByteBuffer buffer;
+	private int cacheFileLength;
+	private int removedBytes;
+	private boolean lazyInitialization = true;
 
+	public void setLazyInitialization(boolean lazyInitialization) {
+		this.lazyInitialization = lazyInitialization;
+	}
+
+	public synchronized FileIndex addToCache(BinaryMapIndexReader reader, File f) {
 		FileIndex.Builder fileIndex = OsmandIndex.FileIndex.newBuilder();
 		long d = reader.getDateCreated();
 		fileIndex.setDateModified(d == 0 ? f.lastModified() : d);
@@ -159,7 +191,16 @@ public class CachedOsmandIndexes {
 		}
 
 		FileIndex fi = fileIndex.build();
-		storedIndexBuilder.addFileIndex(fi);
+		CachedFileEntry entry = new CachedFileEntry();
+		entry.fileName = f.getName();
+		entry.size = f.length();
+		entry.lastModified = f.lastModified();
+		entry.fileIndex = fi;
+		CachedFileEntry previous = entries.put(entry.fileName, entry);
+		if (previous != null && previous.position >= 0) {
+			replaced.add(previous);
+		}
+		added.put(entry.fileName, entry);
 		return fi;
 	}
 
@@ -196,14 +237,11 @@ public class CachedOsmandIndexes {
 
 	public FileIndex getFileIndex(File f, boolean init) throws IOException {
 		FileIndex found = null;
-		if (storedIndex != null) {
-			for (int i = 0; i < storedIndex.getFileIndexCount(); i++) {
-				FileIndex fi = storedIndex.getFileIndex(i);
-				if (f.length() == fi.getSize() && f.getName().equals(fi.getFileName())) {
-					// f.lastModified() == fi.getDateModified()
-					found = fi;
-					break;
-				}
+		synchronized (this) {
+			CachedFileEntry entry = entries.get(f.getName());
+			// f.lastModified() == entry.lastModified is not checked, files copied to device could change it
+			if (entry != null && entry.size == f.length()) {
+				found = readFileIndex(entry);
 			}
 		}
 		if (found == null && init) {
@@ -220,141 +258,288 @@ public class CachedOsmandIndexes {
  		return found;
 	}
 
+	private FileIndex readFileIndex(CachedFileEntry entry) throws IOException {
+		if (entry.fileIndex == null) {
+			byte[] data = new byte[entry.dataLength];
+			ByteBuffer bb = buffer.duplicate();
+			bb.position(entry.dataOffset);
+			bb.get(data);
+			entry.fileIndex = FileIndex.parseFrom(data);
+		}
+		return entry.fileIndex;
+	}
+
 	public BinaryMapIndexReader initReaderFromFileIndex(FileIndex found, RandomAccessFile mf, File f) throws IOException {
 		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false);
 		reader.version = found.getVersion();
 		reader.dateCreated = found.getDateModified();
+		reader.initSectionsLazily(found);
+		if (!lazyInitialization) {
+			reader.getIndexes();
+		}
+		return reader;
+	}
 
-		for (MapPart index : found.getMapIndexList()) {
-			MapIndex mi = new MapIndex();
-			mi.length = (int) index.getSize();
-			mi.filePointer = (int) index.getOffset();
-			mi.name = index.getName();
+	static void initReaderSection(BinaryMapIndexReader reader, FileIndex found, int section) {
+		switch (section) {
+		case MAP_SECTION:
+			for (MapPart index : found.getMapIndexList()) {
+				MapIndex mi = new MapIndex();
+				mi.length = (int) index.getSize();
+				mi.filePointer = (int) index.getOffset();
+				mi.name = index.getName();
 
-			for (MapLevel mr : index.getLevelsList()) {
-				MapRoot root = new MapRoot();
-				root.length = (int) mr.getSize();
-				root.filePointer = (int) mr.getOffset();
-				root.left = mr.getLeft();
-				root.right = mr.getRight();
-				root.top = mr.getTop();
-				root.bottom = mr.getBottom();
-				root.minZoom = mr.getMinzoom();
-				root.maxZoom = mr.getMaxzoom();
-				mi.roots.add(root);
+				for (MapLevel mr : index.getLevelsList()) {
+					MapRoot root = new MapRoot();
+					root.length = (int) mr.getSize();
+					root.filePointer = (int) mr.getOffset();
+					root.left = mr.getLeft();
+					root.right = mr.getRight();
+					root.top = mr.getTop();
+					root.bottom = mr.getBottom();
+					root.minZoom = mr.getMinzoom();
+					root.maxZoom = mr.getMaxzoom();
+					mi.roots.add(root);
+				}
+				reader.mapIndexes.add(mi);
+				reader.indexes.add(mi);
+				reader.basemap = reader.basemap || mi.isBaseMap();
 			}
-			reader.mapIndexes.add(mi);
-			reader.indexes.add(mi);
-			reader.basemap = reader.basemap || mi.isBaseMap();
-		}
-
-		for (AddressPart index : found.getAddressIndexList()) {
-			AddressRegion mi = new AddressRegion();
-			mi.length = (int) index.getSize();
-			mi.filePointer = (int) index.getOffset();
-			mi.name = index.getName();
-			mi.enName = index.getNameEn();
-			mi.indexNameOffset = index.getIndexNameOffset();
-			for (CityBlock mr : index.getCitiesList()) {
-				CitiesBlock cblock = new CitiesBlock();
-				cblock.length = (int) mr.getSize();
-				cblock.filePointer = (int) mr.getOffset();
-				cblock.type = mr.getType();
-				mi.cities.add(cblock);
+			break;
+		case ADDRESS_SECTION:
+			for (AddressPart index : found.getAddressIndexList()) {
+				AddressRegion mi = new AddressRegion();
+				mi.length = (int) index.getSize();
+				mi.filePointer = (int) index.getOffset();
+				mi.name = index.getName();
+				mi.enName = index.getNameEn();
+				mi.indexNameOffset = index.getIndexNameOffset();
+				for (CityBlock mr : index.getCitiesList()) {
+					CitiesBlock cblock = new CitiesBlock();
+					cblock.length = (int) mr.getSize();
+					cblock.filePointer = (int) mr.getOffset();
+					cblock.type = mr.getType();
+					mi.cities.add(cblock);
+				}
+				mi.attributeTagsTable.addAll(index.getAdditionalTagsList());
+				reader.addressIndexes.add(mi);
+				reader.indexes.add(mi);
 			}
-			mi.attributeTagsTable.addAll(index.getAdditionalTagsList());
-			reader.addressIndexes.add(mi);
-			reader.indexes.add(mi);
-		}
-
-		for (PoiPart index : found.getPoiIndexList()) {
-			PoiRegion mi = new PoiRegion();
-			mi.length = (int) index.getSize();
-			mi.filePointer = (int) index.getOffset();
-			mi.name = index.getName();
-			mi.left31 = index.getLeft();
-			mi.right31 = index.getRight();
-			mi.top31 = index.getTop();
-			mi.bottom31 = index.getBottom();
-			reader.poiIndexes.add(mi);
-			reader.indexes.add(mi);
-		}
-
-		for (TransportPart index : found.getTransportIndexList()) {
-			TransportIndex mi = new TransportIndex();
-			mi.length = (int) index.getSize();
-			mi.filePointer = (int) index.getOffset();
-			mi.name = index.getName();
-			mi.left = index.getLeft();
-			mi.right = index.getRight();
-			mi.top = index.getTop();
-			mi.bottom = index.getBottom();
-			mi.stopsFileLength = index.getStopsTableLength();
-			mi.stopsFileOffset = index.getStopsTableOffset();
-			mi.incompleteRoutesLength = index.getIncompleteRoutesLength();
-			mi.incompleteRoutesOffset = index.getIncompleteRoutesOffset();
-			mi.stringTable = new IndexStringTable();
-			mi.stringTable.fileOffset = index.getStringTableOffset();
-			mi.stringTable.length = index.getStringTableLength();
-			reader.transportIndexes.add(mi);
-			reader.indexes.add(mi);
-		}
-
-		for (RoutingPart index : found.getRoutingIndexList()) {
-			RouteRegion mi = new RouteRegion();
-			mi.length = (int) index.getSize();
-			mi.filePointer = (int) index.getOffset();
-			mi.name = index.getName();
+			break;
+		case POI_SECTION:
+			for (PoiPart index : found.getPoiIndexList()) {
+				PoiRegion mi = new PoiRegion();
+				mi.length = (int) index.getSize();
+				mi.filePointer = (int) index.getOffset();
+				mi.name = index.getName();
+				mi.left31 = index.getLeft();
+				mi.right31 = index.getRight();
+				mi.top31 = index.getTop();
+				mi.bottom31 = index.getBottom();
+				reader.poiIndexes.add(mi);
+				reader.indexes.add(mi);
+			}
+			break;
+		case TRANSPORT_SECTION:
+			for (TransportPart index : found.getTransportIndexList()) {
+				TransportIndex mi = new TransportIndex();
+				mi.length = (int) index.getSize();
+				mi.filePointer = (int) index.getOffset();
+				mi.name = index.getName();
+				mi.left = index.getLeft();
+				mi.right = index.getRight();
+				mi.top = index.getTop();
+				mi.bottom = index.getBottom();
+				mi.stopsFileLength = index.getStopsTableLength();
+				mi.stopsFileOffset = index.getStopsTableOffset();
+				mi.incompleteRoutesLength = index.getIncompleteRoutesLength();
+				mi.incompleteRoutesOffset = index.getIncompleteRoutesOffset();
+				mi.stringTable = new IndexStringTable();
+				mi.stringTable.fileOffset = index.getStringTableOffset();
+				mi.stringTable.length = index.getStringTableLength();
+				reader.transportIndexes.add(mi);
+				reader.indexes.add(mi);
+			}
+			break;
+		case ROUTING_SECTION:
+			for (RoutingPart index : found.getRoutingIndexList()) {
+				RouteRegion mi = new RouteRegion();
+				mi.length = (int) index.getSize();
+				mi.filePointer = (int) index.getOffset();
+				mi.name = index.getName();
 
-			for (RoutingSubregion mr : index.getSubregionsList()) {
-				RouteSubregion sub = new RouteSubregion(mi);
-				sub.length = (int) mr.getSize();
-				sub.filePointer = (int) mr.getOffset();
-				sub.left = mr.getLeft();
-				sub.right = mr.getRight();
-				sub.top = mr.getTop();
-				sub.bottom = mr.getBottom();
-				sub.shiftToData = mr.getShifToData();
-				if (mr.getBasemap()) {
-					mi.basesubregions.add(sub);
-				} else {
-					mi.subregions.add(sub);
+				for (RoutingSubregion mr : index.getSubregionsList()) {
+					RouteSubregion sub = new RouteSubregion(mi);
+					sub.length = (int) mr.getSize();
+					sub.filePointer = (int) mr.getOffset();
+					sub.left = mr.getLeft();
+					sub.right = mr.getRight();
+					sub.top = mr.getTop();
+					sub.bottom = mr.getBottom();
+					sub.shiftToData = mr.getShifToData();
+					if (mr.getBasemap()) {
+						mi.basesubregions.add(sub);
+					} else {
+						mi.subregions.add(sub);
+					}
 				}
+				reader.routingIndexes.add(mi);
+				reader.indexes.add(mi);
 			}
-			reader.routingIndexes.add(mi);
-			reader.indexes.add(mi);
+			break;
+		default:
+			break;
 		}
-
-		return reader;
 	}
-	
 
-	public void readFromFile(File f, int version) throws IOException {
+	public synchronized void readFromFile(File f, int version) throws IOException {
 		long time = System.currentTimeMillis();
-		FileInputStream is = new FileInputStream(f);
+		clear();
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
 		try {
-			storedIndex = OsmandIndex.OsmAndStoredIndex.newBuilder().mergeFrom(is).build();
-			hasChanged = false;
-			if (storedIndex.getVersion() != version) {
-				storedIndex = null;
+			if (raf.length() < HEADER_SIZE || raf.length() > Integer.MAX_VALUE) {
+				return;
+			}
+			// file is copied to memory and not mapped, so it could be rewritten while cache is used
+			byte[] data = new byte[(int) raf.length()];
+			raf.readFully(data);
+			ByteBuffer bb = ByteBuffer.wrap(data);
+			if (bb.getInt() != MAGIC || bb.getInt() != version) {
+				log.info("Indexes cache has old format and will be recreated");
+				return;
 			}
+			int length = data.length;
+			while (bb.position() + 4 <= length) {
+				int start = bb.position();
+				int recordLength = bb.getInt();
+				if (recordLength <= 0 || start + 4 + recordLength > length) {
+					// not completely written record
+					length = start;
+					break;
+				}
+				CachedFileEntry entry = new CachedFileEntry();
+				entry.position = bb.position();
+				entry.recordLength = recordLength;
+				byte state = bb.get();
+				entry.size = bb.getLong();
+				entry.lastModified = bb.getLong();
+				int nameLength = bb.getShort() & 0xffff;
+				byte[] name = new byte[nameLength];
+				bb.get(name);
+				entry.fileName = new String(name, "UTF-8");
+				entry.dataOffset = bb.position();
+				entry.dataLength = start + 4 + recordLength - entry.dataOffset;
+				bb.position(start + 4 + recordLength);
+				if (state == STATE_ACTIVE) {
+					entries.put(entry.fileName, entry);
+				} else {
+					removedBytes += 4 + recordLength;
+				}
+			}
+			buffer = bb;
+			cacheFile = f;
+			cacheFileLength = length;
 		} finally {
-			is.close();
+			raf.close();
 		}
 		log.info("Initialize cache " + (System.currentTimeMillis() - time));
 	}
 
-	public void writeToFile(File f) throws IOException {
-		if (hasChanged) {
-			FileOutputStream outputStream = new FileOutputStream(f);
+	private void clear() {
+		entries.clear();
+		added.clear();
+		replaced.clear();
+		buffer = null;
+		cacheFile = null;
+		cacheFileLength = 0;
+		removedBytes = 0;
+	}
+
+	public synchronized void writeToFile(File f) throws IOException {
+		if (added.isEmpty() && replaced.isEmpty()) {
+			return;
+		}
+		boolean append = f.equals(cacheFile) && f.length() >= cacheFileLength
+				&& removedBytes + replacedBytes() < cacheFileLength / 2;
+		if (append) {
+			RandomAccessFile raf = new RandomAccessFile(f, "rw");
+			try {
+				for (CachedFileEntry e : replaced) {
+					raf.seek(e.position);
+					raf.writeByte(STATE_REMOVED);
+					removedBytes += 4 + e.recordLength;
+				}
+				raf.seek(cacheFileLength);
+				for (CachedFileEntry e : added.values()) {
+					byte[] record = writeRecord(e);
+					e.position = cacheFileLength + 4;
+					e.recordLength = record.length - 4;
+					raf.write(record);
+					cacheFileLength += record.length;
+				}
+				raf.setLength(cacheFileLength);
+			} finally {
+				raf.close();
+			}
+		} else {
+			// read all entries before file is overwritten
+			for (CachedFileEntry e : entries.values()) {
+				readFileIndex(e);
+			}
+			File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+			RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
 			try {
-				storedIndexBuilder.build().writeTo(outputStream);
+				raf.setLength(0);
+				raf.writeInt(MAGIC);
+				raf.writeInt(VERSION);
+				int length = HEADER_SIZE;
+				for (CachedFileEntry e : entries.values()) {
+					byte[] record = writeRecord(e);
+					e.position = length + 4;
+					e.recordLength = record.length - 4;
+					raf.write(record);
+					length += record.length;
+				}
+				cacheFileLength = length;
 			} finally {
-				outputStream.close();
+				raf.close();
+			}
+			if (f.exists() && !f.delete()) {
+				throw new IOException("Indexes cache " + f.getAbsolutePath() + " could not be replaced");
+			}
+			if (!tmp.renameTo(f)) {
+				throw new IOException("Indexes cache " + f.getAbsolutePath() + " could not be written");
 			}
+			removedBytes = 0;
+			// all entries have parsed file index, so old content is not needed anymore
+			buffer = null;
 		}
+		cacheFile = f;
+		added.clear();
+		replaced.clear();
 	}
 
-	
+	private int replacedBytes() {
+		int sz = 0;
+		for (CachedFileEntry e : replaced) {
+			sz += 4 + e.recordLength;
+		}
+		return sz;
+	}
 
+	private byte[] writeRecord(CachedFileEntry e) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(bos);
+		byte[] name = e.fileName.getBytes("UTF-8");
+		byte[] data = e.fileIndex.toByteArray();
+		dos.writeInt(1 + 8 + 8 + 2 + name.length + data.length);
+		dos.writeByte(STATE_ACTIVE);
+		dos.writeLong(e.size);
+		dos.writeLong(e.lastModified);
+		dos.writeShort(name.length);
+		dos.write(name);
+		dos.write(data);
+		dos.flush();
+		return bos.toByteArray();
+	}
 }
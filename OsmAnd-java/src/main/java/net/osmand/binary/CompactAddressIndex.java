@@ -0,0 +1,418 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TIntLongHashMap;
+
+import net.osmand.PlatformUtil;
+import net.osmand.StringMatcher;
+import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
+import net.osmand.binary.BinaryMapAddressReaderAdapter.CitiesBlock;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Building;
+import net.osmand.data.Building.BuildingInterpolation;
+import net.osmand.data.City;
+import net.osmand.data.City.CityType;
+import net.osmand.data.LatLon;
+import net.osmand.data.MapObject;
+import net.osmand.data.Street;
+import net.osmand.util.Algorithms;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Whole address region (cities, streets, buildings and street intersections) decoded once and kept
+ * in primitive arrays. Names are interned into a single string table, coordinates are kept
+ * as integer tile numbers exactly as they are stored in obf, children are referenced by ranges.
+ * Objects are materialized only on request, so getCities / preloadStreets / preloadBuildings
+ * of {@link BinaryMapIndexReader} become pure in-memory lookups once the index is loaded.
+ * searchAddressDataByName still reads name index of the file, names here are not indexed by prefixes.
+ */
+public class CompactAddressIndex {
+
+	private static final Log LOG = PlatformUtil.getLog(CompactAddressIndex.class);
+
+	private static final int CITY_ZOOM = 31;
+	private static final int STREET_ZOOM = 24;
+	private static final long NO_ID = Long.MIN_VALUE;
+	private static final int POSTCODE_TYPE = -1;
+
+	private final AddressRegion region;
+
+	// interned strings: names, languages, postcodes
+	private final List<String> strings = new ArrayList<String>();
+	private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+	// (language, name) pairs of additional names, referenced by ranges from objects
+	private final TIntArrayList otherNames = new TIntArrayList();
+
+	private final PackedObjects cities = new PackedObjects();
+	private final TIntArrayList cityTypes = new TIntArrayList();
+	private final TIntArrayList cityBlockTypes = new TIntArrayList();
+	private final TIntArrayList cityStreets = new TIntArrayList();
+	private final TIntLongHashMap cityByOffset = new TIntLongHashMap();
+
+	private final PackedObjects streets = new PackedObjects();
+	private final TIntArrayList streetBuildings = new TIntArrayList();
+	private final TIntArrayList streetIntersections = new TIntArrayList();
+	private final TIntLongHashMap streetByOffset = new TIntLongHashMap();
+
+	private final PackedObjects buildings = new PackedObjects();
+	private final TIntArrayList buildingPostcodes = new TIntArrayList();
+	private final TIntArrayList buildingNames2 = new TIntArrayList();
+	private final TIntArrayList buildingInterpolations = new TIntArrayList();
+	private final TIntArrayList buildingX2 = new TIntArrayList();
+	private final TIntArrayList buildingY2 = new TIntArrayList();
+
+	private final PackedObjects intersections = new PackedObjects();
+
+	private long loadTime;
+
+	private CompactAddressIndex(AddressRegion region) {
+		this.region = region;
+	}
+
+	/**
+	 * Streams all cities of region with their streets and buildings and packs them.
+	 * Reader should not have compact index for this region registered yet.
+	 */
+	static CompactAddressIndex load(BinaryMapIndexReader reader, AddressRegion region) throws IOException {
+		long time = System.currentTimeMillis();
+		CompactAddressIndex index = new CompactAddressIndex(region);
+		List<Integer> types = new ArrayList<Integer>();
+		for (CitiesBlock block : region.cities) {
+			if (!types.contains(block.type)) {
+				types.add(block.type);
+			}
+		}
+		for (int type : types) {
+			List<City> cities = reader.getCities(region, null, type);
+			for (City c : cities) {
+				reader.preloadStreets(c, null);
+				for (Street s : c.getStreets()) {
+					reader.preloadBuildings(s, null);
+				}
+				index.addCity(c, type);
+			}
+		}
+		index.trimToSize();
+		index.loadTime = System.currentTimeMillis() - time;
+		LOG.info("Address index " + region.getName() + " loaded in " + index.loadTime + " ms: " + index.getCitiesCount()
+				+ " cities, " + index.getStreetsCount() + " streets, " + index.getBuildingsCount() + " buildings, "
+				+ (index.getMemoryUsage() >> 10) + " KB");
+		return index;
+	}
+
+	private void addCity(City c, int blockType) {
+		int cityInd = cities.add(c, CITY_ZOOM);
+		cityTypes.add(c.getType() == null ? POSTCODE_TYPE : c.getType().ordinal());
+		cityBlockTypes.add(blockType);
+		cityByOffset.put(c.getFileOffset(), cityInd);
+		cityStreets.add(streets.size());
+		for (Street s : c.getStreets()) {
+			int streetInd = streets.add(s, STREET_ZOOM);
+			streetByOffset.put(s.getFileOffset(), streetInd);
+			streetBuildings.add(buildings.size());
+			streetIntersections.add(intersections.size());
+			for (Building b : s.getBuildings()) {
+				buildings.add(b, STREET_ZOOM);
+				buildingPostcodes.add(intern(b.getPostcode()));
+				buildingNames2.add(intern(b.getName2()));
+				if (b.getInterpolationInterval() > 0) {
+					buildingInterpolations.add(b.getInterpolationInterval());
+				} else if (b.getInterpolationType() != null) {
+					buildingInterpolations.add(b.getInterpolationType().getValue());
+				} else {
+					buildingInterpolations.add(0);
+				}
+				LatLon l2 = b.getLatLon2();
+				buildingX2.add(l2 == null ? 0 : tileX(STREET_ZOOM, l2));
+				buildingY2.add(l2 == null ? 0 : tileY(STREET_ZOOM, l2));
+			}
+			for (Street is : s.getIntersectedStreets()) {
+				intersections.add(is, STREET_ZOOM);
+			}
+		}
+	}
+
+	private void trimToSize() {
+		cities.trimToSize();
+		streets.trimToSize();
+		buildings.trimToSize();
+		intersections.trimToSize();
+		otherNames.trimToSize();
+		cityTypes.trimToSize();
+		cityBlockTypes.trimToSize();
+		cityStreets.trimToSize();
+		streetBuildings.trimToSize();
+		streetIntersections.trimToSize();
+		buildingPostcodes.trimToSize();
+		buildingNames2.trimToSize();
+		buildingInterpolations.trimToSize();
+		buildingX2.trimToSize();
+		buildingY2.trimToSize();
+		// string ids are needed only while loading
+		stringIds.clear();
+	}
+
+	public AddressRegion getRegion() {
+		return region;
+	}
+
+	public int getCitiesCount() {
+		return cities.size();
+	}
+
+	public int getStreetsCount() {
+		return streets.size();
+	}
+
+	public int getBuildingsCount() {
+		return buildings.size();
+	}
+
+	public long getLoadTime() {
+		return loadTime;
+	}
+
+	/**
+	 * Approximate heap size in bytes occupied by the index (arrays and interned strings).
+	 */
+	public long getMemoryUsage() {
+		long sz = cities.getMemoryUsage() + streets.getMemoryUsage() + buildings.getMemoryUsage()
+				+ intersections.getMemoryUsage();
+		sz += 4l * (otherNames.size() + cityTypes.size() + cityBlockTypes.size() + cityStreets.size() + streetBuildings.size()
+				+ streetIntersections.size() + buildingPostcodes.size() + buildingNames2.size()
+				+ buildingInterpolations.size() + buildingX2.size() + buildingY2.size());
+		sz += 16l * (cityByOffset.size() + streetByOffset.size());
+		for (String s : strings) {
+			// header of String and char array
+			sz += 40 + 2 * s.length();
+		}
+		return sz;
+	}
+
+	public List<City> getCities(SearchRequest<City> resultMatcher, StringMatcher matcher, int cityType) {
+		List<City> res = new ArrayList<City>();
+		for (int i = 0; i < cities.size(); i++) {
+			if (resultMatcher != null && resultMatcher.isCancelled()) {
+				break;
+			}
+			if (cityBlockTypes.get(i) != cityType) {
+				continue;
+			}
+			City c;
+			if (cityTypes.get(i) == POSTCODE_TYPE) {
+				c = City.createPostcode(strings.get(cities.names.get(i)));
+			} else {
+				c = new City(CityType.values()[cityTypes.get(i)]);
+			}
+			cities.fill(c, i);
+			if (resultMatcher != null) {
+				resultMatcher.collectRawData(c);
+			}
+			if (matcher != null && !matches(matcher, c)) {
+				continue;
+			}
+			if (resultMatcher == null || resultMatcher.publish(c)) {
+				res.add(c);
+			}
+		}
+		return res;
+	}
+
+	public boolean containsCity(City c) {
+		return cityByOffset.containsKey(c.getFileOffset());
+	}
+
+	public boolean containsStreet(Street s) {
+		return streetByOffset.containsKey(s.getFileOffset());
+	}
+
+	/**
+	 * Same semantics as reading streets of city from file
+	 */
+	public void preloadStreets(City c, SearchRequest<Street> resultMatcher) {
+		int cityInd = (int) cityByOffset.get(c.getFileOffset());
+		int end = cityInd + 1 < cityStreets.size() ? cityStreets.get(cityInd + 1) : streets.size();
+		for (int i = cityStreets.get(cityInd); i < end; i++) {
+			Street s = new Street(c);
+			streets.fill(s, i);
+			if (resultMatcher != null) {
+				resultMatcher.collectRawData(s);
+			}
+			if (resultMatcher == null || resultMatcher.publish(s)) {
+				c.registerStreet(s);
+			}
+			if (resultMatcher != null && resultMatcher.isCancelled()) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Same semantics as reading buildings and intersected streets of street from file
+	 */
+	public void preloadBuildings(Street s, SearchRequest<Building> resultMatcher) {
+		int streetInd = (int) streetByOffset.get(s.getFileOffset());
+		City city = s.getCity();
+		String postcodeFilter = city != null && city.isPostcode() ? city.getName() : null;
+		int end = streetInd + 1 < streetIntersections.size() ? streetIntersections.get(streetInd + 1) : intersections.size();
+		for (int i = streetIntersections.get(streetInd); i < end; i++) {
+			Street is = new Street(city);
+			intersections.fill(is, i);
+			s.addIntersectedStreet(is);
+		}
+		end = streetInd + 1 < streetBuildings.size() ? streetBuildings.get(streetInd + 1) : buildings.size();
+		for (int i = streetBuildings.get(streetInd); i < end; i++) {
+			Building b = new Building();
+			buildings.fill(b, i);
+			b.setPostcode(string(buildingPostcodes.get(i)));
+			b.setName2(string(buildingNames2.get(i)));
+			int interpolation = buildingInterpolations.get(i);
+			if (interpolation > 0) {
+				b.setInterpolationInterval(interpolation);
+			} else if (interpolation < 0) {
+				b.setInterpolationType(BuildingInterpolation.fromValue(interpolation));
+			}
+			if (buildingX2.get(i) != 0 && buildingY2.get(i) != 0) {
+				b.setLatLon2(location(STREET_ZOOM, buildingX2.get(i), buildingY2.get(i)));
+			}
+			if (resultMatcher != null) {
+				resultMatcher.collectRawData(b);
+			}
+			if (postcodeFilter == null || postcodeFilter.equalsIgnoreCase(b.getPostcode())) {
+				if (resultMatcher == null || resultMatcher.publish(b)) {
+					s.addBuilding(b);
+				}
+			}
+		}
+	}
+
+	private static boolean matches(StringMatcher matcher, MapObject o) {
+		if (matcher.matches(o.getName())) {
+			return true;
+		}
+		for (String n : o.getOtherNames()) {
+			if (matcher.matches(n)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int intern(String s) {
+		if (s == null) {
+			return -1;
+		}
+		Integer id = stringIds.get(s);
+		if (id == null) {
+			id = strings.size();
+			strings.add(s);
+			stringIds.put(s, id);
+		}
+		return id;
+	}
+
+	private String string(int id) {
+		return id < 0 ? null : strings.get(id);
+	}
+
+	// coordinates are stored as integers in obf, so rounding restores them exactly
+	private static int tileX(int zoom, LatLon l) {
+		if (zoom == CITY_ZOOM) {
+			return clamp31(Math.round(MapUtils.getTileNumberX(21, l.getLongitude()) * 1024));
+		}
+		return (int) Math.round(MapUtils.getTileNumberX(zoom, l.getLongitude()));
+	}
+
+	private static int tileY(int zoom, LatLon l) {
+		if (zoom == CITY_ZOOM) {
+			return clamp31(Math.round(MapUtils.getTileNumberY(21, l.getLatitude()) * 1024));
+		}
+		return (int) Math.round(MapUtils.getTileNumberY(zoom, l.getLatitude()));
+	}
+
+	// tile out of 31 zoom range (lon 180, latitudes beyond mercator limit) is clamped as get31TileNumberX/Y do
+	private static int clamp31(long tile) {
+		return (int) Math.max(0, Math.min(Integer.MAX_VALUE, tile));
+	}
+
+	private static LatLon location(int zoom, int x, int y) {
+		if (zoom == CITY_ZOOM) {
+			return new LatLon(MapUtils.get31LatitudeY(y), MapUtils.get31LongitudeX(x));
+		}
+		return new LatLon(MapUtils.getLatitudeFromTile(zoom, y), MapUtils.getLongitudeFromTile(zoom, x));
+	}
+
+	private class PackedObjects {
+		final TLongArrayList ids = new TLongArrayList();
+		final TIntArrayList names = new TIntArrayList();
+		final TIntArrayList enNames = new TIntArrayList();
+		final TIntArrayList otherNamesStart = new TIntArrayList();
+		final TIntArrayList x = new TIntArrayList();
+		final TIntArrayList y = new TIntArrayList();
+		final TIntArrayList fileOffsets = new TIntArrayList();
+		int zoom;
+
+		int size() {
+			return ids.size();
+		}
+
+		int add(MapObject o, int zoom) {
+			this.zoom = zoom;
+			ids.add(o.getId() == null ? NO_ID : o.getId());
+			names.add(intern(Algorithms.isEmpty(o.getName()) ? null : o.getName()));
+			enNames.add(intern(Algorithms.isEmpty(o.getEnName(false)) ? null : o.getEnName(false)));
+			otherNamesStart.add(otherNames.size());
+			for (Entry<String, String> e : o.getNamesMap(false).entrySet()) {
+				otherNames.add(intern(e.getKey()));
+				otherNames.add(intern(e.getValue()));
+			}
+			LatLon l = o.getLocation();
+			x.add(l == null ? -1 : tileX(zoom, l));
+			y.add(l == null ? -1 : tileY(zoom, l));
+			fileOffsets.add(o.getFileOffset());
+			return size() - 1;
+		}
+
+		void fill(MapObject o, int ind) {
+			long id = ids.get(ind);
+			if (id != NO_ID) {
+				o.setId(id);
+			}
+			o.setName(string(names.get(ind)));
+			o.setEnName(string(enNames.get(ind)));
+			int end = ind + 1 < size() ? otherNamesStart.get(ind + 1) : otherNames.size();
+			for (int i = otherNamesStart.get(ind); i < end; i += 2) {
+				o.setName(strings.get(otherNames.get(i)), strings.get(otherNames.get(i + 1)));
+			}
+			if (x.get(ind) != -1 || y.get(ind) != -1) {
+				o.setLocation(location(zoom, x.get(ind), y.get(ind)));
+			}
+			o.setFileOffset(fileOffsets.get(ind));
+		}
+
+		void trimToSize() {
+			ids.trimToSize();
+			names.trimToSize();
+			enNames.trimToSize();
+			otherNamesStart.trimToSize();
+			x.trimToSize();
+			y.trimToSize();
+			fileOffsets.trimToSize();
+		}
+
+		long getMemoryUsage() {
+			return 8l * ids.size() + 4l * (names.size() + enNames.size() + otherNamesStart.size() + x.size()
+					+ y.size() + fileOffsets.size());
+		}
+	}
+}
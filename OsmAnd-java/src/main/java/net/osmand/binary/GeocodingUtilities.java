@@ -26,9 +26,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class GeocodingUtilities {
 
@@ -47,6 +49,15 @@ public class GeocodingUtilities {
 	public static final float DISTANCE_BUILDING_PROXIMITY = 100;
 
 
+	private GeocodingAddressCache addressCache;
+
+	public GeocodingUtilities() {
+	}
+
+	public GeocodingUtilities(GeocodingAddressCache addressCache) {
+		this.addressCache = addressCache;
+	}
+
 	public static final Comparator<GeocodingResult> DISTANCE_COMPARATOR = new Comparator<GeocodingResult>() {
 
 		@Override
@@ -135,6 +146,45 @@ public class GeocodingUtilities {
 	}
 
 
+	/**
+	 * Keeps streets found by name and streets with loaded buildings between calls,
+	 * so geocoding of nearby points doesn't query address index again.
+	 * Streets are searched in area around center, so cache should be reset when area changes.
+	 */
+	public static class GeocodingAddressCache {
+		private LatLon center;
+		private int radius;
+		private final Map<String, List<Street>> streetsByName = new HashMap<String, List<Street>>();
+		private final Set<Street> streetsWithBuildings = Collections.newSetFromMap(new IdentityHashMap<Street, Boolean>());
+
+		public GeocodingAddressCache(LatLon center, int radius) {
+			reset(center, radius);
+		}
+
+		public void reset(LatLon center, int radius) {
+			this.center = center;
+			this.radius = radius;
+			streetsByName.clear();
+			streetsWithBuildings.clear();
+		}
+
+		public LatLon getCenter() {
+			return center;
+		}
+
+		public int getRadius() {
+			return radius;
+		}
+
+		public int getCachedStreetsSize() {
+			int sz = 0;
+			for (List<Street> l : streetsByName.values()) {
+				sz += l.size();
+			}
+			return sz;
+		}
+	}
+
 	public List<GeocodingResult> reverseGeocodingSearch(RoutingContext ctx, double lat, double lon, boolean allowEmptyNames) throws IOException {
 		RoutePlannerFrontEnd rp = new RoutePlannerFrontEnd();
 		List<GeocodingResult> lst = new ArrayList<GeocodingUtilities.GeocodingResult>();
@@ -239,36 +289,37 @@ public class GeocodingUtilities {
 					mainWord = s;
 				}
 			}
-			SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(
-					new ResultMatcher<MapObject>() {
-						@Override
-						public boolean publish(MapObject object) {
-							if (object instanceof Street
-									&& prepareStreetName(object.getName(), addCommonWordsFinal).equals(streetNamesUsedFinal)) {
-								double d = MapUtils.getDistance(object.getLocation(), road.searchPoint.getLatitude(),
-										road.searchPoint.getLongitude());
-								// double check to suport old format
-								if (d < DISTANCE_STREET_NAME_PROXIMITY_BY_NAME) {
-									GeocodingResult rs = new GeocodingResult(road);
-									rs.street = (Street) object;
-									// set connection point to sort
-									rs.connectionPoint = rs.street.getLocation();
-									rs.city = rs.street.getCity();
-									streetsList.add(rs);
-									return true;
+			if (addressCache != null) {
+				for (Street s : searchCachedStreets(reader, mainWord, result)) {
+					GeocodingResult rs = acceptStreet(road, s, addCommonWordsFinal, streetNamesUsedFinal);
+					if (rs != null) {
+						streetsList.add(rs);
+					}
+				}
+			} else {
+				SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(
+						new ResultMatcher<MapObject>() {
+							@Override
+							public boolean publish(MapObject object) {
+								if (object instanceof Street) {
+									GeocodingResult rs = acceptStreet(road, (Street) object, addCommonWordsFinal,
+											streetNamesUsedFinal);
+									if (rs != null) {
+										streetsList.add(rs);
+										return true;
+									}
 								}
 								return false;
 							}
-							return false;
-						}
 
-						@Override
-						public boolean isCancelled() {
-							return result != null && result.isCancelled();
-						}
-					}, mainWord, StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
-			req.setBBoxRadius(road.getLocation().getLatitude(), road.getLocation().getLongitude(), DISTANCE_STREET_NAME_PROXIMITY_BY_NAME);
-			reader.searchAddressDataByName(req);
+							@Override
+							public boolean isCancelled() {
+								return result != null && result.isCancelled();
+							}
+						}, mainWord, StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
+				req.setBBoxRadius(road.getLocation().getLatitude(), road.getLocation().getLongitude(), DISTANCE_STREET_NAME_PROXIMITY_BY_NAME);
+				reader.searchAddressDataByName(req);
+			}
 		}
 
 		final List<GeocodingResult> res = new ArrayList<GeocodingResult>();
@@ -312,6 +363,57 @@ public class GeocodingUtilities {
 		return res;
 	}
 
+	private GeocodingResult acceptStreet(GeocodingResult road, Street street, boolean addCommonWords,
+			List<String> streetNamesUsed) {
+		if (prepareStreetName(street.getName(), addCommonWords).equals(streetNamesUsed)) {
+			double d = MapUtils.getDistance(street.getLocation(), road.searchPoint.getLatitude(),
+					road.searchPoint.getLongitude());
+			// double check to suport old format
+			if (d < DISTANCE_STREET_NAME_PROXIMITY_BY_NAME) {
+				GeocodingResult rs = new GeocodingResult(road);
+				rs.street = street;
+				// set connection point to sort
+				rs.connectionPoint = rs.street.getLocation();
+				rs.city = rs.street.getCity();
+				return rs;
+			}
+		}
+		return null;
+	}
+
+	private List<Street> searchCachedStreets(BinaryMapIndexReader reader, String mainWord,
+			final ResultMatcher<GeocodingResult> result) throws IOException {
+		String key = reader.getFile().getAbsolutePath() + "#" + mainWord;
+		List<Street> streets = addressCache.streetsByName.get(key);
+		if (streets == null) {
+			final List<Street> found = new ArrayList<Street>();
+			SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(
+					new ResultMatcher<MapObject>() {
+						@Override
+						public boolean publish(MapObject object) {
+							if (object instanceof Street) {
+								found.add((Street) object);
+								return true;
+							}
+							return false;
+						}
+
+						@Override
+						public boolean isCancelled() {
+							return result != null && result.isCancelled();
+						}
+					}, mainWord, StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
+			req.setBBoxRadius(addressCache.center.getLatitude(), addressCache.center.getLongitude(), addressCache.radius);
+			reader.searchAddressDataByName(req);
+			if (result != null && result.isCancelled()) {
+				return found;
+			}
+			streets = found;
+			addressCache.streetsByName.put(key, streets);
+		}
+		return streets;
+	}
+
 	public void filterDuplicateRegionResults(final List<GeocodingResult> res) {
 		Collections.sort(res, DISTANCE_COMPARATOR);
 		// filter duplicate city results (when building is in both regions on boundary)
@@ -359,7 +461,11 @@ public class GeocodingUtilities {
 	private List<GeocodingResult> loadStreetBuildings(final GeocodingResult road, BinaryMapIndexReader reader,
 			GeocodingResult street) throws IOException {
 		final List<GeocodingResult> streetBuildings = new ArrayList<GeocodingResult>();
-		reader.preloadBuildings(street.street, null);
+		if (addressCache == null) {
+			reader.preloadBuildings(street.street, null);
+		} else if (addressCache.streetsWithBuildings.add(street.street)) {
+			reader.preloadBuildings(street.street, null);
+		}
 		log.info("Preload buildings " + street.street.getName() + " " + street.city.getName() + " " + street.street.getId());
 		for (Building b : street.street.getBuildings()) {
 			if (b.getLatLon2() != null) {
@@ -0,0 +1,119 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.Track;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Track with segments stored in {@link ColumnarTrkSegment}.
+ */
+public class ColumnarTrack {
+
+	public String name;
+	public String desc;
+	public final List<ColumnarTrkSegment> segments = new ArrayList<>();
+
+	public int getPointsCount() {
+		int count = 0;
+		for (ColumnarTrkSegment segment : segments) {
+			count += segment.size();
+		}
+		return count;
+	}
+
+	public Track toTrack() {
+		Track track = new Track();
+		track.name = name;
+		track.desc = desc;
+		for (ColumnarTrkSegment segment : segments) {
+			track.segments.add(segment.toTrkSegment());
+		}
+		return track;
+	}
+
+	public static Collector read(File file) throws IOException {
+		Collector collector = new Collector();
+		new GPXStreamReader(collector).read(file);
+		return collector;
+	}
+
+	public static Collector read(InputStream stream) throws IOException {
+		Collector collector = new Collector();
+		new GPXStreamReader(collector).read(stream);
+		return collector;
+	}
+
+	/**
+	 * Collects tracks read by {@link GPXStreamReader} into columnar segments and waypoints into list
+	 */
+	public static class Collector extends GPXStreamListener {
+
+		private final List<ColumnarTrack> tracks = new ArrayList<>();
+		private final List<WptPt> waypoints = new ArrayList<>();
+		private ColumnarTrack track;
+		private ColumnarTrkSegment segment;
+
+		public List<ColumnarTrack> getTracks() {
+			return tracks;
+		}
+
+		public List<WptPt> getWaypoints() {
+			return waypoints;
+		}
+
+		@Override
+		public void trackStarted() {
+			track = new ColumnarTrack();
+			tracks.add(track);
+		}
+
+		@Override
+		public void trackFinished(String name, String desc) {
+			track.name = name;
+			track.desc = desc;
+			track = null;
+		}
+
+		@Override
+		public void segmentStarted() {
+			segment = new ColumnarTrkSegment();
+			track.segments.add(segment);
+		}
+
+		@Override
+		public void segmentFinished() {
+			segment.trimToSize();
+			segment = null;
+		}
+
+		@Override
+		public void pointRead(WptPt point) {
+			segment.add(point);
+		}
+
+		@Override
+		public void waypointRead(WptPt point) {
+			waypoints.add(point);
+		}
+
+		/**
+		 * @return gpx file with tracks and waypoints, points of tracks are created from columns
+		 */
+		public GPXFile toGPXFile(boolean addGeneralTrack) {
+			GPXFile gpxFile = new GPXFile(null);
+			for (ColumnarTrack t : tracks) {
+				gpxFile.tracks.add(t.toTrack());
+			}
+			gpxFile.addPoints(waypoints);
+			if (addGeneralTrack) {
+				gpxFile.addGeneralTrack();
+			}
+			return gpxFile;
+		}
+	}
+}
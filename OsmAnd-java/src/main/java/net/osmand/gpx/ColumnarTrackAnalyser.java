@@ -0,0 +1,401 @@
+package net.osmand.gpx;
+
+import net.osmand.Location;
+import net.osmand.data.LatLon;
+import net.osmand.gpx.PointAttribute.Elevation;
+import net.osmand.gpx.PointAttribute.Speed;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates {@link GPXTrackAnalysis} of {@link ColumnarTrkSegment}s in one pass over their arrays with
+ * the same values as {@link GPXTrackAnalysis#prepareInformation(long, GPXTrackAnalysis.TrackPointsAnalyser, SplitSegment...)}
+ * gives for plain (not general) segments. With executor segments are split into chunks which are analysed
+ * in parallel and then combined in order, float sums could differ from sequential analysis in last digits then.
+ * Point attributes are collected only on request, as they take an object per point.
+ */
+public class ColumnarTrackAnalyser {
+
+	public static final int DEFAULT_CHUNK_SIZE = 50000;
+
+	private ExecutorService executor;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private boolean collectPointAttributes;
+
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(2, chunkSize);
+	}
+
+	public void setCollectPointAttributes(boolean collectPointAttributes) {
+		this.collectPointAttributes = collectPointAttributes;
+	}
+
+	public GPXTrackAnalysis analyse(long fileTimestamp, ColumnarTrkSegment... segments) throws InterruptedException {
+		return analyse(fileTimestamp, segments, 0, segments.length);
+	}
+
+	public GPXTrackAnalysis analyse(long fileTimestamp, List<ColumnarTrkSegment> segments) throws InterruptedException {
+		return analyse(fileTimestamp, segments.toArray(new ColumnarTrkSegment[0]));
+	}
+
+	private GPXTrackAnalysis analyse(long fileTimestamp, ColumnarTrkSegment[] segments, int from, int to)
+			throws InterruptedException {
+		// speed is derived from distance only before first point with speed, as analysis remembers it has speed
+		int[] speedFrom = new int[to - from];
+		boolean hasSpeed = false;
+		for (int i = from; i < to; i++) {
+			speedFrom[i - from] = hasSpeed ? 0 : firstSpeedIndex(segments[i]);
+			hasSpeed |= speedFrom[i - from] < segments[i].size();
+		}
+		PointValues values = collectPointAttributes ? new PointValues(segments, from, to) : null;
+		Stats stats;
+		double[] elevationDiffs = new double[2];
+		if (executor == null) {
+			stats = new Stats();
+			for (int i = from; i < to; i++) {
+				stats.process(segments[i], 0, segments[i].size(), speedFrom[i - from],
+						values == null ? null : values.forSegment(i - from));
+				addElevationDiffs(segments[i], elevationDiffs);
+			}
+		} else {
+			stats = analyseParallel(segments, from, to, speedFrom, values, elevationDiffs);
+		}
+		GPXTrackAnalysis analysis = new GPXTrackAnalysis();
+		stats.fill(analysis);
+		analysis.hasSpeedInTrack = hasSpeed;
+		analysis.diffElevationUp = elevationDiffs[0];
+		analysis.diffElevationDown = elevationDiffs[1];
+		for (int i = from; i < to; i++) {
+			ColumnarTrkSegment s = segments[i];
+			if (s.size() > 0) {
+				if (analysis.locationStart == null) {
+					analysis.locationStart = s.getPoint(0);
+					analysis.latLonStart = new LatLon(s.getLatitude(0), s.getLongitude(0));
+				}
+				analysis.locationEnd = s.getPoint(s.size() - 1);
+			}
+		}
+		if (values != null) {
+			values.addAttributes(analysis);
+		}
+		finish(analysis, stats, fileTimestamp);
+		return analysis;
+	}
+
+	private Stats analyseParallel(final ColumnarTrkSegment[] segments, int from, int to, int[] speedFrom,
+								  PointValues values, double[] elevationDiffs) throws InterruptedException {
+		List<Future<Stats>> chunks = new ArrayList<>();
+		List<Future<double[]>> diffs = new ArrayList<>();
+		for (int i = from; i < to; i++) {
+			final ColumnarTrkSegment s = segments[i];
+			final int segmentSpeedFrom = speedFrom[i - from];
+			final float[][] segmentValues = values == null ? null : values.forSegment(i - from);
+			for (int start = 0; start < s.size(); start += chunkSize) {
+				final int chunkStart = start;
+				final int chunkEnd = Math.min(s.size(), start + chunkSize);
+				chunks.add(executor.submit(new Callable<Stats>() {
+					@Override
+					public Stats call() {
+						Stats stats = new Stats();
+						stats.process(s, chunkStart, chunkEnd, segmentSpeedFrom, segmentValues);
+						return stats;
+					}
+				}));
+			}
+			diffs.add(executor.submit(new Callable<double[]>() {
+				@Override
+				public double[] call() {
+					double[] res = new double[2];
+					addElevationDiffs(s, res);
+					return res;
+				}
+			}));
+		}
+		try {
+			Stats res = new Stats();
+			for (Future<Stats> f : chunks) {
+				res.combine(f.get());
+			}
+			for (Future<double[]> f : diffs) {
+				double[] d = f.get();
+				elevationDiffs[0] += d[0];
+				elevationDiffs[1] += d[1];
+			}
+			return res;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			for (Future<Stats> f : chunks) {
+				f.cancel(true);
+			}
+			for (Future<double[]> f : diffs) {
+				f.cancel(true);
+			}
+		}
+	}
+
+	private static int firstSpeedIndex(ColumnarTrkSegment s) {
+		float[] speeds = s.getSpeeds();
+		for (int j = 0; j < s.size(); j++) {
+			if (speeds[j] > 0) {
+				return j;
+			}
+		}
+		return Integer.MAX_VALUE;
+	}
+
+	private static void addElevationDiffs(ColumnarTrkSegment s, double[] res) {
+		double[] diffs = new ElevationPipeline(s.getLatitudes(), s.getLongitudes(), s.getElevations(), s.size())
+				.calculateElevationDiffs();
+		res[0] += diffs[0];
+		res[1] += diffs[1];
+	}
+
+	private static void finish(GPXTrackAnalysis analysis, Stats stats, long fileTimestamp) {
+		if (!analysis.isTimeSpecified()) {
+			analysis.startTime = fileTimestamp;
+			analysis.endTime = fileTimestamp;
+		}
+		analysis.timeSpan = analysis.endTime - analysis.startTime;
+		if (stats.elevationPoints > 0) {
+			analysis.avgElevation = stats.totalElevation / stats.elevationPoints;
+		}
+		if (stats.speedCount > 0) {
+			if (analysis.timeMoving > 0) {
+				analysis.avgSpeed = analysis.totalDistanceMoving / (float) analysis.timeMoving * 1000f;
+			} else {
+				analysis.avgSpeed = (float) stats.totalSpeedSum / (float) stats.speedCount;
+			}
+		} else {
+			analysis.avgSpeed = -1;
+		}
+	}
+
+	/**
+	 * Metrics of consecutive points, combining stats of neighbour chunks gives stats of their union
+	 */
+	static class Stats {
+		int points;
+		float totalDistance;
+		float totalDistanceMoving;
+		long timeMoving;
+		long startTime = Long.MAX_VALUE;
+		long endTime = Long.MIN_VALUE;
+		double left;
+		double right;
+		double top;
+		double bottom;
+		double minHdop = Double.NaN;
+		double maxHdop = Double.NaN;
+		float minSpeed = Float.MAX_VALUE;
+		float maxSpeed;
+		double totalSpeedSum;
+		int speedCount;
+		float totalElevation;
+		int elevationPoints;
+		double minElevation = 99999;
+		double maxElevation = -100;
+		// attributes have data if they have valid value after distance became positive
+		boolean positiveDistance;
+		boolean elevationAny;
+		boolean elevationData;
+		boolean speedAny;
+		boolean speedData;
+
+		void process(ColumnarTrkSegment s, int from, int to, int speedFrom, float[][] values) {
+			double[] lat = s.getLatitudes();
+			double[] lon = s.getLongitudes();
+			double[] ele = s.getElevations();
+			long[] times = s.getTimes();
+			float[] speeds = s.getSpeeds();
+			float[] hdops = s.getHdops();
+			float[] calculations = new float[1];
+			points += to - from;
+			for (int j = from; j < to; j++) {
+				long time = times[j];
+				if (time != 0) {
+					startTime = Math.min(startTime, time);
+					endTime = Math.max(endTime, time);
+				}
+				if (left == 0 && right == 0) {
+					left = lon[j];
+					right = lon[j];
+					top = lat[j];
+					bottom = lat[j];
+				} else {
+					left = Math.min(left, lon[j]);
+					right = Math.max(right, lon[j]);
+					top = Math.max(top, lat[j]);
+					bottom = Math.min(bottom, lat[j]);
+				}
+				float speed = speeds[j];
+				double hdop = hdops[j];
+				if (hdop > 0) {
+					if (Double.isNaN(minHdop) || hdop < minHdop) {
+						minHdop = hdop;
+					}
+					if (Double.isNaN(maxHdop) || hdop > maxHdop) {
+						maxHdop = hdop;
+					}
+				}
+				float distance = 0;
+				int timeDiff = 0;
+				if (j > 0) {
+					Location.distanceBetween(lat[j - 1], lon[j - 1], lat[j], lon[j], calculations);
+					distance = calculations[0];
+					totalDistance += distance;
+					if (distance > 0) {
+						positiveDistance = true;
+					}
+					long timeDiffMillis = Math.max(0, time - times[j - 1]);
+					timeDiff = (int) (timeDiffMillis / 1000);
+					if (j < speedFrom && speed == 0 && timeDiff > 0) {
+						speed = distance / timeDiff;
+					}
+					boolean timeSpecified = time != 0 && times[j - 1] != 0;
+					if (speed > 0 && timeSpecified && distance > timeDiffMillis / 10000f) {
+						timeMoving = timeMoving + timeDiffMillis;
+						totalDistanceMoving += distance;
+					}
+				}
+				minSpeed = Math.min(speed, minSpeed);
+				if (speed > 0) {
+					totalSpeedSum += speed;
+					maxSpeed = Math.max(speed, maxSpeed);
+					speedCount++;
+					speedAny = true;
+					speedData |= positiveDistance;
+				}
+				if (!Double.isNaN(ele[j])) {
+					totalElevation += ele[j];
+					elevationPoints++;
+					minElevation = Math.min(ele[j], minElevation);
+					maxElevation = Math.max(ele[j], maxElevation);
+					elevationAny = true;
+					elevationData |= positiveDistance;
+				}
+				if (values != null) {
+					values[0][j] = distance;
+					values[1][j] = speed;
+					values[2][j] = timeDiff;
+				}
+			}
+		}
+
+		void combine(Stats next) {
+			if (next.points == 0) {
+				return;
+			}
+			if (points == 0 || (left == 0 && right == 0)) {
+				left = next.left;
+				right = next.right;
+				top = next.top;
+				bottom = next.bottom;
+			} else if (next.left != 0 || next.right != 0) {
+				left = Math.min(left, next.left);
+				right = Math.max(right, next.right);
+				top = Math.max(top, next.top);
+				bottom = Math.min(bottom, next.bottom);
+			}
+			points += next.points;
+			totalDistance += next.totalDistance;
+			totalDistanceMoving += next.totalDistanceMoving;
+			timeMoving += next.timeMoving;
+			startTime = Math.min(startTime, next.startTime);
+			endTime = Math.max(endTime, next.endTime);
+			if (!Double.isNaN(next.minHdop) && (Double.isNaN(minHdop) || next.minHdop < minHdop)) {
+				minHdop = next.minHdop;
+			}
+			if (!Double.isNaN(next.maxHdop) && (Double.isNaN(maxHdop) || next.maxHdop > maxHdop)) {
+				maxHdop = next.maxHdop;
+			}
+			minSpeed = Math.min(minSpeed, next.minSpeed);
+			maxSpeed = Math.max(maxSpeed, next.maxSpeed);
+			totalSpeedSum += next.totalSpeedSum;
+			speedCount += next.speedCount;
+			totalElevation += next.totalElevation;
+			elevationPoints += next.elevationPoints;
+			minElevation = Math.min(minElevation, next.minElevation);
+			maxElevation = Math.max(maxElevation, next.maxElevation);
+			elevationData |= positiveDistance ? next.elevationAny : next.elevationData;
+			speedData |= positiveDistance ? next.speedAny : next.speedData;
+			elevationAny |= next.elevationAny;
+			speedAny |= next.speedAny;
+			positiveDistance |= next.positiveDistance;
+		}
+
+		void fill(GPXTrackAnalysis analysis) {
+			analysis.points = points;
+			analysis.totalDistance = totalDistance;
+			analysis.totalDistanceMoving = totalDistanceMoving;
+			analysis.timeMoving = timeMoving;
+			analysis.startTime = startTime;
+			analysis.endTime = endTime;
+			analysis.left = left;
+			analysis.right = right;
+			analysis.top = top;
+			analysis.bottom = bottom;
+			analysis.minHdop = minHdop;
+			analysis.maxHdop = maxHdop;
+			analysis.minSpeed = minSpeed;
+			analysis.maxSpeed = maxSpeed;
+			analysis.minElevation = minElevation;
+			analysis.maxElevation = maxElevation;
+			analysis.pointsAttributesData = new HashMap<>();
+			analysis.getElevationData().setHasData(elevationData);
+			analysis.getSpeedData().setHasData(speedData);
+		}
+	}
+
+	/**
+	 * Distance, speed and time difference of each point kept to build point attributes in order of points
+	 */
+	private static class PointValues {
+		private final ColumnarTrkSegment[] segments;
+		private final float[][][] values;
+
+		PointValues(ColumnarTrkSegment[] segments, int from, int to) {
+			this.segments = new ColumnarTrkSegment[to - from];
+			this.values = new float[to - from][][];
+			for (int i = from; i < to; i++) {
+				int size = segments[i].size();
+				this.segments[i - from] = segments[i];
+				this.values[i - from] = new float[][] {new float[size], new float[size], new float[size]};
+			}
+		}
+
+		float[][] forSegment(int i) {
+			return values[i];
+		}
+
+		void addAttributes(GPXTrackAnalysis analysis) {
+			PointsAttributesData<Elevation> elevationData = analysis.getElevationData();
+			PointsAttributesData<Speed> speedData = analysis.getSpeedData();
+			// time difference of first point in segment is left from previous segment
+			int timeDiff = 0;
+			for (int i = 0; i < segments.length; i++) {
+				ColumnarTrkSegment s = segments[i];
+				float[][] v = values[i];
+				for (int j = 0; j < s.size(); j++) {
+					if (j > 0) {
+						timeDiff = (int) v[2][j];
+					}
+					double ele = s.getElevation(j);
+					float elevation = Double.isNaN(ele) ? Float.NaN : (float) ele;
+					elevationData.addPointAttribute(new Elevation(elevation, v[0][j], timeDiff, false, false));
+					speedData.addPointAttribute(new Speed(v[1][j], v[0][j], timeDiff, false, false));
+				}
+			}
+		}
+	}
+}
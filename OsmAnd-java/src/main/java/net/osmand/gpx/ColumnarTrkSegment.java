@@ -0,0 +1,163 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+import java.util.Arrays;
+
+/**
+ * Track segment stored by columns of primitive arrays instead of {@link WptPt} objects,
+ * points are created only on request. Keeps coordinates, elevation, time, speed and hdop of points,
+ * speed and hdop are kept with float precision as they are read from gpx.
+ */
+public class ColumnarTrkSegment {
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	public String name;
+
+	private int size;
+	private double[] lat;
+	private double[] lon;
+	private double[] ele;
+	private long[] time;
+	private float[] speed;
+	private float[] hdop;
+
+	public ColumnarTrkSegment() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public ColumnarTrkSegment(int capacity) {
+		capacity = Math.max(1, capacity);
+		lat = new double[capacity];
+		lon = new double[capacity];
+		ele = new double[capacity];
+		time = new long[capacity];
+		speed = new float[capacity];
+		hdop = new float[capacity];
+	}
+
+	public static ColumnarTrkSegment fromTrkSegment(TrkSegment segment) {
+		ColumnarTrkSegment res = new ColumnarTrkSegment(segment.points.size());
+		res.name = segment.name;
+		for (WptPt p : segment.points) {
+			res.add(p);
+		}
+		return res;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void add(WptPt p) {
+		add(p.lat, p.lon, p.ele, p.time, p.speed, p.hdop);
+	}
+
+	public void add(double lat, double lon, double ele, long time, double speed, double hdop) {
+		if (size == this.lat.length) {
+			ensureCapacity(size + (size >> 1) + 1);
+		}
+		this.lat[size] = lat;
+		this.lon[size] = lon;
+		this.ele[size] = ele;
+		this.time[size] = time;
+		this.speed[size] = (float) speed;
+		this.hdop[size] = (float) hdop;
+		size++;
+	}
+
+	public void ensureCapacity(int capacity) {
+		if (capacity > lat.length) {
+			lat = Arrays.copyOf(lat, capacity);
+			lon = Arrays.copyOf(lon, capacity);
+			ele = Arrays.copyOf(ele, capacity);
+			time = Arrays.copyOf(time, capacity);
+			speed = Arrays.copyOf(speed, capacity);
+			hdop = Arrays.copyOf(hdop, capacity);
+		}
+	}
+
+	public void trimToSize() {
+		if (size < lat.length) {
+			int capacity = Math.max(1, size);
+			lat = Arrays.copyOf(lat, capacity);
+			lon = Arrays.copyOf(lon, capacity);
+			ele = Arrays.copyOf(ele, capacity);
+			time = Arrays.copyOf(time, capacity);
+			speed = Arrays.copyOf(speed, capacity);
+			hdop = Arrays.copyOf(hdop, capacity);
+		}
+	}
+
+	public double getLatitude(int i) {
+		return lat[i];
+	}
+
+	public double getLongitude(int i) {
+		return lon[i];
+	}
+
+	public double getElevation(int i) {
+		return ele[i];
+	}
+
+	public long getTime(int i) {
+		return time[i];
+	}
+
+	public float getSpeed(int i) {
+		return speed[i];
+	}
+
+	public float getHdop(int i) {
+		return hdop[i];
+	}
+
+	// arrays are returned without copy and could be longer than size
+
+	public double[] getLatitudes() {
+		return lat;
+	}
+
+	public double[] getLongitudes() {
+		return lon;
+	}
+
+	public double[] getElevations() {
+		return ele;
+	}
+
+	public long[] getTimes() {
+		return time;
+	}
+
+	public float[] getSpeeds() {
+		return speed;
+	}
+
+	public float[] getHdops() {
+		return hdop;
+	}
+
+	public WptPt getPoint(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+		}
+		return new WptPt(lat[i], lon[i], time[i], ele[i], speed[i], hdop[i]);
+	}
+
+	public TrkSegment toTrkSegment() {
+		TrkSegment segment = new TrkSegment();
+		segment.name = name;
+		for (int i = 0; i < size; i++) {
+			segment.points.add(getPoint(i));
+		}
+		return segment;
+	}
+}
@@ -24,6 +24,14 @@ public abstract class ElevationApproximator {
 
 	public abstract int getPointsCount();
 
+	/**
+	 * Could be overridden when distances between neighbour points are already calculated
+	 */
+	public double getPointDistance(int index, int prevIndex) {
+		return MapUtils.getDistance(getPointLatitude(index), getPointLongitude(index),
+				getPointLatitude(prevIndex), getPointLongitude(prevIndex));
+	}
+
 	public double[] getDistances() {
 		return distances;
 	}
@@ -58,6 +66,8 @@ public abstract class ElevationApproximator {
 			return false;
 		}
 
+		// distances between survived points are kept to not calculate them again
+		double[] survivedDistances = new double[pointsCount];
 		lastSurvived = 0;
 		survidedCount = 1;
 		for (int i = 1; i < pointsCount; i++) {
@@ -66,13 +76,13 @@ public abstract class ElevationApproximator {
 			}
 			double ele = getPointElevation(i);
 			double prevEle = getPointElevation(lastSurvived);
-			double dist = MapUtils.getDistance(getPointLatitude(i), getPointLongitude(i),
-					getPointLatitude(lastSurvived), getPointLongitude(lastSurvived));
+			double dist = getPointDistance(i, lastSurvived);
 			double slope = (ele - prevEle) * 100 / dist;
 			if (Math.abs(slope) > SLOPE_THRESHOLD) {
 				survived[i] = false;
 				continue;
 			}
+			survivedDistances[i] = dist;
 			lastSurvived = i;
 			survidedCount++;
 		}
@@ -83,17 +93,13 @@ public abstract class ElevationApproximator {
 		double[] distances = new double[survidedCount];
 		double[] elevations = new double[survidedCount];
 		int k = 0;
-		lastSurvived = 0;
 		for (int i = 0; i < pointsCount; i++) {
 			if (!survived[i] || k == survidedCount) {
 				continue;
 			}
-			distances[k] = lastSurvived == i ? 0 :
-					MapUtils.getDistance(getPointLatitude(i), getPointLongitude(i),
-					getPointLatitude(lastSurvived), getPointLongitude(lastSurvived));
+			distances[k] = survivedDistances[i];
 			elevations[k] = getPointElevation(i);
 			k++;
-			lastSurvived = i;
 		}
 		this.distances = distances;
 		this.elevations = elevations;
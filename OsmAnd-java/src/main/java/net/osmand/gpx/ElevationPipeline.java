@@ -0,0 +1,295 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.util.MapUtils;
+
+import java.util.List;
+
+/**
+ * Elevation calculations over arrays of points: distances between neighbour points are calculated once and
+ * shared by approximation of {@link ElevationApproximator}, elevation gain and loss of {@link ElevationDiffsCalculator}
+ * and slopes of route colorization. Slope window moves over cumulative distances in one pass.
+ * Results are the same as of the original calculations.
+ */
+public class ElevationPipeline {
+
+	public static final double MAX_CORRECT_ELEVATION_DISTANCE = 100.0;
+
+	private final double[] latitudes;
+	private final double[] longitudes;
+	private final double[] elevations;
+	private final int count;
+
+	// distance from previous point
+	private double[] pointDistances;
+
+	private double maxCorrectElevationDistance = MAX_CORRECT_ELEVATION_DISTANCE;
+
+	private double[] approximatedDistances;
+	private double[] approximatedElevations;
+
+	/**
+	 * Arrays are not copied, {@link #calculateSlopes(double)} changes elevations
+	 */
+	public ElevationPipeline(double[] latitudes, double[] longitudes, double[] elevations, int count) {
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.elevations = elevations;
+		this.count = count;
+	}
+
+	public static ElevationPipeline fromPoints(List<WptPt> points) {
+		int count = points.size();
+		double[] latitudes = new double[count];
+		double[] longitudes = new double[count];
+		double[] elevations = new double[count];
+		for (int i = 0; i < count; i++) {
+			WptPt point = points.get(i);
+			latitudes[i] = point.lat;
+			longitudes[i] = point.lon;
+			elevations[i] = point.ele;
+		}
+		return new ElevationPipeline(latitudes, longitudes, elevations, count);
+	}
+
+	public static ElevationPipeline fromSplitSegment(SplitSegment segment) {
+		int count = segment.getNumberOfPoints();
+		double[] latitudes = new double[count];
+		double[] longitudes = new double[count];
+		double[] elevations = new double[count];
+		for (int i = 0; i < count; i++) {
+			WptPt point = segment.get(i);
+			latitudes[i] = point.lat;
+			longitudes[i] = point.lon;
+			elevations[i] = point.ele;
+		}
+		return new ElevationPipeline(latitudes, longitudes, elevations, count);
+	}
+
+	public void setMaxCorrectElevationDistance(double maxCorrectElevationDistance) {
+		this.maxCorrectElevationDistance = maxCorrectElevationDistance;
+	}
+
+	public int getPointsCount() {
+		return count;
+	}
+
+	/**
+	 * @return distances from previous points, 0 for first point
+	 */
+	public double[] getPointDistances() {
+		if (pointDistances == null) {
+			double[] distances = new double[count];
+			for (int i = 1; i < count; i++) {
+				distances[i] = MapUtils.getDistance(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+			}
+			pointDistances = distances;
+		}
+		return pointDistances;
+	}
+
+	public double[] getCumulativeDistances() {
+		double[] distances = getPointDistances();
+		double[] cumulative = new double[count];
+		double total = 0;
+		for (int i = 1; i < count; i++) {
+			total += distances[i];
+			cumulative[i] = total;
+		}
+		return cumulative;
+	}
+
+	// the same as distance to previous point, which is calculated once
+	private double getDistance(int index, int prevIndex) {
+		if (prevIndex == index - 1) {
+			return getPointDistances()[index];
+		}
+		return MapUtils.getDistance(latitudes[index], longitudes[index], latitudes[prevIndex], longitudes[prevIndex]);
+	}
+
+	/**
+	 * {@link ElevationApproximator#approximate()} with distances to previous points calculated once
+	 */
+	public boolean approximate() {
+		ElevationApproximator approximator = new ElevationApproximator() {
+			@Override
+			public double getPointLatitude(int index) {
+				return latitudes[index];
+			}
+
+			@Override
+			public double getPointLongitude(int index) {
+				return longitudes[index];
+			}
+
+			@Override
+			public double getPointElevation(int index) {
+				return elevations[index];
+			}
+
+			@Override
+			public int getPointsCount() {
+				return count;
+			}
+
+			@Override
+			public double getPointDistance(int index, int prevIndex) {
+				return getDistance(index, prevIndex);
+			}
+		};
+		if (!approximator.approximate()) {
+			return false;
+		}
+		approximatedDistances = approximator.getDistances();
+		approximatedElevations = approximator.getElevations();
+		return true;
+	}
+
+	public double[] getApproximatedDistances() {
+		return approximatedDistances;
+	}
+
+	public double[] getApproximatedElevations() {
+		return approximatedElevations;
+	}
+
+	/**
+	 * @return elevation {up, down} of approximated points, zeros if points can't be approximated
+	 */
+	public double[] calculateElevationDiffs() {
+		if (approximatedDistances == null && !approximate()) {
+			return new double[2];
+		}
+		final double[] distances = approximatedDistances;
+		final double[] eles = approximatedElevations;
+		ElevationDiffsCalculator elevationDiffsCalc = new ElevationDiffsCalculator() {
+			@Override
+			public double getPointDistance(int index) {
+				return distances[index];
+			}
+
+			@Override
+			public double getPointElevation(int index) {
+				return eles[index];
+			}
+
+			@Override
+			public int getPointsCount() {
+				return distances.length;
+			}
+		};
+		elevationDiffsCalc.calculateElevationDiffs();
+		return new double[] {elevationDiffsCalc.getDiffElevationUp(), elevationDiffsCalc.getDiffElevationDown()};
+	}
+
+	/**
+	 * Fills missing elevations, smooths elevations by 5 points and calculates slope of each point
+	 * as difference of elevations at ends of distance window
+	 *
+	 * @param slopeRange - window in meters, NaN for points closer to start or end
+	 */
+	public double[] calculateSlopes(double slopeRange) {
+		correctElevations();
+		double[] ele = elevations;
+		// smoothed values are used for next points
+		for (int i = 2; i < count - 2; i++) {
+			ele[i] = ele[i - 2] + ele[i - 1] + ele[i] + ele[i + 1] + ele[i + 2];
+			ele[i] /= 5;
+		}
+
+		double[] distances = getCumulativeDistances();
+		double[] slopes = new double[count];
+		if (count == 0) {
+			return slopes;
+		}
+		double totalDistance = distances[count - 1];
+		double halfRange = slopeRange / 2;
+		// first point with distance >= max distance and last point with distance <= min distance of window
+		int maxIndex = 0;
+		int minIndex = 0;
+		for (int i = 0; i < count; i++) {
+			if (distances[i] < halfRange || distances[i] > totalDistance - halfRange) {
+				slopes[i] = Double.NaN;
+				continue;
+			}
+			double minDist = distances[i] - halfRange;
+			double maxDist = distances[i] + halfRange;
+			maxIndex = Math.max(maxIndex, i);
+			while (maxIndex < count && distances[maxIndex] < maxDist) {
+				maxIndex++;
+			}
+			while (minIndex + 1 <= i && distances[minIndex + 1] <= minDist) {
+				minIndex++;
+			}
+			double maxEle = Double.NaN;
+			if (maxIndex < count) {
+				if (distances[maxIndex] == maxDist) {
+					maxEle = ele[maxIndex];
+				} else if (maxIndex > 0) {
+					double coef = (maxDist - distances[maxIndex - 1]) / (distances[maxIndex] - distances[maxIndex - 1]);
+					maxEle = (1 - coef) * ele[maxIndex - 1] + coef * ele[maxIndex];
+				}
+			}
+			double minEle = Double.NaN;
+			if (distances[minIndex] == minDist) {
+				minEle = ele[minIndex];
+			} else if (distances[minIndex] < minDist) {
+				double coef = (minDist - distances[minIndex]) / (distances[minIndex + 1] - distances[minIndex]);
+				minEle = (1 - coef) * ele[minIndex] + coef * ele[minIndex + 1];
+			}
+			slopes[i] = (maxEle - minEle) / (maxDist - minDist);
+		}
+		return slopes;
+	}
+
+	// missing elevation is taken from closest points within max correct distance or from next point
+	private void correctElevations() {
+		double[] ele = elevations;
+		double maxDist = maxCorrectElevationDistance;
+		for (int i = 0; i < count; i++) {
+			if (!Double.isNaN(ele[i])) {
+				continue;
+			}
+			double leftDist = maxDist;
+			double rightDist = maxDist;
+			double leftElevation = Double.NaN;
+			double rightElevation = Double.NaN;
+			for (int left = i - 1; left > 0 && leftDist <= maxDist; left--) {
+				if (!Double.isNaN(ele[left])) {
+					double dist = MapUtils.getDistance(latitudes[left], longitudes[left], latitudes[i], longitudes[i]);
+					if (dist < leftDist) {
+						leftDist = dist;
+						leftElevation = ele[left];
+					} else {
+						break;
+					}
+				}
+			}
+			for (int right = i + 1; right < count && rightDist <= maxDist; right++) {
+				if (!Double.isNaN(ele[right])) {
+					double dist = MapUtils.getDistance(latitudes[right], longitudes[right], latitudes[i], longitudes[i]);
+					if (dist < rightDist) {
+						rightElevation = ele[right];
+						rightDist = dist;
+					} else {
+						break;
+					}
+				}
+			}
+			if (!Double.isNaN(leftElevation) && !Double.isNaN(rightElevation)) {
+				ele[i] = (leftElevation + rightElevation) / 2;
+			} else if (Double.isNaN(leftElevation) && !Double.isNaN(rightElevation)) {
+				ele[i] = rightElevation;
+			} else if (!Double.isNaN(leftElevation) && Double.isNaN(rightElevation)) {
+				ele[i] = leftElevation;
+			} else {
+				for (int right = i + 1; right < count; right++) {
+					if (!Double.isNaN(ele[right])) {
+						ele[i] = ele[right];
+						break;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,533 @@
+package net.osmand.gpx;
+
+import net.osmand.PlatformUtil;
+import net.osmand.data.QuadRect;
+import net.osmand.gpx.GPXUtilities.Author;
+import net.osmand.gpx.GPXUtilities.Bounds;
+import net.osmand.gpx.GPXUtilities.Copyright;
+import net.osmand.gpx.GPXUtilities.GPXExtensions;
+import net.osmand.gpx.GPXUtilities.Metadata;
+import net.osmand.gpx.GPXUtilities.PointsGroup;
+import net.osmand.gpx.GPXUtilities.Route;
+import net.osmand.gpx.GPXUtilities.RouteSegment;
+import net.osmand.gpx.GPXUtilities.RouteType;
+import net.osmand.gpx.GPXUtilities.Track;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+import org.apache.commons.logging.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.osmand.gpx.GPXBinaryWriter.COLUMN_ATTRIBUTES;
+import static net.osmand.gpx.GPXBinaryWriter.COLUMN_ELEVATION;
+import static net.osmand.gpx.GPXBinaryWriter.COLUMN_EXTENSIONS;
+import static net.osmand.gpx.GPXBinaryWriter.COLUMN_HDOP;
+import static net.osmand.gpx.GPXBinaryWriter.COLUMN_HEADING;
+import static net.osmand.gpx.GPXBinaryWriter.COLUMN_RAW_LAT_LON;
+import static net.osmand.gpx.GPXBinaryWriter.COLUMN_SPEED;
+import static net.osmand.gpx.GPXBinaryWriter.COLUMN_TIME;
+import static net.osmand.gpx.GPXBinaryWriter.LAT_LON_SCALE;
+import static net.osmand.gpx.GPXBinaryWriter.MAGIC;
+import static net.osmand.gpx.GPXBinaryWriter.MODE_FLOAT;
+import static net.osmand.gpx.GPXBinaryWriter.MODE_RAW;
+import static net.osmand.gpx.GPXBinaryWriter.UTF_8;
+import static net.osmand.gpx.GPXBinaryWriter.VERSION;
+
+/**
+ * Reads files written by {@link GPXBinaryWriter}. File is mapped to memory and only header, string table and
+ * directory are read on open, so segments could be read separately by index without reading whole file.
+ * Reading methods are thread safe.
+ */
+public class GPXBinaryReader implements Closeable {
+
+	private static final Log log = PlatformUtil.getLog(GPXBinaryReader.class);
+
+	private final ByteBuffer buffer;
+	private RandomAccessFile raf;
+	private String[] strings;
+	private long fileBlockOffset;
+	private final List<TrackEntry> tracks = new ArrayList<>();
+
+	private static class TrackEntry {
+		String name;
+		String desc;
+		Map<String, String> extensions;
+		long[] segmentOffsets;
+		int[] pointsCounts;
+		QuadRect[] bounds;
+	}
+
+	public GPXBinaryReader(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.duplicate();
+		try {
+			readDirectory();
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException("Broken binary gpx", e);
+		}
+	}
+
+	public static GPXBinaryReader open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			GPXBinaryReader reader = new GPXBinaryReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			reader.raf = raf;
+			return reader;
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return gpx file read from binary file or gpx file with error, same as {@link GPXUtilities#loadGPXFile(File)}
+	 */
+	public static GPXFile loadGPXFile(File file) {
+		GPXBinaryReader reader = null;
+		try {
+			reader = open(file);
+			GPXFile gpxFile = reader.readGPXFile();
+			gpxFile.path = file.getAbsolutePath();
+			gpxFile.modifiedTime = file.lastModified();
+			gpxFile.pointsModifiedTime = gpxFile.modifiedTime;
+			return gpxFile;
+		} catch (IOException e) {
+			GPXFile gpxFile = new GPXFile(null);
+			gpxFile.path = file.getAbsolutePath();
+			log.error("Error reading binary gpx " + file.getAbsolutePath(), e);
+			gpxFile.error = e;
+			return gpxFile;
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		if (raf != null) {
+			try {
+				raf.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			raf = null;
+		}
+	}
+
+	public int getTracksCount() {
+		return tracks.size();
+	}
+
+	public String getTrackName(int track) {
+		return tracks.get(track).name;
+	}
+
+	public int getSegmentsCount(int track) {
+		return tracks.get(track).segmentOffsets.length;
+	}
+
+	public int getSegmentPointsCount(int track, int segment) {
+		return tracks.get(track).pointsCounts[segment];
+	}
+
+	public QuadRect getSegmentBounds(int track, int segment) {
+		return new QuadRect(tracks.get(track).bounds[segment]);
+	}
+
+	public TrkSegment readSegment(int track, int segment) throws IOException {
+		ByteBuffer in = slice(tracks.get(track).segmentOffsets[segment]);
+		try {
+			return readSegment(in);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException("Broken binary gpx", e);
+		}
+	}
+
+	/**
+	 * @return segment with columns of coordinates, elevation, time, speed and hdop, other point values are skipped
+	 */
+	public ColumnarTrkSegment readColumnarSegment(int track, int segment) throws IOException {
+		ByteBuffer in = slice(tracks.get(track).segmentOffsets[segment]);
+		try {
+			String name = readString(in);
+			skipSegmentHeader(in);
+			Points points = readPoints(in, false);
+			ColumnarTrkSegment res = new ColumnarTrkSegment(points.size);
+			res.name = name;
+			for (int i = 0; i < points.size; i++) {
+				res.add(points.lat[i], points.lon[i], points.ele[i], points.time[i], points.speed[i], points.hdop[i]);
+			}
+			return res;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException("Broken binary gpx", e);
+		}
+	}
+
+	public GPXFile readGPXFile() throws IOException {
+		try {
+			ByteBuffer in = slice(fileBlockOffset);
+			GPXFile gpxFile = new GPXFile(readString(in));
+			readMetadata(in, gpxFile.metadata);
+			readExtensions(in, gpxFile);
+			Map<String, String> routeKeyTags = readMap(in);
+			if (!routeKeyTags.isEmpty()) {
+				gpxFile.addRouteKeyTags(routeKeyTags);
+			}
+			Map<String, PointsGroup> groups = new LinkedHashMap<>();
+			int groupsCount = readVarint(in);
+			for (int i = 0; i < groupsCount; i++) {
+				PointsGroup group = new PointsGroup(readString(in));
+				group.iconName = readString(in);
+				group.backgroundType = readString(in);
+				group.color = in.getInt();
+				groups.put(group.name, group);
+			}
+			List<WptPt> points = readPoints(in, true).toWptPts();
+			gpxFile.points.addAll(points);
+			for (WptPt point : points) {
+				PointsGroup group = groups.get(point.category != null ? point.category : "");
+				if (group != null) {
+					group.points.add(point);
+				}
+			}
+			gpxFile.setPointsGroups(groups);
+			int routesCount = readVarint(in);
+			for (int i = 0; i < routesCount; i++) {
+				Route route = new Route();
+				route.name = readString(in);
+				route.desc = readString(in);
+				readExtensions(in, route);
+				route.points.addAll(readPoints(in, true).toWptPts());
+				gpxFile.routes.add(route);
+			}
+			for (int i = 0; i < tracks.size(); i++) {
+				TrackEntry entry = tracks.get(i);
+				Track track = new Track();
+				track.name = entry.name;
+				track.desc = entry.desc;
+				if (!entry.extensions.isEmpty()) {
+					track.getExtensionsToWrite().putAll(entry.extensions);
+				}
+				for (int j = 0; j < entry.segmentOffsets.length; j++) {
+					track.segments.add(readSegment(slice(entry.segmentOffsets[j])));
+				}
+				gpxFile.tracks.add(track);
+			}
+			return gpxFile;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException("Broken binary gpx", e);
+		}
+	}
+
+	private ByteBuffer slice(long offset) {
+		ByteBuffer in = buffer.duplicate();
+		in.position((int) offset);
+		return in;
+	}
+
+	private void readDirectory() throws IOException {
+		ByteBuffer in = slice(0);
+		if (in.getInt() != MAGIC) {
+			throw new IOException("Not a binary gpx");
+		}
+		int version = in.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary gpx version " + version);
+		}
+		in.position((int) in.getLong());
+		strings = new String[readVarint(in)];
+		for (int i = 0; i < strings.length; i++) {
+			int length = readVarint(in);
+			byte[] bytes = new byte[length];
+			in.get(bytes);
+			strings[i] = new String(bytes, UTF_8);
+		}
+		fileBlockOffset = in.getLong();
+		int tracksCount = readVarint(in);
+		for (int i = 0; i < tracksCount; i++) {
+			TrackEntry entry = new TrackEntry();
+			entry.name = readString(in);
+			entry.desc = readString(in);
+			entry.extensions = readMap(in);
+			int segmentsCount = readVarint(in);
+			entry.segmentOffsets = new long[segmentsCount];
+			entry.pointsCounts = new int[segmentsCount];
+			entry.bounds = new QuadRect[segmentsCount];
+			for (int j = 0; j < segmentsCount; j++) {
+				entry.segmentOffsets[j] = in.getLong();
+				entry.pointsCounts[j] = readVarint(in);
+				double left = in.getDouble();
+				double top = in.getDouble();
+				double right = in.getDouble();
+				double bottom = in.getDouble();
+				entry.bounds[j] = new QuadRect(left, top, right, bottom);
+			}
+			tracks.add(entry);
+		}
+	}
+
+	private void readMetadata(ByteBuffer in, Metadata metadata) {
+		metadata.name = readString(in);
+		metadata.desc = readString(in);
+		metadata.link = readString(in);
+		metadata.keywords = readString(in);
+		metadata.time = in.getLong();
+		if (readVarint(in) != 0) {
+			Author author = new Author();
+			author.name = readString(in);
+			author.email = readString(in);
+			author.link = readString(in);
+			readExtensions(in, author);
+			metadata.author = author;
+		}
+		if (readVarint(in) != 0) {
+			Copyright copyright = new Copyright();
+			copyright.author = readString(in);
+			copyright.year = readString(in);
+			copyright.license = readString(in);
+			readExtensions(in, copyright);
+			metadata.copyright = copyright;
+		}
+		if (readVarint(in) != 0) {
+			Bounds bounds = new Bounds();
+			bounds.minlat = in.getDouble();
+			bounds.minlon = in.getDouble();
+			bounds.maxlat = in.getDouble();
+			bounds.maxlon = in.getDouble();
+			readExtensions(in, bounds);
+			metadata.bounds = bounds;
+		}
+		readExtensions(in, metadata);
+	}
+
+	private TrkSegment readSegment(ByteBuffer in) {
+		TrkSegment segment = new TrkSegment();
+		segment.name = readString(in);
+		readExtensions(in, segment);
+		int routeSegmentsCount = readVarint(in);
+		for (int i = 0; i < routeSegmentsCount; i++) {
+			RouteSegment s = new RouteSegment();
+			s.id = readString(in);
+			s.length = readString(in);
+			s.startTrackPointIndex = readString(in);
+			s.segmentTime = readString(in);
+			s.speed = readString(in);
+			s.turnType = readString(in);
+			s.turnLanes = readString(in);
+			s.turnAngle = readString(in);
+			s.skipTurn = readString(in);
+			s.types = readString(in);
+			s.pointTypes = readString(in);
+			s.names = readString(in);
+			segment.routeSegments.add(s);
+		}
+		int routeTypesCount = readVarint(in);
+		for (int i = 0; i < routeTypesCount; i++) {
+			RouteType t = new RouteType();
+			t.tag = readString(in);
+			t.value = readString(in);
+			segment.routeTypes.add(t);
+		}
+		segment.points.addAll(readPoints(in, true).toWptPts());
+		return segment;
+	}
+
+	private void skipSegmentHeader(ByteBuffer in) {
+		readMap(in);
+		int routeSegmentsCount = readVarint(in);
+		for (int i = 0; i < routeSegmentsCount * 12; i++) {
+			readVarint(in);
+		}
+		int routeTypesCount = readVarint(in);
+		for (int i = 0; i < routeTypesCount * 2; i++) {
+			readVarint(in);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Points readPoints(ByteBuffer in, boolean full) {
+		Points p = new Points(readVarint(in));
+		int columns = readVarint(in);
+		if ((columns & COLUMN_RAW_LAT_LON) != 0) {
+			for (int i = 0; i < p.size; i++) {
+				p.lat[i] = in.getDouble();
+				p.lon[i] = in.getDouble();
+			}
+		} else {
+			readQuantized(in, p.lat);
+			readQuantized(in, p.lon);
+		}
+		if ((columns & COLUMN_TIME) != 0) {
+			long prev = 0;
+			for (int i = 0; i < p.size; i++) {
+				prev += readSignedVarint(in);
+				p.time[i] = prev;
+			}
+		}
+		readDecimals(in, p.ele, (columns & COLUMN_ELEVATION) != 0, Double.NaN);
+		readDecimals(in, p.speed, (columns & COLUMN_SPEED) != 0, 0);
+		readDecimals(in, p.hdop, (columns & COLUMN_HDOP) != 0, Double.NaN);
+		readDecimals(in, p.heading, (columns & COLUMN_HEADING) != 0, Double.NaN);
+		if (!full) {
+			return p;
+		}
+		if ((columns & COLUMN_ATTRIBUTES) != 0) {
+			p.attributes = new String[p.size][];
+			for (int i = 0; i < p.size; i++) {
+				int attributes = readVarint(in);
+				if (attributes != 0) {
+					String[] values = new String[5];
+					for (int k = 0; k < values.length; k++) {
+						if ((attributes & (1 << k)) != 0) {
+							values[k] = readString(in);
+						}
+					}
+					p.attributes[i] = values;
+				}
+			}
+		}
+		if ((columns & COLUMN_EXTENSIONS) != 0) {
+			p.extensions = new ArrayList<>(p.size);
+			for (int i = 0; i < p.size; i++) {
+				p.extensions.add(readMap(in));
+			}
+		}
+		return p;
+	}
+
+	private static void readQuantized(ByteBuffer in, double[] values) {
+		long prev = 0;
+		for (int i = 0; i < values.length; i++) {
+			prev += readSignedVarint(in);
+			values[i] = prev / LAT_LON_SCALE;
+		}
+	}
+
+	private static void readDecimals(ByteBuffer in, double[] values, boolean present, double defValue) {
+		if (!present) {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = defValue;
+			}
+			return;
+		}
+		int mode = readVarint(in);
+		double scale = Math.pow(10, readVarint(in));
+		byte[] bitmap = null;
+		if (readVarint(in) != 0) {
+			bitmap = new byte[(values.length + 7) / 8];
+			in.get(bitmap);
+		}
+		long prev = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (bitmap != null && (bitmap[i >> 3] & (1 << (i & 7))) != 0) {
+				values[i] = Double.NaN;
+			} else if (mode == MODE_RAW) {
+				values[i] = in.getDouble();
+			} else {
+				prev += readSignedVarint(in);
+				double v = prev / scale;
+				values[i] = mode == MODE_FLOAT ? (float) v : v;
+			}
+		}
+	}
+
+	private void readExtensions(ByteBuffer in, GPXExtensions extensions) {
+		int count = readVarint(in);
+		for (int i = 0; i < count; i++) {
+			extensions.getExtensionsToWrite().put(readString(in), readString(in));
+		}
+	}
+
+	private Map<String, String> readMap(ByteBuffer in) {
+		int count = readVarint(in);
+		Map<String, String> map = new LinkedHashMap<>();
+		for (int i = 0; i < count; i++) {
+			map.put(readString(in), readString(in));
+		}
+		return map;
+	}
+
+	private String readString(ByteBuffer in) {
+		int index = readVarint(in);
+		return index == 0 ? null : strings[index - 1];
+	}
+
+	private static int readVarint(ByteBuffer in) {
+		return (int) readVarLong(in);
+	}
+
+	private static long readSignedVarint(ByteBuffer in) {
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long readVarLong(ByteBuffer in) {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IndexOutOfBoundsException("Malformed varint");
+	}
+
+	private static class Points {
+		final int size;
+		final double[] lat;
+		final double[] lon;
+		final long[] time;
+		final double[] ele;
+		final double[] speed;
+		final double[] hdop;
+		final double[] heading;
+		String[][] attributes;
+		List<Map<String, String>> extensions;
+
+		Points(int size) {
+			this.size = size;
+			lat = new double[size];
+			lon = new double[size];
+			time = new long[size];
+			ele = new double[size];
+			speed = new double[size];
+			hdop = new double[size];
+			heading = new double[size];
+		}
+
+		List<WptPt> toWptPts() {
+			List<WptPt> points = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				WptPt p = new WptPt(lat[i], lon[i], time[i], ele[i], speed[i], hdop[i]);
+				p.heading = (float) heading[i];
+				if (attributes != null && attributes[i] != null) {
+					String[] values = attributes[i];
+					p.name = values[0];
+					p.desc = values[1];
+					p.link = values[2];
+					p.category = values[3];
+					p.comment = values[4];
+				}
+				if (extensions != null && !extensions.get(i).isEmpty()) {
+					p.getExtensionsToWrite().putAll(extensions.get(i));
+				}
+				points.add(p);
+			}
+			return points;
+		}
+	}
+}
@@ -0,0 +1,488 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.Author;
+import net.osmand.gpx.GPXUtilities.Bounds;
+import net.osmand.gpx.GPXUtilities.Copyright;
+import net.osmand.gpx.GPXUtilities.GPXExtensions;
+import net.osmand.gpx.GPXUtilities.Metadata;
+import net.osmand.gpx.GPXUtilities.PointsGroup;
+import net.osmand.gpx.GPXUtilities.Route;
+import net.osmand.gpx.GPXUtilities.RouteSegment;
+import net.osmand.gpx.GPXUtilities.RouteType;
+import net.osmand.gpx.GPXUtilities.Track;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.util.Algorithms;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Writes {@link GPXFile} to compact binary file which is read by {@link GPXBinaryReader} without xml parsing.
+ * <p>
+ * Points are stored by columns: coordinates as deltas of 1e-7 degrees, time as deltas of millis, elevation,
+ * speed, hdop and heading as deltas of decimal values, all as zigzag varints. Column falls back to raw doubles
+ * when its values can't be restored exactly from decimals, so conversion is lossless. Strings are kept in
+ * one table and referenced by index. Directory with offsets, sizes and bounds of track segments is written
+ * at the end of file, so segments could be read separately.
+ * <p>
+ * Custom extension writers are not stored, points groups, route segments and route key tags are stored as data.
+ */
+public class GPXBinaryWriter {
+
+	static final int MAGIC = 0x4F475042; // OGPB
+	static final int VERSION = 1;
+	// magic, version, directory offset
+	static final int HEADER_SIZE = 16;
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	// columns of points block
+	static final int COLUMN_TIME = 1;
+	static final int COLUMN_ELEVATION = 1 << 1;
+	static final int COLUMN_SPEED = 1 << 2;
+	static final int COLUMN_HDOP = 1 << 3;
+	static final int COLUMN_HEADING = 1 << 4;
+	static final int COLUMN_ATTRIBUTES = 1 << 5;
+	static final int COLUMN_EXTENSIONS = 1 << 6;
+	static final int COLUMN_RAW_LAT_LON = 1 << 7;
+
+	// attributes of point
+	static final int ATTR_NAME = 1;
+	static final int ATTR_DESC = 1 << 1;
+	static final int ATTR_LINK = 1 << 2;
+	static final int ATTR_CATEGORY = 1 << 3;
+	static final int ATTR_COMMENT = 1 << 4;
+
+	// modes of decimal columns, scale is stored separately
+	static final int MODE_DOUBLE = 0;
+	static final int MODE_FLOAT = 1;
+	static final int MODE_RAW = 2;
+	static final int MAX_SCALE_DIGITS = 3;
+	static final double MAX_DECIMAL = 1e12;
+
+	static final double LAT_LON_SCALE = 1e7;
+
+	private final Map<String, Integer> strings = new LinkedHashMap<>();
+
+	public static void write(GPXFile gpxFile, File file) throws IOException {
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			write(gpxFile, fos);
+		} finally {
+			Algorithms.closeStream(fos);
+		}
+	}
+
+	public static void write(GPXFile gpxFile, OutputStream stream) throws IOException {
+		new GPXBinaryWriter().writeFile(gpxFile, stream);
+	}
+
+	private void writeFile(GPXFile gpxFile, OutputStream stream) throws IOException {
+		ByteOutput out = new ByteOutput(HEADER_SIZE);
+		out.size = HEADER_SIZE;
+		List<Track> tracks = new ArrayList<>();
+		for (Track track : gpxFile.tracks) {
+			if (!track.generalTrack) {
+				tracks.add(track);
+			}
+		}
+		long[][] segmentOffsets = new long[tracks.size()][];
+		for (int i = 0; i < tracks.size(); i++) {
+			List<TrkSegment> segments = tracks.get(i).segments;
+			segmentOffsets[i] = new long[segments.size()];
+			for (int j = 0; j < segments.size(); j++) {
+				segmentOffsets[i][j] = out.size;
+				writeSegment(out, segments.get(j));
+			}
+		}
+		long fileOffset = out.size;
+		writeFileBlock(out, gpxFile);
+
+		// directory uses string table, so it's written first in own buffer
+		ByteOutput directory = new ByteOutput(256);
+		directory.writeLong(fileOffset);
+		directory.writeVarint(tracks.size());
+		for (int i = 0; i < tracks.size(); i++) {
+			Track track = tracks.get(i);
+			writeString(directory, track.name);
+			writeString(directory, track.desc);
+			writeExtensions(directory, track);
+			directory.writeVarint(track.segments.size());
+			for (int j = 0; j < track.segments.size(); j++) {
+				List<WptPt> points = track.segments.get(j).points;
+				directory.writeLong(segmentOffsets[i][j]);
+				directory.writeVarint(points.size());
+				double left = 0, top = 0, right = 0, bottom = 0;
+				for (int k = 0; k < points.size(); k++) {
+					WptPt p = points.get(k);
+					left = k == 0 ? p.lon : Math.min(left, p.lon);
+					right = k == 0 ? p.lon : Math.max(right, p.lon);
+					top = k == 0 ? p.lat : Math.max(top, p.lat);
+					bottom = k == 0 ? p.lat : Math.min(bottom, p.lat);
+				}
+				directory.writeDouble(left);
+				directory.writeDouble(top);
+				directory.writeDouble(right);
+				directory.writeDouble(bottom);
+			}
+		}
+		long directoryOffset = out.size;
+		out.writeVarint(strings.size());
+		for (String s : strings.keySet()) {
+			byte[] bytes = s.getBytes(UTF_8);
+			out.writeVarint(bytes.length);
+			out.write(bytes, 0, bytes.length);
+		}
+		out.write(directory.bytes, 0, directory.size);
+
+		int size = out.size;
+		out.size = 0;
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(directoryOffset);
+		stream.write(out.bytes, 0, size);
+	}
+
+	private void writeFileBlock(ByteOutput out, GPXFile gpxFile) {
+		writeString(out, gpxFile.author);
+		writeMetadata(out, gpxFile.metadata);
+		writeExtensions(out, gpxFile);
+		Map<String, String> routeKeyTags = gpxFile.getRouteKeyTags();
+		writeMap(out, routeKeyTags);
+		Map<String, PointsGroup> groups = gpxFile.getPointsGroups();
+		out.writeVarint(groups.size());
+		for (PointsGroup group : groups.values()) {
+			writeString(out, group.name);
+			writeString(out, group.iconName);
+			writeString(out, group.backgroundType);
+			out.writeInt(group.color);
+		}
+		writePoints(out, gpxFile.getPoints());
+		out.writeVarint(gpxFile.routes.size());
+		for (Route route : gpxFile.routes) {
+			writeString(out, route.name);
+			writeString(out, route.desc);
+			writeExtensions(out, route);
+			writePoints(out, route.points);
+		}
+	}
+
+	private void writeMetadata(ByteOutput out, Metadata metadata) {
+		writeString(out, metadata.name);
+		writeString(out, metadata.desc);
+		writeString(out, metadata.link);
+		writeString(out, metadata.keywords);
+		out.writeLong(metadata.time);
+		Author author = metadata.author;
+		out.writeVarint(author != null ? 1 : 0);
+		if (author != null) {
+			writeString(out, author.name);
+			writeString(out, author.email);
+			writeString(out, author.link);
+			writeExtensions(out, author);
+		}
+		Copyright copyright = metadata.copyright;
+		out.writeVarint(copyright != null ? 1 : 0);
+		if (copyright != null) {
+			writeString(out, copyright.author);
+			writeString(out, copyright.year);
+			writeString(out, copyright.license);
+			writeExtensions(out, copyright);
+		}
+		Bounds bounds = metadata.bounds;
+		out.writeVarint(bounds != null ? 1 : 0);
+		if (bounds != null) {
+			out.writeDouble(bounds.minlat);
+			out.writeDouble(bounds.minlon);
+			out.writeDouble(bounds.maxlat);
+			out.writeDouble(bounds.maxlon);
+			writeExtensions(out, bounds);
+		}
+		writeExtensions(out, metadata);
+	}
+
+	private void writeSegment(ByteOutput out, TrkSegment segment) {
+		writeString(out, segment.name);
+		writeExtensions(out, segment);
+		out.writeVarint(segment.routeSegments.size());
+		for (RouteSegment s : segment.routeSegments) {
+			writeString(out, s.id);
+			writeString(out, s.length);
+			writeString(out, s.startTrackPointIndex);
+			writeString(out, s.segmentTime);
+			writeString(out, s.speed);
+			writeString(out, s.turnType);
+			writeString(out, s.turnLanes);
+			writeString(out, s.turnAngle);
+			writeString(out, s.skipTurn);
+			writeString(out, s.types);
+			writeString(out, s.pointTypes);
+			writeString(out, s.names);
+		}
+		out.writeVarint(segment.routeTypes.size());
+		for (RouteType t : segment.routeTypes) {
+			writeString(out, t.tag);
+			writeString(out, t.value);
+		}
+		writePoints(out, segment.points);
+	}
+
+	private void writePoints(ByteOutput out, List<WptPt> points) {
+		int size = points.size();
+		double[] lat = new double[size];
+		double[] lon = new double[size];
+		double[] ele = new double[size];
+		double[] speed = new double[size];
+		double[] hdop = new double[size];
+		double[] heading = new double[size];
+		int columns = 0;
+		boolean quantizedLatLon = true;
+		for (int i = 0; i < size; i++) {
+			WptPt p = points.get(i);
+			lat[i] = p.lat;
+			lon[i] = p.lon;
+			ele[i] = p.ele;
+			speed[i] = p.speed;
+			hdop[i] = p.hdop;
+			heading[i] = p.heading;
+			quantizedLatLon &= isQuantized(p.lat) && isQuantized(p.lon);
+			columns |= p.time != 0 ? COLUMN_TIME : 0;
+			columns |= !Double.isNaN(p.ele) ? COLUMN_ELEVATION : 0;
+			columns |= p.speed != 0 ? COLUMN_SPEED : 0;
+			columns |= !Double.isNaN(p.hdop) ? COLUMN_HDOP : 0;
+			columns |= !Float.isNaN(p.heading) ? COLUMN_HEADING : 0;
+			columns |= getAttributes(p) != 0 ? COLUMN_ATTRIBUTES : 0;
+			columns |= !p.getExtensionsToRead().isEmpty() ? COLUMN_EXTENSIONS : 0;
+		}
+		columns |= quantizedLatLon ? 0 : COLUMN_RAW_LAT_LON;
+		out.writeVarint(size);
+		out.writeVarint(columns);
+		if (quantizedLatLon) {
+			writeQuantized(out, lat);
+			writeQuantized(out, lon);
+		} else {
+			for (int i = 0; i < size; i++) {
+				out.writeDouble(lat[i]);
+				out.writeDouble(lon[i]);
+			}
+		}
+		if ((columns & COLUMN_TIME) != 0) {
+			long prev = 0;
+			for (WptPt p : points) {
+				out.writeSignedVarint(p.time - prev);
+				prev = p.time;
+			}
+		}
+		if ((columns & COLUMN_ELEVATION) != 0) {
+			writeDecimals(out, ele);
+		}
+		if ((columns & COLUMN_SPEED) != 0) {
+			writeDecimals(out, speed);
+		}
+		if ((columns & COLUMN_HDOP) != 0) {
+			writeDecimals(out, hdop);
+		}
+		if ((columns & COLUMN_HEADING) != 0) {
+			writeDecimals(out, heading);
+		}
+		if ((columns & COLUMN_ATTRIBUTES) != 0) {
+			for (WptPt p : points) {
+				int attributes = getAttributes(p);
+				out.writeVarint(attributes);
+				if ((attributes & ATTR_NAME) != 0) {
+					writeString(out, p.name);
+				}
+				if ((attributes & ATTR_DESC) != 0) {
+					writeString(out, p.desc);
+				}
+				if ((attributes & ATTR_LINK) != 0) {
+					writeString(out, p.link);
+				}
+				if ((attributes & ATTR_CATEGORY) != 0) {
+					writeString(out, p.category);
+				}
+				if ((attributes & ATTR_COMMENT) != 0) {
+					writeString(out, p.comment);
+				}
+			}
+		}
+		if ((columns & COLUMN_EXTENSIONS) != 0) {
+			for (WptPt p : points) {
+				writeExtensions(out, p);
+			}
+		}
+	}
+
+	private static int getAttributes(WptPt p) {
+		return (p.name != null ? ATTR_NAME : 0) | (p.desc != null ? ATTR_DESC : 0) | (p.link != null ? ATTR_LINK : 0)
+				| (p.category != null ? ATTR_CATEGORY : 0) | (p.comment != null ? ATTR_COMMENT : 0);
+	}
+
+	private static boolean isQuantized(double value) {
+		return Math.abs(value) <= 1000 && Math.round(value * LAT_LON_SCALE) / LAT_LON_SCALE == value
+				&& Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0d);
+	}
+
+	private static void writeQuantized(ByteOutput out, double[] values) {
+		long prev = 0;
+		for (double v : values) {
+			long q = Math.round(v * LAT_LON_SCALE);
+			out.writeSignedVarint(q - prev);
+			prev = q;
+		}
+	}
+
+	// values with NaN marked in bitmap, others as deltas of decimals
+	private static void writeDecimals(ByteOutput out, double[] values) {
+		int mode = MODE_RAW;
+		int digits = 0;
+		for (int d = 0; d <= MAX_SCALE_DIGITS && mode == MODE_RAW; d++) {
+			if (isDecimal(values, d, false)) {
+				mode = MODE_DOUBLE;
+				digits = d;
+			} else if (isDecimal(values, d, true)) {
+				mode = MODE_FLOAT;
+				digits = d;
+			}
+		}
+		out.writeVarint(mode);
+		out.writeVarint(digits);
+		boolean hasNaN = false;
+		for (double v : values) {
+			hasNaN |= Double.isNaN(v);
+		}
+		out.writeVarint(hasNaN ? 1 : 0);
+		if (hasNaN) {
+			byte[] bitmap = new byte[(values.length + 7) / 8];
+			for (int i = 0; i < values.length; i++) {
+				if (Double.isNaN(values[i])) {
+					bitmap[i >> 3] |= 1 << (i & 7);
+				}
+			}
+			out.write(bitmap, 0, bitmap.length);
+		}
+		double scale = Math.pow(10, digits);
+		long prev = 0;
+		for (double v : values) {
+			if (Double.isNaN(v)) {
+				continue;
+			}
+			if (mode == MODE_RAW) {
+				out.writeDouble(v);
+			} else {
+				long q = Math.round(v * scale);
+				out.writeSignedVarint(q - prev);
+				prev = q;
+			}
+		}
+	}
+
+	private static boolean isDecimal(double[] values, int digits, boolean asFloat) {
+		double scale = Math.pow(10, digits);
+		for (double v : values) {
+			if (Double.isNaN(v)) {
+				continue;
+			}
+			if (Math.abs(v) >= MAX_DECIMAL || Double.doubleToRawLongBits(v) == Double.doubleToRawLongBits(-0d)) {
+				return false;
+			}
+			double restored = Math.round(v * scale) / scale;
+			if (asFloat) {
+				restored = (float) restored;
+			}
+			if (restored != v) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void writeExtensions(ByteOutput out, GPXExtensions extensions) {
+		writeMap(out, extensions.getExtensionsToRead());
+	}
+
+	private void writeMap(ByteOutput out, Map<String, String> map) {
+		out.writeVarint(map.size());
+		for (Entry<String, String> e : map.entrySet()) {
+			writeString(out, e.getKey());
+			writeString(out, e.getValue());
+		}
+	}
+
+	// 0 is null, others are indexes in string table plus one
+	private void writeString(ByteOutput out, String s) {
+		if (s == null) {
+			out.writeVarint(0);
+			return;
+		}
+		Integer index = strings.get(s);
+		if (index == null) {
+			index = strings.size();
+			strings.put(s, index);
+		}
+		out.writeVarint(index + 1);
+	}
+
+	static class ByteOutput {
+		byte[] bytes;
+		int size;
+
+		ByteOutput(int capacity) {
+			bytes = new byte[Math.max(16, capacity)];
+		}
+
+		private void ensureCapacity(int extra) {
+			if (size + extra > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+			}
+		}
+
+		void write(byte[] b, int offset, int length) {
+			ensureCapacity(length);
+			System.arraycopy(b, offset, bytes, size, length);
+			size += length;
+		}
+
+		void writeVarint(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte) value;
+		}
+
+		void writeSignedVarint(long value) {
+			writeVarint((value << 1) ^ (value >> 63));
+		}
+
+		void writeInt(int value) {
+			ensureCapacity(4);
+			bytes[size++] = (byte) (value >>> 24);
+			bytes[size++] = (byte) (value >>> 16);
+			bytes[size++] = (byte) (value >>> 8);
+			bytes[size++] = (byte) value;
+		}
+
+		void writeLong(long value) {
+			writeInt((int) (value >>> 32));
+			writeInt((int) value);
+		}
+
+		void writeDouble(double value) {
+			writeLong(Double.doubleToRawLongBits(value));
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package net.osmand.gpx;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats coordinates, decimal values and times of gpx same as {@link DecimalFormat} and {@link SimpleDateFormat}
+ * patterns of {@link GPXUtilities}, but with integer arithmetic. Values close to rounding ties, zero and
+ * values out of supported range are passed to the formatters, so output is always the same.
+ */
+public class GPXFormat {
+
+	private static final String LAT_LON_PATTERN = "0.00#####";
+	private static final String DECIMAL_PATTERN = "#.#";
+	private static final String TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+	private static final int LAT_LON_DIGITS = 7;
+	private static final int LAT_LON_MIN_DIGITS = 2;
+	private static final double LAT_LON_MAX = 1e5;
+	private static final double DECIMAL_MAX = 1e11;
+	// scaled values with fraction closer to 0.5 could be rounded differently by binary value
+	private static final double TIE_DELTA = 0.01;
+
+	// 1583-01-01 and 10000-01-01, before cutover calendar is julian, after year has more than 4 digits
+	private static final long MIN_TIME = -12212553600000L;
+	private static final long MAX_TIME = 253402300800000L;
+
+	private static final ThreadLocal<NumberFormat> LAT_LON_FORMAT = new ThreadLocal<NumberFormat>() {
+		@Override
+		protected NumberFormat initialValue() {
+			return new DecimalFormat(LAT_LON_PATTERN, new DecimalFormatSymbols(Locale.US));
+		}
+	};
+
+	private static final ThreadLocal<NumberFormat> DECIMAL_FORMAT = new ThreadLocal<NumberFormat>() {
+		@Override
+		protected NumberFormat initialValue() {
+			return new DecimalFormat(DECIMAL_PATTERN, new DecimalFormatSymbols(Locale.US));
+		}
+	};
+
+	private static final ThreadLocal<SimpleDateFormat> TIME_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			SimpleDateFormat format = new SimpleDateFormat(TIME_PATTERN, Locale.US);
+			format.setTimeZone(TimeZone.getTimeZone("UTC"));
+			return format;
+		}
+	};
+
+	/**
+	 * @return value formatted as "0.00#####"
+	 */
+	public static String formatLatLon(double value) {
+		long scaled = scale(value, 10000000d, LAT_LON_MAX);
+		if (scaled <= 0) {
+			return LAT_LON_FORMAT.get().format(value);
+		}
+		StringBuilder sb = new StringBuilder(16);
+		if (value < 0) {
+			sb.append('-');
+		}
+		long fraction = scaled % 10000000L;
+		sb.append(scaled / 10000000L).append('.');
+		int digits = LAT_LON_DIGITS;
+		while (digits > LAT_LON_MIN_DIGITS && fraction % 10 == 0) {
+			fraction /= 10;
+			digits--;
+		}
+		appendPadded(sb, fraction, digits);
+		return sb.toString();
+	}
+
+	/**
+	 * @return value formatted as "#.#", used for elevation, speed and hdop
+	 */
+	public static String formatDecimal(double value) {
+		long scaled = scale(value, 10d, DECIMAL_MAX);
+		if (scaled <= 0) {
+			return DECIMAL_FORMAT.get().format(value);
+		}
+		StringBuilder sb = new StringBuilder(16);
+		if (value < 0) {
+			sb.append('-');
+		}
+		sb.append(scaled / 10);
+		long fraction = scaled % 10;
+		if (fraction != 0) {
+			sb.append('.').append(fraction);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return utc time formatted as "yyyy-MM-dd'T'HH:mm:ss'Z'"
+	 */
+	public static String formatTime(long time) {
+		if (time < MIN_TIME || time >= MAX_TIME) {
+			return TIME_FORMAT.get().format(new Date(time));
+		}
+		long seconds = floorDiv(time, 1000);
+		long days = floorDiv(seconds, 86400);
+		int secondOfDay = (int) (seconds - days * 86400);
+		// inverse of GPXTimeParser.daysFromEpoch
+		long z = days + 719468;
+		long era = floorDiv(z, 146097);
+		int dayOfEra = (int) (z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+		StringBuilder sb = new StringBuilder(20);
+		appendPadded(sb, year, 4);
+		sb.append('-');
+		appendPadded(sb, month, 2);
+		sb.append('-');
+		appendPadded(sb, day, 2);
+		sb.append('T');
+		appendPadded(sb, secondOfDay / 3600, 2);
+		sb.append(':');
+		appendPadded(sb, secondOfDay / 60 % 60, 2);
+		sb.append(':');
+		appendPadded(sb, secondOfDay % 60, 2);
+		sb.append('Z');
+		return sb.toString();
+	}
+
+	// absolute value multiplied by scale and rounded, or -1 if formatter should be used
+	private static long scale(double value, double scale, double max) {
+		double abs = Math.abs(value);
+		if (!(abs < max)) {
+			return -1;
+		}
+		double scaled = abs * scale;
+		double floor = Math.floor(scaled);
+		double fraction = scaled - floor;
+		if (Math.abs(fraction - 0.5) < TIE_DELTA) {
+			return -1;
+		}
+		return (long) floor + (fraction > 0.5 ? 1 : 0);
+	}
+
+	private static void appendPadded(StringBuilder sb, long value, int digits) {
+		for (long limit = 10; digits > 1; digits--, limit *= 10) {
+			if (value < limit) {
+				sb.append('0');
+			}
+		}
+		sb.append(value);
+	}
+
+	private static long floorDiv(long x, long y) {
+		long r = x / y;
+		if ((x % y != 0) && ((x ^ y) < 0)) {
+			r--;
+		}
+		return r;
+	}
+}
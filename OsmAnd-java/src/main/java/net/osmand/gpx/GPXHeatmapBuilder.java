@@ -0,0 +1,319 @@
+package net.osmand.gpx;
+
+import net.osmand.PlatformUtil;
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.util.Algorithms;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * Builds density tiles of tracks from many gpx files. Files are read by {@link GPXStreamReader} in parallel,
+ * segments are drawn as lines of pixels of {@link #TILE_SIZE} tiles on max zoom, and each pixel is counted
+ * once per file on every zoom. Counts of files are merged into shared tiles, which are flushed to
+ * directory zoom/x/y{@link #TILE_EXT} when there are more than max tiles in memory.
+ */
+public class GPXHeatmapBuilder {
+
+	private static final Log log = PlatformUtil.getLog(GPXHeatmapBuilder.class);
+
+	public static final int TILE_SIZE_BITS = 8;
+	public static final int TILE_SIZE = 1 << TILE_SIZE_BITS;
+	public static final int MAX_ZOOM = 31 - 2 - TILE_SIZE_BITS;
+	public static final String TILE_EXT = ".heatmap";
+
+	// longer lines (usually gaps of recording) are not drawn, only their ends
+	private static final int MAX_LINE_PIXELS = 1 << 12;
+
+	private final File outputDir;
+	private int minZoom = 3;
+	private int maxZoom = 16;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int maxTilesInMemory = 512;
+
+	private final Object tilesLock = new Object();
+	private TLongObjectHashMap<int[]> tiles = new TLongObjectHashMap<>();
+	// tiles in directory are updated by one thread, while other threads merge into new tiles in memory
+	private final Object flushLock = new Object();
+	private int filesProcessed;
+	private int filesFailed;
+
+	public GPXHeatmapBuilder(File outputDir) {
+		this.outputDir = outputDir;
+	}
+
+	public void setZooms(int minZoom, int maxZoom) {
+		if (minZoom < 0 || minZoom > maxZoom || maxZoom > MAX_ZOOM) {
+			throw new IllegalArgumentException("Zooms should be in 0.." + MAX_ZOOM);
+		}
+		this.minZoom = minZoom;
+		this.maxZoom = maxZoom;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * @param maxTilesInMemory tiles are kept as int[{@link #TILE_SIZE} * {@link #TILE_SIZE}]
+	 */
+	public void setMaxTilesInMemory(int maxTilesInMemory) {
+		this.maxTilesInMemory = maxTilesInMemory;
+	}
+
+	public int getFilesProcessed() {
+		return filesProcessed;
+	}
+
+	public int getFilesFailed() {
+		return filesFailed;
+	}
+
+	/**
+	 * Adds tracks of files to tiles in output directory, files which can't be read are skipped
+	 */
+	public void build(List<File> gpxFiles) throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (final File file : gpxFiles) {
+				futures.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws IOException {
+						TLongHashSet pixels;
+						try {
+							pixels = rasterize(file);
+						} catch (IOException e) {
+							log.error("Error reading " + file.getAbsolutePath(), e);
+							return false;
+						}
+						merge(pixels);
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> future : futures) {
+				try {
+					if (future.get()) {
+						filesProcessed++;
+					} else {
+						filesFailed++;
+					}
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		flush(takeTiles());
+	}
+
+	/**
+	 * @return pixels of all zooms crossed by tracks of file
+	 */
+	TLongHashSet rasterize(File file) throws IOException {
+		final TLongHashSet pixels = new TLongHashSet();
+		final int shift = 31 - maxZoom - TILE_SIZE_BITS;
+		new GPXStreamReader(new GPXStreamListener() {
+			int prevX;
+			int prevY;
+			boolean first;
+
+			@Override
+			public void segmentStarted() {
+				first = true;
+			}
+
+			@Override
+			public void pointRead(WptPt point) {
+				int x = MapUtils.get31TileNumberX(point.lon) >>> shift;
+				int y = MapUtils.get31TileNumberY(point.lat) >>> shift;
+				if (first || Math.max(Math.abs(x - prevX), Math.abs(y - prevY)) > MAX_LINE_PIXELS) {
+					addPixel(pixels, x, y);
+				} else {
+					drawLine(pixels, prevX, prevY, x, y);
+				}
+				first = false;
+				prevX = x;
+				prevY = y;
+			}
+		}).read(file);
+		return pixels;
+	}
+
+	// Bresenham line without first pixel, which is added with previous line
+	private void drawLine(TLongHashSet pixels, int x0, int y0, int x1, int y1) {
+		int dx = Math.abs(x1 - x0);
+		int dy = -Math.abs(y1 - y0);
+		int sx = x0 < x1 ? 1 : -1;
+		int sy = y0 < y1 ? 1 : -1;
+		int err = dx + dy;
+		while (x0 != x1 || y0 != y1) {
+			int e2 = 2 * err;
+			if (e2 >= dy) {
+				err += dy;
+				x0 += sx;
+			}
+			if (e2 <= dx) {
+				err += dx;
+				y0 += sy;
+			}
+			addPixel(pixels, x0, y0);
+		}
+	}
+
+	private void addPixel(TLongHashSet pixels, int x, int y) {
+		for (int zoom = maxZoom; zoom >= minZoom; zoom--) {
+			// pixels of lower zooms are added already
+			if (!pixels.add(pixelId(zoom, x, y))) {
+				break;
+			}
+			x >>= 1;
+			y >>= 1;
+		}
+	}
+
+	private void merge(TLongHashSet pixels) throws IOException {
+		TLongObjectHashMap<int[]> flushed = null;
+		synchronized (tilesLock) {
+			TLongIterator it = pixels.iterator();
+			while (it.hasNext()) {
+				long pixel = it.next();
+				int zoom = (int) (pixel >>> 58);
+				int x = (int) (pixel >>> 29) & 0x1fffffff;
+				int y = (int) pixel & 0x1fffffff;
+				long tileId = tileId(zoom, x >> TILE_SIZE_BITS, y >> TILE_SIZE_BITS);
+				int[] tile = tiles.get(tileId);
+				if (tile == null) {
+					tile = new int[TILE_SIZE * TILE_SIZE];
+					tiles.put(tileId, tile);
+				}
+				tile[((y & (TILE_SIZE - 1)) << TILE_SIZE_BITS) | (x & (TILE_SIZE - 1))]++;
+			}
+			if (tiles.size() > maxTilesInMemory) {
+				flushed = tiles;
+				tiles = new TLongObjectHashMap<>();
+			}
+		}
+		if (flushed != null) {
+			flush(flushed);
+		}
+	}
+
+	private TLongObjectHashMap<int[]> takeTiles() {
+		synchronized (tilesLock) {
+			TLongObjectHashMap<int[]> res = tiles;
+			tiles = new TLongObjectHashMap<>();
+			return res;
+		}
+	}
+
+	// adds tiles taken from memory to tiles in directory
+	private void flush(TLongObjectHashMap<int[]> flushed) throws IOException {
+		synchronized (flushLock) {
+			TLongObjectIterator<int[]> it = flushed.iterator();
+			while (it.hasNext()) {
+				it.advance();
+				long tileId = it.key();
+				int[] tile = it.value();
+				File file = getTileFile(outputDir, (int) (tileId >>> 58), (int) (tileId >>> 29) & 0x1fffffff,
+						(int) tileId & 0x1fffffff);
+				if (file.exists()) {
+					int[] existing = readTile(file);
+					for (int i = 0; i < tile.length; i++) {
+						tile[i] += existing[i];
+					}
+				}
+				writeTile(file, tile);
+			}
+		}
+	}
+
+	private static long pixelId(int zoom, int x, int y) {
+		return ((long) zoom << 58) | ((long) x << 29) | y;
+	}
+
+	private static long tileId(int zoom, int x, int y) {
+		return pixelId(zoom, x, y);
+	}
+
+	public static File getTileFile(File dir, int zoom, int x, int y) {
+		return new File(dir, zoom + "/" + x + "/" + y + TILE_EXT);
+	}
+
+	/**
+	 * @return counts of tracks in pixels by rows
+	 */
+	public static int[] readTile(File file) throws IOException {
+		int[] tile = new int[TILE_SIZE * TILE_SIZE];
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+		try {
+			int count = in.readInt();
+			int index = -1;
+			for (int i = 0; i < count; i++) {
+				index += in.readUnsignedShort() + 1;
+				tile[index] = in.readInt();
+			}
+		} finally {
+			in.close();
+		}
+		return tile;
+	}
+
+	// count of non empty pixels, then pairs of index delta - 1 and count
+	private static void writeTile(File file, int[] tile) throws IOException {
+		int count = 0;
+		for (int value : tile) {
+			if (value != 0) {
+				count++;
+			}
+		}
+		file.getParentFile().mkdirs();
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+		try {
+			out.writeInt(count);
+			int prev = -1;
+			for (int i = 0; i < tile.length; i++) {
+				if (tile[i] != 0) {
+					out.writeShort(i - prev - 1);
+					out.writeInt(tile[i]);
+					prev = i;
+				}
+			}
+		} finally {
+			out.close();
+		}
+		Algorithms.removeAllFiles(file);
+		if (!tmp.renameTo(file)) {
+			throw new IOException("Can't write " + file.getAbsolutePath());
+		}
+	}
+}
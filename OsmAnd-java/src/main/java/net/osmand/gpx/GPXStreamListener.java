@@ -0,0 +1,39 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+/**
+ * Receives tracks and waypoints read by {@link GPXStreamReader} in order of the file.
+ */
+public abstract class GPXStreamListener {
+
+	public void trackStarted() {
+	}
+
+	public void trackFinished(String name, String desc) {
+	}
+
+	public void segmentStarted() {
+	}
+
+	public void segmentFinished() {
+	}
+
+	/**
+	 * @param point track point, the same instance is reused for next points, so values should be copied to keep them
+	 */
+	public abstract void pointRead(WptPt point);
+
+	/**
+	 * @param point new instance for each waypoint
+	 */
+	public void waypointRead(WptPt point) {
+	}
+
+	/**
+	 * @return true to stop reading
+	 */
+	public boolean isCancelled() {
+		return false;
+	}
+}
@@ -0,0 +1,266 @@
+package net.osmand.gpx;
+
+import net.osmand.PlatformUtil;
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.util.Algorithms;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads tracks and waypoints of gpx file and passes them to {@link GPXStreamListener} without building
+ * {@link GPXFile}. Track points are read into one reused {@link WptPt}, so memory doesn't depend on track size.
+ * Metadata, routes and route extensions are skipped, use {@link GPXUtilities#loadGPXFile(InputStream)} to read them.
+ */
+public class GPXStreamReader {
+
+	private final GPXStreamListener listener;
+	private final WptPt point = new WptPt();
+	private final StringBuilder text = new StringBuilder();
+	private boolean readPointExtensions;
+
+	public GPXStreamReader(GPXStreamListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @param readPointExtensions read extensions of track points to {@link WptPt#extensions},
+	 *                            by default only speed is read from them. Extensions of waypoints are always read.
+	 */
+	public void setReadPointExtensions(boolean readPointExtensions) {
+		this.readPointExtensions = readPointExtensions;
+	}
+
+	public void read(File file) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			read(fis);
+		} finally {
+			Algorithms.closeStream(fis);
+		}
+	}
+
+	public void read(InputStream stream) throws IOException {
+		try {
+			XmlPullParser parser = PlatformUtil.newXMLPullParser();
+			parser.setInput(GPXUtilities.getUTF8Reader(stream));
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT && !listener.isCancelled()) {
+				if (tok != XmlPullParser.START_TAG || parser.getDepth() == 1) {
+					continue;
+				}
+				String tag = parser.getName();
+				if (tag.equals("trk")) {
+					readTrack(parser);
+				} else if (tag.equals("wpt")) {
+					WptPt wpt = new WptPt();
+					readPoint(parser, wpt, true);
+					listener.waypointRead(wpt);
+				} else {
+					skip(parser);
+				}
+			}
+		} catch (XmlPullParserException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	private void readTrack(XmlPullParser parser) throws XmlPullParserException, IOException {
+		listener.trackStarted();
+		String name = null;
+		String desc = null;
+		// points outside of trkseg make own segment
+		boolean pointsSegment = false;
+		int depth = parser.getDepth();
+		int tok;
+		while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT && !listener.isCancelled()) {
+			if (tok == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+				break;
+			} else if (tok != XmlPullParser.START_TAG) {
+				continue;
+			}
+			String tag = parser.getName();
+			if (tag.equals("name")) {
+				name = GPXUtilities.readText(parser, "name");
+			} else if (tag.equals("desc")) {
+				desc = GPXUtilities.readText(parser, "desc");
+			} else if (tag.equals("trkseg")) {
+				if (pointsSegment) {
+					listener.segmentFinished();
+					pointsSegment = false;
+				}
+				readSegment(parser);
+			} else if (tag.equals("trkpt")) {
+				if (!pointsSegment) {
+					listener.segmentStarted();
+					pointsSegment = true;
+				}
+				readPoint(parser, point, false);
+				listener.pointRead(point);
+			} else {
+				skip(parser);
+			}
+		}
+		if (pointsSegment) {
+			listener.segmentFinished();
+		}
+		listener.trackFinished(name, desc);
+	}
+
+	private void readSegment(XmlPullParser parser) throws XmlPullParserException, IOException {
+		listener.segmentStarted();
+		int depth = parser.getDepth();
+		int tok;
+		while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT && !listener.isCancelled()) {
+			if (tok == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+				break;
+			} else if (tok != XmlPullParser.START_TAG) {
+				continue;
+			}
+			if (parser.getName().equals("trkpt")) {
+				readPoint(parser, point, false);
+				listener.pointRead(point);
+			} else {
+				skip(parser);
+			}
+		}
+		listener.segmentFinished();
+	}
+
+	private void readPoint(XmlPullParser parser, WptPt p, boolean waypoint) throws XmlPullParserException, IOException {
+		resetPoint(p);
+		String lat = parser.getAttributeValue("", "lat");
+		String lon = parser.getAttributeValue("", "lon");
+		if (lat != null && lon != null) {
+			try {
+				p.lat = Double.parseDouble(lat);
+				p.lon = Double.parseDouble(lon);
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+		int depth = parser.getDepth();
+		int tok;
+		while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+			if (tok == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+				break;
+			} else if (tok != XmlPullParser.START_TAG) {
+				continue;
+			}
+			String tag = parser.getName();
+			if (tag.equals(GPXUtilities.POINT_ELEVATION)) {
+				String value = GPXUtilities.readText(parser, tag);
+				if (value != null) {
+					p.ele = parseFloat(value, p.ele);
+				}
+			} else if (tag.equals("time")) {
+				p.time = GPXUtilities.parseTime(GPXUtilities.readText(parser, tag));
+			} else if (tag.equals("hdop")) {
+				String value = GPXUtilities.readText(parser, tag);
+				if (value != null) {
+					p.hdop = parseFloat(value, p.hdop);
+				}
+			} else if (tag.equals(GPXUtilities.POINT_SPEED)) {
+				String value = GPXUtilities.readText(parser, tag);
+				if (!Algorithms.isEmpty(value)) {
+					p.speed = parseFloat(value, p.speed);
+					if (waypoint || readPointExtensions) {
+						p.getExtensionsToWrite().put(GPXUtilities.POINT_SPEED, value);
+					}
+				}
+			} else if (tag.equals("extensions")) {
+				readExtensions(parser, p, waypoint || readPointExtensions);
+			} else if (tag.equals("name")) {
+				p.name = GPXUtilities.readText(parser, tag);
+			} else if (tag.equals("desc")) {
+				p.desc = GPXUtilities.readText(parser, tag);
+			} else if (tag.equals("cmt")) {
+				p.comment = GPXUtilities.readText(parser, tag);
+			} else if (tag.equals("link")) {
+				p.link = parser.getAttributeValue("", "href");
+				skip(parser);
+			} else if (tag.equals("category")) {
+				p.category = GPXUtilities.readText(parser, tag);
+			} else if (tag.equals("type")) {
+				String value = GPXUtilities.readText(parser, tag);
+				if (p.category == null) {
+					p.category = value;
+				}
+			} else {
+				skip(parser);
+			}
+		}
+	}
+
+	// nested tags are read to flat map same as by GPXUtilities.loadGPXFile
+	private void readExtensions(XmlPullParser parser, WptPt p, boolean keep) throws XmlPullParserException, IOException {
+		int depth = parser.getDepth();
+		boolean hasText = false;
+		int tok;
+		while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+			if (tok == XmlPullParser.END_TAG) {
+				if (parser.getDepth() == depth) {
+					break;
+				}
+				if (hasText && !Algorithms.isBlank(text.toString())) {
+					String tag = parser.getName().toLowerCase();
+					String value = text.toString();
+					if (tag.equals(GPXUtilities.POINT_SPEED)) {
+						p.speed = parseFloat(value, p.speed);
+					}
+					if (keep) {
+						p.getExtensionsToWrite().put(tag, value);
+					}
+				}
+				hasText = false;
+			} else if (tok == XmlPullParser.START_TAG) {
+				hasText = false;
+			} else if (tok == XmlPullParser.TEXT) {
+				if (!hasText) {
+					text.setLength(0);
+					hasText = true;
+				}
+				text.append(parser.getText());
+			}
+		}
+	}
+
+	private static void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
+		int depth = parser.getDepth();
+		int tok;
+		while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+			if (tok == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+				break;
+			}
+		}
+	}
+
+	private static void resetPoint(WptPt p) {
+		p.lat = 0;
+		p.lon = 0;
+		p.name = null;
+		p.link = null;
+		p.category = null;
+		p.desc = null;
+		p.comment = null;
+		p.time = 0;
+		p.ele = Double.NaN;
+		p.speed = 0;
+		p.hdop = Double.NaN;
+		p.heading = Float.NaN;
+		p.extensions = null;
+	}
+
+	private static double parseFloat(String value, double defValue) {
+		try {
+			return Float.parseFloat(value);
+		} catch (NumberFormatException e) {
+			return defValue;
+		}
+	}
+}
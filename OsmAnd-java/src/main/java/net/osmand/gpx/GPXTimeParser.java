@@ -0,0 +1,90 @@
+package net.osmand.gpx;
+
+/**
+ * Parses gpx times like 2023-05-17T10:15:30Z, 2023-05-17T10:15:30.250Z and 2023-05-17T10:15:30+02:00
+ * without SimpleDateFormat. Other forms are left to {@link GPXUtilities#parseTime(String)} fallback.
+ */
+public class GPXTimeParser {
+
+	public static final long INVALID_TIME = Long.MIN_VALUE;
+
+	private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+	/**
+	 * @param allowOffset false accepts only 'Z' time zone (old gpx time format)
+	 * @return time in millis or {@link #INVALID_TIME} if text is not in one of supported forms
+	 */
+	public static long parse(CharSequence text, boolean allowOffset) {
+		int len = text.length();
+		// yyyy-MM-ddTHH:mm:ss
+		if (len < 20 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+				|| text.charAt(13) != ':' || text.charAt(16) != ':') {
+			return INVALID_TIME;
+		}
+		int year = digits(text, 0, 4);
+		int month = digits(text, 5, 2);
+		int day = digits(text, 8, 2);
+		int hour = digits(text, 11, 2);
+		int minute = digits(text, 14, 2);
+		int second = digits(text, 17, 2);
+		// SimpleDateFormat uses julian calendar before 1582
+		if (year < 1583 || month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month - 1]
+				|| (month == 2 && day == 29 && !isLeapYear(year))
+				|| hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+			return INVALID_TIME;
+		}
+		int pos = 19;
+		int millis = 0;
+		if (text.charAt(pos) == '.') {
+			// only 3 digits are parsed same as by SimpleDateFormat
+			millis = pos + 4 < len ? digits(text, pos + 1, 3) : -1;
+			if (millis < 0) {
+				return INVALID_TIME;
+			}
+			pos += 4;
+		}
+		int offsetMinutes;
+		char zone = text.charAt(pos);
+		if (zone == 'Z' && pos + 1 == len) {
+			offsetMinutes = 0;
+		} else if ((zone == '+' || zone == '-') && allowOffset && pos + 6 == len && text.charAt(pos + 3) == ':') {
+			int offsetHours = digits(text, pos + 1, 2);
+			int offsetMins = digits(text, pos + 4, 2);
+			if (offsetHours < 0 || offsetHours > 23 || offsetMins < 0 || offsetMins > 59) {
+				return INVALID_TIME;
+			}
+			offsetMinutes = (offsetHours * 60 + offsetMins) * (zone == '-' ? -1 : 1);
+		} else {
+			return INVALID_TIME;
+		}
+		long days = daysFromEpoch(year, month, day);
+		long seconds = days * 86400L + hour * 3600 + minute * 60 + second - offsetMinutes * 60L;
+		return seconds * 1000L + millis;
+	}
+
+	private static int digits(CharSequence text, int start, int count) {
+		int res = 0;
+		for (int i = start; i < start + count; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			res = res * 10 + (c - '0');
+		}
+		return res;
+	}
+
+	private static boolean isLeapYear(int year) {
+		return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+	}
+
+	// days since 1970-01-01 in proleptic gregorian calendar
+	static long daysFromEpoch(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+}
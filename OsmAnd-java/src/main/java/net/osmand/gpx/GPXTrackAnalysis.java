@@ -172,7 +172,7 @@ public class GPXTrackAnalysis {
 
 		pointsAttributesData = new HashMap<>();
 
-		for (final SplitSegment s : splitSegments) {
+		for (SplitSegment s : splitSegments) {
 			final int numberOfPoints = s.getNumberOfPoints();
 			float segmentDistance = 0f;
 			metricEnd += s.metricEnd;
@@ -325,51 +325,9 @@ public class GPXTrackAnalysis {
 				}
 			}
 
-			ElevationApproximator approximator = new ElevationApproximator() {
-				@Override
-				public double getPointLatitude(int index) {
-					return s.get(index).lat;
-				}
-
-				@Override
-				public double getPointLongitude(int index) {
-					return s.get(index).lon;
-				}
-
-				@Override
-				public double getPointElevation(int index) {
-					return s.get(index).ele;
-				}
-
-				@Override
-				public int getPointsCount() {
-					return s.getNumberOfPoints();
-				}
-			};
-			approximator.approximate();
-			final double[] distances = approximator.getDistances();
-			final double[] elevations = approximator.getElevations();
-			if (distances != null && elevations != null) {
-				ElevationDiffsCalculator elevationDiffsCalc = new ElevationDiffsCalculator() {
-					@Override
-					public double getPointDistance(int index) {
-						return distances[index];
-					}
-
-					@Override
-					public double getPointElevation(int index) {
-						return elevations[index];
-					}
-
-					@Override
-					public int getPointsCount() {
-						return distances.length;
-					}
-				};
-				elevationDiffsCalc.calculateElevationDiffs();
-				diffElevationUp += elevationDiffsCalc.getDiffElevationUp();
-				diffElevationDown += elevationDiffsCalc.getDiffElevationDown();
-			}
+			double[] diffs = ElevationPipeline.fromSplitSegment(s).calculateElevationDiffs();
+			diffElevationUp += diffs[0];
+			diffElevationDown += diffs[1];
 		}
 
 		if (totalDistance < 0) {
@@ -0,0 +1,672 @@
+package net.osmand.gpx;
+
+import net.osmand.PlatformUtil;
+import net.osmand.data.QuadRect;
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.util.Algorithms;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Index of track segments of many gpx files kept in directory. Segments are split into chunks of consecutive
+ * points, chunks are registered in tiles of {@link #INDEX_ZOOM} by their bounds, and their points (31 coordinates
+ * and time) are kept in points file, so queries don't load gpx files. Files are added, updated and removed
+ * incrementally by path, size and modification time. Index is written by {@link #save()}, points of removed
+ * files stay in points file until {@link #compact()}.
+ */
+public class GPXTrackStore implements Closeable {
+
+	private static final Log log = PlatformUtil.getLog(GPXTrackStore.class);
+
+	public static final int INDEX_ZOOM = 12;
+	public static final int CHUNK_SIZE = 128;
+
+	private static final String INDEX_FILE = "tracks.index";
+	private static final String POINTS_FILE = "tracks.points";
+	private static final int VERSION = 1;
+	private static final int TILE_SHIFT = 31 - INDEX_ZOOM;
+	// x31, y31, time
+	private static final int POINT_SIZE = 16;
+	// more tiles in query are checked by scan of all chunks
+	private static final int MAX_QUERY_TILES = 4096;
+	private static final int MAX_NEAREST_RING = 64;
+
+	private final File indexFile;
+	private final File pointsFile;
+	private final RandomAccessFile points;
+
+	private final Map<String, IndexedFile> files = new LinkedHashMap<>();
+	private final List<IndexedFile> filesById = new ArrayList<>();
+	private final List<Chunk> chunks = new ArrayList<>();
+	private final TLongObjectHashMap<List<Chunk>> tiles = new TLongObjectHashMap<>();
+
+	private static class IndexedFile {
+		final int id;
+		final String path;
+		final long lastModified;
+		final long length;
+		final List<Chunk> chunks = new ArrayList<>();
+		boolean removed;
+
+		IndexedFile(int id, String path, long lastModified, long length) {
+			this.id = id;
+			this.path = path;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+
+	private static class Chunk {
+		final IndexedFile file;
+		final int track;
+		final int segment;
+		final int startPoint;
+		final int count;
+		final int left;
+		final int top;
+		final int right;
+		final int bottom;
+		final long minTime;
+		final long maxTime;
+		long pointsOffset;
+
+		Chunk(IndexedFile file, int track, int segment, int startPoint, int count, int left, int top, int right,
+		      int bottom, long minTime, long maxTime, long pointsOffset) {
+			this.file = file;
+			this.track = track;
+			this.segment = segment;
+			this.startPoint = startPoint;
+			this.count = count;
+			this.left = left;
+			this.top = top;
+			this.right = right;
+			this.bottom = bottom;
+			this.minTime = minTime;
+			this.maxTime = maxTime;
+			this.pointsOffset = pointsOffset;
+		}
+
+		boolean intersects(int l, int t, int r, int b) {
+			return left <= r && right >= l && top <= b && bottom >= t;
+		}
+	}
+
+	/**
+	 * Points of segment found by query, indexes are indexes of track (without general track),
+	 * segment in track and points in segment
+	 */
+	public static class SegmentMatch {
+		public final File file;
+		public final int trackIndex;
+		public final int segmentIndex;
+		public int firstPointIndex;
+		public int lastPointIndex;
+
+		SegmentMatch(File file, int trackIndex, int segmentIndex, int firstPointIndex) {
+			this.file = file;
+			this.trackIndex = trackIndex;
+			this.segmentIndex = segmentIndex;
+			this.firstPointIndex = firstPointIndex;
+			this.lastPointIndex = firstPointIndex;
+		}
+
+		@Override
+		public String toString() {
+			return file.getName() + " " + trackIndex + ":" + segmentIndex + " [" + firstPointIndex + "-" + lastPointIndex + "]";
+		}
+	}
+
+	public static class PointMatch {
+		public final File file;
+		public final int trackIndex;
+		public final int segmentIndex;
+		public final int pointIndex;
+		public final double latitude;
+		public final double longitude;
+		public final long time;
+		public final double distance;
+
+		PointMatch(Chunk chunk, int index, int x31, int y31, long time, double distance) {
+			this.file = new File(chunk.file.path);
+			this.trackIndex = chunk.track;
+			this.segmentIndex = chunk.segment;
+			this.pointIndex = chunk.startPoint + index;
+			this.latitude = MapUtils.get31LatitudeY(y31);
+			this.longitude = MapUtils.get31LongitudeX(x31);
+			this.time = time;
+			this.distance = distance;
+		}
+	}
+
+	public GPXTrackStore(File directory) throws IOException {
+		directory.mkdirs();
+		indexFile = new File(directory, INDEX_FILE);
+		pointsFile = new File(directory, POINTS_FILE);
+		if (indexFile.exists() && pointsFile.exists()) {
+			try {
+				readIndex();
+			} catch (IOException e) {
+				log.error("Error reading track index, index is rebuilt", e);
+				clearIndex();
+				Algorithms.removeAllFiles(pointsFile);
+			}
+		} else {
+			Algorithms.removeAllFiles(pointsFile);
+		}
+		points = new RandomAccessFile(pointsFile, "rw");
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		points.close();
+	}
+
+	public synchronized int getFilesCount() {
+		return files.size();
+	}
+
+	public synchronized int getChunksCount() {
+		return chunks.size();
+	}
+
+	public synchronized boolean contains(File file) {
+		return files.containsKey(file.getAbsolutePath());
+	}
+
+	/**
+	 * Adds file or reindexes it if it was changed since it was added
+	 *
+	 * @return true if file was indexed
+	 */
+	public synchronized boolean update(File file) throws IOException {
+		IndexedFile indexed = files.get(file.getAbsolutePath());
+		if (indexed != null) {
+			if (indexed.lastModified == file.lastModified() && indexed.length == file.length()) {
+				return false;
+			}
+			remove(file);
+		}
+		add(file);
+		return true;
+	}
+
+	/**
+	 * Updates index to contain only given files
+	 *
+	 * @return count of indexed files
+	 */
+	public synchronized int sync(Collection<File> gpxFiles) throws IOException {
+		Set<String> paths = new HashSet<>();
+		for (File file : gpxFiles) {
+			paths.add(file.getAbsolutePath());
+		}
+		for (String path : new ArrayList<>(files.keySet())) {
+			if (!paths.contains(path)) {
+				remove(new File(path));
+			}
+		}
+		int indexed = 0;
+		for (File file : gpxFiles) {
+			try {
+				if (update(file)) {
+					indexed++;
+				}
+			} catch (IOException e) {
+				log.error("Error indexing " + file.getAbsolutePath(), e);
+			}
+		}
+		return indexed;
+	}
+
+	public synchronized boolean remove(File file) {
+		IndexedFile indexed = files.remove(file.getAbsolutePath());
+		if (indexed == null) {
+			return false;
+		}
+		indexed.removed = true;
+		for (Chunk chunk : indexed.chunks) {
+			forEachTile(chunk, new TileVisitor() {
+				@Override
+				public void visit(long tile, Chunk chunk) {
+					List<Chunk> list = tiles.get(tile);
+					if (list != null) {
+						list.remove(chunk);
+						if (list.isEmpty()) {
+							tiles.remove(tile);
+						}
+					}
+				}
+			});
+		}
+		chunks.removeAll(new HashSet<>(indexed.chunks));
+		return true;
+	}
+
+	private void add(File file) throws IOException {
+		final IndexedFile indexed = new IndexedFile(filesById.size(), file.getAbsolutePath(), file.lastModified(), file.length());
+		final List<Chunk> newChunks = new ArrayList<>();
+		final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE * POINT_SIZE);
+		final long[] offset = {points.length()};
+		GPXStreamListener listener = new GPXStreamListener() {
+			int track = -1;
+			int segment;
+			int pointIndex;
+			int chunkStart;
+			int left, top, right, bottom;
+			long minTime, maxTime;
+
+			@Override
+			public void trackStarted() {
+				track++;
+				segment = -1;
+			}
+
+			@Override
+			public void segmentStarted() {
+				segment++;
+				pointIndex = 0;
+				chunkStart = 0;
+			}
+
+			@Override
+			public void segmentFinished() {
+				flushChunk();
+			}
+
+			@Override
+			public void pointRead(WptPt point) {
+				int x = MapUtils.get31TileNumberX(point.lon);
+				int y = MapUtils.get31TileNumberY(point.lat);
+				if (pointIndex == chunkStart) {
+					left = right = x;
+					top = bottom = y;
+					minTime = maxTime = point.time;
+				} else {
+					left = Math.min(left, x);
+					right = Math.max(right, x);
+					top = Math.min(top, y);
+					bottom = Math.max(bottom, y);
+					minTime = Math.min(minTime, point.time);
+					maxTime = Math.max(maxTime, point.time);
+				}
+				buffer.putInt(x).putInt(y).putLong(point.time);
+				pointIndex++;
+				if (pointIndex - chunkStart == CHUNK_SIZE) {
+					flushChunk();
+				}
+			}
+
+			private void flushChunk() {
+				int count = pointIndex - chunkStart;
+				if (count == 0) {
+					return;
+				}
+				try {
+					points.seek(offset[0]);
+					points.write(buffer.array(), 0, buffer.position());
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				newChunks.add(new Chunk(indexed, track, segment, chunkStart, count, left, top, right, bottom,
+						minTime, maxTime, offset[0]));
+				offset[0] += buffer.position();
+				buffer.clear();
+				chunkStart = pointIndex;
+			}
+		};
+		try {
+			new GPXStreamReader(listener).read(file);
+		} catch (IllegalStateException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+		filesById.add(indexed);
+		files.put(indexed.path, indexed);
+		for (Chunk chunk : newChunks) {
+			register(chunk);
+		}
+	}
+
+	private void register(Chunk chunk) {
+		chunk.file.chunks.add(chunk);
+		chunks.add(chunk);
+		forEachTile(chunk, new TileVisitor() {
+			@Override
+			public void visit(long tile, Chunk chunk) {
+				List<Chunk> list = tiles.get(tile);
+				if (list == null) {
+					list = new ArrayList<>(2);
+					tiles.put(tile, list);
+				}
+				list.add(chunk);
+			}
+		});
+	}
+
+	private interface TileVisitor {
+		void visit(long tile, Chunk chunk);
+	}
+
+	private static void forEachTile(Chunk chunk, TileVisitor visitor) {
+		for (int tx = chunk.left >>> TILE_SHIFT; tx <= chunk.right >>> TILE_SHIFT; tx++) {
+			for (int ty = chunk.top >>> TILE_SHIFT; ty <= chunk.bottom >>> TILE_SHIFT; ty++) {
+				visitor.visit(tileId(tx, ty), chunk);
+			}
+		}
+	}
+
+	private static long tileId(long tx, long ty) {
+		return (tx << 32) | ty;
+	}
+
+	/**
+	 * @return points of segments inside of box, grouped by consecutive chunks of segment
+	 */
+	public List<SegmentMatch> queryBox(QuadRect latLonBox) throws IOException {
+		return queryBox(latLonBox, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @return points of segments recorded in time range (inclusive)
+	 */
+	public List<SegmentMatch> queryTime(long fromTime, long toTime) throws IOException {
+		return queryBox(null, fromTime, toTime);
+	}
+
+	/**
+	 * @param latLonBox box to search or null to search only by time
+	 * @return points inside of box and time range, grouped by consecutive chunks of segment
+	 */
+	public synchronized List<SegmentMatch> queryBox(QuadRect latLonBox, long fromTime, long toTime) throws IOException {
+		int l = 0, t = 0, r = Integer.MAX_VALUE, b = Integer.MAX_VALUE;
+		if (latLonBox != null) {
+			l = MapUtils.get31TileNumberX(latLonBox.left);
+			r = MapUtils.get31TileNumberX(latLonBox.right);
+			t = MapUtils.get31TileNumberY(latLonBox.top);
+			b = MapUtils.get31TileNumberY(latLonBox.bottom);
+		}
+		List<Chunk> candidates = getChunks(l, t, r, b);
+		List<SegmentMatch> result = new ArrayList<>();
+		SegmentMatch last = null;
+		Chunk lastChunk = null;
+		for (Chunk chunk : candidates) {
+			if (chunk.maxTime < fromTime || chunk.minTime > toTime || !chunk.intersects(l, t, r, b)) {
+				continue;
+			}
+			ByteBuffer data = readPoints(chunk);
+			for (int i = 0; i < chunk.count; i++) {
+				int x = data.getInt();
+				int y = data.getInt();
+				long time = data.getLong();
+				if (x < l || x > r || y < t || y > b || time < fromTime || time > toTime) {
+					continue;
+				}
+				int pointIndex = chunk.startPoint + i;
+				boolean sameSegment = lastChunk != null && lastChunk.file == chunk.file
+						&& lastChunk.track == chunk.track && lastChunk.segment == chunk.segment;
+				if (last != null && sameSegment && last.lastPointIndex + 1 == pointIndex) {
+					last.lastPointIndex = pointIndex;
+				} else {
+					last = new SegmentMatch(new File(chunk.file.path), chunk.track, chunk.segment, pointIndex);
+					result.add(last);
+				}
+				lastChunk = chunk;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return files with points inside of box
+	 */
+	public synchronized List<File> queryFiles(QuadRect latLonBox) throws IOException {
+		List<File> result = new ArrayList<>();
+		Set<String> added = new HashSet<>();
+		for (SegmentMatch match : queryBox(latLonBox)) {
+			if (added.add(match.file.getAbsolutePath())) {
+				result.add(match.file);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return nearest track point within max distance in meters or null
+	 */
+	public synchronized PointMatch findNearestPoint(double latitude, double longitude, double maxDistance) throws IOException {
+		int x = MapUtils.get31TileNumberX(longitude);
+		int y = MapUtils.get31TileNumberY(latitude);
+		int tx = x >>> TILE_SHIFT;
+		int ty = y >>> TILE_SHIFT;
+		PointMatch best = null;
+		Set<Chunk> visited = new HashSet<>();
+		for (int ring = 0; ring <= MAX_NEAREST_RING; ring++) {
+			List<Chunk> ringChunks = new ArrayList<>();
+			for (int i = tx - ring; i <= tx + ring; i++) {
+				for (int j = ty - ring; j <= ty + ring; j++) {
+					if (Math.max(Math.abs(i - tx), Math.abs(j - ty)) != ring || i < 0 || j < 0) {
+						continue;
+					}
+					List<Chunk> list = tiles.get(tileId(i, j));
+					if (list != null) {
+						ringChunks.addAll(list);
+					}
+				}
+			}
+			for (Chunk chunk : ringChunks) {
+				if (!visited.add(chunk)) {
+					continue;
+				}
+				double bound = MapUtils.measuredDist31(x, y, clamp(x, chunk.left, chunk.right), clamp(y, chunk.top, chunk.bottom));
+				if (bound > maxDistance || (best != null && bound >= best.distance)) {
+					continue;
+				}
+				ByteBuffer data = readPoints(chunk);
+				for (int i = 0; i < chunk.count; i++) {
+					int px = data.getInt();
+					int py = data.getInt();
+					long time = data.getLong();
+					double distance = MapUtils.measuredDist31(x, y, px, py);
+					if (distance <= maxDistance && (best == null || distance < best.distance)) {
+						best = new PointMatch(chunk, i, px, py, time, distance);
+					}
+				}
+			}
+			// distance to border of checked tiles
+			long size = 1L << TILE_SHIFT;
+			int left = (int) Math.max(0, (tx - ring) * size);
+			int right = (int) Math.min(Integer.MAX_VALUE, (tx + ring + 1) * size - 1);
+			int top = (int) Math.max(0, (ty - ring) * size);
+			int bottom = (int) Math.min(Integer.MAX_VALUE, (ty + ring + 1) * size - 1);
+			double border = Math.min(Math.min(MapUtils.measuredDist31(x, y, left, y), MapUtils.measuredDist31(x, y, right, y)),
+					Math.min(MapUtils.measuredDist31(x, y, x, top), MapUtils.measuredDist31(x, y, x, bottom)));
+			if (border >= maxDistance || (best != null && border >= best.distance)) {
+				break;
+			}
+		}
+		return best;
+	}
+
+	private static int clamp(int v, int min, int max) {
+		return v < min ? min : (v > max ? max : v);
+	}
+
+	private List<Chunk> getChunks(int l, int t, int r, int b) {
+		long tilesCount = ((long) (r >>> TILE_SHIFT) - (l >>> TILE_SHIFT) + 1) * ((b >>> TILE_SHIFT) - (t >>> TILE_SHIFT) + 1);
+		if (tilesCount > MAX_QUERY_TILES || tilesCount > tiles.size()) {
+			return chunks;
+		}
+		Set<Chunk> added = new HashSet<>();
+		List<Chunk> result = new ArrayList<>();
+		for (int tx = l >>> TILE_SHIFT; tx <= r >>> TILE_SHIFT; tx++) {
+			for (int ty = t >>> TILE_SHIFT; ty <= b >>> TILE_SHIFT; ty++) {
+				List<Chunk> list = tiles.get(tileId(tx, ty));
+				if (list != null) {
+					for (Chunk chunk : list) {
+						if (added.add(chunk)) {
+							result.add(chunk);
+						}
+					}
+				}
+			}
+		}
+		// order of indexing, so consecutive points of segment are grouped
+		Collections.sort(result, new Comparator<Chunk>() {
+			@Override
+			public int compare(Chunk o1, Chunk o2) {
+				int c = Algorithms.compare(o1.file.id, o2.file.id);
+				if (c == 0) {
+					c = Algorithms.compare(o1.track, o2.track);
+				}
+				if (c == 0) {
+					c = Algorithms.compare(o1.segment, o2.segment);
+				}
+				return c != 0 ? c : Algorithms.compare(o1.startPoint, o2.startPoint);
+			}
+		});
+		return result;
+	}
+
+	private ByteBuffer readPoints(Chunk chunk) throws IOException {
+		byte[] bytes = new byte[chunk.count * POINT_SIZE];
+		points.seek(chunk.pointsOffset);
+		points.readFully(bytes);
+		return ByteBuffer.wrap(bytes);
+	}
+
+	/**
+	 * Writes index of files and chunks, points are already written to points file
+	 */
+	public synchronized void save() throws IOException {
+		File tmp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(VERSION);
+			out.writeLong(points.length());
+			out.writeInt(files.size());
+			for (IndexedFile file : files.values()) {
+				out.writeUTF(file.path);
+				out.writeLong(file.lastModified);
+				out.writeLong(file.length);
+				out.writeInt(file.chunks.size());
+				for (Chunk chunk : file.chunks) {
+					out.writeInt(chunk.track);
+					out.writeInt(chunk.segment);
+					out.writeInt(chunk.startPoint);
+					out.writeInt(chunk.count);
+					out.writeInt(chunk.left);
+					out.writeInt(chunk.top);
+					out.writeInt(chunk.right);
+					out.writeInt(chunk.bottom);
+					out.writeLong(chunk.minTime);
+					out.writeLong(chunk.maxTime);
+					out.writeLong(chunk.pointsOffset);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		points.getFD().sync();
+		if (indexFile.exists() && !indexFile.delete() || !tmp.renameTo(indexFile)) {
+			throw new IOException("Can't write " + indexFile.getAbsolutePath());
+		}
+	}
+
+	private void readIndex() throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			if (in.readInt() != VERSION) {
+				throw new IOException("Unsupported track index version");
+			}
+			long pointsLength = in.readLong();
+			if (pointsLength > pointsFile.length()) {
+				throw new IOException("Points file is truncated");
+			}
+			int filesCount = in.readInt();
+			for (int i = 0; i < filesCount; i++) {
+				IndexedFile file = new IndexedFile(filesById.size(), in.readUTF(), in.readLong(), in.readLong());
+				filesById.add(file);
+				files.put(file.path, file);
+				int chunksCount = in.readInt();
+				for (int j = 0; j < chunksCount; j++) {
+					register(new Chunk(file, in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+							in.readInt(), in.readInt(), in.readInt(), in.readLong(), in.readLong(), in.readLong()));
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void clearIndex() {
+		files.clear();
+		filesById.clear();
+		chunks.clear();
+		tiles.clear();
+	}
+
+	/**
+	 * Rewrites points file without points of removed files and saves index
+	 */
+	public synchronized void compact() throws IOException {
+		File tmp = new File(pointsFile.getParentFile(), pointsFile.getName() + ".tmp");
+		RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+		TLongArrayList offsets = new TLongArrayList(chunks.size());
+		try {
+			out.setLength(0);
+			long offset = 0;
+			for (Chunk chunk : chunks) {
+				ByteBuffer data = readPoints(chunk);
+				out.write(data.array());
+				offsets.add(offset);
+				offset += data.capacity();
+			}
+		} finally {
+			out.close();
+		}
+		points.setLength(0);
+		points.seek(0);
+		FileInputStream in = new FileInputStream(tmp);
+		try {
+			byte[] buf = new byte[1 << 16];
+			int read;
+			while ((read = in.read(buf)) != -1) {
+				points.write(buf, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		Algorithms.removeAllFiles(tmp);
+		for (int i = 0; i < chunks.size(); i++) {
+			chunks.get(i).pointsOffset = offsets.get(i);
+		}
+		save();
+	}
+}
@@ -18,6 +18,7 @@ import net.osmand.gpx.SplitMetric.TimeSplitMetric;
 import net.osmand.router.RouteColorize.ColorizationType;
 import net.osmand.util.Algorithms;
 import net.osmand.util.MapUtils;
+import net.osmand.util.SimplificationZooms;
 
 import org.apache.commons.logging.Log;
 import org.xmlpull.v1.XmlPullParser;
@@ -42,7 +43,6 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -531,10 +531,40 @@ public class GPXUtilities {
 		public List<RouteSegment> routeSegments = new ArrayList<>();
 		public List<RouteType> routeTypes = new ArrayList<>();
 
+		private byte[] minZooms;
+
 		public boolean hasRoute() {
 			return !routeSegments.isEmpty() && !routeTypes.isEmpty();
 		}
 
+		/**
+		 * @return minimal zoom of each point after simplification, calculated once and recalculated
+		 * when count of points is changed, {@link #clearMinZooms()} should be called after other changes of points
+		 */
+		public byte[] getMinZooms() {
+			byte[] zooms = minZooms;
+			if (zooms == null || zooms.length != points.size()) {
+				zooms = SimplificationZooms.calculate(points);
+				minZooms = zooms;
+			}
+			return zooms;
+		}
+
+		public void clearMinZooms() {
+			minZooms = null;
+		}
+
+		public List<WptPt> getSimplifiedPoints(int zoom) {
+			byte[] zooms = getMinZooms();
+			List<WptPt> result = new ArrayList<>();
+			for (int i = 0; i < zooms.length; i++) {
+				if (zooms[i] <= zoom) {
+					result.add(points.get(i));
+				}
+			}
+			return result;
+		}
+
 		public List<GPXTrackAnalysis> splitByDistance(double meters, boolean joinSegments) {
 			return split(new DistanceSplitMetric(), new TimeSplitMetric(), meters, joinSegments);
 		}
@@ -900,11 +930,14 @@ public class GPXUtilities {
 	}
 
 	public static Exception writeGpx(Writer output, GPXFile file, IProgress progress) {
+		return writeGpx(new GPXXmlWriter(), output, file, progress);
+	}
+
+	static Exception writeGpx(XmlSerializer serializer, Writer output, GPXFile file, IProgress progress) {
 		if (progress != null) {
 			progress.startWork(file.getItemsToWriteSize());
 		}
 		try {
-			XmlSerializer serializer = PlatformUtil.newSerializer();
 			serializer.setOutput(output);
 			serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true); //$NON-NLS-1$
 			serializer.startDocument("UTF-8", true); //$NON-NLS-1$
@@ -1135,11 +1168,11 @@ public class GPXUtilities {
 	}
 
 	private static void writeWpt(XmlSerializer serializer, WptPt p, IProgress progress) throws IOException {
-		serializer.attribute(null, "lat", LAT_LON_FORMAT.format(p.lat));
-		serializer.attribute(null, "lon", LAT_LON_FORMAT.format(p.lon));
+		serializer.attribute(null, "lat", GPXFormat.formatLatLon(p.lat));
+		serializer.attribute(null, "lon", GPXFormat.formatLatLon(p.lon));
 
 		if (!Double.isNaN(p.ele)) {
-			writeNotNullText(serializer, POINT_ELEVATION, DECIMAL_FORMAT.format(p.ele));
+			writeNotNullText(serializer, POINT_ELEVATION, GPXFormat.formatDecimal(p.ele));
 		}
 		if (p.time != 0) {
 			writeNotNullText(serializer, "time", formatTime(p.time));
@@ -1151,10 +1184,10 @@ public class GPXUtilities {
 		writeNotNullText(serializer, "cmt", p.comment);
 
 		if (!Double.isNaN(p.hdop)) {
-			writeNotNullText(serializer, "hdop", DECIMAL_FORMAT.format(p.hdop));
+			writeNotNullText(serializer, "hdop", GPXFormat.formatDecimal(p.hdop));
 		}
 		if (p.speed > 0) {
-			p.getExtensionsToWrite().put(POINT_SPEED, DECIMAL_FORMAT.format(p.speed));
+			p.getExtensionsToWrite().put(POINT_SPEED, GPXFormat.formatDecimal(p.speed));
 		}
 		if (!Float.isNaN(p.heading)) {
 			p.getExtensionsToWrite().put("heading", String.valueOf(Math.round(p.heading)));
@@ -1200,10 +1233,10 @@ public class GPXUtilities {
 
 	private static void writeBounds(XmlSerializer serializer, Bounds bounds) throws IOException {
 		serializer.startTag(null, "bounds");
-		serializer.attribute(null, "minlat", LAT_LON_FORMAT.format(bounds.minlat));
-		serializer.attribute(null, "minlon", LAT_LON_FORMAT.format(bounds.minlon));
-		serializer.attribute(null, "maxlat", LAT_LON_FORMAT.format(bounds.maxlat));
-		serializer.attribute(null, "maxlon", LAT_LON_FORMAT.format(bounds.maxlon));
+		serializer.attribute(null, "minlat", GPXFormat.formatLatLon(bounds.minlat));
+		serializer.attribute(null, "minlon", GPXFormat.formatLatLon(bounds.minlon));
+		serializer.attribute(null, "maxlat", GPXFormat.formatLatLon(bounds.maxlat));
+		serializer.attribute(null, "maxlon", GPXFormat.formatLatLon(bounds.maxlon));
 		serializer.endTag(null, "bounds");
 	}
 
@@ -1274,11 +1307,16 @@ public class GPXUtilities {
 	}
 
 	public static String formatTime(long time) {
-		SimpleDateFormat format = getTimeFormatter();
-		return format.format(new Date(time));
+		return GPXFormat.formatTime(time);
 	}
 
 	public static long parseTime(String text) {
+		if (text != null) {
+			long time = GPXTimeParser.parse(text, !GPX_TIME_OLD_FORMAT);
+			if (time != GPXTimeParser.INVALID_TIME) {
+				return time;
+			}
+		}
 		if (GPX_TIME_OLD_FORMAT) {
 			return parseTime(text, getTimeFormatter(), getTimeFormatterMills());
 		} else {
@@ -1765,7 +1803,7 @@ public class GPXUtilities {
 		return pointsGroups;
 	}
 
-	private static Reader getUTF8Reader(InputStream f) throws IOException {
+	static Reader getUTF8Reader(InputStream f) throws IOException {
 		BufferedInputStream bis = new BufferedInputStream(f);
 		assert bis.markSupported();
 		bis.mark(3);
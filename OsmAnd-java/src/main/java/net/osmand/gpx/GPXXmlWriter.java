@@ -0,0 +1,333 @@
+package net.osmand.gpx;
+
+import net.osmand.util.Algorithms;
+
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Xml serializer for gpx which writes the same output as KXmlSerializer, but escapes text in bulk
+ * into own char buffer instead of writing every char to output. Namespaces are not supported,
+ * gpx uses prefixed names and declares them with attributes.
+ */
+public class GPXXmlWriter implements XmlSerializer {
+
+	private static final String INDENT_OUTPUT_FEATURE = "http://xmlpull.org/v1/doc/features.html#indent-output";
+	private static final int BUFFER_SIZE = 8192;
+
+	private Writer writer;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int bufferSize;
+
+	private boolean pending;
+	private int depth;
+	private String[] names = new String[16];
+	private boolean[] indent = new boolean[16];
+	private boolean unicode;
+
+	@Override
+	public void setFeature(String name, boolean state) {
+		if (INDENT_OUTPUT_FEATURE.equals(name)) {
+			indent[depth] = state;
+		} else {
+			throw new RuntimeException("Unsupported Feature");
+		}
+	}
+
+	@Override
+	public boolean getFeature(String name) {
+		return INDENT_OUTPUT_FEATURE.equals(name) && indent[depth];
+	}
+
+	@Override
+	public void setProperty(String name, Object value) {
+		throw new RuntimeException("Unsupported Property:" + value);
+	}
+
+	@Override
+	public Object getProperty(String name) {
+		return null;
+	}
+
+	@Override
+	public void setOutput(OutputStream os, String encoding) throws IOException {
+		if (os == null) {
+			throw new IllegalArgumentException();
+		}
+		setOutput(encoding == null ? new OutputStreamWriter(os) : new OutputStreamWriter(os, encoding));
+		if (encoding != null && encoding.toLowerCase().startsWith("utf")) {
+			unicode = true;
+		}
+	}
+
+	@Override
+	public void setOutput(Writer writer) {
+		this.writer = writer;
+		bufferSize = 0;
+		pending = false;
+		depth = 0;
+		unicode = false;
+	}
+
+	@Override
+	public void startDocument(String encoding, Boolean standalone) throws IOException {
+		write("<?xml version='1.0' ");
+		if (encoding != null) {
+			if (encoding.toLowerCase().startsWith("utf")) {
+				unicode = true;
+			}
+			write("encoding='");
+			write(encoding);
+			write("' ");
+		}
+		if (standalone != null) {
+			write("standalone='");
+			write(standalone ? "yes" : "no");
+			write("' ");
+		}
+		write("?>");
+	}
+
+	@Override
+	public void endDocument() throws IOException {
+		while (depth > 0) {
+			endTag(null, names[depth - 1]);
+		}
+		flush();
+	}
+
+	@Override
+	public void setPrefix(String prefix, String namespace) {
+		throw new UnsupportedOperationException("Namespaces are not supported");
+	}
+
+	@Override
+	public String getPrefix(String namespace, boolean generatePrefix) {
+		return Algorithms.isEmpty(namespace) ? "" : null;
+	}
+
+	@Override
+	public int getDepth() {
+		return pending ? depth + 1 : depth;
+	}
+
+	@Override
+	public String getNamespace() {
+		return getDepth() == 0 ? null : "";
+	}
+
+	@Override
+	public String getName() {
+		int d = getDepth();
+		return d == 0 ? null : names[d - 1];
+	}
+
+	@Override
+	public XmlSerializer startTag(String namespace, String name) throws IOException {
+		checkNamespace(namespace);
+		check(false);
+		if (indent[depth]) {
+			writeIndent();
+		}
+		if (depth == names.length) {
+			names = Arrays.copyOf(names, depth * 2);
+		}
+		names[depth] = name;
+		write('<');
+		write(name);
+		pending = true;
+		return this;
+	}
+
+	@Override
+	public XmlSerializer attribute(String namespace, String name, String value) throws IOException {
+		if (!pending) {
+			throw new IllegalStateException("illegal position for attribute");
+		}
+		checkNamespace(namespace);
+		write(' ');
+		write(name);
+		write('=');
+		char quote = value.indexOf('"') == -1 ? '"' : '\'';
+		write(quote);
+		writeEscaped(value, quote);
+		write(quote);
+		return this;
+	}
+
+	@Override
+	public XmlSerializer endTag(String namespace, String name) throws IOException {
+		if (!pending) {
+			depth--;
+		}
+		if (depth < 0 || !names[depth].equals(name)) {
+			throw new IllegalArgumentException("start/end tag mismatch");
+		}
+		if (pending) {
+			check(true);
+			depth--;
+		} else {
+			if (indent[depth + 1]) {
+				writeIndent();
+			}
+			write("</");
+			write(name);
+			write('>');
+		}
+		return this;
+	}
+
+	@Override
+	public XmlSerializer text(String text) throws IOException {
+		check(false);
+		indent[depth] = false;
+		writeEscaped(text, -1);
+		return this;
+	}
+
+	@Override
+	public XmlSerializer text(char[] buf, int start, int len) throws IOException {
+		return text(new String(buf, start, len));
+	}
+
+	@Override
+	public void cdsect(String text) throws IOException {
+		check(false);
+		write("<![CDATA[");
+		write(text);
+		write("]]>");
+	}
+
+	@Override
+	public void entityRef(String text) throws IOException {
+		check(false);
+		write('&');
+		write(text);
+		write(';');
+	}
+
+	@Override
+	public void processingInstruction(String text) throws IOException {
+		check(false);
+		write("<?");
+		write(text);
+		write("?>");
+	}
+
+	@Override
+	public void comment(String text) throws IOException {
+		check(false);
+		write("<!--");
+		write(text);
+		write("-->");
+	}
+
+	@Override
+	public void docdecl(String text) throws IOException {
+		write("<!DOCTYPE");
+		write(text);
+		write(">");
+	}
+
+	@Override
+	public void ignorableWhitespace(String text) throws IOException {
+		text(text);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		check(false);
+		flushBuffer();
+		writer.flush();
+	}
+
+	private void checkNamespace(String namespace) {
+		if (!Algorithms.isEmpty(namespace)) {
+			throw new UnsupportedOperationException("Namespaces are not supported");
+		}
+	}
+
+	// closes start tag of pending element
+	private void check(boolean close) throws IOException {
+		if (!pending) {
+			return;
+		}
+		depth++;
+		pending = false;
+		if (indent.length <= depth) {
+			indent = Arrays.copyOf(indent, depth + 4);
+		}
+		indent[depth] = indent[depth - 1];
+		write(close ? " />" : ">");
+	}
+
+	private void writeIndent() throws IOException {
+		write('\r');
+		write('\n');
+		for (int i = 0; i < depth; i++) {
+			write(' ');
+			write(' ');
+		}
+	}
+
+	private void writeEscaped(String s, int quote) throws IOException {
+		int length = s.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			String replacement;
+			if (c == '&') {
+				replacement = "&amp;";
+			} else if (c == '>') {
+				replacement = "&gt;";
+			} else if (c == '<') {
+				replacement = "&lt;";
+			} else if (c == quote) {
+				replacement = c == '"' ? "&quot;" : "&apos;";
+			} else if (c >= 127 && !unicode) {
+				replacement = "&#" + (int) c + ";";
+			} else {
+				continue;
+			}
+			write(s, start, i);
+			write(replacement);
+			start = i + 1;
+		}
+		write(s, start, length);
+	}
+
+	private void write(char c) throws IOException {
+		if (bufferSize == buffer.length) {
+			flushBuffer();
+		}
+		buffer[bufferSize++] = c;
+	}
+
+	private void write(String s) throws IOException {
+		write(s, 0, s.length());
+	}
+
+	private void write(String s, int start, int end) throws IOException {
+		while (start < end) {
+			if (bufferSize == buffer.length) {
+				flushBuffer();
+			}
+			int count = Math.min(end - start, buffer.length - bufferSize);
+			s.getChars(start, start + count, buffer, bufferSize);
+			bufferSize += count;
+			start += count;
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if (bufferSize > 0) {
+			writer.write(buffer, 0, bufferSize);
+			bufferSize = 0;
+		}
+	}
+}
@@ -0,0 +1,436 @@
+package net.osmand.gpx;
+
+import net.osmand.Location;
+import net.osmand.data.LatLon;
+import net.osmand.gpx.ElevationDiffsCalculator.Extremum;
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.util.MapUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Analysis of recorded track which is updated by appended points instead of analysing all points again.
+ * Values are the same as {@link GPXTrackAnalysis#prepareInformation(long, GPXTrackAnalysis.TrackPointsAnalyser, SplitSegment...)}
+ * gives for segments of points, without point attributes. Elevation gain and loss are calculated by
+ * {@link ElevationApproximator} and {@link ElevationDiffsCalculator} logic over window of approximated points,
+ * extremums far enough from the end of window are fixed and points before them are dropped, so results
+ * could differ from analysis of whole segment only after window is filled.
+ */
+public class IncrementalTrackAnalyser {
+
+	public static final int DEFAULT_ELEVATION_WINDOW = 512;
+
+	private final int elevationWindow;
+
+	private int points;
+	private int totalTracks;
+	private float totalDistance;
+	private float totalDistanceMoving;
+	private long timeMoving;
+	private long startTime = Long.MAX_VALUE;
+	private long endTime = Long.MIN_VALUE;
+	private double left;
+	private double right;
+	private double top;
+	private double bottom;
+	private double minHdop = Double.NaN;
+	private double maxHdop = Double.NaN;
+	private float minSpeed = Float.MAX_VALUE;
+	private float maxSpeed;
+	private double totalSpeedSum;
+	private int speedCount;
+	private float totalElevation;
+	private int elevationPoints;
+	private double minElevation = 99999;
+	private double maxElevation = -100;
+	private boolean hasSpeedInTrack;
+	private boolean elevationData;
+	private boolean speedData;
+	private WptPt locationStart;
+	private WptPt locationEnd;
+	private double diffElevationUp;
+	private double diffElevationDown;
+
+	// current segment, first point is analysed with second one as segments of one point are skipped
+	private int segmentPoints;
+	private float segmentDistance;
+	private WptPt prev;
+	private ElevationDiffs segmentElevation;
+	private final float[] calculations = new float[1];
+
+	public IncrementalTrackAnalyser() {
+		this(DEFAULT_ELEVATION_WINDOW);
+	}
+
+	/**
+	 * @param elevationWindow count of approximated points kept after last fixed extremum
+	 */
+	public IncrementalTrackAnalyser(int elevationWindow) {
+		this.elevationWindow = Math.max(4, elevationWindow);
+	}
+
+	public void startSegment() {
+		finishSegment();
+		totalTracks++;
+		segmentPoints = 0;
+		segmentDistance = 0;
+		prev = null;
+		segmentElevation = new ElevationDiffs(elevationWindow);
+	}
+
+	public void addPoints(List<WptPt> points) {
+		for (WptPt point : points) {
+			addPoint(point);
+		}
+	}
+
+	/**
+	 * Adds point to current segment, distance of point is set as in analysis
+	 */
+	public void addPoint(WptPt point) {
+		if (segmentElevation == null) {
+			startSegment();
+		}
+		segmentPoints++;
+		if (segmentPoints == 1) {
+			prev = point;
+			return;
+		}
+		if (segmentPoints == 2) {
+			analysePoint(prev, null);
+		}
+		analysePoint(point, prev);
+		prev = point;
+	}
+
+	private void finishSegment() {
+		if (segmentElevation != null && segmentPoints > 1) {
+			double[] diffs = segmentElevation.calculate();
+			diffElevationUp += diffs[0];
+			diffElevationDown += diffs[1];
+		}
+	}
+
+	private void analysePoint(WptPt point, WptPt prev) {
+		points++;
+		if (locationStart == null) {
+			locationStart = point;
+		}
+		locationEnd = point;
+		long time = point.time;
+		if (time != 0) {
+			startTime = Math.min(startTime, time);
+			endTime = Math.max(endTime, time);
+		}
+		if (left == 0 && right == 0) {
+			left = point.getLongitude();
+			right = point.getLongitude();
+			top = point.getLatitude();
+			bottom = point.getLatitude();
+		} else {
+			left = Math.min(left, point.getLongitude());
+			right = Math.max(right, point.getLongitude());
+			top = Math.max(top, point.getLatitude());
+			bottom = Math.min(bottom, point.getLatitude());
+		}
+		float speed = (float) point.speed;
+		if (speed > 0) {
+			hasSpeedInTrack = true;
+		}
+		double hdop = point.hdop;
+		if (hdop > 0) {
+			if (Double.isNaN(minHdop) || hdop < minHdop) {
+				minHdop = hdop;
+			}
+			if (Double.isNaN(maxHdop) || hdop > maxHdop) {
+				maxHdop = hdop;
+			}
+		}
+		if (prev != null) {
+			Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
+			float distance = calculations[0];
+			totalDistance += distance;
+			segmentDistance += distance;
+			point.distance = segmentDistance;
+			long timeDiffMillis = Math.max(0, point.time - prev.time);
+			int timeDiff = (int) (timeDiffMillis / 1000);
+			if (!hasSpeedInTrack && speed == 0 && timeDiff > 0) {
+				speed = distance / timeDiff;
+			}
+			boolean timeSpecified = point.time != 0 && prev.time != 0;
+			if (speed > 0 && timeSpecified && distance > timeDiffMillis / 10000f) {
+				timeMoving = timeMoving + timeDiffMillis;
+				totalDistanceMoving += distance;
+			}
+		}
+		minSpeed = Math.min(speed, minSpeed);
+		if (speed > 0) {
+			totalSpeedSum += speed;
+			maxSpeed = Math.max(speed, maxSpeed);
+			speedCount++;
+			speedData |= totalDistance > 0;
+		}
+		if (!Double.isNaN(point.ele)) {
+			totalElevation += point.ele;
+			elevationPoints++;
+			minElevation = Math.min(point.ele, minElevation);
+			maxElevation = Math.max(point.ele, maxElevation);
+			elevationData |= totalDistance > 0;
+		}
+		segmentElevation.add(point.lat, point.lon, point.ele);
+	}
+
+	public int getPointsCount() {
+		return points;
+	}
+
+	// elevation diffs of current segment could differ from analysis of whole segment
+	boolean isElevationWindowFilled() {
+		return segmentElevation != null && segmentElevation.windowFilled;
+	}
+
+	/**
+	 * @return new analysis of added points
+	 */
+	public GPXTrackAnalysis getAnalysis(long fileTimestamp) {
+		GPXTrackAnalysis analysis = new GPXTrackAnalysis();
+		analysis.totalTracks = totalTracks;
+		analysis.points = points;
+		analysis.totalDistance = totalDistance;
+		analysis.totalDistanceMoving = totalDistanceMoving;
+		analysis.timeMoving = timeMoving;
+		analysis.startTime = startTime;
+		analysis.endTime = endTime;
+		analysis.left = left;
+		analysis.right = right;
+		analysis.top = top;
+		analysis.bottom = bottom;
+		analysis.minHdop = minHdop;
+		analysis.maxHdop = maxHdop;
+		analysis.minSpeed = minSpeed;
+		analysis.maxSpeed = maxSpeed;
+		analysis.minElevation = minElevation;
+		analysis.maxElevation = maxElevation;
+		analysis.hasSpeedInTrack = hasSpeedInTrack;
+		analysis.locationStart = locationStart;
+		analysis.locationEnd = locationEnd;
+		if (locationStart != null) {
+			analysis.latLonStart = new LatLon(locationStart.lat, locationStart.lon);
+		}
+		analysis.pointsAttributesData = new HashMap<>();
+		analysis.getElevationData().setHasData(elevationData);
+		analysis.getSpeedData().setHasData(speedData);
+
+		analysis.diffElevationUp = diffElevationUp;
+		analysis.diffElevationDown = diffElevationDown;
+		if (segmentElevation != null && segmentPoints > 1) {
+			double[] diffs = segmentElevation.calculate();
+			analysis.diffElevationUp += diffs[0];
+			analysis.diffElevationDown += diffs[1];
+		}
+
+		if (!analysis.isTimeSpecified()) {
+			analysis.startTime = fileTimestamp;
+			analysis.endTime = fileTimestamp;
+		}
+		analysis.timeSpan = analysis.endTime - analysis.startTime;
+		if (elevationPoints > 0) {
+			analysis.avgElevation = totalElevation / elevationPoints;
+		}
+		if (speedCount > 0) {
+			if (timeMoving > 0) {
+				analysis.avgSpeed = totalDistanceMoving / (float) timeMoving * 1000f;
+			} else {
+				analysis.avgSpeed = (float) totalSpeedSum / (float) speedCount;
+			}
+		} else {
+			analysis.avgSpeed = -1;
+		}
+		return analysis;
+	}
+
+	/**
+	 * Approximation of {@link ElevationApproximator} done point by point: point survives if elevation changes
+	 * in the same direction before and after it (so it waits for next point) and slope from previous survived
+	 * point is not too big. Survived points are kept in window for {@link ElevationDiffsCalculator}.
+	 */
+	private static class ElevationDiffs {
+
+		private static final double SLOPE_THRESHOLD = 70.0;
+		private static final int MIN_POINTS = 4;
+
+		private final int window;
+
+		private int count;
+		private int firstPassCount;
+		private int secondPassCount;
+		private double firstPassEle;
+		private double lastLat;
+		private double lastLon;
+		private double lastEle;
+		// last point, it survives first pass as last point or as middle point when next point is added
+		private double pendingLat;
+		private double pendingLon;
+		private double pendingEle;
+
+		private double[] distances;
+		private double[] elevations;
+		private int size;
+		private double fixedUp;
+		private double fixedDown;
+		private boolean windowFilled;
+
+		ElevationDiffs(int window) {
+			this.window = window;
+			distances = new double[window * 2 + 1];
+			elevations = new double[window * 2 + 1];
+		}
+
+		void add(double lat, double lon, double ele) {
+			if (count == 0) {
+				firstPassCount = 1;
+				secondPassCount = 1;
+				firstPassEle = ele;
+				lastLat = lat;
+				lastLon = lon;
+				lastEle = ele;
+				append(0, ele);
+			} else if (count > 1) {
+				if ((pendingEle - firstPassEle) * (ele - pendingEle) > 0) {
+					firstPassEle = pendingEle;
+					firstPassCount++;
+					double dist = slopeDistance(pendingLat, pendingLon, pendingEle);
+					if (!Double.isNaN(dist)) {
+						lastLat = pendingLat;
+						lastLon = pendingLon;
+						lastEle = pendingEle;
+						secondPassCount++;
+						append(dist, pendingEle);
+					}
+				}
+			}
+			if (count > 0) {
+				pendingLat = lat;
+				pendingLon = lon;
+				pendingEle = ele;
+			}
+			count++;
+		}
+
+		// distance from last survived point or NaN if slope is too big
+		private double slopeDistance(double lat, double lon, double ele) {
+			double dist = MapUtils.getDistance(lat, lon, lastLat, lastLon);
+			double slope = (ele - lastEle) * 100 / dist;
+			return Math.abs(slope) > SLOPE_THRESHOLD ? Double.NaN : dist;
+		}
+
+		private void append(double dist, double ele) {
+			distances[size] = dist;
+			elevations[size] = ele;
+			size++;
+			if (size == distances.length) {
+				fixExtremums();
+			}
+		}
+
+		// fixes elevation diffs till last extremum which has window of points after it
+		private void fixExtremums() {
+			windowFilled = true;
+			Calculator calculator = new Calculator(distances, elevations, size);
+			calculator.calculateElevationDiffs();
+			List<Extremum> extremums = calculator.getExtremums();
+			int last = 0;
+			double up = 0;
+			double down = 0;
+			int index = 0;
+			for (int i = 1; i < extremums.size(); i++) {
+				Extremum e = extremums.get(i);
+				index++;
+				while (index < size && (Double.compare(distances[index], e.getDist()) != 0
+						|| Double.compare(elevations[index], e.getEle()) != 0)) {
+					index++;
+				}
+				if (index > size - 1 - window) {
+					break;
+				}
+				double diff = e.getEle() - extremums.get(i - 1).getEle();
+				if (diff > 0) {
+					up += diff;
+				} else {
+					down -= diff;
+				}
+				last = index;
+			}
+			if (last > 0) {
+				fixedUp += up;
+				fixedDown += down;
+				System.arraycopy(distances, last, distances, 0, size - last);
+				System.arraycopy(elevations, last, elevations, 0, size - last);
+				size -= last;
+			} else {
+				// points before window don't differ from line to next extremum
+				int from = size - window;
+				System.arraycopy(distances, from, distances, 1, window);
+				System.arraycopy(elevations, from, elevations, 1, window);
+				size = window + 1;
+			}
+		}
+
+		/**
+		 * @return {up, down} of all added points
+		 */
+		double[] calculate() {
+			double[] res = new double[] {fixedUp, fixedDown};
+			if (count < MIN_POINTS || firstPassCount + 1 < MIN_POINTS) {
+				return new double[2];
+			}
+			double[] dist = Arrays.copyOf(distances, size + 1);
+			double[] ele = Arrays.copyOf(elevations, size + 1);
+			int n = size;
+			double lastDist = slopeDistance(pendingLat, pendingLon, pendingEle);
+			if (!Double.isNaN(lastDist)) {
+				dist[n] = lastDist;
+				ele[n] = pendingEle;
+				n++;
+			}
+			if (secondPassCount + (n - size) < MIN_POINTS) {
+				return new double[2];
+			}
+			Calculator calculator = new Calculator(dist, ele, n);
+			calculator.calculateElevationDiffs();
+			res[0] += calculator.getDiffElevationUp();
+			res[1] += calculator.getDiffElevationDown();
+			return res;
+		}
+	}
+
+	private static class Calculator extends ElevationDiffsCalculator {
+
+		private final double[] distances;
+		private final double[] elevations;
+		private final int size;
+
+		Calculator(double[] distances, double[] elevations, int size) {
+			this.distances = distances;
+			this.elevations = elevations;
+			this.size = size;
+		}
+
+		@Override
+		public double getPointDistance(int index) {
+			return distances[index];
+		}
+
+		@Override
+		public double getPointElevation(int index) {
+			return elevations[index];
+		}
+
+		@Override
+		public int getPointsCount() {
+			return size;
+		}
+	}
+}
@@ -51,6 +51,7 @@ public class MapPoiTypes {
 	public static final String ROUTE_TRACK_POINT = "route_track_point";
 
 	private PoiTranslator poiTranslator = null;
+	private PoiTypeNameIndex nameIndex;
 	private boolean init;
 	Map<String, PoiType> poiTypesByTag = new LinkedHashMap<String, PoiType>();
 	Map<String, String> deprecatedTags = new LinkedHashMap<String, String>();
@@ -331,6 +332,7 @@ public class MapPoiTypes {
 		List<PoiCategory> categories = new ArrayList<>(this.categories);
 		categories.add(category);
 		this.categories = categories;
+		nameIndex = null;
 	}
 
 	public PoiTranslator getPoiTranslator() {
@@ -342,6 +344,35 @@ public class MapPoiTypes {
 		List<PoiCategory> categories = new ArrayList<>(this.categories);
 		sortList(categories);
 		this.categories = categories;
+		nameIndex = null;
+	}
+
+	/**
+	 * @return index of names of all categories, filters, types and their additionals, built once for current translator
+	 */
+	public synchronized PoiTypeNameIndex getNameIndex() {
+		if (nameIndex == null) {
+			List<AbstractPoiType> types = new ArrayList<>();
+			for (PoiCategory pc : categories) {
+				addWithAdditionals(types, pc);
+				for (PoiFilter pf : pc.getPoiFilters()) {
+					addWithAdditionals(types, pf);
+				}
+				for (PoiType pt : pc.getPoiTypes()) {
+					addWithAdditionals(types, pt);
+				}
+			}
+			nameIndex = new PoiTypeNameIndex(types);
+		}
+		return nameIndex;
+	}
+
+	private void addWithAdditionals(List<AbstractPoiType> types, AbstractPoiType pt) {
+		types.add(pt);
+		List<PoiType> additionals = pt.getPoiAdditionals();
+		if (additionals != null) {
+			types.addAll(additionals);
+		}
 	}
 
 	public void init() {
@@ -551,6 +582,7 @@ public class MapPoiTypes {
 			}
 		}
 		this.categories = categoriesList;
+		this.nameIndex = null;
 		this.poiTypesByTag = poiTypesByTag;
 		this.deprecatedTags = deprecatedTags;
 		this.poiAdditionalCategoryIconNames = poiAdditionalCategoryIconNames;
@@ -0,0 +1,168 @@
+package net.osmand.osm;
+
+import net.osmand.FoldedStringMatcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Words of translated, english and key names and synonyms of poi types in folded form
+ * ({@link FoldedStringMatcher#fold(String)}). Distinct words are sorted and packed into one char array together
+ * with ids of types having the word, so types having a word with given prefix are found by binary search
+ * and search by name checks only these types instead of all of them.
+ */
+public class PoiTypeNameIndex {
+
+	// word i is chars[wordOffset[i]] ... chars[wordOffset[i + 1] - 1]
+	private final char[] chars;
+	private final int[] wordOffset;
+	// types of word i are types[typeIds[wordStart[i]]] ... types[typeIds[wordStart[i + 1] - 1]]
+	private final int[] wordStart;
+	private final int[] typeIds;
+	private final AbstractPoiType[] types;
+	private final Set<AbstractPoiType> indexed;
+
+	public PoiTypeNameIndex(Collection<? extends AbstractPoiType> poiTypes) {
+		TreeMap<String, TIntArrayList> wordTypes = new TreeMap<>();
+		List<AbstractPoiType> typesList = new ArrayList<>();
+		List<String> nameWords = new ArrayList<>();
+		indexed = Collections.newSetFromMap(new IdentityHashMap<AbstractPoiType, Boolean>());
+		for (AbstractPoiType pt : poiTypes) {
+			if (!indexed.add(pt)) {
+				continue;
+			}
+			int id = typesList.size();
+			typesList.add(pt);
+			nameWords.clear();
+			addWords(pt.getTranslation(), nameWords);
+			addWords(pt.getEnTranslation(), nameWords);
+			addWords(pt.getKeyName(), nameWords);
+			addWords(pt.getSynonyms(), nameWords);
+			for (String w : nameWords) {
+				TIntArrayList ids = wordTypes.get(w);
+				if (ids == null) {
+					ids = new TIntArrayList(1);
+					wordTypes.put(w, ids);
+				}
+				if (ids.isEmpty() || ids.get(ids.size() - 1) != id) {
+					ids.add(id);
+				}
+			}
+		}
+		types = typesList.toArray(new AbstractPoiType[typesList.size()]);
+		wordOffset = new int[wordTypes.size() + 1];
+		wordStart = new int[wordTypes.size() + 1];
+		StringBuilder allChars = new StringBuilder();
+		TIntArrayList allIds = new TIntArrayList();
+		int i = 0;
+		for (Map.Entry<String, TIntArrayList> e : wordTypes.entrySet()) {
+			wordOffset[i] = allChars.length();
+			allChars.append(e.getKey());
+			wordStart[i] = allIds.size();
+			allIds.add(e.getValue().toArray());
+			i++;
+		}
+		wordOffset[i] = allChars.length();
+		wordStart[i] = allIds.size();
+		chars = new char[allChars.length()];
+		allChars.getChars(0, chars.length, chars, 0);
+		typeIds = allIds.toArray();
+	}
+
+	private static void addWords(String name, List<String> wordsList) {
+		if (name == null) {
+			return;
+		}
+		String folded = FoldedStringMatcher.fold(name);
+		int start = -1;
+		for (int i = 0; i <= folded.length(); i++) {
+			boolean space = i == folded.length() || isSpace(folded.charAt(i));
+			if (space && start >= 0) {
+				wordsList.add(folded.substring(start, i));
+				start = -1;
+			} else if (!space && start < 0) {
+				start = i;
+			}
+		}
+	}
+
+	private static boolean isSpace(char c) {
+		return !Character.isLetter(c) && !Character.isDigit(c);
+	}
+
+	public int getWordsCount() {
+		return wordOffset.length - 1;
+	}
+
+	public boolean isIndexed(AbstractPoiType pt) {
+		return indexed.contains(pt);
+	}
+
+	/**
+	 * @param query folded query, only its first word is looked up
+	 * @return types having a word which starts with first word of query,
+	 * null if query doesn't start with a word and any type could match
+	 */
+	public Set<AbstractPoiType> getTypesByFirstWord(String query) {
+		int end = 0;
+		while (end < query.length() && !isSpace(query.charAt(end))) {
+			end++;
+		}
+		if (end == 0) {
+			return null;
+		}
+		String prefix = query.substring(0, end);
+		Set<AbstractPoiType> res = Collections.newSetFromMap(new IdentityHashMap<AbstractPoiType, Boolean>());
+		int count = getWordsCount();
+		int lo = 0;
+		int hi = count;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compare(mid, prefix) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		for (int i = lo; i < count && startsWith(i, prefix); i++) {
+			for (int j = wordStart[i]; j < wordStart[i + 1]; j++) {
+				res.add(types[typeIds[j]]);
+			}
+		}
+		return res;
+	}
+
+	private int compare(int word, String s) {
+		int start = wordOffset[word];
+		int len = wordOffset[word + 1] - start;
+		int n = Math.min(len, s.length());
+		for (int k = 0; k < n; k++) {
+			char c = chars[start + k];
+			if (c != s.charAt(k)) {
+				return c - s.charAt(k);
+			}
+		}
+		return len - s.length();
+	}
+
+	private boolean startsWith(int word, String prefix) {
+		int start = wordOffset[word];
+		if (wordOffset[word + 1] - start < prefix.length()) {
+			return false;
+		}
+		for (int k = 0; k < prefix.length(); k++) {
+			if (chars[start + k] != prefix.charAt(k)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
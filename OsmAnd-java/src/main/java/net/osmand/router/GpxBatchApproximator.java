@@ -0,0 +1,476 @@
+package net.osmand.router;
+
+import net.osmand.Location;
+import net.osmand.LocationsHolder;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapReadersLoader;
+import net.osmand.binary.BinaryMapReadersLoader.LoadedReader;
+import net.osmand.binary.CachedOsmandIndexes;
+import net.osmand.binary.OsmandIndex.FileIndex;
+import net.osmand.data.LatLon;
+import net.osmand.gpx.GPXFile;
+import net.osmand.gpx.GPXTrackAnalysis;
+import net.osmand.gpx.GPXUtilities;
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.Algorithms;
+
+import org.apache.commons.logging.Log;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Console utility to attach directory of gpx tracks to roads. Tracks are approximated, analysed and exported
+ * as routes in parallel. Headers of obf files are parsed once into {@link CachedOsmandIndexes}, each worker thread
+ * has own routing context and own readers created from cached indexes, which are used for all tracks of the worker.
+ * Report with times and quality of approximation of each track is written to output directory.
+ */
+public class GpxBatchApproximator {
+
+	private static final Log log = PlatformUtil.getLog(GpxBatchApproximator.class);
+
+	public static final String REPORT_FILE_NAME = "report.csv";
+	public static final String GPX_EXT = ".gpx";
+	public static final int DEFAULT_MEMORY_LIMIT = 256;
+
+	private final List<File> obfFiles;
+	private final RoutingConfiguration.Builder configBuilder;
+	private final String vehicle;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int memoryLimit = DEFAULT_MEMORY_LIMIT;
+	private float minPointApproximation = -1;
+	private CachedOsmandIndexes indexesCache;
+
+	public static class Parameters {
+		public File obfDir;
+		public File gpxDir;
+		public File outDir;
+		public RoutingConfiguration.Builder configBuilder;
+		public String vehicle = "car";
+		public int threads = Runtime.getRuntime().availableProcessors();
+		public int memoryLimit = DEFAULT_MEMORY_LIMIT;
+		public float minPointApproximation = -1;
+
+		public static Parameters init(String[] args) throws IOException, XmlPullParserException {
+			Parameters p = new Parameters();
+			String routingXmlFile = null;
+			for (String a : args) {
+				if (a.startsWith("-routingXmlPath=")) {
+					routingXmlFile = a.substring("-routingXmlPath=".length());
+				} else if (a.startsWith("-obfDir=")) {
+					p.obfDir = new File(a.substring("-obfDir=".length()));
+				} else if (a.startsWith("-gpxDir=")) {
+					p.gpxDir = new File(a.substring("-gpxDir=".length()));
+				} else if (a.startsWith("-outDir=")) {
+					p.outDir = new File(a.substring("-outDir=".length()));
+				} else if (a.startsWith("-vehicle=")) {
+					p.vehicle = a.substring("-vehicle=".length());
+				} else if (a.startsWith("-threads=")) {
+					p.threads = Integer.parseInt(a.substring("-threads=".length()));
+				} else if (a.startsWith("-memoryLimit=")) {
+					p.memoryLimit = Integer.parseInt(a.substring("-memoryLimit=".length()));
+				} else if (a.startsWith("-minPointApproximation=")) {
+					p.minPointApproximation = Float.parseFloat(a.substring("-minPointApproximation=".length()));
+				}
+			}
+			if (routingXmlFile == null || routingXmlFile.equals("routing.xml")) {
+				p.configBuilder = RoutingConfiguration.getDefault();
+			} else {
+				FileInputStream is = new FileInputStream(routingXmlFile);
+				try {
+					p.configBuilder = RoutingConfiguration.parseFromInputStream(is);
+				} finally {
+					is.close();
+				}
+			}
+			return p;
+		}
+	}
+
+	public static class FileResult {
+		public final File file;
+		public String error;
+		public File output;
+
+		public int points;
+		public double distance;
+		public long timeSpan;
+		public double diffElevationUp;
+		public double diffElevationDown;
+
+		public int routeDistance;
+		public int routeDistanceUnmatched;
+		public int routeGapDistance;
+		public int routeSegments;
+		public int routeCalculations;
+
+		// ms
+		public long loadTime;
+		public long analysisTime;
+		public long approximationTime;
+		public long exportTime;
+
+		public FileResult(File file) {
+			this.file = file;
+		}
+
+		public boolean isSuccessful() {
+			return error == null;
+		}
+
+		public double getMatchedPercent() {
+			if (routeDistance <= 0) {
+				return 0;
+			}
+			return Math.max(0, 100.0 * (routeDistance - routeDistanceUnmatched) / routeDistance);
+		}
+
+		public long getTotalTime() {
+			return loadTime + analysisTime + approximationTime + exportTime;
+		}
+	}
+
+	public GpxBatchApproximator(List<File> obfFiles, RoutingConfiguration.Builder configBuilder, String vehicle) {
+		this.obfFiles = obfFiles;
+		this.configBuilder = configBuilder;
+		this.vehicle = vehicle;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * @param memoryLimit - memory limit of routing context of each worker in MB
+	 */
+	public void setMemoryLimit(int memoryLimit) {
+		this.memoryLimit = memoryLimit;
+	}
+
+	public void setMinPointApproximation(float minPointApproximation) {
+		this.minPointApproximation = minPointApproximation;
+	}
+
+	/**
+	 * @param indexesCache - cache of obf headers, files which are not in cache are parsed and added to it
+	 */
+	public void setIndexesCache(CachedOsmandIndexes indexesCache) {
+		this.indexesCache = indexesCache;
+	}
+
+	/**
+	 * Approximates tracks and writes routes to output directory with the same file names.
+	 * Failure of one track is kept in its result and doesn't stop others.
+	 *
+	 * @return results in order of files
+	 */
+	public List<FileResult> run(List<File> gpxFiles, File outDir) throws IOException, InterruptedException {
+		outDir.mkdirs();
+		CachedOsmandIndexes cache = indexesCache != null ? indexesCache : new CachedOsmandIndexes();
+		FileIndex[] fileIndexes = loadFileIndexes(cache);
+		FileResult[] results = new FileResult[gpxFiles.size()];
+		AtomicInteger next = new AtomicInteger();
+		int workers = Math.min(threads, Math.max(1, gpxFiles.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < workers; i++) {
+				futures.add(executor.submit(new Worker(cache, fileIndexes, gpxFiles, results, next, outDir)));
+			}
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return Arrays.asList(results);
+	}
+
+	// headers of files are parsed concurrently, readers of loader are not used by workers
+	private FileIndex[] loadFileIndexes(CachedOsmandIndexes cache) throws IOException {
+		List<LoadedReader> loaded = new BinaryMapReadersLoader(cache, threads).load(obfFiles);
+		FileIndex[] fileIndexes = new FileIndex[obfFiles.size()];
+		IOException error = null;
+		for (int i = 0; i < fileIndexes.length; i++) {
+			LoadedReader lr = loaded.get(i);
+			if (lr.getReader() == null) {
+				error = lr.getError();
+				continue;
+			}
+			lr.getReader().close();
+			fileIndexes[i] = cache.getFileIndex(lr.getFile(), false);
+		}
+		if (error != null) {
+			throw error;
+		}
+		return fileIndexes;
+	}
+
+	private class Worker implements Callable<Void> {
+
+		private final CachedOsmandIndexes cache;
+		private final FileIndex[] fileIndexes;
+		private final List<File> gpxFiles;
+		private final FileResult[] results;
+		private final AtomicInteger next;
+		private final File outDir;
+
+		Worker(CachedOsmandIndexes cache, FileIndex[] fileIndexes, List<File> gpxFiles, FileResult[] results,
+				AtomicInteger next, File outDir) {
+			this.cache = cache;
+			this.fileIndexes = fileIndexes;
+			this.gpxFiles = gpxFiles;
+			this.results = results;
+			this.next = next;
+			this.outDir = outDir;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			// indexes of reader keep loaded route data, so readers are not shared between threads
+			BinaryMapIndexReader[] readers = openReaders(cache, fileIndexes, obfFiles);
+			try {
+				RoutingConfiguration config = configBuilder.build(vehicle, new RoutingMemoryLimits(memoryLimit, 0));
+				if (minPointApproximation > 0) {
+					config.minPointApproximation = minPointApproximation;
+				}
+				RoutePlannerFrontEnd planner = new RoutePlannerFrontEnd();
+				RoutingContext ctx = planner.buildRoutingContext(config, null, readers, RouteCalculationMode.NORMAL);
+				int index;
+				while ((index = next.getAndIncrement()) < gpxFiles.size() && !Thread.currentThread().isInterrupted()) {
+					results[index] = processFile(planner, ctx, gpxFiles.get(index), outDir);
+				}
+			} finally {
+				closeReaders(readers);
+			}
+			return null;
+		}
+	}
+
+	private FileResult processFile(RoutePlannerFrontEnd planner, RoutingContext ctx, File file, File outDir) {
+		FileResult res = new FileResult(file);
+		try {
+			long time = System.currentTimeMillis();
+			GPXFile gpxFile = GPXUtilities.loadGPXFile(file);
+			res.loadTime = System.currentTimeMillis() - time;
+			if (gpxFile.error != null) {
+				res.error = "Not loaded: " + gpxFile.error.getMessage();
+				return res;
+			}
+
+			time = System.currentTimeMillis();
+			GPXTrackAnalysis analysis = gpxFile.getAnalysis(file.lastModified());
+			res.points = analysis.points;
+			res.distance = analysis.totalDistance;
+			res.timeSpan = analysis.timeSpan;
+			res.diffElevationUp = analysis.diffElevationUp;
+			res.diffElevationDown = analysis.diffElevationDown;
+			res.analysisTime = System.currentTimeMillis() - time;
+
+			List<WptPt> points = gpxFile.getAllSegmentsPoints();
+			if (points.size() < 2) {
+				res.error = "Not enough points";
+				return res;
+			}
+			time = System.currentTimeMillis();
+			ctx.calculationProgress = new RouteCalculationProgress();
+			GpxRouteApproximation gctx = new GpxRouteApproximation(ctx);
+			List<GpxPoint> gpxPoints = planner.generateGpxPoints(gctx, new LocationsHolder(points));
+			gctx = planner.searchGpxRoute(gctx, gpxPoints, null);
+			res.routeDistance = gctx.routeDistance;
+			res.routeDistanceUnmatched = gctx.routeDistanceUnmatched;
+			res.routeGapDistance = gctx.routeGapDistance;
+			res.routeSegments = gctx.result.size();
+			res.routeCalculations = gctx.routeCalculations;
+			res.approximationTime = System.currentTimeMillis() - time;
+			if (gctx.result.isEmpty()) {
+				res.error = "Route is not found";
+				return res;
+			}
+
+			time = System.currentTimeMillis();
+			RouteExporter exporter = new RouteExporter(Algorithms.getFileNameWithoutExtension(file),
+					gctx.result, getRouteLocations(gctx.result), null, null);
+			File output = new File(outDir, file.getName());
+			Exception error = GPXUtilities.writeGpxFile(output, exporter.exportRoute());
+			res.exportTime = System.currentTimeMillis() - time;
+			if (error != null) {
+				res.error = "Not exported: " + error.getMessage();
+				return res;
+			}
+			res.output = output;
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			log.error("Failed to process " + file.getName(), e);
+			res.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+		}
+		return res;
+	}
+
+	// next segment starts at the last point of previous segment
+	private static List<Location> getRouteLocations(List<RouteSegmentResult> route) {
+		List<Location> locations = new ArrayList<>();
+		for (RouteSegmentResult segment : route) {
+			float[] heights = segment.getHeightValues();
+			int start = segment.getStartPointIndex();
+			int end = segment.getEndPointIndex();
+			int inc = start <= end ? 1 : -1;
+			int k = locations.isEmpty() ? 0 : 1;
+			for (int i = start + k * inc; k <= Math.abs(end - start); i += inc, k++) {
+				LatLon point = segment.getPoint(i);
+				Location location = new Location("", point.getLatitude(), point.getLongitude());
+				if (2 * k + 1 < heights.length) {
+					location.setAltitude(heights[2 * k + 1]);
+				}
+				locations.add(location);
+			}
+		}
+		return locations;
+	}
+
+	private static BinaryMapIndexReader[] openReaders(CachedOsmandIndexes cache, FileIndex[] fileIndexes,
+			List<File> files) throws IOException {
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[files.size()];
+		try {
+			for (int i = 0; i < readers.length; i++) {
+				RandomAccessFile raf = new RandomAccessFile(files.get(i), "r");
+				try {
+					readers[i] = cache.initReaderFromFileIndex(fileIndexes[i], raf, files.get(i));
+				} finally {
+					if (readers[i] == null) {
+						raf.close();
+					}
+				}
+			}
+		} catch (IOException e) {
+			closeReaders(readers);
+			throw e;
+		}
+		return readers;
+	}
+
+	private static void closeReaders(BinaryMapIndexReader[] readers) {
+		for (BinaryMapIndexReader reader : readers) {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					log.error(e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	public static void writeReport(List<FileResult> results, File reportFile) throws IOException {
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8"));
+		try {
+			writer.println("file,status,points,distance,time_span,ele_up,ele_down,route_distance,unmatched_distance,"
+					+ "gap_distance,matched_percent,route_segments,route_calculations,load_ms,analysis_ms,"
+					+ "approximation_ms,export_ms,total_ms,error");
+			for (FileResult res : results) {
+				writer.println(String.format(Locale.US, "%s,%s,%d,%.1f,%d,%.1f,%.1f,%d,%d,%d,%.1f,%d,%d,%d,%d,%d,%d,%d,%s",
+						escape(res.file.getName()), res.isSuccessful() ? "ok" : "failed", res.points, res.distance,
+						res.timeSpan / 1000, res.diffElevationUp, res.diffElevationDown, res.routeDistance,
+						res.routeDistanceUnmatched, res.routeGapDistance, res.getMatchedPercent(), res.routeSegments,
+						res.routeCalculations, res.loadTime, res.analysisTime, res.approximationTime, res.exportTime,
+						res.getTotalTime(), res.error == null ? "" : escape(res.error)));
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static String escape(String value) {
+		if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) {
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	private static List<File> collectFiles(File dir, String ext) {
+		List<File> files = new ArrayList<>();
+		File[] list = dir.listFiles();
+		if (list != null) {
+			for (File f : list) {
+				if (f.isFile() && f.getName().endsWith(ext)) {
+					files.add(f);
+				}
+			}
+		}
+		return files;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args == null || args.length == 0) {
+			info();
+			return;
+		}
+		Parameters params = Parameters.init(args);
+		if (params.obfDir == null || params.gpxDir == null || params.outDir == null) {
+			info();
+			return;
+		}
+		List<File> obfFiles = collectFiles(params.obfDir, ".obf");
+		List<File> gpxFiles = collectFiles(params.gpxDir, GPX_EXT);
+		RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = false;
+
+		long time = System.currentTimeMillis();
+		CachedOsmandIndexes cache = new CachedOsmandIndexes();
+		File cacheFile = new File(params.obfDir, CachedOsmandIndexes.INDEXES_DEFAULT_FILENAME);
+		if (cacheFile.exists()) {
+			cache.readFromFile(cacheFile, CachedOsmandIndexes.VERSION);
+		}
+		GpxBatchApproximator approximator = new GpxBatchApproximator(obfFiles, params.configBuilder, params.vehicle);
+		approximator.setThreads(params.threads);
+		approximator.setMemoryLimit(params.memoryLimit);
+		approximator.setMinPointApproximation(params.minPointApproximation);
+		approximator.setIndexesCache(cache);
+		List<FileResult> results = approximator.run(gpxFiles, params.outDir);
+		cache.writeToFile(cacheFile);
+		File reportFile = new File(params.outDir, REPORT_FILE_NAME);
+		writeReport(results, reportFile);
+
+		int failed = 0;
+		for (FileResult res : results) {
+			if (!res.isSuccessful()) {
+				failed++;
+			}
+		}
+		System.out.println(String.format("Processed %d gpx files (%d failed) with %d obf files in %d ms, report %s",
+				results.size(), failed, obfFiles.size(), System.currentTimeMillis() - time, reportFile.getAbsolutePath()));
+	}
+
+	public static void info() {
+		System.out.println("Batch gpx approximation is console utility to attach gpx tracks to roads and export them as routes.");
+		System.out.println("\nUsage: gpxBatchApproximation -obfDir=PATH -gpxDir=PATH -outDir=PATH [-routingXmlPath=PATH] "
+				+ "[-vehicle=VEHICLE_STRING] [-threads=N] [-memoryLimit=MB] [-minPointApproximation=METERS]");
+	}
+}
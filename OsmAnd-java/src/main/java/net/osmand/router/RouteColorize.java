@@ -1,15 +1,14 @@
 package net.osmand.router;
 
+import net.osmand.gpx.ElevationPipeline;
 import net.osmand.gpx.GPXFile;
 import net.osmand.gpx.GPXTrackAnalysis;
 import net.osmand.gpx.GPXUtilities.Track;
 import net.osmand.gpx.GPXUtilities.TrkSegment;
 import net.osmand.gpx.GPXUtilities.WptPt;
 import net.osmand.PlatformUtil;
-import net.osmand.osm.edit.Node;
-import net.osmand.osm.edit.OsmMapUtils;
 import net.osmand.util.Algorithms;
-import net.osmand.util.MapUtils;
+import net.osmand.util.SimplificationZooms;
 
 import org.apache.commons.logging.Log;
 
@@ -26,6 +25,7 @@ public class RouteColorize {
     public double[][] palette;
 
     private List<RouteColorizationPoint> dataList;
+    private byte[] minZooms;
 
     public static final int DARK_GREY = rgbaToDecimal(92, 92, 92, 255);
     public static final int LIGHT_GREY = rgbaToDecimal(200, 200, 200, 255);
@@ -45,7 +45,6 @@ public class RouteColorize {
     public static final double SLOPE_MAX_VALUE = 1.0;//100%
     public static final double[][] SLOPE_PALETTE = {{SLOPE_MIN_VALUE, GREEN_SLOPE}, {0.0, WHITE}, {0.125, YELLOW_SLOPE}, {0.25, RED_SLOPE}, {SLOPE_MAX_VALUE, PURPLE_SLOPE}};
 
-    private static final float DEFAULT_BASE = 17.2f;
     public static double MAX_CORRECT_ELEVATION_DISTANCE = 100.0;// in meters
 
     public enum ColorizationType {
@@ -152,88 +151,13 @@ public class RouteColorize {
      * @return slopes array, in the begin and the end present NaN values!
      */
     public double[] calculateSlopesByElevations(double[] latitudes, double[] longitudes, double[] elevations, double slopeRange) {
-        correctElevations(latitudes, longitudes, elevations);
-        double[] newElevations = elevations;
-        for (int i = 2; i < elevations.length - 2; i++) {
-            newElevations[i] = elevations[i - 2]
-                    + elevations[i - 1]
-                    + elevations[i]
-                    + elevations[i + 1]
-                    + elevations[i + 2];
-            newElevations[i] /= 5;
-        }
-        elevations = newElevations;
-
-        double[] slopes = new double[elevations.length];
         if (latitudes.length != longitudes.length || latitudes.length != elevations.length) {
             LOG.warn("Sizes of arrays latitudes, longitudes and values are not match");
-            return slopes;
-        }
-
-        double[] distances = new double[elevations.length];
-        double totalDistance = 0.0d;
-        distances[0] = totalDistance;
-        for (int i = 0; i < elevations.length - 1; i++) {
-            totalDistance += MapUtils.getDistance(latitudes[i], longitudes[i], latitudes[i + 1], longitudes[i + 1]);
-            distances[i + 1] = totalDistance;
-        }
-
-        for (int i = 0; i < elevations.length; i++) {
-            if (distances[i] < slopeRange / 2 || distances[i] > totalDistance - slopeRange / 2) {
-                slopes[i] = Double.NaN;
-            } else {
-                double[] arg = findDerivativeArguments(distances, elevations, i, slopeRange);
-                slopes[i] = (arg[1] - arg[0]) / (arg[3] - arg[2]);
-            }
-        }
-        return slopes;
-    }
-
-    private void correctElevations(double[] latitudes, double[] longitudes, double[] elevations) {
-        for (int i = 0; i < elevations.length; i++) {
-            if (Double.isNaN(elevations[i])) {
-                double leftDist = MAX_CORRECT_ELEVATION_DISTANCE;
-                double rightDist = MAX_CORRECT_ELEVATION_DISTANCE;
-                double leftElevation = Double.NaN;
-                double rightElevation = Double.NaN;
-                for (int left = i - 1; left > 0 && leftDist <= MAX_CORRECT_ELEVATION_DISTANCE; left--) {
-                    if (!Double.isNaN(elevations[left])) {
-                        double dist = MapUtils.getDistance(latitudes[left], longitudes[left], latitudes[i], longitudes[i]);
-                        if (dist < leftDist) {
-                            leftDist = dist;
-                            leftElevation = elevations[left];
-                        } else {
-                            break;
-                        }
-                    }
-                }
-                for (int right = i + 1; right < elevations.length && rightDist <= MAX_CORRECT_ELEVATION_DISTANCE; right++) {
-                    if (!Double.isNaN(elevations[right])) {
-                        double dist = MapUtils.getDistance(latitudes[right], longitudes[right], latitudes[i], longitudes[i]);
-                        if (dist < rightDist) {
-                            rightElevation = elevations[right];
-                            rightDist = dist;
-                        } else {
-                            break;
-                        }
-                    }
-                }
-                if (!Double.isNaN(leftElevation) && !Double.isNaN(rightElevation)) {
-                    elevations[i] = (leftElevation + rightElevation) / 2;
-                } else if (Double.isNaN(leftElevation) && !Double.isNaN(rightElevation)) {
-                    elevations[i] = rightElevation;
-                } else if (!Double.isNaN(leftElevation) && Double.isNaN(rightElevation)) {
-                    elevations[i] = leftElevation;
-                } else {
-                    for (int right = i + 1; right < elevations.length; right++) {
-                        if (!Double.isNaN(elevations[right])) {
-                            elevations[i] = elevations[right];
-                            break;
-                        }
-                    }
-                }
-            }
+            return new double[elevations.length];
         }
+        ElevationPipeline pipeline = new ElevationPipeline(latitudes, longitudes, elevations, elevations.length);
+        pipeline.setMaxCorrectElevationDistance(MAX_CORRECT_ELEVATION_DISTANCE);
+        return pipeline.calculateSlopes(slopeRange);
     }
 
     public List<RouteColorizationPoint> getResult() {
@@ -309,25 +233,17 @@ public class RouteColorize {
                 dataList.add(new RouteColorizationPoint(i, latitudes[i], longitudes[i], values[i]));
             }
         }
-        List<Node> nodes = new ArrayList<>();
-        List<Node> result = new ArrayList<>();
-        for (RouteColorizationPoint data : dataList) {
-            nodes.add(new net.osmand.osm.edit.Node(data.lat, data.lon, data.id));
+        if (minZooms == null || minZooms.length != latitudes.length) {
+            minZooms = SimplificationZooms.calculate(latitudes, longitudes, SimplificationZooms.DEFAULT_BASE);
         }
-
-        double epsilon = Math.pow(2.0, DEFAULT_BASE - simplificationZoom);
-        result.add(nodes.get(0));
-        OsmMapUtils.simplifyDouglasPeucker(nodes, 0, nodes.size() - 1, result, epsilon);
+        int[] result = SimplificationZooms.filter(minZooms, simplificationZoom);
 
         List<RouteColorizationPoint> simplified = new ArrayList<>();
-        for (int i = 1; i < result.size(); i++) {
-            int prevId = (int) result.get(i - 1).getId();
-            int currentId = (int) result.get(i).getId();
-            List<RouteColorizationPoint> sublist = dataList.subList(prevId, currentId);
+        for (int i = 1; i < result.length; i++) {
+            List<RouteColorizationPoint> sublist = dataList.subList(result[i - 1], result[i]);
             simplified.addAll(getExtremums(sublist));
         }
-        Node lastSurvivedPoint = result.get(result.size() - 1);
-        simplified.add(dataList.get((int) lastSurvivedPoint.getId()));
+        simplified.add(dataList.get(result[result.length - 1]));
         return simplified;
     }
 
@@ -422,61 +338,6 @@ public class RouteColorize {
         });
     }
 
-    /**
-     * @return double[minElevation, maxElevation, minDist, maxDist]
-     */
-    private double[] findDerivativeArguments(double[] distances, double[] elevations, int index, double slopeRange) {
-        double[] result = new double[4];
-        double minDist = distances[index] - slopeRange / 2;
-        double maxDist = distances[index] + slopeRange / 2;
-        result[0] = Double.NaN;
-        result[1] = Double.NaN;
-        result[2] = minDist;
-        result[3] = maxDist;
-        int closestMaxIndex = -1;
-        int closestMinIndex = -1;
-        for (int i = index; i < distances.length; i++) {
-            if (distances[i] == maxDist) {
-                result[1] = elevations[i];
-                break;
-            }
-            if (distances[i] > maxDist) {
-                closestMaxIndex = i;
-                break;
-            }
-        }
-        for (int i = index; i >= 0; i--) {
-            if (distances[i] == minDist) {
-                result[0] = elevations[i];
-                break;
-            }
-            if (distances[i] < minDist) {
-                closestMinIndex = i;
-                break;
-            }
-        }
-        if (closestMaxIndex > 0) {
-            double diff = distances[closestMaxIndex] - distances[closestMaxIndex - 1];
-            double coef = (maxDist - distances[closestMaxIndex - 1]) / diff;
-            if (coef > 1 || coef < 0) {
-                LOG.warn("Coefficient fo max must be 0..1 , coef=" + coef);
-            }
-            result[1] = (1 - coef) * elevations[closestMaxIndex - 1] + coef * elevations[closestMaxIndex];
-        }
-        if (closestMinIndex >= 0) {
-            double diff = distances[closestMinIndex + 1] - distances[closestMinIndex];
-            double coef = (minDist - distances[closestMinIndex]) / diff;
-            if (coef > 1 || coef < 0) {
-                LOG.warn("Coefficient for min must be 0..1 , coef=" + coef);
-            }
-            result[0] = (1 - coef) * elevations[closestMinIndex] + coef * elevations[closestMinIndex + 1];
-        }
-        if (Double.isNaN(result[0]) || Double.isNaN(result[1])) {
-            LOG.warn("Elevations wasn't calculated");
-        }
-        return result;
-    }
-
     public static double getMinValue(ColorizationType type, GPXTrackAnalysis analysis) {
         switch (type) {
             case SPEED:
@@ -0,0 +1,381 @@
+package net.osmand.search;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapReadersLoader;
+import net.osmand.binary.BinaryMapReadersLoader.LoadedReader;
+import net.osmand.data.LatLon;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore.SearchResultCollection;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.util.Algorithms;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays log of queries against obf files through {@link SearchUICore} and reports latency percentiles,
+ * time spent by each search API ({@link SearchResultMatcher#getApiSearchTime}, concurrent apis are measured
+ * in their threads) and share of queries where expected result is among first k results.
+ * <p>
+ * Query file has one query per line: <code>text[TAB]lat[TAB]lon[TAB]expected name</code>,
+ * expected name is optional, lines starting with # are skipped.
+ */
+public class SearchBenchmark {
+
+	public static final int[] PRECISION_K = { 1, 3, 5, 10 };
+
+	public static class Query {
+		public final String text;
+		public final LatLon location;
+		public final String expected;
+
+		public Query(String text, LatLon location, String expected) {
+			this.text = text;
+			this.location = location;
+			this.expected = expected;
+		}
+	}
+
+	public static class QueryResult {
+		public final Query query;
+		// nanoseconds
+		public long time;
+		// position of expected result starting from 0, -1 if it is not found
+		public int rank = -1;
+		public int results;
+		public String top;
+
+		QueryResult(Query query) {
+			this.query = query;
+		}
+	}
+
+	private final SearchEngine engine;
+	private final String lang;
+	private int threads = 1;
+	private int apiThreads = 1;
+	private int fileThreads = 1;
+	private int topK = -1;
+	private boolean clearCache = false;
+	private final Map<String, List<Long>> apiTimes = new TreeMap<>();
+
+	public SearchBenchmark(List<BinaryMapIndexReader> readers, MapPoiTypes poiTypes, String lang) {
+		this.engine = new SearchEngine(poiTypes, readers);
+		this.lang = lang;
+	}
+
+	/**
+	 * Queries are split between threads, each thread has own session of the same {@link SearchEngine}
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setApiThreads(int apiThreads) {
+		this.apiThreads = apiThreads;
+	}
+
+	public void setFileThreads(int fileThreads) {
+		this.fileThreads = fileThreads;
+	}
+
+	/**
+	 * Keep only topK best results of each query, -1 keeps all
+	 */
+	public void setTopK(int topK) {
+		this.topK = topK;
+	}
+
+	/**
+	 * Measure each query without objects cached by previous queries
+	 */
+	public void setClearCache(boolean clearCache) {
+		this.clearCache = clearCache;
+	}
+
+	public static List<Query> readQueries(File file) throws IOException {
+		List<Query> queries = new ArrayList<>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.trim().length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+				String[] cols = line.split("\t");
+				if (cols.length < 3) {
+					throw new IOException("Line " + lineNumber + " should contain query, lat and lon: " + line);
+				}
+				try {
+					LatLon l = new LatLon(Double.parseDouble(cols[1].trim()), Double.parseDouble(cols[2].trim()));
+					queries.add(new Query(cols[0], l, cols.length > 3 ? cols[3].trim() : null));
+				} catch (NumberFormatException e) {
+					throw new IOException("Line " + lineNumber + " has wrong location: " + line, e);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return queries;
+	}
+
+	public List<QueryResult> run(List<Query> queries) throws IOException {
+		final List<QueryResult> results = new ArrayList<>();
+		for (Query q : queries) {
+			results.add(new QueryResult(q));
+		}
+		final AtomicInteger next = new AtomicInteger();
+		int workers = Math.min(threads, Math.max(1, queries.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < workers; i++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						SearchUICore core = createCore();
+						int i;
+						while ((i = next.getAndIncrement()) < results.size()) {
+							search(core, results.get(i));
+						}
+						core.close();
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> f : futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		return results;
+	}
+
+	private SearchUICore createCore() {
+		SearchUICore core = engine.createSession(lang, false);
+		core.setApiThreads(apiThreads);
+		core.setAddressFileThreads(fileThreads);
+		if (topK > 0) {
+			core.updateSettings(core.getSearchSettings().setTopK(topK));
+		}
+		return core;
+	}
+
+	private void search(SearchUICore core, QueryResult qr) {
+		if (clearCache) {
+			core.clearCache();
+		}
+		core.updateSettings(core.getSearchSettings().setOriginalLocation(qr.query.location));
+		SearchPhrase phrase = core.resetPhrase(qr.query.text);
+		final Map<String, Long> times = new TreeMap<>();
+		final SearchResultMatcher[] matcher = new SearchResultMatcher[1];
+		long start = System.nanoTime();
+		ResultMatcher<SearchResult> events = new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				if (object.objectType == ObjectType.SEARCH_API_FINISHED) {
+					String api = object.object.getClass().getSimpleName();
+					Long prev = times.get(api);
+					times.put(api, (prev == null ? 0 : prev) + matcher[0].getApiSearchTime());
+				}
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+		SearchResultMatcher rm = new SearchResultMatcher(events, phrase, 1, new AtomicInteger(1), -1);
+		matcher[0] = rm;
+		core.searchInternal(phrase, rm);
+		SearchResultCollection collection = new SearchResultCollection(phrase);
+		collection.addSearchResults(rm.getRequestResults(), true, true);
+		qr.time = System.nanoTime() - start;
+		List<SearchResult> res = collection.getCurrentSearchResults();
+		qr.results = res.size();
+		qr.top = res.isEmpty() ? null : res.get(0).toString();
+		if (qr.query.expected != null) {
+			for (int i = 0; i < res.size(); i++) {
+				if (matches(qr.query.expected, res.get(i))) {
+					qr.rank = i;
+					break;
+				}
+			}
+		}
+		synchronized (apiTimes) {
+			for (Map.Entry<String, Long> e : times.entrySet()) {
+				List<Long> l = apiTimes.get(e.getKey());
+				if (l == null) {
+					l = new ArrayList<>();
+					apiTimes.put(e.getKey(), l);
+				}
+				l.add(e.getValue());
+			}
+		}
+	}
+
+	private static boolean matches(String expected, SearchResult r) {
+		return expected.equalsIgnoreCase(r.localeName) || expected.equalsIgnoreCase(r.toString());
+	}
+
+	public static long percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int ind = (int) Math.ceil(p / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, ind))];
+	}
+
+	/**
+	 * @return share of queries with expected result where it is found among first k results
+	 */
+	public static double precisionAt(List<QueryResult> results, int k) {
+		int total = 0;
+		int found = 0;
+		for (QueryResult r : results) {
+			if (r.query.expected != null) {
+				total++;
+				if (r.rank >= 0 && r.rank < k) {
+					found++;
+				}
+			}
+		}
+		return total == 0 ? 0 : (double) found / total;
+	}
+
+	public String report(List<QueryResult> results, long wallTime) {
+		StringBuilder sb = new StringBuilder();
+		long[] times = new long[results.size()];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = results.get(i).time;
+		}
+		Arrays.sort(times);
+		sb.append(String.format(Locale.US, "Queries %d, threads %d, api threads %d, wall time %d ms, %.1f queries/s%n",
+				results.size(), threads, apiThreads, wallTime / 1000000, results.size() / Math.max(wallTime / 1e9, 1e-9)));
+		sb.append(String.format(Locale.US, "Latency ms p50 %.1f p95 %.1f p99 %.1f max %.1f%n",
+				percentile(times, 50) / 1e6, percentile(times, 95) / 1e6, percentile(times, 99) / 1e6,
+				percentile(times, 100) / 1e6));
+		for (int k : PRECISION_K) {
+			sb.append(String.format(Locale.US, "Precision@%d %.3f%n", k, precisionAt(results, k)));
+		}
+		synchronized (apiTimes) {
+			for (Map.Entry<String, List<Long>> e : apiTimes.entrySet()) {
+				long[] t = new long[e.getValue().size()];
+				long sum = 0;
+				for (int i = 0; i < t.length; i++) {
+					t[i] = e.getValue().get(i);
+					sum += t[i];
+				}
+				Arrays.sort(t);
+				sb.append(String.format(Locale.US, "  %-40s total %8d ms p50 %.1f p95 %.1f p99 %.1f%n", e.getKey(),
+						sum / 1000000, percentile(t, 50) / 1e6, percentile(t, 95) / 1e6, percentile(t, 99) / 1e6));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void info() {
+		System.out.println("Usage: SearchBenchmark -obfDir=<dir or file> -queries=<file> [-poiTypes=poi_types.xml] [-lang=en]"
+				+ " [-threads=1] [-apiThreads=1] [-fileThreads=1] [-topK=-1] [-clearCache] [-verbose]");
+	}
+
+	public static void main(String[] args) throws Exception {
+		String obf = null;
+		String queriesFile = null;
+		String poiTypesFile = null;
+		String lang = "en";
+		int threads = 1;
+		int apiThreads = 1;
+		int fileThreads = 1;
+		int topK = -1;
+		boolean clearCache = false;
+		boolean verbose = false;
+		for (String a : args) {
+			if (a.startsWith("-obfDir=")) {
+				obf = a.substring("-obfDir=".length());
+			} else if (a.startsWith("-queries=")) {
+				queriesFile = a.substring("-queries=".length());
+			} else if (a.startsWith("-poiTypes=")) {
+				poiTypesFile = a.substring("-poiTypes=".length());
+			} else if (a.startsWith("-lang=")) {
+				lang = a.substring("-lang=".length());
+			} else if (a.startsWith("-threads=")) {
+				threads = Integer.parseInt(a.substring("-threads=".length()));
+			} else if (a.startsWith("-apiThreads=")) {
+				apiThreads = Integer.parseInt(a.substring("-apiThreads=".length()));
+			} else if (a.startsWith("-fileThreads=")) {
+				fileThreads = Integer.parseInt(a.substring("-fileThreads=".length()));
+			} else if (a.startsWith("-topK=")) {
+				topK = Integer.parseInt(a.substring("-topK=".length()));
+			} else if (a.equals("-clearCache")) {
+				clearCache = true;
+			} else if (a.equals("-verbose")) {
+				verbose = true;
+			}
+		}
+		if (obf == null || queriesFile == null) {
+			info();
+			return;
+		}
+		File obfFile = new File(obf);
+		BinaryMapReadersLoader loader = new BinaryMapReadersLoader(null, Runtime.getRuntime().availableProcessors());
+		List<LoadedReader> loaded = obfFile.isDirectory() ? loader.loadDirectory(obfFile)
+				: loader.load(Collections.singletonList(obfFile));
+		List<BinaryMapIndexReader> readers = new ArrayList<>();
+		for (LoadedReader lr : loaded) {
+			if (lr.getReader() != null) {
+				readers.add(lr.getReader());
+			}
+		}
+		MapPoiTypes poiTypes = poiTypesFile == null ? MapPoiTypes.getDefault() : new MapPoiTypes(poiTypesFile);
+		SearchBenchmark benchmark = new SearchBenchmark(readers, poiTypes, lang);
+		benchmark.setThreads(threads);
+		benchmark.setApiThreads(apiThreads);
+		benchmark.setFileThreads(fileThreads);
+		benchmark.setTopK(topK);
+		benchmark.setClearCache(clearCache);
+		List<Query> queries = readQueries(new File(queriesFile));
+		long time = System.nanoTime();
+		List<QueryResult> results = benchmark.run(queries);
+		long wallTime = System.nanoTime() - time;
+		if (verbose) {
+			for (QueryResult r : results) {
+				System.out.println(String.format(Locale.US, "%8.1f ms %4d %s -> %s%s", r.time / 1e6, r.results,
+						r.query.text, r.top, r.query.expected == null ? "" : (r.rank < 0 ? " MISSING " : " #" + (r.rank + 1) + " ")
+								+ Algorithms.emptyIfNull(r.query.expected)));
+			}
+		}
+		System.out.print(benchmark.report(results, wallTime));
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package net.osmand.search;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore.SearchResultCollection;
+import net.osmand.search.core.SearchPoiTypesIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resources shared by search sessions: poi types, poi type name tables and offline indexes.
+ * Engine is not changed after creation, so one instance serves concurrent requests and each request
+ * uses own lightweight {@link SearchUICore} session created by {@link #createSession(String, boolean)}.
+ * Readers are shared and read by search thread of the session, threads of the session which read files concurrently
+ * use own copies of readers, which are closed by {@link SearchUICore#close()}.
+ */
+public class SearchEngine {
+
+	private final MapPoiTypes poiTypes;
+	private final SearchPoiTypesIndex poiTypesIndex;
+	private final List<BinaryMapIndexReader> offlineIndexes;
+
+	public SearchEngine(MapPoiTypes poiTypes, List<? extends BinaryMapIndexReader> offlineIndexes) {
+		this.poiTypes = poiTypes;
+		this.poiTypesIndex = new SearchPoiTypesIndex(poiTypes);
+		this.offlineIndexes = Collections.unmodifiableList(new ArrayList<BinaryMapIndexReader>(offlineIndexes));
+	}
+
+	public MapPoiTypes getPoiTypes() {
+		return poiTypes;
+	}
+
+	public SearchPoiTypesIndex getPoiTypesIndex() {
+		return poiTypesIndex;
+	}
+
+	public List<BinaryMapIndexReader> getOfflineIndexes() {
+		return offlineIndexes;
+	}
+
+	public SearchUICore createSession(String lang, boolean transliterate) {
+		SearchUICore session = new SearchUICore(this, lang, transliterate);
+		session.init();
+		return session;
+	}
+
+	/**
+	 * Searches text in a new session, safe to call from many threads
+	 */
+	public SearchResultCollection search(String text, LatLon location, String lang, boolean transliterate) {
+		SearchUICore session = createSession(lang, transliterate);
+		try {
+			return session.immediateSearch(text, location);
+		} finally {
+			session.close();
+		}
+	}
+}
@@ -16,14 +16,19 @@ import net.osmand.search.core.CustomSearchPoiFilter;
 import net.osmand.search.core.ObjectType;
 import net.osmand.search.core.SearchCoreAPI;
 import net.osmand.search.core.SearchCoreFactory;
+import net.osmand.search.core.SearchCoreFactory.SearchAddressByNameAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchAmenityByNameAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchAmenityByTypeAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchAmenityTypesAPI;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchBuildingAndIntersectionsByStreetAPI;
+import net.osmand.search.core.SearchCoreFactory.SearchLocationAndUrlAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchStreetByCityAPI;
 import net.osmand.search.core.SearchExportSettings;
 import net.osmand.search.core.SearchPhrase;
 import net.osmand.search.core.SearchPhrase.NameStringMatcher;
+import net.osmand.search.core.SearchPoiTypesIndex;
+import net.osmand.search.core.SearchReaderCopies;
 import net.osmand.search.core.SearchResult;
 import net.osmand.search.core.SearchSettings;
 import net.osmand.search.core.SearchWord;
@@ -39,12 +44,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -66,10 +74,17 @@ public class SearchUICore {
 	private Runnable onResultsComplete = null;
 	private AtomicInteger requestNumber = new AtomicInteger();
 	private int totalLimit = -1; // -1 unlimited - not used
+	private int apiThreads = 1;
+	private ThreadPoolExecutor apiExecutor;
+	private int addressFileThreads = 1;
+	private final SearchReaderCopies readerCopies = new SearchReaderCopies();
 
 	List<SearchCoreAPI> apis = new ArrayList<>();
+	// apis calling each other share state and run sequentially in one lane
+	private Map<SearchCoreAPI, Object> apiLanes = new HashMap<>();
 	private SearchSettings searchSettings;
 	private MapPoiTypes poiTypes;
+	private SearchPoiTypesIndex poiTypesIndex;
 
 	private static boolean debugMode = false;
 	
@@ -77,13 +92,33 @@ public class SearchUICore {
 			Arrays.asList("building", "internet_access_yes"));
 
 	public SearchUICore(MapPoiTypes poiTypes, String locale, boolean transliterate) {
+		this(poiTypes, null, new ArrayList<BinaryMapIndexReader>(), locale, transliterate);
+	}
+
+	/**
+	 * Session of shared engine, it doesn't copy poi types tables and reads offline indexes of engine
+	 */
+	public SearchUICore(SearchEngine engine, String locale, boolean transliterate) {
+		this(engine.getPoiTypes(), engine.getPoiTypesIndex(), engine.getOfflineIndexes(), locale, transliterate);
+	}
+
+	private SearchUICore(MapPoiTypes poiTypes, SearchPoiTypesIndex poiTypesIndex,
+			List<? extends BinaryMapIndexReader> offlineIndexes, String locale, boolean transliterate) {
 		this.poiTypes = poiTypes;
-		taskQueue = new LinkedBlockingQueue<Runnable>();
-		searchSettings = new SearchSettings(new ArrayList<BinaryMapIndexReader>());
+		this.poiTypesIndex = poiTypesIndex;
+		searchSettings = new SearchSettings(offlineIndexes);
 		searchSettings = searchSettings.setLang(locale, transliterate);
 		phrase = SearchPhrase.emptyPhrase(searchSettings);
 		currentSearchResult = new SearchResultCollection(phrase);
-		singleThreadedExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, taskQueue);
+	}
+
+	// thread is created only by asynchronous search, so sessions used for immediate search stay light
+	private synchronized ThreadPoolExecutor getSingleThreadedExecutor() {
+		if (singleThreadedExecutor == null) {
+			taskQueue = new LinkedBlockingQueue<Runnable>();
+			singleThreadedExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, taskQueue);
+		}
+		return singleThreadedExecutor;
 	}
 
 	public static void setDebugMode(boolean debugMode) {
@@ -98,7 +133,17 @@ public class SearchUICore {
 		private final List<SearchResult> searchResults = new ArrayList<>();
 		private SearchPhrase phrase;
 		private boolean useLimit;
-		private static final int DEPTH_TO_CHECK_SAME_SEARCH_RESULTS = 20;
+		// results are known to be sorted by SearchResultComparator
+		private boolean sorted;
+		// results by keys of possible duplicates, null if not built or outdated
+		private Map<Object, List<SearchResult>> dedupIndex;
+		private static final double LOCATION_PRECISION = 0.00001;
+		private static final double LOCATION_CELL = 0.001;
+		// max similarity radius of sameSearchResult except pois of wide similarity, with margin
+		private static final double NAME_SIMILARITY_RADIUS = 110;
+		private static final double NAME_CELL = 0.01;
+		private static final double METERS_IN_DEGREE = 111000;
+		private static final double POLAR_LATITUDE = 80;
 
 		public SearchResultCollection(SearchPhrase phrase) {
 			this.phrase = phrase;
@@ -106,7 +151,8 @@ public class SearchUICore {
 
 		public SearchResultCollection combineWithCollection(SearchResultCollection collection, boolean resort, boolean removeDuplicates) {
 			SearchResultCollection src = new SearchResultCollection(phrase);
-			src.addSearchResults(searchResults, false, false);
+			src.searchResults.addAll(searchResults);
+			src.sorted = sorted;
 			src.addSearchResults(collection.searchResults, resort, removeDuplicates);
 			return src;
 		}
@@ -124,58 +170,43 @@ public class SearchUICore {
 				LOG.info("Add search results resortAll=" + (resortAll ? "true" : "false") + " removeDuplicates=" + (removeDuplicates ? "true" : "false") + " Results=" + sr.size() + " Current results=" + this.searchResults.size());
 			}
 			if (resortAll) {
-				this.searchResults.addAll(sr);
-				sortSearchResults();
+				if (sorted) {
+					// merge sorted added results into already sorted list
+					List<SearchResult> addedResults = new ArrayList<>(sr);
+					SearchResultComparator cmp = new SearchResultComparator(phrase);
+					Collections.sort(addedResults, cmp);
+					mergeSorted(addedResults, cmp);
+				} else {
+					this.searchResults.addAll(sr);
+					sortSearchResults();
+				}
 				if (removeDuplicates) {
 					filterSearchDuplicateResults();
+				} else {
+					dedupIndex = null;
 				}
 			} else {
 				if (!removeDuplicates) {
 					this.searchResults.addAll(sr);
+					dedupIndex = null;
 				} else {
 					ArrayList<SearchResult> addedResults = new ArrayList<>(sr);
 					SearchResultComparator cmp = new SearchResultComparator(phrase);
 					Collections.sort(addedResults, cmp);
-					filterSearchDuplicateResults(addedResults);
-					int i = 0;
-					int j = 0;
-					while (j < addedResults.size()) {
-						SearchResult addedResult = addedResults.get(j);
-						if (i >= searchResults.size()) {
-							int k = 0;
-							boolean same = false;
-							while (searchResults.size() > k && k < DEPTH_TO_CHECK_SAME_SEARCH_RESULTS) {
-								if (sameSearchResult(addedResult, searchResults.get(searchResults.size() - k - 1))) {
-									same = true;
-									break;
-								}
-								k++;
-							}
-							if (!same) {
-								searchResults.add(addedResult);
-							}
-							j++;
-							continue;
+					if (dedupIndex == null) {
+						dedupIndex = new HashMap<>();
+						for (SearchResult r : searchResults) {
+							indexSearchResult(r);
 						}
-						SearchResult existingResult = searchResults.get(i);
-						if (sameSearchResult(addedResult, existingResult)) {
-							j++;
-							continue;
-						}
-						int compare = cmp.compare(existingResult, addedResult);
-						if (compare == 0) {
-							// existingResult == addedResult
-							j++;
-						} else if (compare > 0) {
-							// existingResult > addedResult
-							this.searchResults.add(addedResults.get(j));
-							j++;
-						} else {
-							// existingResult < addedResult
-							i++;
+					}
+					for (SearchResult addedResult : addedResults) {
+						if (!containsSameSearchResult(addedResult)) {
+							indexSearchResult(addedResult);
+							searchResults.add(addedResult);
 						}
 					}
 				}
+				sorted = sr.isEmpty() && sorted;
 			}
 			if (SearchUICore.isDebugMode()) {
 				LOG.info("Search results added. Current results=" + this.searchResults.size());
@@ -183,6 +214,65 @@ public class SearchUICore {
 			return this;
 		}
 
+		/**
+		 * Inserts result keeping collection sorted.
+		 * @return false if same result is already present and removeDuplicates is set
+		 */
+		public boolean addSearchResult(SearchResult r, boolean removeDuplicates) {
+			SearchResultComparator cmp = new SearchResultComparator(phrase);
+			if (!sorted) {
+				sortSearchResults();
+			}
+			if (removeDuplicates) {
+				if (dedupIndex == null) {
+					filterSearchDuplicateResults();
+				}
+				if (containsSameSearchResult(r)) {
+					return false;
+				}
+				indexSearchResult(r);
+			} else {
+				dedupIndex = null;
+			}
+			// insert after equal elements as stable sort does
+			int lo = 0;
+			int hi = searchResults.size();
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (cmp.compare(searchResults.get(mid), r) <= 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			searchResults.add(lo, r);
+			return true;
+		}
+
+		private void mergeSorted(List<SearchResult> addedResults, SearchResultComparator cmp) {
+			List<SearchResult> merged = new ArrayList<>(searchResults.size() + addedResults.size());
+			int i = 0;
+			int j = 0;
+			while (i < searchResults.size() && j < addedResults.size()) {
+				// existing first for equal results to keep order of stable sort
+				if (cmp.compare(searchResults.get(i), addedResults.get(j)) <= 0) {
+					merged.add(searchResults.get(i++));
+				} else {
+					merged.add(addedResults.get(j++));
+				}
+			}
+			merged.addAll(searchResults.subList(i, searchResults.size()));
+			merged.addAll(addedResults.subList(j, addedResults.size()));
+			searchResults.clear();
+			searchResults.addAll(merged);
+		}
+
+		private void appendSearchResult(SearchResult r) {
+			searchResults.add(r);
+			sorted = false;
+			dedupIndex = null;
+		}
+
 		public boolean hasSearchResults() {
 			return !Algorithms.isEmpty(searchResults);
 		}
@@ -191,6 +281,34 @@ public class SearchUICore {
 			return Collections.unmodifiableList(searchResults);
 		}
 
+		/**
+		 * @return best k results, collection is not sorted if it wasn't sorted before
+		 */
+		public List<SearchResult> getTopSearchResults(int k) {
+			if (sorted || searchResults.size() <= 1) {
+				return Collections.unmodifiableList(searchResults.subList(0, Math.min(k, searchResults.size())));
+			}
+			final SearchResultComparator cmp = new SearchResultComparator(phrase);
+			// max heap of k best results, worst on top
+			PriorityQueue<SearchResult> heap = new PriorityQueue<>(Math.max(1, k), new Comparator<SearchResult>() {
+				@Override
+				public int compare(SearchResult o1, SearchResult o2) {
+					return cmp.compare(o2, o1);
+				}
+			});
+			for (SearchResult r : searchResults) {
+				if (heap.size() < k) {
+					heap.add(r);
+				} else if (k > 0 && cmp.compare(r, heap.peek()) < 0) {
+					heap.poll();
+					heap.add(r);
+				}
+			}
+			List<SearchResult> top = new ArrayList<>(heap);
+			Collections.sort(top, cmp);
+			return top;
+		}
+
 		public SearchPhrase getPhrase() {
 			return phrase;
 		}
@@ -200,6 +318,7 @@ public class SearchUICore {
 				LOG.info("Sorting search results <" + phrase + "> Results=" + searchResults.size());
 			}
 			Collections.sort(searchResults, new SearchResultComparator(phrase));
+			sorted = true;
 			if (debugMode) {
 				LOG.info("Search results sorted <" + phrase + ">");
 			}
@@ -209,30 +328,124 @@ public class SearchUICore {
 			if (debugMode) {
 				LOG.info("Filter duplicate results <" + phrase + "> Results=" + searchResults.size());
 			}
-			filterSearchDuplicateResults(searchResults);
+			dedupIndex = new HashMap<>();
+			List<SearchResult> unique = new ArrayList<>(searchResults.size());
+			for (SearchResult r : searchResults) {
+				if (!containsSameSearchResult(r)) {
+					indexSearchResult(r);
+					unique.add(r);
+				}
+			}
+			searchResults.clear();
+			searchResults.addAll(unique);
 			if (debugMode) {
 				LOG.info("Duplicate results filtered <" + phrase + "> Results=" + searchResults.size());
 			}
 		}
 
-		private void filterSearchDuplicateResults(List<SearchResult> lst) {
-			ListIterator<SearchResult> it = lst.listIterator();
-			LinkedList<SearchResult> lstUnique = new LinkedList<SearchResult>();
-			while (it.hasNext()) {
-				SearchResult r = it.next();
-				boolean same = false;
-				for (SearchResult rs : lstUnique) {
-					same = sameSearchResult(rs, r);
-					if (same) {
-						break;
+		// every pair accepted by sameSearchResult shares at least one key: same object, same street location,
+		// equal names of the same type or equal names in neighbour location cells
+		private List<Object> getDedupKeys(SearchResult r, boolean lookup) {
+			List<Object> keys = new ArrayList<>(4);
+			if (r.object != null) {
+				keys.add(r.object);
+			}
+			if (r.localeName != null && (r.objectType == ObjectType.INDEX_ITEM || r.objectType == ObjectType.GPX_TRACK)) {
+				keys.add("t:" + r.objectType + ":" + r.localeName);
+			}
+			if (r.localeName != null && r.location != null && !ObjectType.isTopVisible(r.objectType)) {
+				if (r.object instanceof Amenity) {
+					Amenity a = (Amenity) r.object;
+					// the same poi with another type or far away poi of the same type and name
+					keys.add("i:" + a.getId() + ":" + r.localeName);
+					String wideKey = getWideSimilarityKey(a);
+					if (wideKey != null) {
+						keys.add("w:" + wideKey + ":" + r.localeName);
 					}
 				}
-				if (same) {
-					it.remove();
-				} else {
-					lstUnique.add(r);
-					if (lstUnique.size() > DEPTH_TO_CHECK_SAME_SEARCH_RESULTS) {
-						lstUnique.remove(0);
+				addNameCellKeys(keys, r.localeName, r.location, lookup);
+			}
+			if (r.objectType == ObjectType.STREET && r.object instanceof Street && ((Street) r.object).getLocation() != null) {
+				// LatLon.equals uses 0.00001 precision, so lookup checks neighbour cells
+				LatLon l = ((Street) r.object).getLocation();
+				double precision = lookup ? LOCATION_PRECISION : 0;
+				int lat1 = (int) Math.floor((l.getLatitude() - precision) / LOCATION_CELL);
+				int lat2 = (int) Math.floor((l.getLatitude() + precision) / LOCATION_CELL);
+				int lon1 = (int) Math.floor((l.getLongitude() - precision) / LOCATION_CELL);
+				int lon2 = (int) Math.floor((l.getLongitude() + precision) / LOCATION_CELL);
+				for (int lat = lat1; lat <= lat2; lat++) {
+					for (int lon = lon1; lon <= lon2; lon++) {
+						keys.add("s:" + lat + ":" + normalizeLonCell(lon, LOCATION_CELL));
+					}
+				}
+			}
+			return keys;
+		}
+
+		// results of different types with equal names are the same within NAME_SIMILARITY_RADIUS
+		private void addNameCellKeys(List<Object> keys, String name, LatLon l, boolean lookup) {
+			double dLat = 0;
+			double dLon = 0;
+			if (lookup) {
+				dLat = NAME_SIMILARITY_RADIUS / METERS_IN_DEGREE;
+				double cos = Math.cos(Math.toRadians(Math.min(POLAR_LATITUDE, Math.abs(l.getLatitude()) + dLat)));
+				dLon = NAME_SIMILARITY_RADIUS / (METERS_IN_DEGREE * cos);
+			}
+			int lat1 = (int) Math.floor((l.getLatitude() - dLat) / NAME_CELL);
+			int lat2 = (int) Math.floor((l.getLatitude() + dLat) / NAME_CELL);
+			int lon1 = (int) Math.floor((l.getLongitude() - dLon) / NAME_CELL);
+			int lon2 = (int) Math.floor((l.getLongitude() + dLon) / NAME_CELL);
+			for (int lat = lat1; lat <= lat2; lat++) {
+				// near poles cells are whole latitude bands
+				boolean polar = Math.abs(lat) * NAME_CELL >= POLAR_LATITUDE || Math.abs(lat + 1) * NAME_CELL >= POLAR_LATITUDE;
+				for (int lon = polar ? 0 : lon1; lon <= (polar ? 0 : lon2); lon++) {
+					keys.add("n:" + lat + ":" + normalizeLonCell(lon, NAME_CELL) + ":" + name);
+				}
+			}
+		}
+
+		// cells at -180 and 180 longitude are neighbours, distance check is done across the antimeridian
+		private static int normalizeLonCell(int lon, double cell) {
+			int cells = (int) Math.round(360 / cell);
+			return ((lon % cells) + cells) % cells;
+		}
+
+		private boolean containsSameSearchResult(SearchResult r) {
+			return findSameSearchResult(r) != null;
+		}
+
+		private SearchResult findSameSearchResult(SearchResult r) {
+			for (Object key : getDedupKeys(r, true)) {
+				List<SearchResult> lst = dedupIndex.get(key);
+				if (lst != null) {
+					for (SearchResult rs : lst) {
+						if (sameSearchResult(rs, r)) {
+							return rs;
+						}
+					}
+				}
+			}
+			return null;
+		}
+
+		private void indexSearchResult(SearchResult r) {
+			for (Object key : getDedupKeys(r, false)) {
+				List<SearchResult> lst = dedupIndex.get(key);
+				if (lst == null) {
+					lst = new ArrayList<>(2);
+					dedupIndex.put(key, lst);
+				}
+				lst.add(r);
+			}
+		}
+
+		private void unindexSearchResult(SearchResult r) {
+			for (Object key : getDedupKeys(r, false)) {
+				List<SearchResult> lst = dedupIndex.get(key);
+				if (lst != null) {
+					lst.remove(r);
+					if (lst.isEmpty()) {
+						dedupIndex.remove(key);
 					}
 				}
 			}
@@ -285,8 +498,7 @@ public class SearchUICore {
 						if (type1.equals("natural")) {
 							similarityRadius = 50000;
 						} else if (subType1.equals(subType2)) {
-							if (subType1.contains("cn_ref") || subType1.contains("wn_ref")
-									|| (subType1.startsWith("route_hiking_") && subType1.endsWith("n_poi"))) {
+							if (isWideSimilaritySubType(subType1)) {
 								similarityRadius = 50000;
 							}
 						}
@@ -302,11 +514,32 @@ public class SearchUICore {
 		}
 	}
 	
+	private static boolean isWideSimilaritySubType(String subType) {
+		return subType.contains("cn_ref") || subType.contains("wn_ref")
+				|| (subType.startsWith("route_hiking_") && subType.endsWith("n_poi"));
+	}
+
+	// pois which are the same within 50 km
+	private static String getWideSimilarityKey(Amenity a) {
+		String type = a.getType().getKeyName();
+		if (type.equals("natural")) {
+			return type;
+		}
+		String subType = a.getSubType();
+		if (subType != null && isWideSimilaritySubType(subType)) {
+			return type + ":" + subType;
+		}
+		return null;
+	}
+
 	public MapPoiTypes getPoiTypes() {
 		return poiTypes;
 	}
 
 	public void setPoiTypes(MapPoiTypes poiTypes) {
+		if (this.poiTypes != poiTypes) {
+			poiTypesIndex = null;
+		}
 		this.poiTypes = poiTypes;
 	}
 
@@ -314,6 +547,61 @@ public class SearchUICore {
 		return totalLimit;
 	}
 
+	public int getApiThreads() {
+		return apiThreads;
+	}
+
+	/**
+	 * @param apiThreads number of threads to run independent apis concurrently, 1 - apis run one after another
+	 */
+	public synchronized void setApiThreads(int apiThreads) {
+		this.apiThreads = Math.max(1, apiThreads);
+		if (apiExecutor != null) {
+			apiExecutor.shutdown();
+			apiExecutor = null;
+		}
+		if (this.apiThreads > 1) {
+			apiExecutor = new ThreadPoolExecutor(this.apiThreads, this.apiThreads, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>());
+			apiExecutor.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	public int getAddressFileThreads() {
+		return addressFileThreads;
+	}
+
+	/**
+	 * @param addressFileThreads number of files read concurrently by address search by name
+	 */
+	public void setAddressFileThreads(int addressFileThreads) {
+		this.addressFileThreads = Math.max(1, addressFileThreads);
+		SearchAddressByNameAPI addressApi = getApiByClass(SearchAddressByNameAPI.class);
+		if (addressApi != null) {
+			addressApi.setFileThreads(this.addressFileThreads);
+		}
+	}
+
+	/**
+	 * Marks that api calls dependency during its search, so they are never executed concurrently.
+	 */
+	public void registerDependentAPI(SearchCoreAPI api, SearchCoreAPI dependency) {
+		Object lane = getApiLane(api);
+		Object dependencyLane = getApiLane(dependency);
+		for (Map.Entry<SearchCoreAPI, Object> e : apiLanes.entrySet()) {
+			if (e.getValue() == dependencyLane) {
+				e.setValue(lane);
+			}
+		}
+		apiLanes.put(api, lane);
+		apiLanes.put(dependency, lane);
+	}
+
+	private Object getApiLane(SearchCoreAPI api) {
+		Object lane = apiLanes.get(api);
+		return lane == null ? api : lane;
+	}
+
 	public void setTotalLimit(int totalLimit) {
 		this.totalLimit = totalLimit;
 	}
@@ -352,6 +640,7 @@ public class SearchUICore {
 			preparePhrase(sphrase);
 			AtomicInteger ai = new AtomicInteger();
 			SearchResultMatcher rm = new SearchResultMatcher(matcher, sphrase, ai.get(), ai, totalLimit);
+			rm.setReaderCopies(readerCopies, false);
 			api.search(sphrase, rm);
 
 			SearchResultCollection collection = new SearchResultCollection(sphrase);
@@ -372,7 +661,7 @@ public class SearchUICore {
 	                                                         final boolean resortAll, final boolean removeDuplicates,
 	                                                         final SearchSettings searchSettings,
 	                                                         final CallbackWithObject<SearchResultCollection> callback) {
-		singleThreadedExecutor.submit(new Runnable() {
+		getSingleThreadedExecutor().submit(new Runnable() {
 			@Override
 			public void run() {
 				try {
@@ -391,16 +680,26 @@ public class SearchUICore {
 	public void init() {
 		SearchAmenityByNameAPI amenitiesApi = new SearchCoreFactory.SearchAmenityByNameAPI();
 		apis.add(amenitiesApi);
-		apis.add(new SearchCoreFactory.SearchLocationAndUrlAPI(amenitiesApi));
-		SearchAmenityTypesAPI searchAmenityTypesAPI = new SearchAmenityTypesAPI(poiTypes);
+		SearchLocationAndUrlAPI locationApi = new SearchCoreFactory.SearchLocationAndUrlAPI(amenitiesApi);
+		apis.add(locationApi);
+		registerDependentAPI(locationApi, amenitiesApi);
+		SearchAmenityTypesAPI searchAmenityTypesAPI = new SearchAmenityTypesAPI(poiTypes, poiTypesIndex);
 		apis.add(searchAmenityTypesAPI);
-		apis.add(new SearchAmenityByTypeAPI(poiTypes, searchAmenityTypesAPI));
+		SearchAmenityByTypeAPI amenityByTypeApi = new SearchAmenityByTypeAPI(poiTypes, searchAmenityTypesAPI);
+		apis.add(amenityByTypeApi);
+		registerDependentAPI(amenityByTypeApi, searchAmenityTypesAPI);
 		SearchBuildingAndIntersectionsByStreetAPI streetsApi =
 				new SearchCoreFactory.SearchBuildingAndIntersectionsByStreetAPI();
 		apis.add(streetsApi);
 		SearchStreetByCityAPI cityApi = new SearchCoreFactory.SearchStreetByCityAPI(streetsApi);
 		apis.add(cityApi);
-		apis.add(new SearchCoreFactory.SearchAddressByNameAPI(streetsApi, cityApi));
+		registerDependentAPI(cityApi, streetsApi);
+		SearchAddressByNameAPI addressApi = new SearchCoreFactory.SearchAddressByNameAPI(streetsApi, cityApi);
+		if (addressFileThreads > 1) {
+			addressApi.setFileThreads(addressFileThreads);
+		}
+		apis.add(addressApi);
+		registerDependentAPI(addressApi, cityApi);
 	}
 
 	public void clearCustomSearchPoiFilters() {
@@ -453,9 +752,39 @@ public class SearchUICore {
 	}
 
 	public void updateSettings(SearchSettings settings) {
+		if (!Algorithms.objectEquals(settings.getOfflineIndexes(), searchSettings.getOfflineIndexes())) {
+			clearCache();
+		}
 		searchSettings = settings;
 	}
 
+	/**
+	 * Drops objects read by previous searches, which are reused while user extends the query
+	 */
+	public void clearCache() {
+		for (SearchCoreAPI capi : apis) {
+			if (capi instanceof SearchBaseAPI) {
+				((SearchBaseAPI) capi).clearCache();
+			}
+		}
+		readerCopies.close();
+	}
+
+	/**
+	 * Ends session: stops its threads, drops caches and closes copies of readers opened by search threads
+	 */
+	public void close() {
+		setApiThreads(1);
+		setAddressFileThreads(1);
+		synchronized (this) {
+			if (singleThreadedExecutor != null) {
+				singleThreadedExecutor.shutdown();
+				singleThreadedExecutor = null;
+			}
+		}
+		clearCache();
+	}
+
 	private void filterCurrentResults(SearchPhrase phrase, ResultMatcher<SearchResult> matcher) {
 		if (matcher == null) {
 			return;
@@ -517,7 +846,7 @@ public class SearchUICore {
 		if (debugMode) {
 			LOG.info("Prepare search <" + phrase + ">");
 		}
-		singleThreadedExecutor.submit(new Runnable() {
+		getSingleThreadedExecutor().submit(new Runnable() {
 
 			@Override
 			public void run() {
@@ -557,7 +886,7 @@ public class SearchUICore {
 								filterCurrentResults(phrase, new ResultMatcher<SearchResult>() {
 									@Override
 									public boolean publish(SearchResult object) {
-										quickRes.searchResults.add(object);
+										quickRes.appendSearchResult(object);
 										return true;
 									}
 
@@ -682,6 +1011,9 @@ public class SearchUICore {
 
 	void searchInternal(final SearchPhrase phrase, SearchResultMatcher matcher) {
 		preparePhrase(phrase);
+		if (matcher.getReaderCopies() == null) {
+			matcher.setReaderCopies(readerCopies, false);
+		}
 		ArrayList<SearchCoreAPI> lst = new ArrayList<>(apis);
 		Collections.sort(lst, new Comparator<SearchCoreAPI>() {
 
@@ -691,6 +1023,11 @@ public class SearchUICore {
 						o2.getSearchPriority(phrase));
 			}
 		});
+		ThreadPoolExecutor executor = apiExecutor;
+		if (executor != null) {
+			searchConcurrently(phrase, lst, matcher, executor);
+			return;
+		}
 		for (SearchCoreAPI api : lst) {
 			if (matcher.isCancelled()) {
 				break;
@@ -702,11 +1039,12 @@ public class SearchUICore {
 				if (debugMode) {
 					LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
 				}
+				long start = System.nanoTime();
 				api.search(phrase, matcher);
 				if (debugMode) {
 					LOG.info("API search finishing <" + phrase + "> API=<" + api + ">");
 				}
-				matcher.apiSearchFinished(api, phrase);
+				matcher.apiSearchFinished(api, phrase, System.nanoTime() - start);
 				if (debugMode) {
 					LOG.info("API search done <" + phrase + "> API=<" + api + ">");
 				}
@@ -717,6 +1055,120 @@ public class SearchUICore {
 		}
 	}
 
+	// Lanes of apis run on executor, results are published by this thread in order of api priorities
+	private void searchConcurrently(final SearchPhrase phrase, List<SearchCoreAPI> sortedApis,
+			final SearchResultMatcher matcher, ThreadPoolExecutor executor) {
+		// lazy state of phrase is not thread safe
+		phrase.prepareNameStringMatchers();
+		List<ApiSearchTask> tasks = new ArrayList<>();
+		Map<Object, List<ApiSearchTask>> lanes = new LinkedHashMap<>();
+		for (SearchCoreAPI api : sortedApis) {
+			if (!api.isSearchAvailable(phrase) || api.getSearchPriority(phrase) == -1) {
+				continue;
+			}
+			ApiSearchTask task = new ApiSearchTask(api, phrase, matcher);
+			tasks.add(task);
+			Object lane = getApiLane(api);
+			List<ApiSearchTask> laneTasks = lanes.get(lane);
+			if (laneTasks == null) {
+				laneTasks = new ArrayList<>();
+				lanes.put(lane, laneTasks);
+			}
+			laneTasks.add(task);
+		}
+		for (final List<ApiSearchTask> laneTasks : lanes.values()) {
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (ApiSearchTask task : laneTasks) {
+						task.run();
+					}
+				}
+			});
+		}
+		for (ApiSearchTask task : tasks) {
+			try {
+				task.done.await();
+			} catch (InterruptedException e) {
+				LOG.error(e.getMessage(), e);
+				break;
+			}
+			if (matcher.isCancelled()) {
+				break;
+			}
+			task.publishResults();
+		}
+	}
+
+	private static class ApiSearchTask implements Runnable {
+		private final SearchCoreAPI api;
+		private final SearchPhrase phrase;
+		private final SearchResultMatcher parent;
+		private final SearchResultMatcher rm;
+		// results and region events in order of publishing
+		private final List<SearchResult> published = new ArrayList<>();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private long searchTime;
+
+		ApiSearchTask(SearchCoreAPI api, SearchPhrase phrase, final SearchResultMatcher parent) {
+			this.api = api;
+			this.phrase = phrase;
+			this.parent = parent;
+			this.rm = new SearchResultMatcher(new ResultMatcher<SearchResult>() {
+				@Override
+				public boolean publish(SearchResult object) {
+					published.add(object);
+					return true;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return parent.isCancelled();
+				}
+			}, phrase, parent.request, parent.requestNumber, parent.totalLimit);
+			// results get into top-K when they are published to parent
+			this.rm.useTopKOf(parent);
+			// api runs concurrently with other apis, so shared readers are not read
+			this.rm.setReaderCopies(parent.getReaderCopies(), true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (!rm.isCancelled()) {
+					if (debugMode) {
+						LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
+					}
+					long start = System.nanoTime();
+					api.search(phrase, rm);
+					searchTime = System.nanoTime() - start;
+				}
+			} catch (Throwable e) {
+				LOG.error(e.getMessage(), e);
+			} finally {
+				done.countDown();
+			}
+		}
+
+		void publishResults() {
+			for (SearchResult r : published) {
+				if (r.objectType == ObjectType.SEARCH_API_REGION_FINISHED) {
+					parent.publishEvent(r);
+				} else {
+					parent.publishPrepared(r);
+				}
+				if (parent.isCancelled()) {
+					return;
+				}
+			}
+			parent.addExported(rm);
+			parent.apiSearchFinished(api, phrase, searchTime);
+			if (debugMode) {
+				LOG.info("API search done <" + phrase + "> API=<" + api + "> Results=" + published.size());
+			}
+		}
+	}
+
 	private void preparePhrase(final SearchPhrase phrase) {
 		if (debugMode) {
 			LOG.info("Preparing search phrase <" + phrase + ">");
@@ -743,6 +1195,17 @@ public class SearchUICore {
 		private SearchPhrase phrase;
 		private List<MapObject> exportedObjects;
 		private List<City> exportedCities;
+		// top-K mode: worst of kept results is on top of the heap
+		private int topK = -1;
+		private PriorityQueue<SearchResult> topKResults;
+		private SearchResultComparator topKComparator;
+		// index of results in the heap to keep one of duplicates as SearchResultCollection does
+		private SearchResultCollection topKDuplicates;
+		private SearchResultMatcher topKSource = this;
+		private long apiSearchTime;
+		private SearchReaderCopies readerCopies;
+		// apis of this matcher run on other thread than search thread, so they don't read shared readers
+		private boolean useReaderCopies;
 
 		public SearchResultMatcher(ResultMatcher<SearchResult> matcher, SearchPhrase phrase, int request,
 								   AtomicInteger requestNumber, int totalLimit) {
@@ -751,6 +1214,95 @@ public class SearchUICore {
 			this.request = request;
 			this.requestNumber = requestNumber;
 			this.totalLimit = totalLimit;
+			if (phrase != null && phrase.getSettings().getTopK() > 0) {
+				setTopK(phrase.getSettings().getTopK());
+			}
+		}
+
+		/**
+		 * @param useReaderCopies apis read own copies of readers instead of shared readers
+		 */
+		public void setReaderCopies(SearchReaderCopies readerCopies, boolean useReaderCopies) {
+			this.readerCopies = readerCopies;
+			this.useReaderCopies = useReaderCopies && readerCopies != null;
+		}
+
+		/**
+		 * Readers are read the same way as by other matcher
+		 */
+		public void useReadersOf(SearchResultMatcher matcher) {
+			setReaderCopies(matcher.readerCopies, matcher.useReaderCopies);
+		}
+
+		/**
+		 * @return copies of readers for threads of search, null if search doesn't read files concurrently
+		 */
+		public SearchReaderCopies getReaderCopies() {
+			return readerCopies;
+		}
+
+		/**
+		 * @return reader which is read by thread of api until {@link #releaseReader}
+		 */
+		public BinaryMapIndexReader acquireReader(BinaryMapIndexReader r) throws IOException {
+			return useReaderCopies ? readerCopies.acquire(r) : r;
+		}
+
+		public void releaseReader(BinaryMapIndexReader r, BinaryMapIndexReader reader) {
+			if (reader != r) {
+				readerCopies.release(r, reader);
+			}
+		}
+
+		/**
+		 * Keeps only k best results by {@link SearchResultComparator}, -1 keeps all results.
+		 * Duplicates by {@link SearchResultCollection#sameSearchResult} take one place, the best ranked one is kept.
+		 */
+		public void setTopK(int k) {
+			topK = k;
+			topKSource = this;
+			if (k > 0) {
+				topKComparator = new SearchResultComparator(phrase);
+				topKResults = new PriorityQueue<>(k + 1, Collections.reverseOrder(topKComparator));
+				topKDuplicates = new SearchResultCollection(phrase);
+				topKDuplicates.dedupIndex = new HashMap<>();
+			} else {
+				topKComparator = null;
+				topKResults = null;
+				topKDuplicates = null;
+			}
+		}
+
+		public int getTopK() {
+			return topK;
+		}
+
+		/**
+		 * Results are kept by other matcher, this matcher checks threshold of its results
+		 */
+		void useTopKOf(SearchResultMatcher source) {
+			setTopK(-1);
+			topKSource = source;
+		}
+
+		private SearchResult getTopKThreshold() {
+			SearchResultMatcher src = topKSource;
+			if (src.topKResults == null) {
+				return null;
+			}
+			synchronized (src.topKResults) {
+				return src.topKResults.size() < src.topK ? null : src.topKResults.peek();
+			}
+		}
+
+		/**
+		 * @param best result with highest rank which provider could find, {@link SearchResult#createBestPossible}
+		 * @return false if top-K results are collected and all of them are ranked higher than best,
+		 * so provider could skip reading data
+		 */
+		public boolean canEnterTopK(SearchResult best) {
+			SearchResult threshold = getTopKThreshold();
+			return threshold == null || topKSource.topKComparator.compareRank(best, threshold) <= 0;
 		}
 
 		public SearchResult setParentSearchResult(SearchResult parentSearchResult) {
@@ -764,10 +1316,20 @@ public class SearchUICore {
 		}
 
 		public List<SearchResult> getRequestResults() {
+			if (topKResults != null) {
+				synchronized (topKResults) {
+					return new ArrayList<>(topKResults);
+				}
+			}
 			return requestResults;
 		}
 
 		public int getCount() {
+			if (topKResults != null) {
+				synchronized (topKResults) {
+					return topKResults.size();
+				}
+			}
 			return requestResults.size();
 		}
 
@@ -795,6 +1357,19 @@ public class SearchUICore {
 			}
 		}
 
+		/**
+		 * @return time of api search of last {@link ObjectType#SEARCH_API_FINISHED} event in nanoseconds,
+		 * apis run concurrently are measured in their threads
+		 */
+		public long getApiSearchTime() {
+			return apiSearchTime;
+		}
+
+		void apiSearchFinished(SearchCoreAPI api, SearchPhrase phrase, long searchTime) {
+			apiSearchTime = searchTime;
+			apiSearchFinished(api, phrase);
+		}
+
 		public void apiSearchFinished(SearchCoreAPI api, SearchPhrase phrase) {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
@@ -805,6 +1380,12 @@ public class SearchUICore {
 			}
 		}
 
+		void publishEvent(SearchResult event) {
+			if (matcher != null) {
+				matcher.publish(event);
+			}
+		}
+
 		public void apiSearchRegionFinished(SearchCoreAPI api, BinaryMapIndexReader region, SearchPhrase phrase) {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
@@ -842,9 +1423,15 @@ public class SearchUICore {
 				object.alternateName = null;
 			}
 			object.parentSearchResult = parentSearchResult;
+			return publishPrepared(object);
+		}
+
+		boolean publishPrepared(SearchResult object) {
 			if (matcher == null || matcher.publish(object)) {
 				count++;
-				if (totalLimit == -1 || count < totalLimit) {
+				if (topKResults != null) {
+					offerTopK(object);
+				} else if (totalLimit == -1 || count < totalLimit) {
 					requestResults.add(object);
 				}
 				return true;
@@ -852,6 +1439,27 @@ public class SearchUICore {
 			return false;
 		}
 		
+		private void offerTopK(SearchResult object) {
+			synchronized (topKResults) {
+				SearchResult same = topKDuplicates.findSameSearchResult(object);
+				if (same != null) {
+					if (topKComparator.compare(object, same) >= 0) {
+						return;
+					}
+					topKResults.remove(same);
+					topKDuplicates.unindexSearchResult(same);
+				}
+				if (topKResults.size() < topK) {
+					topKResults.add(object);
+					topKDuplicates.indexSearchResult(object);
+				} else if (topKComparator.compare(object, topKResults.peek()) < 0) {
+					topKDuplicates.unindexSearchResult(topKResults.poll());
+					topKResults.add(object);
+					topKDuplicates.indexSearchResult(object);
+				}
+			}
+		}
+
 		@Override
 		public boolean isCancelled() {
 			boolean cancelled = request != requestNumber.get();
@@ -894,6 +1502,22 @@ public class SearchUICore {
 			exportedCities.add(city);
 		}
 
+		// objects exported by matcher of concurrent api search
+		private void addExported(SearchResultMatcher rm) {
+			if (rm.exportedObjects != null) {
+				if (exportedObjects == null) {
+					exportedObjects = new ArrayList<>();
+				}
+				exportedObjects.addAll(rm.exportedObjects);
+			}
+			if (rm.exportedCities != null) {
+				if (exportedCities == null) {
+					exportedCities = new ArrayList<>();
+				}
+				exportedCities.addAll(rm.exportedCities);
+			}
+		}
+
 		public JSONObject createTestJSON(SearchResultCollection searchResult) {
 			JSONObject json = new JSONObject();
 
@@ -1127,6 +1751,7 @@ public class SearchUICore {
 	}
 
 	public static class SearchResultComparator implements Comparator<SearchResult> {
+		private static final ResultCompareStep[] COMPARE_STEPS = ResultCompareStep.values();
 		private Collator collator;
 		private LatLon loc;
 		private boolean sortByName;
@@ -1141,13 +1766,11 @@ public class SearchUICore {
 
 		@Override
 		public int compare(SearchResult o1, SearchResult o2) {
-			List<ResultCompareStep> steps = new ArrayList<>();
-			for (ResultCompareStep step : ResultCompareStep.values()) {
+			for (ResultCompareStep step : COMPARE_STEPS) {
 				int r = step.compare(o1, o2, this);
-				steps.add(step);
 				if (r != 0) {
 					// debug crashes and identify non-transitive comparision
-					// LOG.debug(String.format("%d: %s o1='%s' o2='%s'", r, steps, o1, o2));
+					// LOG.debug(String.format("%d: %s o1='%s' o2='%s'", r, step, o1, o2));
 					return r;
 				}
 			}
@@ -1155,5 +1778,19 @@ public class SearchUICore {
 			return 0;
 		}
 
+		/**
+		 * Compares only by type, found words and phrase match weight, which don't depend on location and name
+		 */
+		public int compareRank(SearchResult o1, SearchResult o2) {
+			int r = ResultCompareStep.TOP_VISIBLE.compare(o1, o2, this);
+			if (r == 0) {
+				r = ResultCompareStep.FOUND_WORD_COUNT.compare(o1, o2, this);
+			}
+			if (r == 0) {
+				r = -Double.compare(o1.getUnknownPhraseMatchWeight(), o2.getUnknownPhraseMatchWeight());
+			}
+			return r;
+		}
+
 	}
 }
@@ -11,11 +11,13 @@ import static net.osmand.util.LocationParser.parseOpenLocationCode;
 
 import net.osmand.CollatorStringMatcher;
 import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.PlatformUtil;
 import net.osmand.ResultMatcher;
 import net.osmand.binary.BinaryMapAddressReaderAdapter;
 import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter;
 import net.osmand.binary.CommonWords;
 import net.osmand.data.Amenity;
 import net.osmand.data.Building;
@@ -23,6 +25,7 @@ import net.osmand.data.City;
 import net.osmand.data.City.CityType;
 import net.osmand.data.LatLon;
 import net.osmand.data.MapObject;
+import net.osmand.data.Postcode;
 import net.osmand.data.QuadRect;
 import net.osmand.data.QuadTree;
 import net.osmand.data.Street;
@@ -30,6 +33,7 @@ import net.osmand.osm.AbstractPoiType;
 import net.osmand.osm.MapPoiTypes;
 import net.osmand.osm.PoiCategory;
 import net.osmand.osm.PoiType;
+import net.osmand.osm.PoiTypeNameIndex;
 import net.osmand.search.SearchUICore.SearchResultMatcher;
 import net.osmand.search.core.SearchPhrase.NameStringMatcher;
 import net.osmand.search.core.SearchPhrase.SearchPhraseDataType;
@@ -59,11 +63,22 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.logging.Log;
+
 
 public class SearchCoreFactory {
 
+	private static final Log LOG = PlatformUtil.getLog(SearchCoreFactory.class);
 	public static boolean DISPLAY_DEFAULT_POI_TYPES = false;
 	public static final int MAX_DEFAULT_SEARCH_RADIUS = 7;
 	public static final int SEARCH_MAX_PRIORITY = Integer.MAX_VALUE;
@@ -99,6 +114,204 @@ public class SearchCoreFactory {
 	public static final int SEARCH_OLC_WITH_CITY_PRIORITY = 8;
 	public static final int SEARCH_OLC_WITH_CITY_TOTAL_LIMIT = 500;
 
+	/**
+	 * Raw objects read from each file by the last name query of api. When the next query extends
+	 * the previous one (user keeps typing), objects are filtered in memory instead of reading file again.
+	 * Objects are not kept when the query was cancelled or limit of objects was reached.
+	 */
+	public static class SearchCandidatesCache<T> {
+		private final int limit;
+		private final Map<BinaryMapIndexReader, Candidates<T>> candidates = new HashMap<>();
+
+		public static class Candidates<T> {
+			private final BinaryMapIndexReader file;
+			private final String query;
+			private final StringMatcherMode mode;
+			private final String areaKey;
+			private List<T> objects = new ArrayList<>();
+			private boolean complete;
+
+			Candidates(BinaryMapIndexReader file, String query, StringMatcherMode mode, String areaKey) {
+				this.file = file;
+				this.query = query;
+				this.mode = mode;
+				this.areaKey = areaKey;
+			}
+
+			public List<T> getObjects() {
+				return objects;
+			}
+		}
+
+		/**
+		 * Candidates of the file which is read now, shared with result matcher of api
+		 */
+		public static class Collecting<T> {
+			Candidates<T> candidates;
+		}
+
+		public SearchCandidatesCache(int limit) {
+			this.limit = limit;
+		}
+
+		/**
+		 * @return objects which include all results of query or null if file should be read
+		 */
+		public synchronized List<T> getCandidates(BinaryMapIndexReader file, String query, String areaKey) {
+			Candidates<T> c = candidates.get(file);
+			if (c != null && c.complete && c.mode == CHECK_STARTS_FROM_SPACE && query.startsWith(c.query)
+					&& c.areaKey.equals(areaKey)) {
+				return c.objects;
+			}
+			return null;
+		}
+
+		public synchronized Candidates<T> startCollecting(BinaryMapIndexReader file, String query, StringMatcherMode mode,
+				String areaKey) {
+			Candidates<T> c = new Candidates<>(file, query, mode, areaKey);
+			candidates.put(file, c);
+			return c;
+		}
+
+		public void collect(Candidates<T> c, T object) {
+			if (c != null && c.objects != null) {
+				if (c.objects.size() < limit) {
+					c.objects.add(object);
+				} else {
+					c.objects = null;
+				}
+			}
+		}
+
+		public synchronized void finishCollecting(Candidates<T> c, boolean complete) {
+			c.complete = complete && c.objects != null;
+			if (!c.complete && candidates.get(c.file) == c) {
+				candidates.remove(c.file);
+			}
+		}
+
+		public synchronized void clear() {
+			candidates.clear();
+		}
+	}
+
+	/**
+	 * Amenities read by poi type filter from one file, kept together with the (tile aligned) area which was read,
+	 * so search with the same filter nearby or with bigger radius reads only the part of area which is not loaded.
+	 */
+	public static class AmenityAreaCache {
+		private static final long TTL = 10 * 60 * 1000;
+		private final int maxObjects;
+		private final Map<String, Area> areas = new LinkedHashMap<>(16, 0.75f, true);
+		private int objects;
+
+		public static class Area {
+			private final QuadRect loaded;
+			private final List<Amenity> amenities;
+			private final int[] x31;
+			private final int[] y31;
+			private final long time;
+
+			Area(QuadRect loaded, List<Amenity> amenities, long time) {
+				this.loaded = loaded;
+				this.amenities = amenities;
+				this.time = time;
+				x31 = new int[amenities.size()];
+				y31 = new int[amenities.size()];
+				for (int i = 0; i < amenities.size(); i++) {
+					LatLon l = amenities.get(i).getLocation();
+					x31[i] = MapUtils.get31TileNumberX(l.getLongitude());
+					y31[i] = MapUtils.get31TileNumberY(l.getLatitude());
+				}
+			}
+
+			public QuadRect getLoaded() {
+				return loaded;
+			}
+
+			public List<Amenity> getAmenities(QuadRect bbox) {
+				List<Amenity> res = new ArrayList<>();
+				for (int i = 0; i < x31.length; i++) {
+					if (bbox.left <= x31[i] && x31[i] <= bbox.right && bbox.top <= y31[i] && y31[i] <= bbox.bottom) {
+						res.add(amenities.get(i));
+					}
+				}
+				return res;
+			}
+		}
+
+		public AmenityAreaCache(int maxObjects) {
+			this.maxObjects = maxObjects;
+		}
+
+		/**
+		 * Extends bbox to the grid of tiles with size ~1/4 of bbox, so close locations share the same area
+		 */
+		public static QuadRect alignToTiles(QuadRect bbox) {
+			long size = Long.highestOneBit(Math.max(1, (long) (Math.min(bbox.width(), bbox.height()) / 4)));
+			long max = Integer.MAX_VALUE;
+			long left = ((long) bbox.left / size) * size;
+			long top = ((long) bbox.top / size) * size;
+			long right = Math.min(max, ((long) bbox.right / size + 1) * size - 1);
+			long bottom = Math.min(max, ((long) bbox.bottom / size + 1) * size - 1);
+			return new QuadRect(left, top, right, bottom);
+		}
+
+		/**
+		 * @return area loaded before or null
+		 */
+		public synchronized Area get(String filterKey, BinaryMapIndexReader file) {
+			String key = getKey(filterKey, file);
+			Area a = areas.get(key);
+			if (a != null && System.currentTimeMillis() - a.time > TTL) {
+				remove(key);
+				a = null;
+			}
+			return a;
+		}
+
+		public synchronized void put(String filterKey, Area previous, BinaryMapIndexReader file, QuadRect loaded,
+				List<Amenity> newAmenities) {
+			String key = getKey(filterKey, file);
+			List<Amenity> amenities = newAmenities;
+			if (previous != null) {
+				amenities = new ArrayList<>(previous.amenities.size() + newAmenities.size());
+				amenities.addAll(previous.amenities);
+				amenities.addAll(newAmenities);
+			}
+			if (amenities.size() > maxObjects) {
+				remove(key);
+				return;
+			}
+			Area old = areas.put(key, new Area(loaded, amenities, System.currentTimeMillis()));
+			objects += amenities.size() - (old == null ? 0 : old.amenities.size());
+			Iterator<Entry<String, Area>> it = areas.entrySet().iterator();
+			while (objects > maxObjects && it.hasNext()) {
+				Entry<String, Area> e = it.next();
+				if (!e.getKey().equals(key)) {
+					objects -= e.getValue().amenities.size();
+					it.remove();
+				}
+			}
+		}
+
+		public synchronized void clear() {
+			areas.clear();
+			objects = 0;
+		}
+
+		private void remove(String key) {
+			Area a = areas.remove(key);
+			if (a != null) {
+				objects -= a.amenities.size();
+			}
+		}
+
+		private String getKey(String filterKey, BinaryMapIndexReader file) {
+			return filterKey + "_" + file.getFile().getAbsolutePath() + "_" + System.identityHashCode(file);
+		}
+	}
+
 	public static abstract class SearchBaseAPI implements SearchCoreAPI {
 
 		private ObjectType[] searchTypes;
@@ -135,6 +348,12 @@ public class SearchCoreFactory {
 			return true;
 		}
 
+		/**
+		 * Drops objects kept between searches
+		 */
+		public void clearCache() {
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			return 1;
@@ -292,6 +511,9 @@ public class SearchCoreFactory {
 		private List<City> resArray = new ArrayList<>();
 		private SearchStreetByCityAPI cityApi;
 		private SearchBuildingAndIntersectionsByStreetAPI streetsApi;
+		private final SearchCandidatesCache<MapObject> candidatesCache = new SearchCandidatesCache<>(LIMIT);
+		private int fileThreads = 1;
+		private ThreadPoolExecutor fileExecutor;
 
 		public SearchAddressByNameAPI(SearchBuildingAndIntersectionsByStreetAPI streetsApi,
 									  SearchStreetByCityAPI cityApi) {
@@ -301,6 +523,31 @@ public class SearchCoreFactory {
 			this.cityApi = cityApi;
 		}
 
+		/**
+		 * @param fileThreads number of files read concurrently by name search, 1 - files are read one after another
+		 */
+		public synchronized void setFileThreads(int fileThreads) {
+			this.fileThreads = Math.max(1, fileThreads);
+			if (fileExecutor != null) {
+				fileExecutor.shutdown();
+				fileExecutor = null;
+			}
+			if (this.fileThreads > 1) {
+				fileExecutor = new ThreadPoolExecutor(this.fileThreads, this.fileThreads, 60L, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<Runnable>());
+				fileExecutor.allowCoreThreadTimeOut(true);
+			}
+		}
+
+		public int getFileThreads() {
+			return fileThreads;
+		}
+
+		@Override
+		public void clearCache() {
+			candidatesCache.clear();
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			if (!p.isNoSelectedType() && p.getRadiusLevel() == 1) {
@@ -353,7 +600,13 @@ public class SearchCoreFactory {
 				BinaryMapIndexReader r = offlineIndexes.next();
 				if (!townCities.containsKey(r)) {
 					BinaryMapIndexReader.buildAddressRequest(null);
-					List<City> l = r.getCities(null, BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE);
+					List<City> l;
+					BinaryMapIndexReader reader = resultMatcher.acquireReader(r);
+					try {
+						l = reader.getCities(null, BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE);
+					} finally {
+						resultMatcher.releaseReader(r, reader);
+					}
 					townCities.put(r, l);
 					for (City c  : l) {
 						LatLon cl = c.getLocation();
@@ -423,11 +676,16 @@ public class SearchCoreFactory {
 				final int priority = phrase.isNoSelectedType() ?
 						SEARCH_ADDRESS_BY_NAME_PRIORITY : SEARCH_ADDRESS_BY_NAME_PRIORITY_RADIUS2;
 				final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
+				final SearchCandidatesCache.Collecting<MapObject> collecting = new SearchCandidatesCache.Collecting<>();
+				// houses are ranked highest of address results
+				final SearchResult best = SearchResult.createBestPossible(phrase, ObjectType.HOUSE,
+						resultMatcher.getParentSearchResult());
 
 				ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
 					int limit = 0;
 					@Override
 					public boolean publish(MapObject object) {
+						candidatesCache.collect(collecting.candidates, object);
 						if (isCancelled()) {
 							return false;
 						}
@@ -514,7 +772,7 @@ public class SearchCoreFactory {
 					@Override
 					public boolean isCancelled() {
 						return limit > LIMIT * phrase.getRadiusLevel() ||
-								resultMatcher.isCancelled();
+								resultMatcher.isCancelled() || !resultMatcher.canEnterTopK(best);
 					}
 				};
 
@@ -537,30 +795,177 @@ public class SearchCoreFactory {
 				Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(DEFAULT_ADDRESS_BBOX_RADIUS * 5,
 						SearchPhraseDataType.ADDRESS);
 				String wordToSearch = phrase.getUnknownWordToSearch();
+				StringMatcherMode mode = phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
+						: StringMatcherMode.CHECK_STARTS_FROM_SPACE;
+				String query = wordToSearch.toLowerCase().trim();
+				String areaKey = locSpecified ? loc.getLatitude() + " " + loc.getLongitude() + " "
+						+ phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5) : "";
+				List<BinaryMapIndexReader> files = new ArrayList<>();
 				while (offlineIterator.hasNext() && wordToSearch.length() > 0) {
-					BinaryMapIndexReader r = offlineIterator.next();
-					currentFile[0] = r;
-					immediateResults.clear();
-					SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, rawDataCollector, wordToSearch.toLowerCase(),
-							phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
-									: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
-					if (locSpecified) {
-						req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
-								phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
-					}
-					r.searchAddressDataByName(req);
-					for (SearchResult res : immediateResults) {
-						if (res.objectType == ObjectType.STREET) {
-							subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
+					files.add(offlineIterator.next());
+				}
+				// file threads stop reading when search thread doesn't need more objects
+				final AtomicBoolean stopPreload = new AtomicBoolean();
+				Map<BinaryMapIndexReader, Future<FileObjects>> preloaded = preloadByName(phrase, resultMatcher, files,
+						wordToSearch.toLowerCase(), mode, query, areaKey, rawDataCollector == null, stopPreload);
+				try {
+					for (BinaryMapIndexReader r : files) {
+						if (!resultMatcher.canEnterTopK(best)) {
+							break;
+						}
+						currentFile[0] = r;
+						immediateResults.clear();
+						SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, rawDataCollector, wordToSearch.toLowerCase(),
+								mode);
+						if (locSpecified) {
+							req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
+									phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
+						}
+						List<MapObject> cached = candidatesCache.getCandidates(r, query, areaKey);
+						collecting.candidates = candidatesCache.startCollecting(r, query, mode, areaKey);
+						FileObjects read = getPreloaded(preloaded.get(r));
+						if (cached == null && read != null) {
+							for (MapObject o : read.objects) {
+								if (rm.isCancelled()) {
+									break;
+								}
+								rm.publish(o);
+							}
+						} else if (cached != null) {
+							CollatorStringMatcher nameMatcher = new CollatorStringMatcher(query, mode);
+							CollatorStringMatcher postcodeMatcher = new CollatorStringMatcher(
+									Postcode.normalize(query, r.getCountryName()), mode);
+							for (MapObject o : cached) {
+								if (rm.isCancelled()) {
+									break;
+								}
+								if (BinaryMapAddressReaderAdapter.matchesByName(o, nameMatcher, postcodeMatcher)) {
+									rm.publish(o);
+								}
+							}
 						} else {
-							SearchPhrase nphrase = subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
-							searchPoiInCity(nphrase, res, resultMatcher);
+							BinaryMapIndexReader reader = resultMatcher.acquireReader(r);
+							try {
+								reader.searchAddressDataByName(req);
+							} finally {
+								resultMatcher.releaseReader(r, reader);
+							}
+						}
+						candidatesCache.finishCollecting(collecting.candidates, !rm.isCancelled());
+						collecting.candidates = null;
+						for (SearchResult res : immediateResults) {
+							if (!resultMatcher.canEnterTopK(best)) {
+								break;
+							}
+							if (res.objectType == ObjectType.STREET) {
+								subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
+							} else {
+								SearchPhrase nphrase = subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
+								searchPoiInCity(nphrase, res, resultMatcher);
+							}
 						}
+						resultMatcher.apiSearchRegionFinished(this, r, phrase);
+					}
+				} finally {
+					stopPreload.set(true);
+					for (Future<FileObjects> f : preloaded.values()) {
+						f.cancel(false);
 					}
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
 				}
 			}
 		}
+
+		private static class FileObjects {
+			private final List<MapObject> objects = new ArrayList<>();
+			private boolean truncated;
+		}
+
+		/**
+		 * Starts reading of files by name on file threads, objects are published later on search thread in order of files
+		 *
+		 * @param stop - set by search thread when it stops reading files, so file threads stop too
+		 */
+		private Map<BinaryMapIndexReader, Future<FileObjects>> preloadByName(final SearchPhrase phrase,
+				final SearchResultMatcher resultMatcher, List<BinaryMapIndexReader> files, final String nameQuery,
+				final StringMatcherMode mode, String query, String areaKey, boolean allowed, final AtomicBoolean stop) {
+			Map<BinaryMapIndexReader, Future<FileObjects>> futures = new HashMap<>();
+			ThreadPoolExecutor executor;
+			synchronized (this) {
+				executor = fileExecutor;
+			}
+			final SearchReaderCopies readerCopies = resultMatcher.getReaderCopies();
+			if (executor == null || readerCopies == null || !allowed || files.size() < 2) {
+				return futures;
+			}
+			final LatLon loc = phrase.getLastTokenLocation();
+			final int radius = phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5);
+			// more objects than results limit are kept, as some of them are filtered by type or location
+			final int maxObjects = 4 * LIMIT * phrase.getRadiusLevel();
+			for (final BinaryMapIndexReader r : files) {
+				if (candidatesCache.getCandidates(r, query, areaKey) != null) {
+					continue;
+				}
+				futures.put(r, executor.submit(new Callable<FileObjects>() {
+					@Override
+					public FileObjects call() throws IOException {
+						final FileObjects res = new FileObjects();
+						ResultMatcher<MapObject> collector = new ResultMatcher<MapObject>() {
+							@Override
+							public boolean publish(MapObject object) {
+								if (res.objects.size() >= maxObjects) {
+									res.truncated = true;
+								} else {
+									res.objects.add(object);
+								}
+								return false;
+							}
+
+							@Override
+							public boolean isCancelled() {
+								return res.truncated || stop.get() || resultMatcher.isCancelled();
+							}
+						};
+						SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(collector, null,
+								nameQuery, mode);
+						if (loc != null) {
+							req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(), radius);
+						}
+						if (stop.get()) {
+							return res;
+						}
+						BinaryMapIndexReader copy = readerCopies.acquire(r);
+						try {
+							copy.searchAddressDataByName(req);
+						} finally {
+							readerCopies.release(r, copy);
+						}
+						return res;
+					}
+				}));
+			}
+			return futures;
+		}
+
+		/**
+		 * @return objects read by file thread or null if file should be read on search thread
+		 */
+		private FileObjects getPreloaded(Future<FileObjects> f) {
+			if (f == null) {
+				return null;
+			}
+			try {
+				FileObjects res = f.get();
+				return res.truncated ? null : res;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			} catch (ExecutionException e) {
+				LOG.error(e.getCause().getMessage(), e.getCause());
+				return null;
+			} catch (CancellationException e) {
+				return null;
+			}
+		}
 	}
 
 	public static class SearchAmenityByNameAPI extends SearchBaseAPI {
@@ -570,10 +975,17 @@ public class SearchCoreFactory {
 		private static final int BBOX_RADIUS_POI_IN_CITY = 25 * 1000;
 		private static final int FIRST_WORD_MIN_LENGTH = 3;
 
+		private final SearchCandidatesCache<Amenity> candidatesCache = new SearchCandidatesCache<>(LIMIT);
+
 		public SearchAmenityByNameAPI() {
 			super(ObjectType.POI);
 		}
 
+		@Override
+		public void clearCache() {
+			candidatesCache.clear();
+		}
+
 		@Override
 		public boolean search(final SearchPhrase phrase, final SearchResultMatcher resultMatcher) throws IOException {
 			if (!phrase.isUnknownSearchWordPresent()) {
@@ -593,6 +1005,10 @@ public class SearchCoreFactory {
 			final NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
 			QuadRect bbox = phrase.getFileRequest() != null ? phrase.getRadiusBBoxToSearch(BBOX_RADIUS_POI_IN_CITY) : phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
 			final Set<String> ids = new HashSet<String>();
+			final SearchCandidatesCache.Collecting<Amenity> collecting = new SearchCandidatesCache.Collecting<>();
+			final int[] limit = new int[1];
+			final SearchResult best = SearchResult.createBestPossible(phrase, ObjectType.POI,
+					resultMatcher.getParentSearchResult());
 
 			ResultMatcher<Amenity> rawDataCollector = null;
 			if (phrase.getSettings().isExportObjects()) {
@@ -609,17 +1025,15 @@ public class SearchCoreFactory {
 					}
 				};
 			}
-			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
-					(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
-					(int) bbox.bottom, new ResultMatcher<Amenity>() {
-						int limit = 0;
+			final ResultMatcher<Amenity> amenityMatcher = new ResultMatcher<Amenity>() {
 
 						@Override
 						public boolean publish(Amenity object) {
+							candidatesCache.collect(collecting.candidates, object);
 							if (phrase.getSettings().isExportObjects()) {
 								resultMatcher.exportObject(phrase, object);
 							}
-							if (limit++ > LIMIT) {
+							if (limit[0]++ > LIMIT) {
 								return false;
 							}
 							String poiID = object.getType().getKeyName() + "_" + object.getId();
@@ -656,19 +1070,24 @@ public class SearchCoreFactory {
 
 						@Override
 						public boolean isCancelled() {
-							return resultMatcher.isCancelled() && (limit < LIMIT);
+							return (resultMatcher.isCancelled() || !resultMatcher.canEnterTopK(best)) && (limit[0] < LIMIT);
 						}
-					}, rawDataCollector);
+					};
+			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
+					(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
+					(int) bbox.bottom, amenityMatcher, rawDataCollector);
+			String query = BinaryMapPoiReaderAdapter.normalizeSearchPoiByNameQuery(searchWord.trim());
+			String areaKey = (int) bbox.left + " " + (int) bbox.top + " " + (int) bbox.right + " " + (int) bbox.bottom;
 			
 			BinaryMapIndexReader fileRequest = phrase.getFileRequest();
 			if (fileRequest != null) {
-				fileRequest.searchPoiByName(req);
+				searchPoiByName(fileRequest, req, query, areaKey, resultMatcher, amenityMatcher, collecting, limit);
 				resultMatcher.apiSearchRegionFinished(this, fileRequest, phrase);
 			} else {
-				while (offlineIterator.hasNext()) {
+				while (offlineIterator.hasNext() && resultMatcher.canEnterTopK(best)) {
 					BinaryMapIndexReader r = offlineIterator.next();
 					currentFile[0] = r;
-					r.searchPoiByName(req);
+					searchPoiByName(r, req, query, areaKey, resultMatcher, amenityMatcher, collecting, limit);
 					
 					resultMatcher.apiSearchRegionFinished(this, r, phrase);
 				}
@@ -677,6 +1096,33 @@ public class SearchCoreFactory {
 			return true;
 		}
 
+		private void searchPoiByName(BinaryMapIndexReader r, SearchRequest<Amenity> req, String query, String areaKey,
+				SearchResultMatcher resultMatcher, ResultMatcher<Amenity> amenityMatcher, SearchCandidatesCache.Collecting<Amenity> collecting, int[] limit)
+				throws IOException {
+			List<Amenity> cached = candidatesCache.getCandidates(r, query, areaKey);
+			collecting.candidates = candidatesCache.startCollecting(r, query, CHECK_STARTS_FROM_SPACE, areaKey);
+			if (cached != null) {
+				CollatorStringMatcher matcher = new CollatorStringMatcher(query, CHECK_STARTS_FROM_SPACE);
+				for (Amenity a : cached) {
+					if (amenityMatcher.isCancelled()) {
+						break;
+					}
+					if (BinaryMapPoiReaderAdapter.matchesByName(matcher, a)) {
+						amenityMatcher.publish(a);
+					}
+				}
+			} else {
+				BinaryMapIndexReader reader = resultMatcher.acquireReader(r);
+				try {
+					reader.searchPoiByName(req);
+				} finally {
+					resultMatcher.releaseReader(r, reader);
+				}
+			}
+			candidatesCache.finishCollecting(collecting.candidates, !amenityMatcher.isCancelled() && limit[0] <= LIMIT);
+			collecting.candidates = null;
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			if (p.hasObjectType(ObjectType.POI) ||
@@ -717,16 +1163,23 @@ public class SearchCoreFactory {
 
 		public final static String STD_POI_FILTER_PREFIX = "std_";
 
-		private Map<String, PoiType> translatedNames = new LinkedHashMap<>();
-		private List<AbstractPoiType> topVisibleFilters;
-		private List<PoiCategory> categories;
+		private SearchPoiTypesIndex poiTypesIndex;
+		private boolean defaultFiltersAdded;
 		private List<CustomSearchPoiFilter> customPoiFilters = new ArrayList<>();
 		private Map<String, Integer> activePoiFilters = new HashMap<>();
 		private MapPoiTypes types;
 
 		public SearchAmenityTypesAPI(MapPoiTypes types) {
+			this(types, null);
+		}
+
+		/**
+		 * @param poiTypesIndex shared index, could be null then it is created on first search
+		 */
+		public SearchAmenityTypesAPI(MapPoiTypes types, SearchPoiTypesIndex poiTypesIndex) {
 			super(ObjectType.POI_TYPE);
 			this.types = types;
+			this.poiTypesIndex = poiTypesIndex;
 		}
 
 		public void clearCustomFilters() {
@@ -749,8 +1202,11 @@ public class SearchCoreFactory {
 
 		public Map<String, PoiTypeResult> getPoiTypeResults(NameStringMatcher nm, NameStringMatcher nmAdditional) {
 			Map<String, PoiTypeResult> results = new LinkedHashMap<>();
-			for (AbstractPoiType pf : topVisibleFilters) {
-				PoiTypeResult res = checkPoiType(nm, pf);
+			PoiTypeNameIndex nameIndex = types.getNameIndex();
+			// types which could match first word, others are skipped without matching all names
+			Set<AbstractPoiType> candidates = nameIndex.getTypesByFirstWord(nm.getPart());
+			for (AbstractPoiType pf : poiTypesIndex.getTopVisibleFilters()) {
+				PoiTypeResult res = checkPoiType(nm, pf, nameIndex, candidates);
 				if(res != null) {
 					results.put(res.pt.getKeyName(), res);
 				}
@@ -759,33 +1215,34 @@ public class SearchCoreFactory {
 			// if (nmAdditional != null) {
 			//	addAditonals(nmAdditional, results, types.getOtherMapCategory());
 			// }
-			for (PoiCategory c : categories) {
-				PoiTypeResult res = checkPoiType(nm, c);
+			for (PoiCategory c : poiTypesIndex.getCategories()) {
+				PoiTypeResult res = checkPoiType(nm, c, nameIndex, candidates);
 				if(res != null) {
 					results.put(res.pt.getKeyName(), res);
 				}
 				if (nmAdditional != null) {
-					addAditonals(nmAdditional, results, c);
+					addAditonals(nmAdditional, results, c, nameIndex, candidates);
 				}
 			}
-			Iterator<Entry<String, PoiType>> it = translatedNames.entrySet().iterator();
+			Iterator<Entry<String, PoiType>> it = poiTypesIndex.getTranslatedNames().entrySet().iterator();
 			while (it.hasNext()) {
 				Entry<String, PoiType> e = it.next();
 				PoiType pt = e.getValue();
 				if (pt.getCategory() != types.getOtherMapCategory() && !pt.isReference()) {
-					PoiTypeResult res = checkPoiType(nm, pt);
+					PoiTypeResult res = checkPoiType(nm, pt, nameIndex, candidates);
 					if(res != null) {
 						results.put(res.pt.getKeyName(), res);
 					}
 					if (nmAdditional != null) {
-						addAditonals(nmAdditional, results, pt);
+						addAditonals(nmAdditional, results, pt, nameIndex, candidates);
 					}
 				}
 			}
 			return results;
 		}
 
-		private void addAditonals(NameStringMatcher nm, Map<String, PoiTypeResult> results, AbstractPoiType pt) {
+		private void addAditonals(NameStringMatcher nm, Map<String, PoiTypeResult> results, AbstractPoiType pt,
+				PoiTypeNameIndex nameIndex, Set<AbstractPoiType> candidates) {
 			List<PoiType> additionals = pt.getPoiAdditionals();
 			if (additionals != null) {
 				for (PoiType a : additionals) {
@@ -803,7 +1260,7 @@ public class SearchCoreFactory {
 						String enTranslation = a.getEnTranslation().toLowerCase();
 						if (!"no".equals(enTranslation) // && !"yes".equals(enTranslation)
 						) {
-							PoiTypeResult ptr = checkPoiType(nm, a);
+							PoiTypeResult ptr = checkPoiType(nm, a, nameIndex, candidates);
 							if (ptr != null) {
 								results.put(a.getKeyName(), ptr);
 							}
@@ -813,7 +1270,11 @@ public class SearchCoreFactory {
 			}
 		}
 
-		private PoiTypeResult checkPoiType(NameStringMatcher nm, AbstractPoiType pf) {
+		private PoiTypeResult checkPoiType(NameStringMatcher nm, AbstractPoiType pf, PoiTypeNameIndex nameIndex,
+				Set<AbstractPoiType> candidates) {
+			if (candidates != null && !candidates.contains(pf) && nameIndex.isIndexed(pf)) {
+				return null;
+			}
 			PoiTypeResult res = null;
 			if (nm.matches(pf.getTranslation())) {
 				res = addIfMatch(nm, pf.getTranslation(), pf, res);
@@ -847,15 +1308,14 @@ public class SearchCoreFactory {
 		}
 
 		private void initPoiTypes() {
-			if (translatedNames.isEmpty()) {
-				translatedNames = types.getAllTranslatedNames(false);
-				topVisibleFilters = types.getTopVisibleFilters();
-				topVisibleFilters.remove(types.getOsmwiki());
-				categories = types.getCategories(false);
-
+			if (poiTypesIndex == null || poiTypesIndex.isEmpty()) {
+				poiTypesIndex = new SearchPoiTypesIndex(types);
+			}
+			if (!defaultFiltersAdded && !poiTypesIndex.isEmpty()) {
+				defaultFiltersAdded = true;
 				if (DISPLAY_DEFAULT_POI_TYPES) {
 					List<String> order = new ArrayList<>();
-					for (AbstractPoiType p : topVisibleFilters) {
+					for (AbstractPoiType p : poiTypesIndex.getTopVisibleFilters()) {
 						order.add(getStandardFilterId(p));
 					}
 					CustomSearchPoiFilter nearestPois = new CustomSearchPoiFilter() {
@@ -903,7 +1363,7 @@ public class SearchCoreFactory {
 
 			initPoiTypes();
 			if (showTopFiltersOnly) {
-				for (AbstractPoiType pt : topVisibleFilters) {
+				for (AbstractPoiType pt : poiTypesIndex.getTopVisibleFilters()) {
 					SearchResult res = new SearchResult(phrase);
 					res.localeName = pt.getTranslation();
 					res.object = pt;
@@ -1011,10 +1471,12 @@ public class SearchCoreFactory {
 	public static class SearchAmenityByTypeAPI extends SearchBaseAPI {
 		private static final int BBOX_RADIUS = 10000;
 		private static final int BBOX_RADIUS_NEAREST = 1000;
+		private static final int AREA_CACHE_OBJECTS = 30000;
 		private SearchAmenityTypesAPI searchAmenityTypesAPI;
 		private MapPoiTypes types;
 		private AbstractPoiType unselectedPoiType;
 		private String nameFilter;
+		private final AmenityAreaCache areaCache = new AmenityAreaCache(AREA_CACHE_OBJECTS);
 
 		public SearchAmenityByTypeAPI(MapPoiTypes types, SearchAmenityTypesAPI searchAmenityTypesAPI) {
 			super(ObjectType.POI);
@@ -1022,6 +1484,11 @@ public class SearchCoreFactory {
 			this.searchAmenityTypesAPI = searchAmenityTypesAPI;
 		}
 
+		@Override
+		public void clearCache() {
+			areaCache.clear();
+		}
+
 		public AbstractPoiType getUnselectedPoiType() {
 			return unselectedPoiType;
 		}
@@ -1049,6 +1516,8 @@ public class SearchCoreFactory {
 		public boolean search(final SearchPhrase phrase, final SearchResultMatcher resultMatcher) throws IOException {
 			unselectedPoiType = null;
 			SearchPoiTypeFilter poiTypeFilter = null;
+			// poi type key, null if objects read by filter shouldn't be cached
+			String filterKey = null;
 			String nameFilter = null;
 			int countExtraWords = 0;
 			Set<String> poiAdditionals = new LinkedHashSet<>();
@@ -1056,7 +1525,9 @@ public class SearchCoreFactory {
 				Object obj = phrase.getLastSelectedWord().getResult().object;
 				if (obj instanceof AbstractPoiType) {
 					poiTypeFilter = getPoiTypeFilter((AbstractPoiType) obj, poiAdditionals);
+					filterKey = "pt:" + ((AbstractPoiType) obj).getKeyName();
 				} else if (obj instanceof SearchPoiTypeFilter) {
+					// custom filters can be edited with the same id, so they aren't cached
 					poiTypeFilter = (SearchPoiTypeFilter) obj;
 				} else {
 					throw new UnsupportedOperationException();
@@ -1087,6 +1558,7 @@ public class SearchCoreFactory {
 								}
 							}
 							poiTypeFilter = getPoiTypeFilter(poiTypeResult.pt, poiAdditionals);
+							filterKey = "pt:" + poiTypeResult.pt.getKeyName();
 							unselectedPoiType = poiTypeResult.pt;
 							int wordsInPoiType = SearchPhrase.countWords(foundName);
 							int wordsInUnknownPart = SearchPhrase.countWords(phrase.getUnknownSearchPhrase());
@@ -1116,15 +1588,101 @@ public class SearchCoreFactory {
 					if (poiTypeFilter instanceof CustomSearchPoiFilter) {
 						rm = ((CustomSearchPoiFilter) poiTypeFilter).wrapResultMatcher(rm);
 					}
-					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
-							(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, poiTypeFilter, rm);
-					r.searchPoi(req);
+					if (filterKey == null) {
+						SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
+								(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, poiTypeFilter, rm);
+						BinaryMapIndexReader reader = resultMatcher.acquireReader(r);
+						try {
+							reader.searchPoi(req);
+						} finally {
+							resultMatcher.releaseReader(r, reader);
+						}
+					} else {
+						searchPoiCached(r, poiTypeFilter, filterKey, bbox, resultMatcher, rm);
+					}
 					resultMatcher.apiSearchRegionFinished(this, r, phrase);
 				}
 			}
 			return true;
 		}
 
+		private void searchPoiCached(BinaryMapIndexReader r, SearchPoiTypeFilter poiTypeFilter, String filterKey,
+				final QuadRect bbox, SearchResultMatcher resultMatcher, final ResultMatcher<Amenity> rm) throws IOException {
+			QuadRect area = AmenityAreaCache.alignToTiles(bbox);
+			AmenityAreaCache.Area cached = areaCache.get(filterKey, r);
+			List<QuadRect> toLoad = new ArrayList<>();
+			if (cached != null) {
+				QuadRect loaded = cached.getLoaded();
+				QuadRect hull = new QuadRect(Math.min(area.left, loaded.left), Math.min(area.top, loaded.top),
+						Math.max(area.right, loaded.right), Math.max(area.bottom, loaded.bottom));
+				if (hull.width() * hull.height() > 2 * area.width() * area.height()) {
+					// moved too far, previous area is not useful
+					cached = null;
+				} else {
+					area = hull;
+					addNotLoadedParts(hull, loaded, toLoad);
+				}
+			}
+			if (cached == null) {
+				toLoad.add(area);
+			} else {
+				for (Amenity a : cached.getAmenities(bbox)) {
+					if (rm.isCancelled()) {
+						return;
+					}
+					rm.publish(a);
+				}
+			}
+			final List<Amenity> read = new ArrayList<>();
+			ResultMatcher<Amenity> collector = new ResultMatcher<Amenity>() {
+
+				@Override
+				public boolean publish(Amenity object) {
+					read.add(object);
+					LatLon l = object.getLocation();
+					int x = MapUtils.get31TileNumberX(l.getLongitude());
+					int y = MapUtils.get31TileNumberY(l.getLatitude());
+					if (bbox.left <= x && x <= bbox.right && bbox.top <= y && y <= bbox.bottom) {
+						return rm.publish(object);
+					}
+					return false;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return rm.isCancelled();
+				}
+			};
+			BinaryMapIndexReader reader = resultMatcher.acquireReader(r);
+			try {
+				for (QuadRect q : toLoad) {
+					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) q.left, (int) q.right,
+							(int) q.top, (int) q.bottom, -1, poiTypeFilter, collector);
+					reader.searchPoi(req);
+				}
+			} finally {
+				resultMatcher.releaseReader(r, reader);
+			}
+			if (!rm.isCancelled()) {
+				areaCache.put(filterKey, cached, r, area, read);
+			}
+		}
+
+		// splits hull without inner rect into top, bottom, left and right parts
+		private void addNotLoadedParts(QuadRect hull, QuadRect loaded, List<QuadRect> parts) {
+			if (hull.top < loaded.top) {
+				parts.add(new QuadRect(hull.left, hull.top, hull.right, loaded.top - 1));
+			}
+			if (loaded.bottom < hull.bottom) {
+				parts.add(new QuadRect(hull.left, loaded.bottom + 1, hull.right, hull.bottom));
+			}
+			if (hull.left < loaded.left) {
+				parts.add(new QuadRect(hull.left, loaded.top, loaded.left - 1, loaded.bottom));
+			}
+			if (loaded.right < hull.right) {
+				parts.add(new QuadRect(loaded.right + 1, loaded.top, hull.right, loaded.bottom));
+			}
+		}
 
 		private ResultMatcher<Amenity> getResultMatcher(final SearchPhrase phrase, final SearchPoiTypeFilter poiTypeFilter,
 														final SearchResultMatcher resultMatcher, final String nameFilter,
@@ -1281,7 +1839,13 @@ public class SearchCoreFactory {
 			if (isLastWordCityGroup(phrase) && sw.getResult() != null && sw.getResult().file != null) {
 				City c = (City) sw.getResult().object;
 				if (c.getStreets().isEmpty()) {
-					sw.getResult().file.preloadStreets(c, null);
+					BinaryMapIndexReader file = sw.getResult().file;
+					BinaryMapIndexReader reader = resultMatcher.acquireReader(file);
+					try {
+						reader.preloadStreets(c, null);
+					} finally {
+						resultMatcher.releaseReader(file, reader);
+					}
 				}
 				int limit = 0;
 				NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
@@ -1384,7 +1948,12 @@ public class SearchCoreFactory {
 								}
 							});
 
-					file.preloadBuildings(s, sr);
+					BinaryMapIndexReader reader = resultMatcher.acquireReader(file);
+					try {
+						reader.preloadBuildings(s, sr);
+					} finally {
+						resultMatcher.releaseReader(file, reader);
+					}
 					Collections.sort(s.getBuildings(), new Comparator<Building>() {
 
 						@Override
@@ -1649,6 +2218,7 @@ public class SearchCoreFactory {
 			};
 			
 			SearchResultMatcher rm = new SearchResultMatcher(matcher, olcPhrase, 0, new AtomicInteger(0), SEARCH_OLC_WITH_CITY_TOTAL_LIMIT);
+			rm.useReadersOf(resultMatcher);
 			amenitiesApi.search(olcPhrase, rm);
 			
 			final NameStringMatcher nmEquals = new NameStringMatcher(text, CHECK_EQUALS);
@@ -4,8 +4,8 @@ import java.util.*;
 import java.util.regex.Pattern;
 
 import net.osmand.Collator;
-import net.osmand.CollatorStringMatcher;
 import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.FoldedStringMatcher;
 import net.osmand.OsmAndCollator;
 import net.osmand.StringMatcher;
 import net.osmand.binary.Abbreviations;
@@ -577,6 +577,18 @@ public class SearchPhrase {
 		return mainUnknownNameStringMatcher;
 	}
 	
+	/**
+	 * Calculates main unknown word and name matchers, so the phrase could be read by concurrent searches
+	 */
+	public void prepareNameStringMatchers() {
+		getMainUnknownNameStringMatcher();
+		getFirstUnknownNameStringMatcher();
+		for (int i = 0; i < otherUnknownWords.size(); i++) {
+			getUnknownNameStringMatcher(i);
+		}
+		get1km31Rect();
+	}
+
 	public NameStringMatcher getFirstUnknownNameStringMatcher() {
 		if (firstUnknownNameStringMatcher == null) {
 			firstUnknownNameStringMatcher = getNameStringMatcher(firstUnknownSearchWord, isFirstUnknownSearchWordComplete());
@@ -774,10 +786,17 @@ public class SearchPhrase {
 
 	public static class NameStringMatcher implements StringMatcher {
 
-		private CollatorStringMatcher sm;
+		private final FoldedStringMatcher sm;
 
 		public NameStringMatcher(String namePart, StringMatcherMode mode) {
-			sm = new CollatorStringMatcher(namePart, mode);
+			sm = new FoldedStringMatcher(namePart, mode);
+		}
+
+		/**
+		 * @return part in folded form as it is compared with names
+		 */
+		public String getPart() {
+			return sm.getPart();
 		}
 		
 		public boolean matches(Collection<String> map) {
@@ -0,0 +1,54 @@
+package net.osmand.search.core;
+
+import net.osmand.osm.AbstractPoiType;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.osm.PoiCategory;
+import net.osmand.osm.PoiType;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Poi type tables searched by {@link SearchCoreFactory.SearchAmenityTypesAPI}. Index is read only after creation,
+ * so one instance could be shared by many search sessions over the same {@link MapPoiTypes}.
+ */
+public class SearchPoiTypesIndex {
+
+	private final MapPoiTypes types;
+	private final Map<String, PoiType> translatedNames;
+	private final List<AbstractPoiType> topVisibleFilters;
+	private final List<PoiCategory> categories;
+
+	public SearchPoiTypesIndex(MapPoiTypes types) {
+		this.types = types;
+		translatedNames = Collections.unmodifiableMap(types.getAllTranslatedNames(false));
+		List<AbstractPoiType> topFilters = types.getTopVisibleFilters();
+		topFilters.remove(types.getOsmwiki());
+		topVisibleFilters = Collections.unmodifiableList(topFilters);
+		categories = Collections.unmodifiableList(types.getCategories(false));
+	}
+
+	public MapPoiTypes getTypes() {
+		return types;
+	}
+
+	/**
+	 * @return true if poi types were not loaded when index was created
+	 */
+	public boolean isEmpty() {
+		return translatedNames.isEmpty();
+	}
+
+	public Map<String, PoiType> getTranslatedNames() {
+		return translatedNames;
+	}
+
+	public List<AbstractPoiType> getTopVisibleFilters() {
+		return topVisibleFilters;
+	}
+
+	public List<PoiCategory> getCategories() {
+		return categories;
+	}
+}
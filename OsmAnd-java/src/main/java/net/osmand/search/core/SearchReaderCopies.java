@@ -0,0 +1,78 @@
+package net.osmand.search.core;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Own instances of readers for threads of one search session. Shared readers are read by search thread and by other
+ * code without locks, so apis running concurrently and address files read by file threads take a copy with
+ * {@link #acquire(BinaryMapIndexReader)}, which is used by one thread until {@link #release}.
+ * Copies are reused by next reads and closed by {@link #close()} when session ends.
+ */
+public class SearchReaderCopies {
+
+	private static final Log LOG = PlatformUtil.getLog(SearchReaderCopies.class);
+
+	private final Map<BinaryMapIndexReader, List<BinaryMapIndexReader>> free = new HashMap<>();
+	// copies taken by threads while session was closed, they are closed when released
+	private final Set<BinaryMapIndexReader> closeOnRelease = new HashSet<>();
+	private final Set<BinaryMapIndexReader> acquired = new HashSet<>();
+
+	public synchronized BinaryMapIndexReader acquire(BinaryMapIndexReader r) throws IOException {
+		List<BinaryMapIndexReader> copies = free.get(r);
+		BinaryMapIndexReader copy;
+		if (copies != null && !copies.isEmpty()) {
+			copy = copies.remove(copies.size() - 1);
+		} else {
+			copy = new BinaryMapIndexReader(new RandomAccessFile(r.getFile(), "r"), r);
+		}
+		acquired.add(copy);
+		return copy;
+	}
+
+	public synchronized void release(BinaryMapIndexReader r, BinaryMapIndexReader copy) {
+		acquired.remove(copy);
+		if (closeOnRelease.remove(copy)) {
+			close(copy);
+			return;
+		}
+		List<BinaryMapIndexReader> copies = free.get(r);
+		if (copies == null) {
+			copies = new ArrayList<>();
+			free.put(r, copies);
+		}
+		copies.add(copy);
+	}
+
+	/**
+	 * Closes copies, copies which are read now are closed when they are released
+	 */
+	public synchronized void close() {
+		for (List<BinaryMapIndexReader> copies : free.values()) {
+			for (BinaryMapIndexReader copy : copies) {
+				close(copy);
+			}
+		}
+		free.clear();
+		closeOnRelease.addAll(acquired);
+	}
+
+	private void close(BinaryMapIndexReader copy) {
+		try {
+			copy.close();
+		} catch (IOException e) {
+			LOG.error(e.getMessage(), e);
+		}
+	}
+}
@@ -64,6 +64,22 @@ public class SearchResult {
 		this.requiredSearchPhrase = sp;
 	}
 
+	/**
+	 * @return result ranked not lower than any result of given type found by phrase under given parent,
+	 * location and names are not set, so it is compared only by rank (type, found words and phrase match weight)
+	 */
+	static SearchResult createBestPossible(SearchPhrase phrase, ObjectType objectType, SearchResult parent) {
+		SearchResult best = new SearchResult(phrase);
+		best.objectType = objectType;
+		best.parentSearchResult = parent;
+		best.firstUnknownWordMatches = true;
+		best.otherWordsMatch = new ArrayList<>(phrase.getUnknownSearchWords());
+		// weight of complete match with all words equal, nested results never exceed MAX_PHRASE_WEIGHT_TOTAL
+		best.unknownPhraseMatchWeight = parent == null ? ObjectType.getTypeWeight(objectType) * MAX_TYPES_BASE_10
+				+ MAX_PHRASE_WEIGHT_TOTAL / 2 : MAX_PHRASE_WEIGHT_TOTAL;
+		return best;
+	}
+
 	// maximum corresponds to the top entry
 	public double getUnknownPhraseMatchWeight() {
 		if (unknownPhraseMatchWeight != 0) {
@@ -32,6 +32,7 @@ public class SearchSettings {
 	private List<BinaryMapIndexReader> offlineIndexes = new ArrayList<>();
 	private int radiusLevel = 1;
 	private int totalLimit = -1;
+	private int topK = -1;
 	private String lang;
 	private boolean transliterateIfMissing;
 	private ObjectType[] searchTypes;
@@ -47,6 +48,7 @@ public class SearchSettings {
 			this.lang = s.lang;
 			this.transliterateIfMissing = s.transliterateIfMissing;
 			this.totalLimit = s.totalLimit;
+			this.topK = s.topK;
 			this.offlineIndexes = s.offlineIndexes;
 			this.originalLocation = s.originalLocation;
 			this.searchBBox31 = s.searchBBox31;
@@ -103,6 +105,19 @@ public class SearchSettings {
 		return s;
 	}
 	
+	public int getTopK() {
+		return topK;
+	}
+
+	/**
+	 * @param topK number of best results kept by search, providers skip data which can't get into them, -1 - all results
+	 */
+	public SearchSettings setTopK(int topK) {
+		SearchSettings s = new SearchSettings(this);
+		s.topK = topK;
+		return s;
+	}
+
 	public LatLon getOriginalLocation() {
 		return originalLocation;
 	}
@@ -241,6 +256,9 @@ public class SearchSettings {
 		}
 		json.put("radiusLevel", radiusLevel);
 		json.put("totalLimit", totalLimit);
+		if (topK > 0) {
+			json.put("topK", topK);
+		}
 		json.put("lang", lang);
 		json.put("transliterateIfMissing", transliterateIfMissing);
 		json.put("emptyQueryAllowed", emptyQueryAllowed);
@@ -263,6 +281,7 @@ public class SearchSettings {
 		}
 		s.radiusLevel = json.optInt("radiusLevel", 1);
 		s.totalLimit = json.optInt("totalLimit", -1);
+		s.topK = json.optInt("topK", -1);
 		s.transliterateIfMissing = json.optBoolean("transliterateIfMissing", false);
 		s.emptyQueryAllowed = json.optBoolean("emptyQueryAllowed", false);
 		s.sortByName = json.optBoolean("sortByName", false);
@@ -0,0 +1,119 @@
+package net.osmand.util;
+
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Douglas-Peucker simplification for all zooms at once. Split points of recursion don't depend on epsilon,
+ * so point survives simplification with epsilon if its distance and distances of all parent split points
+ * are greater than epsilon. One pass stores minimal zoom where point survives, with epsilon
+ * 2^(base - zoom) meters, and simplification for any zoom is filter of points by zoom.
+ */
+public class SimplificationZooms {
+
+	public static final float DEFAULT_BASE = 17.2f;
+	public static final int MAX_ZOOM = 31;
+	// point is not visible on any zoom, e.g. it lies on line between neighbours
+	public static final byte NEVER = Byte.MAX_VALUE;
+
+	public static byte[] calculate(List<WptPt> points) {
+		double[] latitudes = new double[points.size()];
+		double[] longitudes = new double[points.size()];
+		for (int i = 0; i < points.size(); i++) {
+			latitudes[i] = points.get(i).lat;
+			longitudes[i] = points.get(i).lon;
+		}
+		return calculate(latitudes, longitudes, DEFAULT_BASE);
+	}
+
+	/**
+	 * @return minimal zoom for each point where it is kept by simplifyDouglasPeucker with
+	 * epsilon 2^(base - zoom), first and last points are kept on all zooms
+	 */
+	public static byte[] calculate(double[] latitudes, double[] longitudes, float base) {
+		int size = latitudes.length;
+		byte[] zooms = new byte[size];
+		if (size == 0) {
+			return zooms;
+		}
+		for (int i = 1; i < size - 1; i++) {
+			zooms[i] = NEVER;
+		}
+		// start and end of ranges, minimal distance of parent split points is kept by start of range
+		TIntArrayList stack = new TIntArrayList();
+		double[] parentDist = new double[size];
+		stack.add(0);
+		stack.add(size - 1);
+		parentDist[0] = Double.POSITIVE_INFINITY;
+		while (!stack.isEmpty()) {
+			int end = stack.removeAt(stack.size() - 1);
+			int start = stack.removeAt(stack.size() - 1);
+			if (end - start < 2) {
+				continue;
+			}
+			double dmax = Double.NEGATIVE_INFINITY;
+			int index = -1;
+			for (int i = start + 1; i < end; i++) {
+				double d = MapUtils.getOrthogonalDistance(latitudes[i], longitudes[i],
+						latitudes[start], longitudes[start], latitudes[end], longitudes[end]);
+				if (d > dmax) {
+					dmax = d;
+					index = i;
+				}
+			}
+			if (index < 0) {
+				// all distances are NaN (e.g. NaN coordinates), range is not split and inner points are not visible
+				continue;
+			}
+			double dist = Math.min(dmax, parentDist[start]);
+			zooms[index] = getMinZoom(dist, base);
+			parentDist[start] = dist;
+			parentDist[index] = dist;
+			stack.add(start);
+			stack.add(index);
+			stack.add(index);
+			stack.add(end);
+		}
+		return zooms;
+	}
+
+	/**
+	 * @return minimal zoom where dist > 2^(base - zoom) or {@link #NEVER}
+	 */
+	public static byte getMinZoom(double dist, float base) {
+		if (!(dist > getEpsilon(MAX_ZOOM, base))) {
+			return NEVER;
+		}
+		if (dist > getEpsilon(0, base)) {
+			return 0;
+		}
+		int zoom = (int) Math.max(1, Math.min(MAX_ZOOM, Math.floor(base - Math.log(dist) / Math.log(2)) + 1));
+		while (zoom > 0 && dist > getEpsilon(zoom - 1, base)) {
+			zoom--;
+		}
+		while (!(dist > getEpsilon(zoom, base))) {
+			zoom++;
+		}
+		return (byte) zoom;
+	}
+
+	public static double getEpsilon(int zoom, float base) {
+		return Math.pow(2.0, base - zoom);
+	}
+
+	/**
+	 * @return indexes of points visible on zoom
+	 */
+	public static int[] filter(byte[] zooms, int zoom) {
+		TIntArrayList indexes = new TIntArrayList();
+		for (int i = 0; i < zooms.length; i++) {
+			if (zooms[i] <= zoom) {
+				indexes.add(i);
+			}
+		}
+		return indexes.toArray();
+	}
+}
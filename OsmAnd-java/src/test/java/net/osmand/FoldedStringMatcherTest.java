@@ -0,0 +1,79 @@
+package net.osmand;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Locale;
+
+public class FoldedStringMatcherTest {
+
+	private static final String[] NAMES = { "Auhofstraße", "Auhofstrasse 12", "Café de Flore", "Rue de l'Église",
+			"Bahnhofstraße", "Main Street", "Sankt-Peter-Straße", "Кафе Пушкин", "Улица Льва Толстого", "Ёлка",
+			"Škoda Centrum", "Ærø", "Hôtel de Ville", "Zürich HB", "St. John's Church", "Plac Łódzki", "1st Avenue", "İstanbul", "Ærøskøbing",
+			"Encyclopædia", "Οδός Αθηνάς", "Άγιος Νικόλαος", "Ανθούπολη", "Straßen-Café", "Saint-Étienne",
+			"E-Bike", "Færøerne", "Œuvre" };
+
+	private static final String[] PARTS = { "auhof", "auhofstrasse", "cafe", "eglise", "strasse", "straße", "main st",
+			"st.", "street", "peter", "пушкин", "кафе", "толст", "елка", "ёлка", "skoda", "aero", "hotel", "zurich", "hb",
+			"john", "1st", "ville", "de", "istanbul", "İstanbul", "ist", "ae", "ærø", "aerø", "aero", "ærøskøbing",
+			"encyclopaedia", "οδος", "οδός", "αθηνας", "άγιος", "αγιος", "νικόλαος", "ανθουπολη", "saint-etienne", "etienne",
+			"tetienne", "ebik", "aer", "oeuv", "œuv", "hofstr", "ssen-c" };
+
+	@Test
+	public void testSameAsCollatorMatcher() {
+		for (StringMatcherMode mode : StringMatcherMode.values()) {
+			for (String part : PARTS) {
+				CollatorStringMatcher expected = new CollatorStringMatcher(part, mode);
+				FoldedStringMatcher actual = new FoldedStringMatcher(part, mode);
+				for (String name : NAMES) {
+					// collator of jdk compares case of cyrillic and greek letters, other modes lower case name first
+					String collatorName = mode == StringMatcherMode.CHECK_CONTAINS ? name.toLowerCase() : name;
+					Assert.assertEquals(mode + " '" + part + "' in '" + name + "'", expected.matches(collatorName),
+							actual.matches(name));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFold() {
+		Assert.assertEquals("auhofstrasse", FoldedStringMatcher.fold("Auhofstraße"));
+		Assert.assertEquals("cafe creme", FoldedStringMatcher.fold("Café Crème"));
+		Assert.assertEquals("ærø", FoldedStringMatcher.fold("Ærø"));
+		Assert.assertEquals("οδός", FoldedStringMatcher.fold("Οδός"));
+		Assert.assertEquals("улица", FoldedStringMatcher.fold("Улица"));
+		Assert.assertEquals("й", FoldedStringMatcher.fold("Й"));
+		String folded = "main street";
+		Assert.assertSame(folded, FoldedStringMatcher.fold(folded));
+	}
+
+	@Test
+	public void testDefaultLocale() {
+		// fold table is created with collator of default locale
+		FoldedStringMatcher.fold("");
+		Locale locale = Locale.getDefault();
+		try {
+			Locale.setDefault(new Locale("tr"));
+			Assert.assertEquals("istanbul", FoldedStringMatcher.fold("ISTANBUL"));
+			Assert.assertTrue(new FoldedStringMatcher("ISTANBUL", StringMatcherMode.CHECK_EQUALS).matches("Istanbul"));
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	@Test
+	public void testContains() {
+		Assert.assertTrue(new FoldedStringMatcher("hof", StringMatcherMode.CHECK_CONTAINS).matches("Auhofstraße"));
+		Assert.assertTrue(new FoldedStringMatcher("strasse", StringMatcherMode.CHECK_CONTAINS).matches("Auhofstraße"));
+		Assert.assertFalse(new FoldedStringMatcher("platz", StringMatcherMode.CHECK_CONTAINS).matches("Auhofstraße"));
+	}
+
+	@Test
+	public void testTrailingDot() {
+		FoldedStringMatcher m = new FoldedStringMatcher("str.", StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
+		Assert.assertEquals(StringMatcherMode.CHECK_STARTS_FROM_SPACE, m.getMode());
+		Assert.assertTrue(m.matches("Auhof Straße"));
+	}
+}
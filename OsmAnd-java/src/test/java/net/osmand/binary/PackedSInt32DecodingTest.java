@@ -0,0 +1,135 @@
+package net.osmand.binary;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PackedSInt32DecodingTest {
+
+	// zigzag values of all varint lengths and their boundaries
+	private static final int[] BOUNDARY_VALUES = {0, 1, -1, 63, -64, 64, -65, 8191, -8192, 8192, 1048575,
+			-1048576, 1048576, 134217727, -134217728, 134217728, Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+	@Test
+	public void testSameAsValueByValue() throws IOException {
+		Random rnd = new Random(17);
+		List<int[]> runs = new ArrayList<>();
+		runs.add(new int[0]);
+		runs.add(BOUNDARY_VALUES);
+		for (int i = 0; i < 200; i++) {
+			// long runs are decoded over several buffer windows
+			int[] run = new int[i % 50 == 0 ? 3000 + rnd.nextInt(3000) : rnd.nextInt(400)];
+			for (int j = 0; j < run.length; j++) {
+				int r = rnd.nextInt(10);
+				run[j] = r == 0 ? rnd.nextInt() : r == 1 ? BOUNDARY_VALUES[rnd.nextInt(BOUNDARY_VALUES.length)]
+						: rnd.nextInt(4000) - 2000;
+			}
+			runs.add(run);
+		}
+		byte[] data = write(runs);
+		// stream returning few bytes per read refills buffer in the middle of varints
+		for (boolean chunked : new boolean[] {false, true}) {
+			List<int[]> expected = decodeValueByValue(CodedInputStream.newInstance(stream(data, chunked)));
+			List<int[]> packed = decodePacked(CodedInputStream.newInstance(stream(data, chunked)));
+			Assert.assertEquals(runs.size(), expected.size());
+			Assert.assertEquals(runs.size(), packed.size());
+			for (int i = 0; i < runs.size(); i++) {
+				Assert.assertArrayEquals(runs.get(i), expected.get(i));
+				Assert.assertArrayEquals(runs.get(i), packed.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void testPairsOfOddCountFail() throws IOException {
+		List<int[]> runs = new ArrayList<>();
+		runs.add(new int[] {10, -20, 30, -40});
+		runs.add(new int[] {10, -20, 30});
+		CodedInputStream cis = CodedInputStream.newInstance(write(runs));
+		int[] out = new int[16];
+		int old = cis.pushLimit(cis.readRawVarint32());
+		Assert.assertEquals(4, cis.readPackedSInt32Pairs(out, 0));
+		cis.popLimit(old);
+		old = cis.pushLimit(cis.readRawVarint32());
+		try {
+			cis.readPackedSInt32Pairs(out, 0);
+			Assert.fail("Truncated pair is not reported");
+		} catch (InvalidProtocolBufferException e) {
+			// expected
+		}
+	}
+
+	private static byte[] write(List<int[]> runs) throws IOException {
+		ByteArrayOutputStream bous = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bous);
+		ByteArrayOutputStream run = new ByteArrayOutputStream();
+		for (int[] values : runs) {
+			run.reset();
+			CodedOutputStream ro = CodedOutputStream.newInstance(run);
+			for (int v : values) {
+				ro.writeSInt32NoTag(v);
+			}
+			ro.flush();
+			out.writeRawVarint32(run.size());
+			out.writeRawBytes(run.toByteArray());
+		}
+		out.flush();
+		return bous.toByteArray();
+	}
+
+	private static InputStream stream(byte[] data, boolean chunked) {
+		if (!chunked) {
+			return new ByteArrayInputStream(data);
+		}
+		return new ByteArrayInputStream(data) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 7));
+			}
+		};
+	}
+
+	private static List<int[]> decodeValueByValue(CodedInputStream cis) throws IOException {
+		List<int[]> runs = new ArrayList<>();
+		while (!cis.isAtEnd()) {
+			int old = cis.pushLimit(cis.readRawVarint32());
+			List<Integer> values = new ArrayList<>();
+			while (cis.getBytesUntilLimit() > 0) {
+				values.add(cis.readSInt32());
+			}
+			int[] run = new int[values.size()];
+			for (int i = 0; i < run.length; i++) {
+				run[i] = values.get(i);
+			}
+			runs.add(run);
+			cis.popLimit(old);
+		}
+		return runs;
+	}
+
+	private static List<int[]> decodePacked(CodedInputStream cis) throws IOException {
+		List<int[]> runs = new ArrayList<>();
+		while (!cis.isAtEnd()) {
+			int size = cis.readRawVarint32();
+			int old = cis.pushLimit(size);
+			int[] out = new int[size];
+			int len = cis.readPackedSInt32(out, 0);
+			int[] run = new int[len];
+			System.arraycopy(out, 0, run, 0, len);
+			runs.add(run);
+			cis.popLimit(old);
+		}
+		return runs;
+	}
+}
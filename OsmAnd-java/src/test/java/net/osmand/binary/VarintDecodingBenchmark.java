@@ -0,0 +1,134 @@
+package net.osmand.binary;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares byte-at-a-time sint32 decoding with {@link CodedInputStream#readPackedSInt32(int[], int)}
+ * on data shaped like coordinate deltas of map objects and prints throughput.
+ * Decoded values are checked by {@link PackedSInt32DecodingTest}.
+ */
+public class VarintDecodingBenchmark {
+
+	private static final int OBJECTS = 20000;
+	private static final int MAX_POINTS = 200;
+
+	public static void main(String[] args) throws IOException {
+		byte[] data = generate(OBJECTS, new Random(17));
+		System.out.println("Data size " + data.length / 1024 + " KB");
+		int[] buf = new int[16];
+		long expected = decodeByteByByte(data);
+		for (int i = 0; i < 10; i++) {
+			long time = System.nanoTime();
+			long a = decodeByteByByte(data);
+			long byteByByte = System.nanoTime() - time;
+			time = System.nanoTime();
+			long b = decodePacked(data, buf);
+			long packed = System.nanoTime() - time;
+			if (a != expected || b != expected) {
+				throw new IllegalStateException("Decoded values differ");
+			}
+			System.out.println(String.format("Byte by byte %.1f MB/s, packed %.1f MB/s", mbs(data.length, byteByByte),
+					mbs(data.length, packed)));
+		}
+	}
+
+	private static double mbs(int bytes, long nanos) {
+		return bytes / (1024d * 1024d) / (nanos / 1e9);
+	}
+
+	// objects as length delimited runs of (dx, dy) pairs, mostly short deltas with some long jumps
+	private static byte[] generate(int objects, Random rnd) throws IOException {
+		ByteArrayOutputStream bous = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bous);
+		ByteArrayOutputStream run = new ByteArrayOutputStream();
+		for (int i = 0; i < objects; i++) {
+			run.reset();
+			CodedOutputStream ro = CodedOutputStream.newInstance(run);
+			int points = 2 + rnd.nextInt(MAX_POINTS);
+			for (int j = 0; j < points * 2; j++) {
+				int d = rnd.nextInt(10) == 0 ? rnd.nextInt() : rnd.nextInt(4000) - 2000;
+				ro.writeSInt32NoTag(d);
+			}
+			ro.flush();
+			out.writeRawVarint32(run.size());
+			out.writeRawBytes(run.toByteArray());
+		}
+		out.flush();
+		return bous.toByteArray();
+	}
+
+	private static long decodeByteByByte(byte[] data) throws IOException {
+		CodedInputStream cis = CodedInputStream.newInstance(new ByteArrayInputStream(data));
+		long sum = 0;
+		while (!cis.isAtEnd()) {
+			int old = cis.pushLimit(cis.readRawVarint32());
+			int px = 0;
+			while (cis.getBytesUntilLimit() > 0) {
+				px += CodedInputStream.decodeZigZag32(readRawVarint32ByteByByte(cis));
+				sum += px;
+			}
+			cis.popLimit(old);
+		}
+		return sum;
+	}
+
+	private static long decodePacked(byte[] data, int[] buf) throws IOException {
+		CodedInputStream cis = CodedInputStream.newInstance(new ByteArrayInputStream(data));
+		long sum = 0;
+		while (!cis.isAtEnd()) {
+			int size = cis.readRawVarint32();
+			int old = cis.pushLimit(size);
+			if (buf.length < size) {
+				buf = new int[size];
+			}
+			int len = cis.readPackedSInt32(buf, 0);
+			int px = 0;
+			for (int i = 0; i < len; i++) {
+				px += buf[i];
+				sum += px;
+			}
+			cis.popLimit(old);
+		}
+		return sum;
+	}
+
+	// previous implementation of CodedInputStream.readRawVarint32
+	private static int readRawVarint32ByteByByte(CodedInputStream cis) throws IOException {
+		byte tmp = cis.readRawByte();
+		if (tmp >= 0) {
+			return tmp;
+		}
+		int result = tmp & 0x7f;
+		if ((tmp = cis.readRawByte()) >= 0) {
+			result |= tmp << 7;
+		} else {
+			result |= (tmp & 0x7f) << 7;
+			if ((tmp = cis.readRawByte()) >= 0) {
+				result |= tmp << 14;
+			} else {
+				result |= (tmp & 0x7f) << 14;
+				if ((tmp = cis.readRawByte()) >= 0) {
+					result |= tmp << 21;
+				} else {
+					result |= (tmp & 0x7f) << 21;
+					result |= (tmp = cis.readRawByte()) << 28;
+					if (tmp < 0) {
+						for (int i = 0; i < 5; i++) {
+							if (cis.readRawByte() >= 0) {
+								return result;
+							}
+						}
+						throw new IOException("Malformed varint");
+					}
+				}
+			}
+		}
+		return result;
+	}
+}
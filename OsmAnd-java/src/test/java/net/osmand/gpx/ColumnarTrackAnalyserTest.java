@@ -0,0 +1,123 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.gpx.PointAttribute.Elevation;
+import net.osmand.gpx.PointAttribute.Speed;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static net.osmand.gpx.TrackAnalysisTestUtil.*;
+
+public class ColumnarTrackAnalyserTest {
+
+	@Test
+	public void testSameAsTrackAnalysis() throws InterruptedException {
+		Random random = new Random(42);
+		List<TrkSegment> segments = new ArrayList<>();
+		segments.add(createSegment(random, 3000, false, true));
+		segments.add(createSegment(random, 1, false, true));
+		segments.add(createSegment(random, 0, false, true));
+		segments.add(createSegment(random, 2000, true, true));
+		segments.add(createSegment(random, 1500, false, false));
+
+		GPXTrackAnalysis expected = prepareInformation(segments, false);
+		ColumnarTrackAnalyser analyser = new ColumnarTrackAnalyser();
+		analyser.setCollectPointAttributes(true);
+		GPXTrackAnalysis actual = analyser.analyse(FILE_TIMESTAMP, toColumnar(segments));
+		assertAnalysis(expected, actual, 0);
+		assertAttributes(expected, actual);
+	}
+
+	@Test
+	public void testSpeedDerivedBeforeFirstSpeed() throws InterruptedException {
+		Random random = new Random(7);
+		TrkSegment segment = createSegment(random, 500, false, true);
+		for (int i = 300; i < segment.points.size(); i++) {
+			segment.points.get(i).speed = 1 + random.nextFloat();
+		}
+		List<TrkSegment> segments = new ArrayList<>();
+		segments.add(segment);
+		segments.add(createSegment(random, 100, false, true));
+
+		GPXTrackAnalysis expected = prepareInformation(segments, false);
+		ColumnarTrackAnalyser analyser = new ColumnarTrackAnalyser();
+		GPXTrackAnalysis actual = analyser.analyse(FILE_TIMESTAMP, toColumnar(segments));
+		assertAnalysis(expected, actual, 0);
+		Assert.assertTrue(actual.hasSpeedInTrack());
+	}
+
+	@Test
+	public void testParallelChunks() throws InterruptedException {
+		Random random = new Random(1);
+		List<TrkSegment> segments = new ArrayList<>();
+		segments.add(createSegment(random, 20000, false, true));
+		segments.add(createSegment(random, 777, true, true));
+		segments.add(createSegment(random, 5000, false, false));
+
+		GPXTrackAnalysis expected = prepareInformation(segments, false);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			ColumnarTrackAnalyser analyser = new ColumnarTrackAnalyser();
+			analyser.setExecutor(executor);
+			analyser.setChunkSize(1000);
+			analyser.setCollectPointAttributes(true);
+			GPXTrackAnalysis actual = analyser.analyse(FILE_TIMESTAMP, toColumnar(segments));
+			assertAnalysis(expected, actual, 1e-5);
+			assertAttributes(expected, actual);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testWithoutTime() throws InterruptedException {
+		TrkSegment segment = new TrkSegment();
+		segment.points.add(new WptPt(52.0, 4.0, 0, Double.NaN, 0, Double.NaN));
+		segment.points.add(new WptPt(52.001, 4.001, 0, Double.NaN, 0, Double.NaN));
+		List<TrkSegment> segments = new ArrayList<>();
+		segments.add(segment);
+
+		GPXTrackAnalysis expected = prepareInformation(segments, false);
+		GPXTrackAnalysis actual = new ColumnarTrackAnalyser().analyse(FILE_TIMESTAMP, toColumnar(segments));
+		assertAnalysis(expected, actual, 0);
+		Assert.assertEquals(FILE_TIMESTAMP, actual.startTime);
+		Assert.assertFalse(actual.hasElevationData());
+	}
+
+	private static List<ColumnarTrkSegment> toColumnar(List<TrkSegment> segments) {
+		List<ColumnarTrkSegment> res = new ArrayList<>();
+		for (TrkSegment segment : segments) {
+			res.add(ColumnarTrkSegment.fromTrkSegment(segment));
+		}
+		return res;
+	}
+
+	private static void assertAttributes(GPXTrackAnalysis expected, GPXTrackAnalysis actual) {
+		List<Elevation> expectedElevations = expected.getElevationData().getAttributes();
+		List<Elevation> actualElevations = actual.getElevationData().getAttributes();
+		List<Speed> expectedSpeeds = expected.getSpeedData().getAttributes();
+		List<Speed> actualSpeeds = actual.getSpeedData().getAttributes();
+		Assert.assertEquals(expectedElevations.size(), actualElevations.size());
+		Assert.assertEquals(expectedSpeeds.size(), actualSpeeds.size());
+		for (int i = 0; i < expectedElevations.size(); i++) {
+			Elevation e = expectedElevations.get(i);
+			Elevation a = actualElevations.get(i);
+			Assert.assertEquals(e.value, a.value);
+			Assert.assertEquals(e.distance, a.distance, 0);
+			Assert.assertEquals(e.timeDiff, a.timeDiff, 0);
+			Speed es = expectedSpeeds.get(i);
+			Speed as = actualSpeeds.get(i);
+			Assert.assertEquals(es.value, as.value);
+			Assert.assertEquals(es.distance, as.distance, 0);
+			Assert.assertEquals(es.timeDiff, as.timeDiff, 0);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package net.osmand.gpx;
+
+import net.osmand.router.RouteColorize;
+import net.osmand.util.MapUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Prints times of {@link ElevationPipeline} and of {@link ElevationApproximator}, {@link ElevationDiffsCalculator}
+ * with previous slopes calculation of {@link RouteColorize} on generated track with 100k points.
+ * Generated tracks and previous calculations are shared with {@link ElevationPipelineTest}.
+ */
+public class ElevationPipelineBenchmark {
+
+	private static final int POINTS = 100000;
+	static final double SLOPE_RANGE = 150;
+
+	public static void main(String[] args) {
+		Track track = generate(new Random(23), POINTS);
+		for (int i = 0; i < 10; i++) {
+			long time = System.nanoTime();
+			double[] diffs = approximatorDiffs(track);
+			double[] slopes = previousSlopes(track.lat, track.lon, track.ele.clone(), SLOPE_RANGE);
+			long previous = System.nanoTime() - time;
+
+			time = System.nanoTime();
+			ElevationPipeline pipeline = new ElevationPipeline(track.lat, track.lon, track.ele.clone(), POINTS);
+			double[] pipelineDiffs = pipeline.calculateElevationDiffs();
+			double[] pipelineSlopes = pipeline.calculateSlopes(SLOPE_RANGE);
+			long current = System.nanoTime() - time;
+			if (!Arrays.equals(diffs, pipelineDiffs) || !Arrays.equals(slopes, pipelineSlopes)) {
+				throw new IllegalStateException("Results differ");
+			}
+			System.out.println(String.format("%d points: diffs and slopes %.1f ms, pipeline %.1f ms", POINTS,
+					previous / 1e6, current / 1e6));
+		}
+	}
+
+	static class Track {
+		double[] lat;
+		double[] lon;
+		double[] ele;
+	}
+
+	// walk with hills, noise of elevation, stops with the same points and missing elevations
+	static Track generate(Random random, int size) {
+		Track track = new Track();
+		track.lat = new double[size];
+		track.lon = new double[size];
+		track.ele = new double[size];
+		double lat = 46.5;
+		double lon = 8.0;
+		double heading = 0;
+		for (int i = 0; i < size; i++) {
+			if (random.nextInt(20) != 0) {
+				heading += (random.nextDouble() - 0.5) * 0.5;
+				double step = random.nextDouble() * 0.0002;
+				lat += Math.cos(heading) * step;
+				lon += Math.sin(heading) * step;
+			}
+			track.lat[i] = lat;
+			track.lon[i] = lon;
+			track.ele[i] = random.nextInt(50) == 0 ? Double.NaN
+					: 1000 + 300 * Math.sin(i / 300.0) + random.nextDouble() * 5;
+		}
+		return track;
+	}
+
+	static double[] approximatorDiffs(final Track track) {
+		ElevationApproximator approximator = new ElevationApproximator() {
+			@Override
+			public double getPointLatitude(int index) {
+				return track.lat[index];
+			}
+
+			@Override
+			public double getPointLongitude(int index) {
+				return track.lon[index];
+			}
+
+			@Override
+			public double getPointElevation(int index) {
+				return track.ele[index];
+			}
+
+			@Override
+			public int getPointsCount() {
+				return track.lat.length;
+			}
+		};
+		double[] res = new double[2];
+		if (!approximator.approximate()) {
+			return res;
+		}
+		final double[] distances = approximator.getDistances();
+		final double[] elevations = approximator.getElevations();
+		ElevationDiffsCalculator calculator = new ElevationDiffsCalculator() {
+			@Override
+			public double getPointDistance(int index) {
+				return distances[index];
+			}
+
+			@Override
+			public double getPointElevation(int index) {
+				return elevations[index];
+			}
+
+			@Override
+			public int getPointsCount() {
+				return distances.length;
+			}
+		};
+		calculator.calculateElevationDiffs();
+		res[0] = calculator.getDiffElevationUp();
+		res[1] = calculator.getDiffElevationDown();
+		return res;
+	}
+
+	// slopes of RouteColorize before ElevationPipeline, window is searched from each point
+	static double[] previousSlopes(double[] latitudes, double[] longitudes, double[] elevations, double slopeRange) {
+		correctElevations(latitudes, longitudes, elevations);
+		for (int i = 2; i < elevations.length - 2; i++) {
+			elevations[i] = elevations[i - 2] + elevations[i - 1] + elevations[i] + elevations[i + 1] + elevations[i + 2];
+			elevations[i] /= 5;
+		}
+		double[] slopes = new double[elevations.length];
+		double[] distances = new double[elevations.length];
+		double totalDistance = 0.0d;
+		for (int i = 0; i < elevations.length - 1; i++) {
+			totalDistance += MapUtils.getDistance(latitudes[i], longitudes[i], latitudes[i + 1], longitudes[i + 1]);
+			distances[i + 1] = totalDistance;
+		}
+		for (int i = 0; i < elevations.length; i++) {
+			if (distances[i] < slopeRange / 2 || distances[i] > totalDistance - slopeRange / 2) {
+				slopes[i] = Double.NaN;
+			} else {
+				double[] arg = findDerivativeArguments(distances, elevations, i, slopeRange);
+				slopes[i] = (arg[1] - arg[0]) / (arg[3] - arg[2]);
+			}
+		}
+		return slopes;
+	}
+
+	private static void correctElevations(double[] latitudes, double[] longitudes, double[] elevations) {
+		double maxDistance = RouteColorize.MAX_CORRECT_ELEVATION_DISTANCE;
+		for (int i = 0; i < elevations.length; i++) {
+			if (Double.isNaN(elevations[i])) {
+				double leftDist = maxDistance;
+				double rightDist = maxDistance;
+				double leftElevation = Double.NaN;
+				double rightElevation = Double.NaN;
+				for (int left = i - 1; left > 0 && leftDist <= maxDistance; left--) {
+					if (!Double.isNaN(elevations[left])) {
+						double dist = MapUtils.getDistance(latitudes[left], longitudes[left], latitudes[i], longitudes[i]);
+						if (dist < leftDist) {
+							leftDist = dist;
+							leftElevation = elevations[left];
+						} else {
+							break;
+						}
+					}
+				}
+				for (int right = i + 1; right < elevations.length && rightDist <= maxDistance; right++) {
+					if (!Double.isNaN(elevations[right])) {
+						double dist = MapUtils.getDistance(latitudes[right], longitudes[right], latitudes[i], longitudes[i]);
+						if (dist < rightDist) {
+							rightElevation = elevations[right];
+							rightDist = dist;
+						} else {
+							break;
+						}
+					}
+				}
+				if (!Double.isNaN(leftElevation) && !Double.isNaN(rightElevation)) {
+					elevations[i] = (leftElevation + rightElevation) / 2;
+				} else if (Double.isNaN(leftElevation) && !Double.isNaN(rightElevation)) {
+					elevations[i] = rightElevation;
+				} else if (!Double.isNaN(leftElevation) && Double.isNaN(rightElevation)) {
+					elevations[i] = leftElevation;
+				} else {
+					for (int right = i + 1; right < elevations.length; right++) {
+						if (!Double.isNaN(elevations[right])) {
+							elevations[i] = elevations[right];
+							break;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static double[] findDerivativeArguments(double[] distances, double[] elevations, int index, double slopeRange) {
+		double[] result = new double[4];
+		double minDist = distances[index] - slopeRange / 2;
+		double maxDist = distances[index] + slopeRange / 2;
+		result[0] = Double.NaN;
+		result[1] = Double.NaN;
+		result[2] = minDist;
+		result[3] = maxDist;
+		int closestMaxIndex = -1;
+		int closestMinIndex = -1;
+		for (int i = index; i < distances.length; i++) {
+			if (distances[i] == maxDist) {
+				result[1] = elevations[i];
+				break;
+			}
+			if (distances[i] > maxDist) {
+				closestMaxIndex = i;
+				break;
+			}
+		}
+		for (int i = index; i >= 0; i--) {
+			if (distances[i] == minDist) {
+				result[0] = elevations[i];
+				break;
+			}
+			if (distances[i] < minDist) {
+				closestMinIndex = i;
+				break;
+			}
+		}
+		if (closestMaxIndex > 0) {
+			double coef = (maxDist - distances[closestMaxIndex - 1]) / (distances[closestMaxIndex] - distances[closestMaxIndex - 1]);
+			result[1] = (1 - coef) * elevations[closestMaxIndex - 1] + coef * elevations[closestMaxIndex];
+		}
+		if (closestMinIndex >= 0) {
+			double coef = (minDist - distances[closestMinIndex]) / (distances[closestMinIndex + 1] - distances[closestMinIndex]);
+			result[0] = (1 - coef) * elevations[closestMinIndex] + coef * elevations[closestMinIndex + 1];
+		}
+		return result;
+	}
+}
@@ -0,0 +1,42 @@
+package net.osmand.gpx;
+
+import net.osmand.router.RouteColorize;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static net.osmand.gpx.ElevationPipelineBenchmark.*;
+
+/**
+ * Compares {@link ElevationPipeline} with {@link ElevationApproximator}, {@link ElevationDiffsCalculator} and
+ * previous slopes calculation of {@link RouteColorize}, times are printed by {@link ElevationPipelineBenchmark}.
+ */
+public class ElevationPipelineTest {
+
+	@Test
+	public void testElevationDiffsMatch() {
+		Random random = new Random(21);
+		for (int t = 0; t < 20; t++) {
+			Track track = generate(random, 3 + random.nextInt(3000));
+			double[] expected = approximatorDiffs(track);
+			ElevationPipeline pipeline = new ElevationPipeline(track.lat, track.lon, track.ele, track.lat.length);
+			double[] actual = pipeline.calculateElevationDiffs();
+			Assert.assertEquals(expected[0], actual[0], 0);
+			Assert.assertEquals(expected[1], actual[1], 0);
+		}
+	}
+
+	@Test
+	public void testSlopesMatch() {
+		Random random = new Random(22);
+		for (int t = 0; t < 20; t++) {
+			Track track = generate(random, 1 + random.nextInt(3000));
+			double[] expected = previousSlopes(track.lat, track.lon, track.ele.clone(), SLOPE_RANGE);
+			RouteColorize colorize = new RouteColorize(track.lat, track.lon, track.ele, 0, 1, null);
+			double[] actual = colorize.calculateSlopesByElevations(track.lat, track.lon, track.ele.clone(), SLOPE_RANGE);
+			Assert.assertArrayEquals(expected, actual, 0);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class GPXBinaryFormatTest {
+
+	private static final String GPX = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n"
+			+ "<gpx version=\"1.1\" creator=\"OsmAnd\" xmlns=\"http://www.topografix.com/GPX/1/1\" xmlns:osmand=\"https://osmand.net\">\n"
+			+ "<metadata><name>Tour</name><desc>Über</desc><author><name>A</name><email id=\"a\" domain=\"b.c\"/></author>"
+			+ "<copyright author=\"A\"><year>2023</year></copyright><time>2023-05-01T10:00:00Z</time>"
+			+ "<bounds minlat=\"52.1\" minlon=\"4.1\" maxlat=\"52.2\" maxlon=\"4.2\"/></metadata>\n"
+			+ "<wpt lat=\"52.123456789\" lon=\"-4.5\"><ele>12.35</ele><name>Café</name><type>Food</type>"
+			+ "<extensions><osmand:icon>cafe</osmand:icon><osmand:color>#ff0000</osmand:color></extensions></wpt>\n"
+			+ "<rte><name>r</name><rtept lat=\"52.1\" lon=\"4.1\"><extensions><osmand:profile>car</osmand:profile>"
+			+ "</extensions></rtept></rte>\n"
+			+ "<trk><name>t</name><trkseg><name>s</name>"
+			+ "<trkpt lat=\"52.1\" lon=\"4.1\"><ele>-1.25</ele><time>2023-05-01T10:00:01Z</time><hdop>3.5</hdop>"
+			+ "<extensions><osmand:speed>2.25</osmand:speed></extensions></trkpt>"
+			+ "<trkpt lat=\"52.10001\" lon=\"4.10001\"><ele>0.04</ele><time>2023-05-01T10:00:02.500Z</time></trkpt>"
+			+ "<extensions><osmand:route><segment id=\"1\" length=\"2\" startTrkptIdx=\"0\" types=\"0\"/></osmand:route>"
+			+ "<osmand:types><type t=\"highway\" v=\"primary\"/></osmand:types></extensions></trkseg>"
+			+ "<trkseg><trkpt lat=\"-33.9\" lon=\"151.2\"/></trkseg></trk>\n"
+			+ "<extensions><osmand:show_arrows>true</osmand:show_arrows>"
+			+ "<osmand:points_groups><group name=\"Food\" color=\"#ff0000\" icon=\"cafe\"/></osmand:points_groups>"
+			+ "</extensions></gpx>";
+
+	@Test
+	public void testSameGpxAfterConversion() throws IOException {
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(new ByteArrayInputStream(GPX.getBytes("UTF-8")));
+		Assert.assertNull(gpxFile.error);
+		String expected = GPXUtilities.asString(gpxFile);
+		GPXFile restored = convert(gpxFile);
+		Assert.assertEquals(expected, GPXUtilities.asString(restored));
+		Assert.assertEquals("cafe", restored.getPointsGroups().get("Food").iconName);
+		Assert.assertEquals(1, restored.getPointsGroups().get("Food").points.size());
+	}
+
+	@Test
+	public void testExactValues() throws IOException {
+		Random random = new Random(11);
+		GPXFile gpxFile = new GPXFile("test");
+		for (int s = 0; s < 3; s++) {
+			TrkSegment segment = new TrkSegment();
+			for (int i = 0; i < 1000; i++) {
+				WptPt p = new WptPt();
+				p.lat = s == 0 ? Math.round(random.nextDouble() * 1e7) / 1e7 : random.nextDouble() * 90;
+				p.lon = random.nextDouble() * 180 - 90;
+				p.time = 1700000000000L + i * 1000L + random.nextInt(1000);
+				p.ele = s == 1 && i % 10 == 0 ? Double.NaN : (s == 0 ? (float) (random.nextInt(100000) / 10.0) : random.nextDouble() * 100);
+				p.speed = s == 2 ? 0 : random.nextFloat() * 30;
+				p.hdop = i % 3 == 0 ? Double.NaN : Math.round(random.nextDouble() * 100) / 10.0;
+				p.heading = s == 1 ? random.nextInt(360) : Float.NaN;
+				if (i % 100 == 0) {
+					p.name = "Point " + i;
+					p.getExtensionsToWrite().put("profile", "car");
+				}
+				segment.points.add(p);
+			}
+			gpxFile.addTrkSegment(segment.points);
+		}
+		GPXFile restored = convert(gpxFile);
+		Assert.assertEquals(gpxFile.tracks.size(), restored.tracks.size());
+		for (int t = 0; t < gpxFile.tracks.size(); t++) {
+			for (int s = 0; s < gpxFile.tracks.get(t).segments.size(); s++) {
+				TrkSegment expected = gpxFile.tracks.get(t).segments.get(s);
+				TrkSegment actual = restored.tracks.get(t).segments.get(s);
+				Assert.assertEquals(expected.points.size(), actual.points.size());
+				for (int i = 0; i < expected.points.size(); i++) {
+					WptPt e = expected.points.get(i);
+					WptPt a = actual.points.get(i);
+					Assert.assertEquals(e.lat, a.lat, 0);
+					Assert.assertEquals(e.lon, a.lon, 0);
+					Assert.assertEquals(e.time, a.time);
+					Assert.assertEquals(e.ele, a.ele, 0);
+					Assert.assertEquals(e.speed, a.speed, 0);
+					Assert.assertEquals(e.hdop, a.hdop, 0);
+					Assert.assertEquals(e.heading, a.heading, 0);
+					Assert.assertEquals(e.name, a.name);
+					Assert.assertEquals(e.getExtensionsToRead(), a.getExtensionsToRead());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSegmentAccess() throws IOException {
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(new ByteArrayInputStream(GPX.getBytes("UTF-8")));
+		GPXBinaryReader reader = new GPXBinaryReader(ByteBuffer.wrap(toBytes(gpxFile)));
+		Assert.assertEquals(1, reader.getTracksCount());
+		Assert.assertEquals("t", reader.getTrackName(0));
+		Assert.assertEquals(2, reader.getSegmentsCount(0));
+		Assert.assertEquals(2, reader.getSegmentPointsCount(0, 0));
+		Assert.assertEquals(52.1, reader.getSegmentBounds(0, 0).bottom, 0);
+		Assert.assertEquals(4.10001, reader.getSegmentBounds(0, 0).right, 0);
+		TrkSegment segment = reader.readSegment(0, 1);
+		Assert.assertEquals(1, segment.points.size());
+		Assert.assertEquals(151.2, segment.points.get(0).lon, 0);
+		ColumnarTrkSegment columnar = reader.readColumnarSegment(0, 0);
+		Assert.assertEquals("s", columnar.name);
+		Assert.assertEquals(2, columnar.size());
+		Assert.assertEquals(-1.25, columnar.getElevation(0), 0);
+		Assert.assertEquals(1682935202500L, columnar.getTime(1));
+	}
+
+	private static GPXFile convert(GPXFile gpxFile) throws IOException {
+		return new GPXBinaryReader(ByteBuffer.wrap(toBytes(gpxFile))).readGPXFile();
+	}
+
+	private static byte[] toBytes(GPXFile gpxFile) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GPXBinaryWriter.write(gpxFile, out);
+		return out.toByteArray();
+	}
+}
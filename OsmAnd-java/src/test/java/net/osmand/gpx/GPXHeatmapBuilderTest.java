@@ -0,0 +1,72 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.util.Algorithms;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class GPXHeatmapBuilderTest {
+
+	@Test
+	public void testCounts() throws IOException, InterruptedException {
+		File dir = File.createTempFile("heatmap", "");
+		dir.delete();
+		dir.mkdirs();
+		try {
+			List<File> files = new ArrayList<>();
+			for (int f = 0; f < 3; f++) {
+				GPXFile gpxFile = new GPXFile("test");
+				List<WptPt> points = new ArrayList<>();
+				// the same line twice in each file and shifted line in last file
+				for (int k = 0; k < 2; k++) {
+					for (int i = 0; i <= 100; i++) {
+						points.add(new WptPt(52.0 + (f == 2 ? 0.01 : 0), 4.0 + i * 0.001, 0, 0, 0, 0));
+					}
+				}
+				gpxFile.addTrkSegment(points);
+				File file = new File(dir, f + ".gpx");
+				Assert.assertNull(GPXUtilities.writeGpxFile(file, gpxFile));
+				files.add(file);
+			}
+			files.add(new File(dir, "missing.gpx"));
+
+			File tilesDir = new File(dir, "tiles");
+			GPXHeatmapBuilder builder = new GPXHeatmapBuilder(tilesDir);
+			builder.setZooms(10, 14);
+			builder.setThreads(2);
+			builder.setMaxTilesInMemory(1);
+			builder.build(files);
+			Assert.assertEquals(3, builder.getFilesProcessed());
+			Assert.assertEquals(1, builder.getFilesFailed());
+			builder.build(files.subList(0, 1));
+
+			for (int zoom = 10; zoom <= 14; zoom++) {
+				int shift = 31 - zoom - GPXHeatmapBuilder.TILE_SIZE_BITS;
+				int x = MapUtils.get31TileNumberX(4.05) >>> shift;
+				int y = MapUtils.get31TileNumberY(52.0) >>> shift;
+				File tileFile = GPXHeatmapBuilder.getTileFile(tilesDir, zoom,
+						x >> GPXHeatmapBuilder.TILE_SIZE_BITS, y >> GPXHeatmapBuilder.TILE_SIZE_BITS);
+				int[] tile = GPXHeatmapBuilder.readTile(tileFile);
+				int mask = GPXHeatmapBuilder.TILE_SIZE - 1;
+				Assert.assertEquals(3, tile[((y & mask) << GPXHeatmapBuilder.TILE_SIZE_BITS) | (x & mask)]);
+				int max = 0;
+				for (int value : tile) {
+					max = Math.max(max, value);
+				}
+				Assert.assertEquals(3, max);
+			}
+			Assert.assertFalse(GPXHeatmapBuilder.getTileFile(tilesDir, 15, 0, 0).getParentFile().getParentFile().exists());
+			Assert.assertTrue(Arrays.asList(new File(tilesDir, "10").list()).size() > 0);
+		} finally {
+			Algorithms.removeAllFiles(dir);
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.Track;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class GPXStreamReaderTest {
+
+	private static final String GPX = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n"
+			+ "<gpx version=\"1.1\" creator=\"OsmAnd\" xmlns=\"http://www.topografix.com/GPX/1/1\" xmlns:osmand=\"https://osmand.net\">\n"
+			+ "<metadata><name>m</name><time>2023-05-01T10:00:00Z</time></metadata>\n"
+			+ "<wpt lat=\"52.123456789\" lon=\"-4.5\"><ele>12.34</ele><time>2023-05-01T10:00:00+02:00</time><name>Café</name>"
+			+ "<desc>d</desc><type>Food</type><cmt>c</cmt><link href=\"https://a.b\"/><extensions><osmand:icon>cafe</osmand:icon>"
+			+ "<osmand:speed>1.5</osmand:speed></extensions></wpt>\n"
+			+ "<wpt lat=\"-0.00000004\" lon=\"0\"><name>Zero</name><category>c</category><type>t</type></wpt>\n"
+			+ "<rte><name>r</name><rtept lat=\"52.1\" lon=\"4.1\"/></rte>\n"
+			+ "<trk><name>t</name><desc>td</desc><trkseg>"
+			+ "<trkpt lat=\"52.1\" lon=\"4.1\"><ele>-1.25</ele><time>2023-05-01T10:00:01Z</time><hdop>3.5</hdop>"
+			+ "<extensions><osmand:speed>2.25</osmand:speed><osmand:heading>10</osmand:heading></extensions></trkpt>"
+			+ "<trkpt lat=\"52.10001\" lon=\"4.10001\"><time>2023-05-01T10:00:02.500Z</time><speed>3</speed></trkpt>"
+			+ "<trkpt lat=\"52.10002\" lon=\"4.10002\"><ele>x</ele><time>2023-05-01 10:00:03</time></trkpt>"
+			+ "<extensions><osmand:route><segment id=\"1\" length=\"2\"/></osmand:route></extensions></trkseg>"
+			+ "<trkseg></trkseg>"
+			+ "<extensions><osmand:color>#00ff00</osmand:color></extensions></trk>\n"
+			+ "<trk><trkpt lat=\"1\" lon=\"2\"/><trkseg><trkpt lat=\"3\" lon=\"4\"><ele>5</ele></trkpt></trkseg></trk>\n"
+			+ "</gpx>";
+
+	@Test
+	public void testSameAsLoadGpxFile() throws IOException {
+		GPXFile expected = GPXUtilities.loadGPXFile(toStream(GPX), null, false);
+		assertSameAsLoaded(expected, GPX);
+	}
+
+	@Test
+	public void testGeneratedTracks() throws IOException {
+		Random random = new Random(17);
+		GPXFile file = new GPXFile("test");
+		for (int t = 0; t < 3; t++) {
+			Track track = new Track();
+			track.name = "track " + t;
+			file.tracks.add(track);
+			for (int s = 0; s < 3; s++) {
+				TrkSegment segment = new TrkSegment();
+				track.segments.add(segment);
+				for (int i = 0; i < 500; i++) {
+					WptPt p = new WptPt(50 + random.nextDouble(), 10 + random.nextDouble(),
+							1700000000000L + random.nextInt(100000000), random.nextInt(10) == 0 ? Double.NaN
+							: random.nextDouble() * 1000, random.nextInt(3) == 0 ? 0 : random.nextDouble() * 20,
+							random.nextInt(2) == 0 ? Double.NaN : random.nextDouble() * 10);
+					segment.points.add(p);
+				}
+			}
+		}
+		for (int i = 0; i < 20; i++) {
+			WptPt p = new WptPt(random.nextDouble(), random.nextDouble(), 0, Double.NaN, 0, Double.NaN);
+			p.name = "point " + i;
+			file.addPoint(p);
+		}
+		String gpx = GPXUtilities.asString(file);
+		assertSameAsLoaded(GPXUtilities.loadGPXFile(toStream(gpx), null, false), gpx);
+	}
+
+	@Test
+	public void testCancel() throws IOException {
+		final int[] read = new int[1];
+		new GPXStreamReader(new GPXStreamListener() {
+			@Override
+			public void pointRead(WptPt point) {
+				read[0]++;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return read[0] > 0;
+			}
+		}).read(toStream(GPX));
+		Assert.assertEquals(1, read[0]);
+	}
+
+	private static void assertSameAsLoaded(GPXFile expected, String gpx) throws IOException {
+		final List<Track> tracks = new ArrayList<>();
+		final List<WptPt> waypoints = new ArrayList<>();
+		GPXStreamReader reader = new GPXStreamReader(new GPXStreamListener() {
+			private Track track;
+			private TrkSegment segment;
+
+			@Override
+			public void trackStarted() {
+				track = new Track();
+			}
+
+			@Override
+			public void trackFinished(String name, String desc) {
+				track.name = name;
+				track.desc = desc;
+				tracks.add(track);
+			}
+
+			@Override
+			public void segmentStarted() {
+				segment = new TrkSegment();
+			}
+
+			@Override
+			public void segmentFinished() {
+				track.segments.add(segment);
+			}
+
+			@Override
+			public void pointRead(WptPt point) {
+				segment.points.add(new WptPt(point));
+			}
+
+			@Override
+			public void waypointRead(WptPt point) {
+				waypoints.add(point);
+			}
+		});
+		reader.read(toStream(gpx));
+
+		Assert.assertEquals(expected.tracks.size(), tracks.size());
+		for (int t = 0; t < tracks.size(); t++) {
+			Track expectedTrack = expected.tracks.get(t);
+			Track track = tracks.get(t);
+			Assert.assertEquals(expectedTrack.name, track.name);
+			Assert.assertEquals(expectedTrack.desc, track.desc);
+			Assert.assertEquals(expectedTrack.segments.size(), track.segments.size());
+			for (int s = 0; s < track.segments.size(); s++) {
+				List<WptPt> expectedPoints = expectedTrack.segments.get(s).points;
+				List<WptPt> points = track.segments.get(s).points;
+				Assert.assertEquals(expectedPoints.size(), points.size());
+				for (int i = 0; i < points.size(); i++) {
+					assertPoint(expectedPoints.get(i), points.get(i));
+				}
+			}
+		}
+		List<WptPt> expectedWaypoints = expected.getPoints();
+		Assert.assertEquals(expectedWaypoints.size(), waypoints.size());
+		for (int i = 0; i < waypoints.size(); i++) {
+			WptPt e = expectedWaypoints.get(i);
+			WptPt p = waypoints.get(i);
+			assertPoint(e, p);
+			Assert.assertEquals(e.name, p.name);
+			Assert.assertEquals(e.desc, p.desc);
+			Assert.assertEquals(e.comment, p.comment);
+			Assert.assertEquals(e.link, p.link);
+			Assert.assertEquals(e.category, p.category);
+			Assert.assertEquals(e.getExtensionsToRead(), p.getExtensionsToRead());
+		}
+	}
+
+	private static void assertPoint(WptPt expected, WptPt actual) {
+		Assert.assertEquals(expected.lat, actual.lat, 0);
+		Assert.assertEquals(expected.lon, actual.lon, 0);
+		Assert.assertEquals(expected.ele, actual.ele, 0);
+		Assert.assertEquals(expected.time, actual.time);
+		Assert.assertEquals(expected.hdop, actual.hdop, 0);
+		Assert.assertEquals(expected.speed, actual.speed, 0);
+	}
+
+	private static InputStream toStream(String gpx) throws UnsupportedEncodingException {
+		return new ByteArrayInputStream(gpx.getBytes("UTF-8"));
+	}
+}
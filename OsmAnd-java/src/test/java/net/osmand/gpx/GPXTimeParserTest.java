@@ -0,0 +1,88 @@
+package net.osmand.gpx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class GPXTimeParserTest {
+
+	private static final String[] TIMES = {"2023-05-17T10:15:30Z", "2023-05-17T10:15:30.250Z", "2023-05-17T10:15:30.007Z",
+			"2023-05-17T10:15:30+02:00", "2023-05-17T10:15:30-05:30", "2023-05-17T10:15:30.999+14:00",
+			"2023-05-17T00:00:00-00:00", "1970-01-01T00:00:00Z", "1969-12-31T23:59:59.999Z", "2000-02-29T12:00:00Z",
+			"2100-12-31T23:59:59Z", "1600-03-01T00:00:00Z", "9999-12-31T23:59:59Z"};
+
+	private static final String[] INVALID_TIMES = {"2023-02-29T10:00:00Z", "2023-04-31T10:00:00Z",
+			"2023-13-01T10:00:00Z", "2023-00-10T10:00:00Z", "2023-05-17T24:00:00Z", "2023-05-17T10:60:00Z",
+			"2023-05-17T10:15:60Z", "2023-05-17 10:15:30Z", "2023-05-17T10:15:30", "2023-05-17T10:15:30.25Z",
+			"2023-05-17T10:15:30.2500Z", "2023-05-17T10:15:30+2:00", "2023-05-17T10:15:30+0200",
+			"2023-05-17T10:15:30z", "2023-5-17T10:15:30Z", "20230517T101530Z", "", "2023-05-17", "1500-01-01T00:00:00Z"};
+
+	@Test
+	public void testParse() {
+		Assert.assertEquals(1684318530000L, GPXTimeParser.parse("2023-05-17T10:15:30Z", true));
+		Assert.assertEquals(1684318530250L, GPXTimeParser.parse("2023-05-17T10:15:30.250Z", true));
+		Assert.assertEquals(1684318530000L - 2 * 3600000L, GPXTimeParser.parse("2023-05-17T10:15:30+02:00", true));
+		Assert.assertEquals(1684318530000L + 5 * 3600000L + 30 * 60000L,
+				GPXTimeParser.parse("2023-05-17T10:15:30-05:30", true));
+		Assert.assertEquals(0, GPXTimeParser.parse("1970-01-01T00:00:00Z", true));
+		Assert.assertEquals(-1, GPXTimeParser.parse("1969-12-31T23:59:59.999Z", true));
+	}
+
+	@Test
+	public void testSameAsSimpleDateFormat() {
+		for (String time : TIMES) {
+			long expected = GPXUtilities.parseTime(time, getFormat("yyyy-MM-dd'T'HH:mm:ssXXX"),
+					getFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX"));
+			Assert.assertEquals(time, expected, GPXTimeParser.parse(time, true));
+			Assert.assertEquals(time, expected, GPXUtilities.parseTime(time));
+		}
+		Random random = new Random(11);
+		SimpleDateFormat format = getFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+		for (int i = 0; i < 10000; i++) {
+			long time = (long) ((random.nextDouble() - 0.3) * 4e12);
+			String text = format.format(time);
+			Assert.assertEquals(text, time, GPXTimeParser.parse(text, true));
+			Assert.assertEquals(text, time / 1000 * 1000 - (time % 1000 < 0 ? 1000 : 0),
+					GPXTimeParser.parse(text.substring(0, 19) + "Z", true));
+		}
+	}
+
+	@Test
+	public void testInvalidTimes() {
+		for (String time : INVALID_TIMES) {
+			Assert.assertEquals(time, GPXTimeParser.INVALID_TIME, GPXTimeParser.parse(time, true));
+			// invalid times are parsed by SimpleDateFormat
+			long expected = GPXUtilities.parseTime(time, getFormat("yyyy-MM-dd'T'HH:mm:ssXXX"),
+					getFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX"));
+			Assert.assertEquals(time, expected, GPXUtilities.parseTime(time));
+		}
+		Assert.assertEquals(0, GPXUtilities.parseTime(null));
+	}
+
+	@Test
+	public void testOldFormat() {
+		Assert.assertEquals(GPXTimeParser.INVALID_TIME, GPXTimeParser.parse("2023-05-17T10:15:30+02:00", false));
+		Assert.assertEquals(1684318530250L, GPXTimeParser.parse("2023-05-17T10:15:30.250Z", false));
+		boolean oldFormat = GPXUtilities.GPX_TIME_OLD_FORMAT;
+		try {
+			GPXUtilities.GPX_TIME_OLD_FORMAT = true;
+			for (String time : TIMES) {
+				long expected = GPXUtilities.parseTime(time, getFormat("yyyy-MM-dd'T'HH:mm:ss'Z'"),
+						getFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"));
+				Assert.assertEquals(time, expected, GPXUtilities.parseTime(time));
+			}
+		} finally {
+			GPXUtilities.GPX_TIME_OLD_FORMAT = oldFormat;
+		}
+	}
+
+	private static SimpleDateFormat getFormat(String pattern) {
+		SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format;
+	}
+}
@@ -0,0 +1,158 @@
+package net.osmand.gpx;
+
+import net.osmand.data.QuadRect;
+import net.osmand.gpx.GPXTrackStore.PointMatch;
+import net.osmand.gpx.GPXTrackStore.SegmentMatch;
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.util.Algorithms;
+import net.osmand.util.MapUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class GPXTrackStoreTest {
+
+	private static final long START_TIME = 1700000000000L;
+
+	private File dir;
+	private List<File> files = new ArrayList<>();
+	private List<GPXFile> gpxFiles = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("tracks", "");
+		dir.delete();
+		dir.mkdirs();
+		Random random = new Random(7);
+		for (int f = 0; f < 3; f++) {
+			GPXFile gpxFile = new GPXFile("test");
+			for (int s = 0; s < 2; s++) {
+				List<WptPt> points = new ArrayList<>();
+				double lat = 52 + random.nextDouble() * 0.1;
+				double lon = 4 + random.nextDouble() * 0.1;
+				for (int i = 0; i < 500; i++) {
+					lat += (random.nextDouble() - 0.5) * 0.001;
+					lon += (random.nextDouble() - 0.5) * 0.001;
+					points.add(new WptPt(lat, lon, START_TIME + (f * 1000 + i) * 1000L, 0, 0, 0));
+				}
+				gpxFile.addTrkSegment(points);
+			}
+			File file = new File(dir, "track" + f + ".gpx");
+			Assert.assertNull(GPXUtilities.writeGpxFile(file, gpxFile));
+			files.add(file);
+			gpxFiles.add(GPXUtilities.loadGPXFile(file));
+		}
+	}
+
+	@After
+	public void tearDown() {
+		Algorithms.removeAllFiles(dir);
+	}
+
+	@Test
+	public void testQueries() throws IOException {
+		GPXTrackStore store = new GPXTrackStore(new File(dir, "index"));
+		try {
+			Assert.assertEquals(3, store.sync(files));
+			Random random = new Random(3);
+			for (int k = 0; k < 50; k++) {
+				double lat = 52 + random.nextDouble() * 0.1;
+				double lon = 4 + random.nextDouble() * 0.1;
+				PointMatch match = store.findNearestPoint(lat, lon, 20000);
+				Assert.assertNotNull(match);
+				Assert.assertEquals(nearestDistance(lat, lon), match.distance, 1e-6);
+				WptPt point = getPoint(match.file, match.trackIndex, match.segmentIndex, match.pointIndex);
+				Assert.assertEquals(point.lat, match.latitude, 1e-6);
+				Assert.assertEquals(point.time, match.time);
+			}
+
+			QuadRect box = new QuadRect(4.02, 52.08, 4.08, 52.02);
+			int expected = 0;
+			for (GPXFile gpxFile : gpxFiles) {
+				for (WptPt p : gpxFile.getAllSegmentsPoints()) {
+					if (p.lon >= box.left && p.lon <= box.right && p.lat >= box.bottom && p.lat <= box.top) {
+						expected++;
+					}
+				}
+			}
+			int found = 0;
+			for (SegmentMatch match : store.queryBox(box)) {
+				for (int i = match.firstPointIndex; i <= match.lastPointIndex; i++) {
+					WptPt p = getPoint(match.file, match.trackIndex, match.segmentIndex, i);
+					Assert.assertTrue(p.lat > box.bottom - 1e-6 && p.lat < box.top + 1e-6);
+					found++;
+				}
+			}
+			Assert.assertEquals(expected, found);
+
+			List<SegmentMatch> time = store.queryTime(START_TIME + 1100000, START_TIME + 1199000);
+			Assert.assertEquals(2, time.size());
+			Assert.assertEquals(files.get(1), time.get(0).file);
+			Assert.assertEquals(100, time.get(0).firstPointIndex);
+			Assert.assertEquals(199, time.get(0).lastPointIndex);
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws IOException {
+		File indexDir = new File(dir, "index");
+		GPXTrackStore store = new GPXTrackStore(indexDir);
+		store.sync(files);
+		store.save();
+		store.close();
+
+		store = new GPXTrackStore(indexDir);
+		try {
+			Assert.assertEquals(3, store.getFilesCount());
+			Assert.assertFalse(store.update(files.get(0)));
+			Assert.assertEquals(0, store.sync(files));
+			Assert.assertEquals(0, store.sync(Arrays.asList(files.get(0), files.get(2))));
+			Assert.assertFalse(store.contains(files.get(1)));
+			Assert.assertTrue(store.queryTime(START_TIME + 1000000, START_TIME + 1999000).isEmpty());
+
+			GPXFile changed = gpxFiles.get(0);
+			changed.getTracks(false).get(0).segments.remove(1);
+			Assert.assertNull(GPXUtilities.writeGpxFile(files.get(0), changed));
+			files.get(0).setLastModified(files.get(0).lastModified() + 2000);
+			Assert.assertTrue(store.update(files.get(0)));
+			Assert.assertEquals(1, store.queryTime(START_TIME, START_TIME + 999000).size());
+
+			store.compact();
+			PointMatch match = store.findNearestPoint(changed.getTracks(false).get(0).segments.get(0).points.get(10).lat,
+					changed.getTracks(false).get(0).segments.get(0).points.get(10).lon, 1);
+			Assert.assertNotNull(match);
+			Assert.assertEquals(10, match.pointIndex);
+		} finally {
+			store.close();
+		}
+	}
+
+	private double nearestDistance(double lat, double lon) {
+		int x = MapUtils.get31TileNumberX(lon);
+		int y = MapUtils.get31TileNumberY(lat);
+		double min = Double.MAX_VALUE;
+		for (GPXFile gpxFile : gpxFiles) {
+			for (WptPt p : gpxFile.getAllSegmentsPoints()) {
+				min = Math.min(min, MapUtils.measuredDist31(x, y,
+						MapUtils.get31TileNumberX(p.lon), MapUtils.get31TileNumberY(p.lat)));
+			}
+		}
+		return min;
+	}
+
+	private WptPt getPoint(File file, int track, int segment, int index) {
+		GPXFile gpxFile = gpxFiles.get(files.indexOf(file));
+		return gpxFile.getTracks(false).get(track).segments.get(segment).points.get(index);
+	}
+}
@@ -0,0 +1,172 @@
+package net.osmand.gpx;
+
+import net.osmand.PlatformUtil;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class GPXXmlWriterTest {
+
+	private static final String GPX = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n"
+			+ "<gpx version=\"1.1\" creator=\"OsmAnd\" xmlns=\"http://www.topografix.com/GPX/1/1\" xmlns:osmand=\"https://osmand.net\">\n"
+			+ "<metadata><name>Tour &amp; \"more\"</name><desc>Über &lt;b&gt;</desc>"
+			+ "<author><name>A</name><email id=\"a\" domain=\"b.c\"/><link href=\"https://a.b\"/></author>"
+			+ "<copyright author=\"A's\"><year>2023</year><license>CC</license></copyright>"
+			+ "<time>2023-05-01T10:00:00Z</time><keywords>k</keywords>"
+			+ "<bounds minlat=\"52.1\" minlon=\"4.1\" maxlat=\"52.2\" maxlon=\"4.2\"/>"
+			+ "<extensions><osmand:desc>d</osmand:desc></extensions></metadata>\n"
+			+ "<wpt lat=\"52.123456789\" lon=\"-4.5\"><ele>12.34</ele><time>2023-05-01T10:00:00Z</time><name>Café</name>"
+			+ "<type>Food</type><cmt>c</cmt><extensions><osmand:icon>cafe</osmand:icon><osmand:color>#ff0000</osmand:color>"
+			+ "<osmand:background>circle</osmand:background></extensions></wpt>\n"
+			+ "<wpt lat=\"-0.00000004\" lon=\"0\"><name>Zero</name></wpt>\n"
+			+ "<rte><name>r</name><rtept lat=\"52.1\" lon=\"4.1\"><extensions><osmand:profile>car</osmand:profile>"
+			+ "<osmand:trkpt_idx>0</osmand:trkpt_idx></extensions></rtept><rtept lat=\"52.2\" lon=\"4.2\"><extensions>"
+			+ "<osmand:profile>gap</osmand:profile></extensions></rtept></rte>\n"
+			+ "<trk><name>t</name><desc>td</desc><trkseg><name>s</name>"
+			+ "<trkpt lat=\"52.1\" lon=\"4.1\"><ele>-1.25</ele><time>2023-05-01T10:00:01Z</time><hdop>3.5</hdop>"
+			+ "<extensions><osmand:speed>2.25</osmand:speed><osmand:profile>car</osmand:profile><osmand:trkpt_idx>1</osmand:trkpt_idx></extensions></trkpt>"
+			+ "<trkpt lat=\"52.10001\" lon=\"4.10001\"><ele>0.04</ele><time>2023-05-01T10:00:02.500Z</time></trkpt>"
+			+ "<extensions><osmand:route><segment id=\"1\" length=\"2\" startTrkptIdx=\"0\" segmentTime=\"1.5\" types=\"0\"/></osmand:route>"
+			+ "<osmand:types><type t=\"highway\" v=\"primary\"/></osmand:types></extensions></trkseg>"
+			+ "<extensions><osmand:color>#00ff00</osmand:color></extensions></trk>\n"
+			+ "<extensions><osmand:show_arrows>true</osmand:show_arrows>"
+			+ "<osmand:points_groups><group name=\"Food\" color=\"#ff0000\" icon=\"cafe\" background=\"circle\"/></osmand:points_groups>"
+			+ "</extensions></gpx>";
+
+	@Test
+	public void testSameAsKXmlSerializer() throws Exception {
+		GPXFile expectedFile = load(GPX);
+		GPXFile actualFile = load(GPX);
+		StringWriter expected = new StringWriter();
+		Assert.assertNull(GPXUtilities.writeGpx(PlatformUtil.newSerializer(), expected, expectedFile, null));
+		StringWriter actual = new StringWriter();
+		Assert.assertNull(GPXUtilities.writeGpx(new GPXXmlWriter(), actual, actualFile, null));
+		Assert.assertEquals(expected.toString(), actual.toString());
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		GPXFile file = load(GPX);
+		String first = GPXUtilities.asString(file);
+		GPXFile reloaded = load(first);
+		Assert.assertEquals(first, GPXUtilities.asString(reloaded));
+
+		Assert.assertEquals(file.metadata.name, reloaded.metadata.name);
+		Assert.assertEquals(file.metadata.desc, reloaded.metadata.desc);
+		Assert.assertEquals(file.getPointsSize(), reloaded.getPointsSize());
+		Assert.assertEquals("Café", reloaded.getPoints().get(0).name);
+		Assert.assertEquals("cafe", reloaded.getPoints().get(0).getIconName());
+		Assert.assertEquals("cafe", reloaded.getPointsGroups().get("Food").iconName);
+		Assert.assertEquals(2, reloaded.routes.get(0).points.size());
+		TrkSegment segment = file.tracks.get(0).segments.get(0);
+		TrkSegment reloadedSegment = reloaded.tracks.get(0).segments.get(0);
+		Assert.assertEquals(segment.name, reloadedSegment.name);
+		Assert.assertEquals(1, reloadedSegment.routeSegments.size());
+		Assert.assertEquals("1.5", reloadedSegment.routeSegments.get(0).segmentTime);
+		Assert.assertEquals("primary", reloadedSegment.routeTypes.get(0).value);
+		Assert.assertEquals(segment.points.size(), reloadedSegment.points.size());
+		for (int i = 0; i < segment.points.size(); i++) {
+			WptPt p = segment.points.get(i);
+			WptPt r = reloadedSegment.points.get(i);
+			Assert.assertEquals(p.lat, r.lat, 1e-7);
+			Assert.assertEquals(p.lon, r.lon, 1e-7);
+			Assert.assertEquals(p.ele, r.ele, 0.05);
+			Assert.assertEquals(p.time / 1000, r.time / 1000);
+			Assert.assertEquals(p.speed, r.speed, 0.05);
+		}
+		Assert.assertEquals("#00ff00", reloaded.tracks.get(0).getExtensionsToRead().get("color"));
+	}
+
+	@Test
+	public void testEscaping() throws Exception {
+		String[] texts = {"plain", "a&b<c>d\"e'f", "Über é ж 日本", "tab\tline\nbreak", "", "@#;&amp;"};
+		for (String text : texts) {
+			for (boolean utf : new boolean[] {true, false}) {
+				StringWriter expected = new StringWriter();
+				writeSample(PlatformUtil.newSerializer(), expected, text, utf);
+				StringWriter actual = new StringWriter();
+				writeSample(new GPXXmlWriter(), actual, text, utf);
+				Assert.assertEquals(expected.toString(), actual.toString());
+			}
+		}
+	}
+
+	@Test
+	public void testNumberFormat() {
+		NumberFormat latLonFormat = new DecimalFormat("0.00#####", new DecimalFormatSymbols(Locale.US));
+		NumberFormat decimalFormat = new DecimalFormat("#.#", new DecimalFormatSymbols(Locale.US));
+		double[] values = {0, -0.0, 0.5, 0.05, 0.04, -0.04, 12.25, 12.35, 1.00000005, -179.99999995, 90, 1e20,
+				Double.NaN, Double.POSITIVE_INFINITY, 99999.999999999, 0.000000049, 0.000000051};
+		for (double v : values) {
+			Assert.assertEquals(latLonFormat.format(v), GPXFormat.formatLatLon(v));
+			Assert.assertEquals(decimalFormat.format(v), GPXFormat.formatDecimal(v));
+		}
+		Random random = new Random(3);
+		for (int i = 0; i < 200000; i++) {
+			double lat = (random.nextDouble() - 0.5) * 360;
+			double latRounded = Math.round(lat * 1e6) / 1e6;
+			double ele = (random.nextDouble() - 0.1) * 9000;
+			double eleRounded = Math.round(ele * 100) / 100d;
+			double speed = random.nextFloat() * 50;
+			Assert.assertEquals(latLonFormat.format(lat), GPXFormat.formatLatLon(lat));
+			Assert.assertEquals(latLonFormat.format(latRounded), GPXFormat.formatLatLon(latRounded));
+			Assert.assertEquals(decimalFormat.format(ele), GPXFormat.formatDecimal(ele));
+			Assert.assertEquals(decimalFormat.format(eleRounded), GPXFormat.formatDecimal(eleRounded));
+			Assert.assertEquals(decimalFormat.format(speed), GPXFormat.formatDecimal(speed));
+		}
+	}
+
+	@Test
+	public void testTimeFormat() {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		long[] times = {0, -1, 1, 951782400000L, 951868799999L, -12212553600001L, -12212553600000L,
+				253402300799999L, 253402300800000L, -62135596800000L, Long.MAX_VALUE / 1000};
+		for (long time : times) {
+			Assert.assertEquals(format.format(new Date(time)), GPXFormat.formatTime(time));
+		}
+		Random random = new Random(5);
+		for (int i = 0; i < 200000; i++) {
+			long time = (long) ((random.nextDouble() - 0.3) * 4e12);
+			Assert.assertEquals(format.format(new Date(time)), GPXFormat.formatTime(time));
+		}
+	}
+
+	private static void writeSample(org.xmlpull.v1.XmlSerializer serializer, StringWriter output, String text,
+									boolean utf) throws Exception {
+		serializer.setOutput(output);
+		serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
+		serializer.startDocument(utf ? "UTF-8" : "ISO-8859-1", true);
+		serializer.startTag(null, "a");
+		serializer.attribute(null, "v", text);
+		serializer.startTag(null, "empty");
+		serializer.endTag(null, "empty");
+		serializer.startTag(null, "b");
+		serializer.startTag(null, "c");
+		serializer.text(text);
+		serializer.endTag(null, "c");
+		serializer.comment("comment");
+		serializer.endTag(null, "b");
+		serializer.endDocument();
+	}
+
+	private static GPXFile load(String gpx) throws UnsupportedEncodingException {
+		GPXFile file = GPXUtilities.loadGPXFile(new ByteArrayInputStream(gpx.getBytes("UTF-8")));
+		Assert.assertNull(file.error);
+		return file;
+	}
+}
@@ -0,0 +1,89 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static net.osmand.gpx.TrackAnalysisTestUtil.*;
+
+public class IncrementalTrackAnalyserTest {
+
+	@Test
+	public void testSameAsTrackAnalysis() {
+		Random random = new Random(42);
+		List<TrkSegment> segments = new ArrayList<>();
+		segments.add(createSegment(random, 3000, false, true));
+		segments.add(createSegment(random, 1, false, true));
+		segments.add(createSegment(random, 0, false, true));
+		segments.add(createSegment(random, 2000, true, true));
+		segments.add(createSegment(random, 1500, false, false));
+
+		IncrementalTrackAnalyser analyser = new IncrementalTrackAnalyser(100000);
+		List<TrkSegment> recorded = new ArrayList<>();
+		for (TrkSegment segment : segments) {
+			TrkSegment s = new TrkSegment();
+			recorded.add(s);
+			analyser.startSegment();
+			for (WptPt point : segment.points) {
+				s.points.add(point);
+				analyser.addPoint(point);
+				if (s.points.size() % 250 == 3) {
+					assertAnalysis(prepareInformation(recorded, true), analyser.getAnalysis(FILE_TIMESTAMP), 0);
+				}
+			}
+		}
+		assertAnalysis(prepareInformation(recorded, true), analyser.getAnalysis(FILE_TIMESTAMP), 0);
+		Assert.assertEquals(5, analyser.getAnalysis(FILE_TIMESTAMP).totalTracks);
+	}
+
+	@Test
+	public void testElevationWindowBoundary() {
+		Random random = new Random(5);
+		TrkSegment segment = createSegment(random, 3000, false, true);
+		IncrementalTrackAnalyser analyser = new IncrementalTrackAnalyser();
+		List<TrkSegment> recorded = new ArrayList<>();
+		TrkSegment s = new TrkSegment();
+		recorded.add(s);
+		int exactPoints = 0;
+		for (WptPt point : segment.points) {
+			s.points.add(point);
+			analyser.addPoint(point);
+			boolean filled = analyser.isElevationWindowFilled();
+			if (s.points.size() > 1 && (!filled || s.points.size() % 10 == 0)) {
+				GPXTrackAnalysis expected = prepareInformation(recorded, true);
+				GPXTrackAnalysis actual = analyser.getAnalysis(FILE_TIMESTAMP);
+				if (!filled) {
+					assertAnalysis(expected, actual, 0);
+					exactPoints++;
+				} else if (!Double.isNaN(point.ele)) {
+					// analysis of whole segment has no diffs if elevation of last point is missing
+					assertFloat("diffElevationUp", expected.diffElevationUp, actual.diffElevationUp, 0.02);
+					assertFloat("diffElevationDown", expected.diffElevationDown, actual.diffElevationDown, 0.02);
+				}
+			}
+		}
+		Assert.assertTrue(analyser.isElevationWindowFilled());
+		Assert.assertTrue(exactPoints > IncrementalTrackAnalyser.DEFAULT_ELEVATION_WINDOW * 2);
+	}
+
+	@Test
+	public void testElevationWindow() {
+		Random random = new Random(3);
+		List<TrkSegment> segments = new ArrayList<>();
+		segments.add(createSegment(random, 50000, true, true));
+		IncrementalTrackAnalyser analyser = new IncrementalTrackAnalyser();
+		analyser.addPoints(segments.get(0).points);
+		GPXTrackAnalysis expected = prepareInformation(segments, true);
+		GPXTrackAnalysis actual = analyser.getAnalysis(FILE_TIMESTAMP);
+		Assert.assertEquals(expected.points, actual.points);
+		Assert.assertEquals(expected.totalDistance, actual.totalDistance, 0);
+		Assert.assertEquals(expected.diffElevationUp, actual.diffElevationUp, expected.diffElevationUp * 0.02);
+		Assert.assertEquals(expected.diffElevationDown, actual.diffElevationDown, expected.diffElevationDown * 0.02);
+	}
+}
@@ -0,0 +1,90 @@
+package net.osmand.gpx;
+
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random tracks and comparison with {@link GPXTrackAnalysis#prepareInformation} for track analyser tests
+ */
+class TrackAnalysisTestUtil {
+
+	static final long FILE_TIMESTAMP = 1700000000000L;
+
+	/**
+	 * @param skipSinglePoints skip segments without distance as {@link GPXFile#getAnalysis} does
+	 */
+	static GPXTrackAnalysis prepareInformation(List<TrkSegment> segments, boolean skipSinglePoints) {
+		List<SplitSegment> splitSegments = new ArrayList<>();
+		for (TrkSegment segment : segments) {
+			if (!skipSinglePoints || segment.points.size() > 1) {
+				splitSegments.add(new SplitSegment(segment));
+			}
+		}
+		return new GPXTrackAnalysis().prepareInformation(FILE_TIMESTAMP, null, splitSegments.toArray(new SplitSegment[0]));
+	}
+
+	static TrkSegment createSegment(Random random, int size, boolean withSpeed, boolean withTime) {
+		TrkSegment segment = new TrkSegment();
+		double lat = 50 + random.nextDouble();
+		double lon = 10 + random.nextDouble();
+		double ele = 100 + random.nextInt(500);
+		long time = FILE_TIMESTAMP - 86400000L + random.nextInt(3600) * 1000L;
+		for (int i = 0; i < size; i++) {
+			if (random.nextInt(20) != 0) {
+				lat += (random.nextDouble() - 0.5) * 0.001;
+				lon += (random.nextDouble() - 0.5) * 0.001;
+			}
+			// slow climbs and descents between random steps
+			ele += (random.nextDouble() - 0.5) * 5 + Math.sin(i / 200.0);
+			time += random.nextInt(10) == 0 ? 60000 : 1000 + random.nextInt(3000);
+			double pointEle = random.nextInt(30) == 0 ? Double.NaN : (float) ele;
+			double speed = withSpeed && random.nextInt(5) != 0 ? (float) (random.nextDouble() * 10) : 0;
+			double hdop = random.nextInt(3) == 0 ? Double.NaN : (float) (random.nextDouble() * 20);
+			segment.points.add(new WptPt(lat, lon, withTime ? time : 0, pointEle, speed, hdop));
+		}
+		return segment;
+	}
+
+	/**
+	 * @param relativeDelta allowed difference of sums relative to expected value, other values should be equal
+	 */
+	static void assertAnalysis(GPXTrackAnalysis expected, GPXTrackAnalysis actual, double relativeDelta) {
+		Assert.assertEquals(expected.points, actual.points);
+		assertFloat("totalDistance", expected.totalDistance, actual.totalDistance, relativeDelta);
+		assertFloat("totalDistanceMoving", expected.totalDistanceMoving, actual.totalDistanceMoving, relativeDelta);
+		Assert.assertEquals(expected.timeMoving, actual.timeMoving);
+		Assert.assertEquals(expected.startTime, actual.startTime);
+		Assert.assertEquals(expected.endTime, actual.endTime);
+		Assert.assertEquals(expected.timeSpan, actual.timeSpan);
+		Assert.assertEquals(expected.left, actual.left, 0);
+		Assert.assertEquals(expected.right, actual.right, 0);
+		Assert.assertEquals(expected.top, actual.top, 0);
+		Assert.assertEquals(expected.bottom, actual.bottom, 0);
+		Assert.assertEquals(expected.minHdop, actual.minHdop, 0);
+		Assert.assertEquals(expected.maxHdop, actual.maxHdop, 0);
+		Assert.assertEquals(expected.minSpeed, actual.minSpeed, 0);
+		Assert.assertEquals(expected.maxSpeed, actual.maxSpeed, 0);
+		assertFloat("avgSpeed", expected.avgSpeed, actual.avgSpeed, relativeDelta);
+		Assert.assertEquals(expected.minElevation, actual.minElevation, 0);
+		Assert.assertEquals(expected.maxElevation, actual.maxElevation, 0);
+		assertFloat("avgElevation", expected.avgElevation, actual.avgElevation, relativeDelta);
+		Assert.assertEquals(expected.diffElevationUp, actual.diffElevationUp, 0);
+		Assert.assertEquals(expected.diffElevationDown, actual.diffElevationDown, 0);
+		Assert.assertEquals(expected.hasSpeedInTrack(), actual.hasSpeedInTrack());
+		Assert.assertEquals(expected.hasElevationData(), actual.hasElevationData());
+		Assert.assertEquals(expected.hasSpeedData(), actual.hasSpeedData());
+		Assert.assertEquals(expected.latLonStart, actual.latLonStart);
+		Assert.assertEquals(expected.locationStart.time, actual.locationStart.time);
+		Assert.assertEquals(expected.locationEnd.time, actual.locationEnd.time);
+	}
+
+	static void assertFloat(String name, double expected, double actual, double relativeDelta) {
+		Assert.assertEquals(name, expected, actual, Math.abs(expected) * relativeDelta);
+	}
+}
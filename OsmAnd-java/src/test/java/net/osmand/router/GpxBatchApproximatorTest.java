@@ -0,0 +1,92 @@
+package net.osmand.router;
+
+import net.osmand.gpx.GPXFile;
+import net.osmand.gpx.GPXUtilities;
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.router.GpxBatchApproximator.FileResult;
+import net.osmand.util.Algorithms;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class GpxBatchApproximatorTest {
+
+	// roads are not needed without obf files
+	private static final String ROUTING_CONFIG = "<osmand_routing_config defaultProfile=\"car\">"
+			+ "<routingProfile name=\"car\" baseProfile=\"car\" minDefaultSpeed=\"2\" maxDefaultSpeed=\"30\"/>"
+			+ "</osmand_routing_config>";
+
+	@Test
+	public void testResultsInOrderOfFiles() throws IOException, InterruptedException, XmlPullParserException {
+		File dir = File.createTempFile("approximation", "");
+		dir.delete();
+		dir.mkdirs();
+		try {
+			// tracks are distinguished by number of points, missing file fails on load
+			List<File> files = new ArrayList<>();
+			for (int f = 0; f < 24; f++) {
+				File file = new File(dir, f + GpxBatchApproximator.GPX_EXT);
+				if (f % 7 == 3) {
+					files.add(file);
+					continue;
+				}
+				GPXFile gpxFile = new GPXFile("test");
+				List<WptPt> points = new ArrayList<>();
+				for (int i = 0; i < f; i++) {
+					points.add(new WptPt(52.0 + i * 0.001, 4.0 + f * 0.01, 0, Double.NaN, 0, Double.NaN));
+				}
+				gpxFile.addTrkSegment(points);
+				Assert.assertNull(GPXUtilities.writeGpxFile(file, gpxFile));
+				files.add(file);
+			}
+			File outDir = new File(dir, "out");
+			GpxBatchApproximator approximator = new GpxBatchApproximator(Collections.<File>emptyList(),
+					RoutingConfiguration.parseFromInputStream(new ByteArrayInputStream(ROUTING_CONFIG.getBytes("UTF-8"))),
+					"car");
+			approximator.setThreads(4);
+			boolean print = RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST;
+			List<FileResult> results;
+			try {
+				RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = false;
+				results = approximator.run(files, outDir);
+			} finally {
+				RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = print;
+			}
+
+			Assert.assertEquals(files.size(), results.size());
+			for (int f = 0; f < files.size(); f++) {
+				FileResult res = results.get(f);
+				Assert.assertSame(files.get(f), res.file);
+				if (f % 7 == 3) {
+					Assert.assertTrue(res.error, res.error.startsWith("Not loaded"));
+				} else if (f < 2) {
+					Assert.assertEquals("Not enough points", res.error);
+				} else {
+					// without roads all points are unmatched, but route is exported
+					Assert.assertEquals(f, res.points);
+					Assert.assertTrue(res.error, res.isSuccessful());
+					Assert.assertEquals(new File(outDir, files.get(f).getName()), res.output);
+					Assert.assertTrue(res.output.exists());
+				}
+			}
+			File report = new File(outDir, GpxBatchApproximator.REPORT_FILE_NAME);
+			GpxBatchApproximator.writeReport(results, report);
+			String[] lines = Algorithms.getFileAsString(report).split("\n");
+			Assert.assertEquals(files.size() + 1, lines.length);
+			for (int f = 0; f < files.size(); f++) {
+				String status = results.get(f).isSuccessful() ? ",ok," : ",failed,";
+				Assert.assertTrue(lines[f + 1].startsWith(files.get(f).getName() + status));
+			}
+		} finally {
+			Algorithms.removeAllFiles(dir);
+		}
+	}
+}
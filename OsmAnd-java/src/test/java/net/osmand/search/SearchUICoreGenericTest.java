@@ -97,6 +97,26 @@ public class SearchUICoreGenericTest {
 		Assert.assertSame(b2, cll.getCurrentSearchResults().get(2));
 	}
 
+	@Test
+	public void testDuplicatesAcrossAntimeridian() throws IOException {
+		SearchSettings ss = new SearchSettings((SearchSettings)null);
+		ss = ss.setOriginalLocation(new LatLon(0, 179));
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(ss);
+		SearchResultCollection cll = new SearchUICore.SearchResultCollection(phrase);
+		List<SearchResult> rs = new ArrayList<>();
+		SearchResult a1 = new SearchResult(phrase);
+		a1.localeName = "a";
+		a1.location = new LatLon(0, 179.9999);
+		rs.add(a1);
+		SearchResult a2 = new SearchResult(phrase);
+		a2.localeName = "a";
+		a2.location = new LatLon(0, -179.9999);
+		rs.add(a2);
+		cll.addSearchResults(rs, true, true);
+		Assert.assertEquals(1, cll.getCurrentSearchResults().size());
+		Assert.assertSame(a1, cll.getCurrentSearchResults().get(0));
+	}
+
 	private SearchResult searchResult(List<SearchResult> rs, SearchPhrase phrase, String text, int dist) {
 		SearchResult res = new SearchResult(phrase);
 		res.localeName = text;
@@ -0,0 +1,63 @@
+package net.osmand.util;
+
+import net.osmand.osm.edit.Node;
+import net.osmand.osm.edit.OsmMapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SimplificationZoomsTest {
+
+	@Test
+	public void testSameAsDouglasPeucker() {
+		Random random = new Random(5);
+		for (int t = 0; t < 10; t++) {
+			int size = 2 + random.nextInt(3000);
+			double[] latitudes = new double[size];
+			double[] longitudes = new double[size];
+			double lat = 52;
+			double lon = 4;
+			for (int i = 0; i < size; i++) {
+				// repeated points and straight parts
+				if (i % 50 > 5) {
+					lat += (random.nextDouble() - 0.5) * 0.002;
+					lon += (random.nextDouble() - 0.3) * 0.002;
+				}
+				latitudes[i] = lat;
+				longitudes[i] = lon;
+			}
+			List<Node> nodes = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				nodes.add(new Node(latitudes[i], longitudes[i], i));
+			}
+			byte[] zooms = SimplificationZooms.calculate(latitudes, longitudes, SimplificationZooms.DEFAULT_BASE);
+			for (int zoom = 0; zoom <= 22; zoom++) {
+				List<Node> result = new ArrayList<>();
+				result.add(nodes.get(0));
+				OsmMapUtils.simplifyDouglasPeucker(nodes, 0, size - 1, result,
+						SimplificationZooms.getEpsilon(zoom, SimplificationZooms.DEFAULT_BASE));
+				int[] filtered = SimplificationZooms.filter(zooms, zoom);
+				Assert.assertEquals(result.size(), filtered.length);
+				for (int i = 0; i < filtered.length; i++) {
+					Assert.assertEquals(result.get(i).getId(), filtered[i]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNaNPoints() {
+		byte n = SimplificationZooms.NEVER;
+		byte[] zooms = SimplificationZooms.calculate(new double[] {52, Double.NaN, 52.01},
+				new double[] {4, 4.01, 4.02}, SimplificationZooms.DEFAULT_BASE);
+		Assert.assertArrayEquals(new byte[] {0, n, 0}, zooms);
+		// NaN end point makes all distances of whole range NaN
+		zooms = SimplificationZooms.calculate(new double[] {52, 52.01, 52.02, Double.NaN},
+				new double[] {4, 4.03, 4.02, 4.03}, SimplificationZooms.DEFAULT_BASE);
+		Assert.assertArrayEquals(new byte[] {0, n, n, 0}, zooms);
+	}
+}